@@ -108,7 +108,7 @@ class BankAccountRecord(
     if (str1.isEmpty() || str2.isEmpty()) {
       return 0
     }
-    return if (normalizeString(value) == normalizeString(dest)) {
+    return if (str1 == str2) {
       1
     } else {
       0
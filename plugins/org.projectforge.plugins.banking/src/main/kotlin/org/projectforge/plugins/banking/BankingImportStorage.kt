@@ -32,6 +32,7 @@ import org.projectforge.rest.importer.ImportFieldSettings
 import org.projectforge.rest.importer.ImportPairEntry
 import org.projectforge.rest.importer.ImportSettings
 import org.projectforge.rest.importer.ImportStorage
+import java.math.BigDecimal
 import java.time.LocalDate
 
 class BankingImportStorage(importSettings: String? = null, targetEntity: BankAccount? = null) :
@@ -74,18 +75,37 @@ class BankingImportStorage(importSettings: String? = null, targetEntity: BankAcc
       }
     }
     clearEntries()
-    var date = fromDate!!
+    // Group both sides once by day instead of filtering all transactions for every day of the period:
+    val readByDate = readTransactions.groupBy { it.date }
+    val dbRecordsByDate = databaseTransactions?.groupBy { it.date } ?: emptyMap()
+    var date: LocalDate = from
     for (i in 0..999999) { // Paranoia counter, max 1 mio records.
-      val readByDay = readTransactions.filter { it.date == date }
-      val dbRecordsByDay = databaseTransactions?.filter { it.date == date } ?: emptyList()
-      buildMatchingPairs(readByDay, dbRecordsByDay)
+      buildMatchingPairs(readByDate[date] ?: emptyList(), dbRecordsByDate[date] ?: emptyList())
       date = date.plusDays(1)
-      if (date > untilDate) {
+      if (date > until) {
         break
       }
     }
+    pairEntries.forEach { entry ->
+      entry.read?.let { read ->
+        if (read.bankAccount?.iban.isNullOrBlank()
+          || !bankAccountNormalizedIban.contains(StringHelper.removeNonDigitsAndNonASCIILetters(read.bankAccount?.iban))
+        ) {
+          entry.error = translateMsg(
+            "plugins.banking.import.error.recordWithWrongBankAccount",
+            read.bankAccount?.iban,
+            (targetEntity as BankAccount).iban
+          )
+        }
+      }
+    }
   }
 
+  /**
+   * Records of one day are matched by one optimal assignment over all read and db records of the day, so the result
+   * doesn't depend on the order of the records and weak pairs of equal amounts don't prevent better pairs (e. g. for
+   * modified amounts).
+   */
   private fun buildMatchingPairs(
     readByDay: List<BankAccountRecord>,
     dbRecordsByDay: List<BankAccountRecordDO>,
@@ -96,66 +116,72 @@ class BankingImportStorage(importSettings: String? = null, targetEntity: BankAcc
       }
       return // Nothing to import (only db records given).
     }
-    val scoreMatrix = Array(readByDay.size) { IntArray(dbRecordsByDay.size) }
-    for (k in readByDay.indices) {
-      for (l in dbRecordsByDay.indices) {
-        scoreMatrix[k][l] = readByDay[k].matchScore(dbRecordsByDay[l])
-      }
+    val pairs = mutableListOf<MatchingPair>()
+    val takenReadRecords = BooleanArray(readByDay.size)
+    val takenDBRecords = BooleanArray(dbRecordsByDay.size)
+    if (dbRecordsByDay.isNotEmpty()) {
+      assign(readByDay, dbRecordsByDay, pairs, takenReadRecords, takenDBRecords)
     }
-    val takenReadRecords = mutableSetOf<Int>()
-    val takenDBRecords = mutableSetOf<Int>()
-    for (i in 0..(readByDay.size + dbRecordsByDay.size)) { // Paranoia counter
-      var maxScore = 0
-      var maxK = -1
-      var maxL = -1
-      for (k in readByDay.indices) {
-        if (takenReadRecords.contains(k)) {
-          continue // Entry k is already taken.
-        }
-        for (l in dbRecordsByDay.indices) {
-          if (takenDBRecords.contains(l)) {
-            continue // Entry l is already taken.
-          }
-          if (scoreMatrix[k][l] > maxScore) {
-            maxScore = scoreMatrix[k][l]
-            maxK = k
-            maxL = l
-          }
-        }
-      }
-      if (maxScore < 1) {
-        break // No matching pair exists anymore.
-      }
-      takenReadRecords.add(maxK)
-      takenDBRecords.add(maxL)
-      addEntry(ImportPairEntry(readByDay[maxK], createRecord(dbRecordsByDay[maxL])))
+    // Best matches first:
+    pairs.sortWith(compareByDescending<MatchingPair> { it.score }.thenBy { it.readIndex })
+    pairs.forEach { pair ->
+      addEntry(ImportPairEntry(readByDay[pair.readIndex], createRecord(dbRecordsByDay[pair.dbIndex])))
     }
     // Now, add the unmatching records
     for (k in readByDay.indices) {
-      if (takenReadRecords.contains(k)) {
+      if (takenReadRecords[k]) {
         continue // Entry k is already taken.
       }
       addEntry(ImportPairEntry(readByDay[k], null))
     }
     for (l in dbRecordsByDay.indices) {
-      if (takenDBRecords.contains(l)) {
+      if (takenDBRecords[l]) {
         continue // Entry l is already taken.
       }
       addEntry(ImportPairEntry(null, createRecord(dbRecordsByDay[l])))
     }
-    pairEntries.forEach { entry ->
-      entry.read?.let { read ->
-        if (read.bankAccount?.iban.isNullOrBlank()
-          || !bankAccountNormalizedIban.contains(StringHelper.removeNonDigitsAndNonASCIILetters(read.bankAccount?.iban))
-        ) {
-          entry.error = translateMsg(
-            "plugins.banking.import.error.recordWithWrongBankAccount",
-            read.bankAccount?.iban,
-            (targetEntity as BankAccount).iban
-          )
-        }
+  }
+
+  /**
+   * Finds the optimal assignment between the given read and db records. Only pairs with a score of at least 1 are
+   * taken. On equal scores, pairs of equal amounts are preferred.
+   */
+  private fun assign(
+    readByDay: List<BankAccountRecord>,
+    dbRecordsByDay: List<BankAccountRecordDO>,
+    pairs: MutableList<MatchingPair>,
+    takenReadRecords: BooleanArray,
+    takenDBRecords: BooleanArray,
+  ) {
+    val scoreMatrix = Array(readByDay.size) { k ->
+      IntArray(dbRecordsByDay.size) { l -> readByDay[k].matchScore(dbRecordsByDay[l]) }
+    }
+    // The sum of all amount bonuses is less than the factor, so a higher total score always wins:
+    val factor = minOf(readByDay.size, dbRecordsByDay.size) + 1
+    val weightMatrix = Array(readByDay.size) { k ->
+      val amount = amountKey(readByDay[k].amount)
+      IntArray(dbRecordsByDay.size) { l ->
+        val amountBonus = if (amount != null && amount == amountKey(dbRecordsByDay[l].amount)) 1 else 0
+        factor * scoreMatrix[k][l] + amountBonus
       }
     }
+    HungarianAlgorithm.maximize(weightMatrix).forEachIndexed { k, l ->
+      if (l < 0 || scoreMatrix[k][l] < 1) {
+        return@forEachIndexed // No matching pair.
+      }
+      takenReadRecords[k] = true
+      takenDBRecords[l] = true
+      pairs.add(MatchingPair(k, l, scoreMatrix[k][l]))
+    }
+  }
+
+  private class MatchingPair(val readIndex: Int, val dbIndex: Int, val score: Int)
+
+  /**
+   * Amounts are compared by value (1.2 == 1.20).
+   */
+  private fun amountKey(amount: BigDecimal?): BigDecimal? {
+    return amount?.stripTrailingZeros()
   }
 
   internal fun analyzeReadTransactions() {
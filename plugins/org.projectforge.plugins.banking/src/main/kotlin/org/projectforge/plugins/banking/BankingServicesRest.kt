@@ -81,8 +81,11 @@ class BankingServicesRest {
       throw IllegalArgumentException("Excel not yet supported.")
     } else {
       importStorage = BankingImportStorage(bankAccount.importSettings, bankAccount)
-      // Try to import CSV
-      CsvImporter.parse(file.inputStream, importStorage, importStorage.importSettings.charSet)
+      // Try to import CSV (streamed, the uploaded file isn't read into memory):
+      val storage = importStorage
+      CsvImporter.parseInBatches(file.inputStream, storage, storage.importSettings.charSet) { records ->
+        records.forEach { storage.commitEntity(it) }
+      }
     }
     transactionsImporter.import(request, bankAccountDO, importStorage)
     return ResponseEntity(
@@ -0,0 +1,111 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.banking
+
+/**
+ * Optimal assignment of rows to columns (Hungarian algorithm, Kuhn-Munkres), used for finding the best matching
+ * pairs of imported and stored bank account records. The result is deterministic for the same input.
+ */
+internal object HungarianAlgorithm {
+  /**
+   * Finds the assignment of rows to columns with the maximum sum of scores.
+   * @param scores Matrix of scores (scores[row][column]). All rows must have the same size.
+   * @return For every row the index of the assigned column, or -1, if no column is assigned (more rows than columns).
+   */
+  fun maximize(scores: Array<IntArray>): IntArray {
+    val rows = scores.size
+    if (rows == 0) {
+      return IntArray(0)
+    }
+    val columns = scores[0].size
+    if (columns == 0) {
+      return IntArray(rows) { -1 }
+    }
+    if (rows > columns) {
+      // The algorithm needs rows <= columns, so solve the transposed problem:
+      val transposed = Array(columns) { column -> IntArray(rows) { row -> scores[row][column] } }
+      val assignment = maximize(transposed)
+      val result = IntArray(rows) { -1 }
+      assignment.forEachIndexed { column, row ->
+        if (row >= 0) {
+          result[row] = column
+        }
+      }
+      return result
+    }
+    // Minimizing costs (negative scores). Indices are 1-based, index 0 is a dummy.
+    val u = LongArray(rows + 1)
+    val v = LongArray(columns + 1)
+    val p = IntArray(columns + 1) // p[column] = assigned row
+    val way = IntArray(columns + 1)
+    for (row in 1..rows) {
+      p[0] = row
+      var j0 = 0
+      val minv = LongArray(columns + 1) { INFINITY }
+      val used = BooleanArray(columns + 1)
+      do {
+        used[j0] = true
+        val i0 = p[j0]
+        var delta = INFINITY
+        var j1 = 0
+        for (j in 1..columns) {
+          if (!used[j]) {
+            val cur = -scores[i0 - 1][j - 1].toLong() - u[i0] - v[j]
+            if (cur < minv[j]) {
+              minv[j] = cur
+              way[j] = j0
+            }
+            if (minv[j] < delta) {
+              delta = minv[j]
+              j1 = j
+            }
+          }
+        }
+        for (j in 0..columns) {
+          if (used[j]) {
+            u[p[j]] += delta
+            v[j] -= delta
+          } else {
+            minv[j] -= delta
+          }
+        }
+        j0 = j1
+      } while (p[j0] != 0)
+      do {
+        val j1 = way[j0]
+        p[j0] = p[j1]
+        j0 = j1
+      } while (j0 != 0)
+    }
+    val result = IntArray(rows) { -1 }
+    for (j in 1..columns) {
+      if (p[j] != 0) {
+        result[p[j] - 1] = j - 1
+      }
+    }
+    return result
+  }
+
+  private const val INFINITY = Long.MAX_VALUE / 4
+}
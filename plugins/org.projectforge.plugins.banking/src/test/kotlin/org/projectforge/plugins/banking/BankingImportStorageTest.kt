@@ -99,6 +99,37 @@ class BankingImportStorageTest {
     }
   }
 
+  @Test
+  fun weakMatchOfEqualAmountTest() {
+    val today = LocalDate.now()
+    val storage = BankingImportStorage(targetEntity = BankAccount(id = 42))
+    storage.readTransactions = mutableListOf(createRecord(today, "1.00", "Rent", "DE1111"))
+    // Equal amount only vs. modified amount with equal subject and iban:
+    storage.databaseTransactions =
+      listOf(createDBRecord(today, "1.00", "Other", null), createDBRecord(today, "1.50", "Rent", "DE1111"))
+    storage.analyzeReadTransactions()
+    storage.reconcileImportStorage(false)
+    Assertions.assertEquals(2, storage.pairEntries.size)
+    assertPair(storage.pairEntries[0], "1.00", "Rent", "DE1111", "1.50", "Rent", "DE1111")
+    Assertions.assertNull(storage.pairEntries[1].read)
+    assertRecord(storage.pairEntries[1].stored, "1.00", "Other", null)
+  }
+
+  @Test
+  fun optimalAssignmentTest() {
+    // Greedy would take (0, 0) with score 3 and leave row 1 unassigned (sum 3), optimum is (0, 1), (1, 0) (sum 4):
+    Assertions.assertArrayEquals(
+      intArrayOf(1, 0),
+      HungarianAlgorithm.maximize(arrayOf(intArrayOf(3, 2), intArrayOf(2, 0)))
+    )
+    // More rows than columns:
+    Assertions.assertArrayEquals(
+      intArrayOf(-1, 0, 1),
+      HungarianAlgorithm.maximize(arrayOf(intArrayOf(1, 1), intArrayOf(5, 1), intArrayOf(1, 4)))
+    )
+    Assertions.assertEquals(0, HungarianAlgorithm.maximize(emptyArray()).size)
+  }
+
   private fun createRecord(
     date: LocalDate?,
     amount: String?,
@@ -59,7 +59,7 @@ public class LiquidityChartBuilder
       settings.setNextDays(LiquidityForecastSettings.DEFAULT_FORECAST_DAYS);
     }
 
-    final LiquidityForecastCashFlow cashFlow = new LiquidityForecastCashFlow(forecast, settings.getNextDays());
+    final LiquidityForecastCashFlow cashFlow = forecast.getCashFlow(settings.getNextDays());
 
     final TimeSeries accumulatedSeries = new TimeSeries(I18n.getString("plugins.liquidityplanning.forecast.dueDate"));
     final TimeSeries accumulatedSeriesExpected = new TimeSeries(
@@ -125,7 +125,7 @@ public class LiquidityChartBuilder
     if (!(settings.getNextDays() > 0 && settings.getNextDays() <= LiquidityForecastSettings.MAX_FORECAST_DAYS)) {
       settings.setNextDays(LiquidityForecastSettings.DEFAULT_FORECAST_DAYS);
     }
-    final LiquidityForecastCashFlow cashFlow = new LiquidityForecastCashFlow(forecast, settings.getNextDays());
+    final LiquidityForecastCashFlow cashFlow = forecast.getCashFlow(settings.getNextDays());
     final TimeSeries accumulatedSeriesExpected = new TimeSeries(I18n.getString("plugins.liquidityplanning.forecast.expected"));
     final TimeSeries creditSeries = new TimeSeries(I18n.getString("plugins.liquidityplanning.common.credit"));
     final TimeSeries debitSeries = new TimeSeries(I18n.getString("plugins.liquidityplanning.common.debit"));
@@ -204,7 +204,7 @@ public class LiquidityEntryListPage
       public void onBeforeDownload() {
         final InvoicesExcelExport invoicesExport = new InvoicesExcelExport();
         final LiquidityForecast forecast = getForecast();
-        final LiquidityForecastCashFlow cashFlow = new LiquidityForecastCashFlow(forecast);
+        final LiquidityForecastCashFlow cashFlow = forecast.getCashFlow();
         cashFlow.addAsExcelSheet(this, getString("plugins.liquidityplanning.forecast.cashflow"));
         final ExportSheet sheet = addSheet(getString("filter.all"));
         addList(sheet, forecast.getEntries());
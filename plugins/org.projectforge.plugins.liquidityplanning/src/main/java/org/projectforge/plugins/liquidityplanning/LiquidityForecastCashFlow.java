@@ -57,13 +57,22 @@ public class LiquidityForecastCashFlow implements Serializable {
 
   public LiquidityForecastCashFlow(final LiquidityForecast forecast, final int nextDays) {
     baseDate = PFDay.fromOrNow(forecast.getBaseDate());
-    credits = newBigDecimalArray(nextDays);
-    debits = newBigDecimalArray(nextDays);
-    creditsExpected = newBigDecimalArray(nextDays);
-    debitsExpected = newBigDecimalArray(nextDays);
+    // The amounts are summed up as long values (scaled by the max scale of all amounts), BigDecimals are only created
+    // for the results:
+    int scale = 0;
+    for (final LiquidityEntry entry : forecast.getEntries()) {
+      if (entry.getAmount() != null) {
+        scale = Math.max(scale, entry.getAmount().scale());
+      }
+    }
+    final ScaledSums creditSums = new ScaledSums(nextDays, scale);
+    final ScaledSums debitSums = new ScaledSums(nextDays, scale);
+    final ScaledSums creditExpectedSums = new ScaledSums(nextDays, scale);
+    final ScaledSums debitExpectedSums = new ScaledSums(nextDays, scale);
     for (final LiquidityEntry entry : forecast.getEntries()) {
       final BigDecimal amount = entry.getAmount();
-      if (amount == null) {
+      if (amount == null || amount.signum() == 0) {
+        // Zero, nothing to do.
         continue;
       }
       final LocalDate dateOfPayment = entry.getDateOfPayment();
@@ -71,47 +80,84 @@ public class LiquidityForecastCashFlow implements Serializable {
       if (expectedDateOfPayment == null) {
         expectedDateOfPayment = dateOfPayment;
       }
-      int numberOfDay = 0;
-      if (dateOfPayment != null) {
-        final PFDay dayOfPayment = PFDay.from(dateOfPayment); // not null
-        if (baseDate.isBefore(dayOfPayment) && !baseDate.isSameDay(dayOfPayment)) {
-          numberOfDay = (int) baseDate.daysBetween(dayOfPayment);
-        }
+      final int numberOfDay = getNumberOfDay(dateOfPayment);
+      if (numberOfDay < nextDays) {
+        (amount.signum() > 0 ? debitSums : creditSums).add(numberOfDay, amount);
       }
-      if (numberOfDay >= 0 && numberOfDay < nextDays) {
-        if (amount.compareTo(BigDecimal.ZERO) == 0) {
-          // Zero, nothing to do.
-        } else if (amount.compareTo(BigDecimal.ZERO) > 0) {
-          debits[numberOfDay] = debits[numberOfDay].add(amount);
-        } else {
-          credits[numberOfDay] = credits[numberOfDay].add(amount);
-        }
+      final int numberOfDayExpected = getNumberOfDay(expectedDateOfPayment);
+      if (numberOfDayExpected < nextDays) {
+        (amount.signum() > 0 ? debitExpectedSums : creditExpectedSums).add(numberOfDayExpected, amount);
       }
-      int numberOfDayExpected = 0;
-      if (expectedDateOfPayment != null) {
-        final PFDay expectedDayOfPayment = PFDay.from(expectedDateOfPayment); // not null
-        if (baseDate.isBefore(expectedDayOfPayment) && !baseDate.isSameDay(expectedDayOfPayment)) {
-          numberOfDayExpected = (int) baseDate.daysBetween(expectedDayOfPayment);
-        }
+    }
+    credits = creditSums.toBigDecimalArray();
+    debits = debitSums.toBigDecimalArray();
+    creditsExpected = creditExpectedSums.toBigDecimalArray();
+    debitsExpected = debitExpectedSums.toBigDecimalArray();
+  }
+
+  /**
+   * @return The number of days after the base date, 0 for dates before the base date or null.
+   */
+  private int getNumberOfDay(final LocalDate date) {
+    if (date != null) {
+      final PFDay day = PFDay.from(date); // not null
+      if (baseDate.isBefore(day) && !baseDate.isSameDay(day)) {
+        return (int) baseDate.daysBetween(day);
       }
-      if (numberOfDayExpected >= 0 && numberOfDayExpected < nextDays) {
-        if (amount.compareTo(BigDecimal.ZERO) == 0) {
-          // Zero, nothing to do.
-        } else if (amount.compareTo(BigDecimal.ZERO) > 0) {
-          debitsExpected[numberOfDayExpected] = debitsExpected[numberOfDayExpected].add(amount);
-        } else {
-          creditsExpected[numberOfDayExpected] = creditsExpected[numberOfDayExpected].add(amount);
+    }
+    return 0;
+  }
+
+  /**
+   * Sums of amounts per day as long values of a fixed scale. The results are equal to the sums of the BigDecimals
+   * (value and scale). If the sums don't fit into long values, they're continued as BigDecimals.
+   */
+  private static class ScaledSums implements Serializable {
+    private static final long serialVersionUID = -2906395209466520542L;
+
+    private final int scale;
+
+    private final long[] sums;
+
+    /**
+     * The max scale of the added amounts per day (the scale of the BigDecimal sum).
+     */
+    private final int[] scales;
+
+    private BigDecimal[] bigDecimalSums;
+
+    ScaledSums(final int length, final int scale) {
+      this.scale = scale;
+      this.sums = new long[length];
+      this.scales = new int[length];
+    }
+
+    void add(final int index, final BigDecimal amount) {
+      scales[index] = Math.max(scales[index], amount.scale());
+      if (bigDecimalSums == null) {
+        try {
+          sums[index] = Math.addExact(sums[index], amount.movePointRight(scale).longValueExact());
+          return;
+        } catch (final ArithmeticException ex) {
+          // Overflow, continue with BigDecimals:
+          bigDecimalSums = new BigDecimal[sums.length];
+          for (int i = 0; i < sums.length; i++) {
+            bigDecimalSums[i] = BigDecimal.valueOf(sums[i], scale);
+          }
         }
       }
+      bigDecimalSums[index] = bigDecimalSums[index].add(amount);
     }
-  }
 
-  private BigDecimal[] newBigDecimalArray(final int length) {
-    final BigDecimal[] array = new BigDecimal[length];
-    for (int i = 0; i < length; i++) {
-      array[i] = BigDecimal.ZERO;
+    BigDecimal[] toBigDecimalArray() {
+      final BigDecimal[] array = new BigDecimal[sums.length];
+      for (int i = 0; i < sums.length; i++) {
+        final BigDecimal sum = bigDecimalSums != null ? bigDecimalSums[i] : BigDecimal.valueOf(sums[i], scale);
+        // Exact, because the sum has no more fraction digits than the added amounts:
+        array[i] = sum.setScale(scales[i]);
+      }
+      return array;
     }
-    return array;
   }
 
   public void addAsExcelSheet(final MyExcelExporter exporter, final String sheetTitle) {
@@ -26,8 +26,6 @@ package org.projectforge.plugins.liquidityplanning
 import org.projectforge.business.fibu.*
 import org.projectforge.framework.time.DayHolder
 import org.projectforge.framework.time.PFDay.Companion.from
-import org.projectforge.framework.time.PFDay.Companion.fromOrNull
-import org.projectforge.statistics.IntAggregatedValues
 import java.io.Serializable
 import java.time.LocalDate
 import java.util.*
@@ -49,13 +47,21 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
 
     /**
      * Used for calculating the expected date of payment for future invoices.
+     * Should be set before [setInvoices]!
      */
-    private val aggregatedDebitorInvoicesValuesMap: MutableMap<String, IntAggregatedValues> = HashMap()
+    var debitorPaymentStatistics: LiquidityPaymentStatistics? = null
 
     /**
-     * Used for calculating the expected date of payment for future invoices.
+     * Used for calculating the expected date of payment for future creditor invoices.
+     * Should be set before [setCreditorInvoices]!
+     */
+    var creditorPaymentStatistics: LiquidityPaymentStatistics? = null
+
+    /**
+     * The cash flows of the built forecast, the key is the number of days.
      */
-    private val aggregatedCreditorInvoicesValuesMap: MutableMap<String, IntAggregatedValues> = HashMap()
+    @Transient
+    private var cashFlows: MutableMap<Int, LiquidityForecastCashFlow>? = null
 
     /**
      * @return the creditorInvoices
@@ -86,9 +92,21 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
         entries.addAll(invoicesLiquidityEntries)
         entries.addAll(creditorInvoicesLiquidityEntries)
         sort()
+        cashFlows = null
         return this
     }
 
+    /**
+     * The cash flow is calculated only once for the built forecast.
+     * @param nextDays The number of days of the cash flow.
+     */
+    @JvmOverloads
+    @Synchronized
+    fun getCashFlow(nextDays: Int = 90): LiquidityForecastCashFlow {
+        val map = cashFlows ?: mutableMapOf<Int, LiquidityForecastCashFlow>().also { cashFlows = it }
+        return map.getOrPut(nextDays) { LiquidityForecastCashFlow(this, nextDays) }
+    }
+
     /**
      * @return this for chaining.
      */
@@ -152,38 +170,7 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
         if (list == null) {
             return this
         }
-        for (invoice in list) {
-            val date = fromOrNull(invoice.datum)
-            val dateOfPayment = fromOrNull(invoice.bezahlDatum)
-            if (date == null || dateOfPayment == null) {
-                continue
-            }
-            val timeForPayment = date.daysBetween(dateOfPayment).toInt()
-            val amount: Int = invoice.grossSum.toInt()
-            // Store values for different groups:
-            val projectId = invoice.projektId
-            if (projectId != null) {
-                ensureAndAddDebitorPaymentValue("project#$projectId", timeForPayment, amount)
-            }
-            val customerId = invoice.kundeId
-            if (customerId != null) {
-                ensureAndAddDebitorPaymentValue("customer#$customerId", timeForPayment, amount)
-            }
-            val account = accountCache.getKonto(invoice)
-            val accountId = account?.id
-            if (accountId != null) {
-                ensureAndAddDebitorPaymentValue("account#$accountId", timeForPayment, amount)
-            }
-            var customerText = invoice.kundeText
-            if (customerText != null) {
-                customerText = customerText.lowercase()
-                ensureAndAddDebitorPaymentValue("customer:$customerText", timeForPayment, amount)
-                if (customerText.length > 5) {
-                    customerText = customerText.substring(0, 5)
-                }
-                ensureAndAddDebitorPaymentValue("shortCustomer:$customerText", timeForPayment, amount)
-            }
-        }
+        debitorPaymentStatistics = LiquidityPaymentStatistics.ofInvoices(list, accountCache)
         return this
     }
 
@@ -227,7 +214,7 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
 
     private fun setExpectedDateOfPayment(entry: LiquidityEntry, dateOfInvoice: LocalDate?, mapKey: String,
                                          area: String): Boolean {
-        val values = aggregatedDebitorInvoicesValuesMap[mapKey]
+        val values = debitorPaymentStatistics?.get(mapKey)
         return if (values != null && values.numberOfValues >= 1) {
             entry.expectedDateOfPayment = getDate(dateOfInvoice, values.weightedAverage)
             entry.comment = (mapKey
@@ -244,15 +231,6 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
         }
     }
 
-    private fun ensureAndAddDebitorPaymentValue(mapId: String, timeForPayment: Int, amount: Int) {
-        var values = aggregatedDebitorInvoicesValuesMap[mapId]
-        if (values == null) {
-            values = IntAggregatedValues()
-            aggregatedDebitorInvoicesValuesMap[mapId] = values
-        }
-        values.add(timeForPayment, amount)
-    }
-
     /**
      * For calculating the expected date of payment of future invoices. <br></br>
      * Should be called before [.setInvoices]!
@@ -263,29 +241,7 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
         if (list == null) {
             return this
         }
-        for (invoice in list) {
-            val date = fromOrNull(invoice.datum)
-            val dateOfPayment = fromOrNull(invoice.bezahlDatum)
-            if (date == null || dateOfPayment == null) {
-                continue
-            }
-            val timeForPayment = date.daysBetween(dateOfPayment).toInt()
-            val amount: Int = invoice.grossSum.toInt()
-            val account = invoice.konto
-            val accountId = account?.id
-            if (accountId != null) {
-                ensureAndAddCreditorPaymentValue("account#$accountId", timeForPayment, amount)
-            }
-            var creditorText = invoice.kreditor
-            if (creditorText != null) {
-                creditorText = creditorText.lowercase()
-                ensureAndAddCreditorPaymentValue("creditor:$creditorText", timeForPayment, amount)
-                if (creditorText.length > 5) {
-                    creditorText = creditorText.substring(0, 5)
-                }
-                ensureAndAddCreditorPaymentValue("shortCreditor:$creditorText", timeForPayment, amount)
-            }
-        }
+        creditorPaymentStatistics = LiquidityPaymentStatistics.ofCreditorInvoices(list)
         return this
     }
 
@@ -319,7 +275,7 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
     private fun setExpectedDateOfCreditorPayment(entry: LiquidityEntry, dateOfInvoice: LocalDate?,
                                                  mapKey: String,
                                                  area: String): Boolean {
-        val values = aggregatedCreditorInvoicesValuesMap[mapKey]
+        val values = creditorPaymentStatistics?.get(mapKey)
         return if (values != null && values.numberOfValues >= 1) {
             entry.expectedDateOfPayment = getDate(dateOfInvoice, values.weightedAverage)
             entry.comment = (mapKey
@@ -336,15 +292,6 @@ class LiquidityForecast(val accountCache: KontoCache) : Serializable {
         }
     }
 
-    private fun ensureAndAddCreditorPaymentValue(mapId: String, timeForPayment: Int, amount: Int) {
-        var values = aggregatedCreditorInvoicesValuesMap[mapId]
-        if (values == null) {
-            values = IntAggregatedValues()
-            aggregatedCreditorInvoicesValuesMap[mapId] = values
-        }
-        values.add(timeForPayment, amount)
-    }
-
     private fun getDate(date: LocalDate?, timeOfPayment: Int): LocalDate {
         val day = from(date!!).plusDays(timeOfPayment.toLong())
         return day.localDate
@@ -23,10 +23,27 @@
 
 package org.projectforge.plugins.liquidityplanning
 
+import mu.KotlinLogging
 import org.projectforge.business.fibu.*
+import org.projectforge.business.user.UserGroupCache
+import org.projectforge.business.user.UserRightValue
+import org.projectforge.framework.persistence.jpa.PfEmgr
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.projectforge.security.RegisterUser4Thread
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
 import java.time.LocalDate
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import javax.annotation.PreDestroy
+
+private val log = KotlinLogging.logger {}
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -39,12 +56,58 @@ open class LiquidityForecastBuilder {
     @Autowired
     private lateinit var eingangsrechnungDao: EingangsrechnungDao
 
+    @Autowired
+    private lateinit var emgrFactory: PfEmgrFactory
+
     @Autowired
     private lateinit var liquidityEntryDao: LiquidityEntryDao
 
     @Autowired
     private lateinit var rechnungDao: RechnungDao
 
+    @Autowired
+    private lateinit var userGroupCache: UserGroupCache
+
+    private val threadCounter = AtomicInteger()
+
+    /**
+     * Loads the creditor invoices of forecasts, while the debitor invoices are loaded by the calling threads. The pool is
+     * shared by all users, so one thread per concurrent forecast is needed.
+     */
+    private val executor = Executors.newFixedThreadPool(MAX_THREADS) { runnable ->
+        val thread = Thread(runnable, "LiquidityForecast-${threadCounter.incrementAndGet()}")
+        thread.isDaemon = true
+        thread
+    }
+
+    /**
+     * The payment statistics of the paid invoices (the most expensive part of a forecast). An entry is valid as long as
+     * the tables the statistics depend on aren't modified (same [TableVersion]s) and the rights of the user are
+     * unchanged. Only the latest entry per type and user is held.
+     */
+    private val statisticsCache = ConcurrentHashMap<StatisticsKey, LiquidityPaymentStatistics>()
+
+    /**
+     * The user and its groups and rights are part of the key, because the invoices are selected with the access rights
+     * of the user.
+     */
+    private data class StatisticsKey(
+        val creditor: Boolean,
+        val userId: Int?,
+        val groupIds: Set<Int>,
+        val rights: Map<String?, UserRightValue?>,
+        val fromDate: LocalDate,
+        val toDate: LocalDate,
+        val versions: List<TableVersion>,
+    )
+
+    /**
+     * Any insert, update, (mark as) deletion or undelete of an entity changes the number of rows or the max last update.
+     */
+    private data class TableVersion(val count: Long, val lastUpdate: Date?)
+
+    private class Invoices<T : AbstractRechnungDO>(val statistics: LiquidityPaymentStatistics?, val invoices: MutableList<T>)
+
     /**
      * Calculates expected dates of payments inside the last year (-365 days).
      */
@@ -57,8 +120,11 @@ open class LiquidityForecastBuilder {
         val toDate = baseDate.plusMonths(3)
         forecast.baseDate = baseDate
 
-        processInvoices(forecast, baseDate, fromDate, toDate, historicalForecast)
-        processCreditorInvoices(forecast, baseDate, fromDate, toDate, historicalForecast)
+        // Debitor and creditor invoices are independent of each other, so the creditor invoices are loaded in parallel:
+        val userContext = ThreadLocalUserContext.userContext
+        val creditorInvoicesFuture = supplyAsync(userContext) {
+            loadCreditorInvoices(baseDate, fromDate, toDate, historicalForecast)
+        }
 
         val filter = LiquidityFilter()
         filter.baseDate = baseDate
@@ -69,35 +135,125 @@ open class LiquidityForecastBuilder {
         if (historicalForecast) {
             list.removeIf { entry: LiquidityEntryDO -> entry.dateOfPayment!!.isBefore(baseDate) }
         }
+
+        val invoices = loadInvoices(baseDate, fromDate, toDate, historicalForecast)
+        forecast.debitorPaymentStatistics = invoices.statistics
+        forecast.setInvoices(invoices.invoices)
+        val creditorInvoices = join(creditorInvoicesFuture)
+        forecast.creditorPaymentStatistics = creditorInvoices.statistics
+        forecast.setCreditorInvoices(creditorInvoices.invoices)
+
         forecast.set(list)
         forecast.build()
         return forecast
     }
 
-    private fun processInvoices(forecast: LiquidityForecast, baseDate: LocalDate, fromDate: LocalDate, toDate: LocalDate, historicalForecast: Boolean) {
+    private fun loadInvoices(baseDate: LocalDate, fromDate: LocalDate, toDate: LocalDate, historicalForecast: Boolean): Invoices<RechnungDO> {
         val rechnungFilter = createRechnungFilter(baseDate, fromDate, toDate, historicalForecast)
+        var statistics: LiquidityPaymentStatistics? = null
         if (!historicalForecast) {
-            rechnungFilter.setShowBezahlt()
-            val paidInvoices: MutableList<RechnungDO> = rechnungDao.getList(rechnungFilter)
-            forecast.calculateExpectedTimeOfPayments(paidInvoices)
+            // The accounts of the invoices are also taken from the projects and customers (see KontoCache.getKonto):
+            val entityClasses = listOf(RechnungDO::class.java, ProjektDO::class.java, KundeDO::class.java, KontoDO::class.java)
+            statistics = getPaymentStatistics(false, entityClasses, fromDate, toDate) {
+                rechnungFilter.setShowBezahlt()
+                val paidInvoices: MutableList<RechnungDO> = rechnungDao.getList(rechnungFilter)
+                LiquidityPaymentStatistics.ofInvoices(paidInvoices, accountCache)
+            }
             rechnungFilter.setShowUnbezahlt() // For next query.
         }
         val invoices: MutableList<RechnungDO> = rechnungDao.getList(rechnungFilter)
         handleHistoricalInvoices(invoices, baseDate, historicalForecast)
-        forecast.setInvoices(invoices)
+        return Invoices(statistics, invoices)
     }
 
-    private fun processCreditorInvoices(forecast: LiquidityForecast, baseDate: LocalDate, fromDate: LocalDate, toDate: LocalDate, historicalForecast: Boolean) {
+    private fun loadCreditorInvoices(baseDate: LocalDate, fromDate: LocalDate, toDate: LocalDate, historicalForecast: Boolean): Invoices<EingangsrechnungDO> {
         val rechnungFilter = createRechnungFilter(baseDate, fromDate, toDate, historicalForecast)
+        var statistics: LiquidityPaymentStatistics? = null
         if (!historicalForecast) {
-            rechnungFilter.setShowBezahlt()
-            val paidInvoices: MutableList<EingangsrechnungDO> = eingangsrechnungDao.getList(rechnungFilter)
-            forecast.calculateExpectedTimeOfCreditorPayments(paidInvoices)
+            statistics = getPaymentStatistics(true, listOf(EingangsrechnungDO::class.java), fromDate, toDate) {
+                rechnungFilter.setShowBezahlt()
+                val paidInvoices: MutableList<EingangsrechnungDO> = eingangsrechnungDao.getList(rechnungFilter)
+                LiquidityPaymentStatistics.ofCreditorInvoices(paidInvoices)
+            }
             rechnungFilter.setShowUnbezahlt() // For next query.
         }
         val invoices: MutableList<EingangsrechnungDO> = eingangsrechnungDao.getList(rechnungFilter)
         handleHistoricalInvoices(invoices, baseDate, historicalForecast)
-        forecast.setCreditorInvoices(invoices)
+        return Invoices(statistics, invoices)
+    }
+
+    /**
+     * Gets the payment statistics from the cache or builds them, if one of the given tables or the rights of the user
+     * were modified since the last call.
+     * @param entityClasses The entities the statistics depend on.
+     */
+    private fun getPaymentStatistics(
+        creditor: Boolean,
+        entityClasses: List<Class<*>>,
+        fromDate: LocalDate,
+        toDate: LocalDate,
+        build: () -> LiquidityPaymentStatistics,
+    ): LiquidityPaymentStatistics {
+        val user = ThreadLocalUserContext.user
+        val userId = user?.id
+        val key = StatisticsKey(
+            creditor,
+            userId,
+            userGroupCache.getUserGroups(user)?.toSet() ?: emptySet(),
+            userGroupCache.getUserRights(userId)?.associate { it.rightIdString to it.value } ?: emptyMap(),
+            fromDate,
+            toDate,
+            entityClasses.map { getTableVersion(it) },
+        )
+        statisticsCache[key]?.let {
+            return it
+        }
+        val statistics = build()
+        // Remove outdated entries of this type and user:
+        statisticsCache.keys.removeIf { it.creditor == creditor && it.userId == userId }
+        statisticsCache[key] = statistics
+        log.debug { "Payment statistics of ${entityClasses.first().simpleName} built for user $userId: ${statistics.size} entries." }
+        return statistics
+    }
+
+    private fun getTableVersion(entityClass: Class<*>): TableVersion {
+        return emgrFactory.runRoTrans { emgr: PfEmgr ->
+            val result = emgr.entityManager
+                .createQuery("select count(t), max(t.lastUpdate) from ${entityClass.simpleName} t", Array<Any?>::class.java)
+                .singleResult
+            TableVersion(result[0] as Long, result[1] as Date?)
+        }
+    }
+
+    /**
+     * Runs the supplier in another thread with the given user context. If no user context is given (e. g. in jobs), the
+     * supplier is run in the current thread.
+     */
+    private fun <T> supplyAsync(userContext: UserContext?, supplier: () -> T): CompletableFuture<T> {
+        if (userContext == null || userContext.user == null) {
+            return CompletableFuture.completedFuture(supplier())
+        }
+        return CompletableFuture.supplyAsync({
+            try {
+                RegisterUser4Thread.registerUser(userContext)
+                supplier()
+            } finally {
+                RegisterUser4Thread.unregister()
+            }
+        }, executor)
+    }
+
+    @PreDestroy
+    private fun shutdown() {
+        executor.shutdownNow()
+    }
+
+    private fun <T> join(future: CompletableFuture<T>): T {
+        try {
+            return future.join()
+        } catch (ex: CompletionException) {
+            throw ex.cause ?: ex
+        }
     }
 
     private fun handleHistoricalInvoices(invoices: MutableList<out AbstractRechnungDO>, baseDate: LocalDate, historicalForecast: Boolean) {
@@ -121,4 +277,11 @@ open class LiquidityForecastBuilder {
         }
         return filter
     }
+
+    companion object {
+        /**
+         * Number of forecasts loading their creditor invoices in parallel, further forecasts wait for a free thread.
+         */
+        private const val MAX_THREADS = 4
+    }
 }
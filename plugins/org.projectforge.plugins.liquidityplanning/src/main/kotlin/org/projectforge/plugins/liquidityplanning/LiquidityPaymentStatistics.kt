@@ -0,0 +1,133 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.liquidityplanning
+
+import org.projectforge.business.fibu.EingangsrechnungDO
+import org.projectforge.business.fibu.KontoCache
+import org.projectforge.business.fibu.RechnungDO
+import org.projectforge.framework.time.PFDay.Companion.fromOrNull
+import org.projectforge.statistics.IntAggregatedValues
+import java.io.Serializable
+
+/**
+ * The payment behaviour of debitors or creditors: the times of payment of paid invoices aggregated by project, customer,
+ * account, customer/creditor text etc. Used for calculating the expected date of payment for future invoices.
+ *
+ * Instances aren't modified after building, so they may be cached and shared by several forecasts (see
+ * [LiquidityForecastBuilder]).
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class LiquidityPaymentStatistics private constructor() : Serializable {
+    private val aggregatedValuesMap = mutableMapOf<String, IntAggregatedValues>()
+
+    /**
+     * @param key E. g. "project#42", "customer#42", "account#42", "customer:acme" or "shortCreditor:acme".
+     */
+    operator fun get(key: String): IntAggregatedValues? {
+        return aggregatedValuesMap[key]
+    }
+
+    val size: Int
+        get() = aggregatedValuesMap.size
+
+    private fun add(key: String, timeForPayment: Int, amount: Int) {
+        aggregatedValuesMap.getOrPut(key) { IntAggregatedValues() }.add(timeForPayment, amount)
+    }
+
+    companion object {
+        /**
+         * @param list The paid invoices.
+         */
+        @JvmStatic
+        fun ofInvoices(list: Collection<RechnungDO>?, accountCache: KontoCache): LiquidityPaymentStatistics {
+            val statistics = LiquidityPaymentStatistics()
+            list?.forEach { invoice ->
+                val date = fromOrNull(invoice.datum)
+                val dateOfPayment = fromOrNull(invoice.bezahlDatum)
+                if (date == null || dateOfPayment == null) {
+                    return@forEach
+                }
+                val timeForPayment = date.daysBetween(dateOfPayment).toInt()
+                val amount: Int = invoice.grossSum.toInt()
+                // Store values for different groups:
+                val projectId = invoice.projektId
+                if (projectId != null) {
+                    statistics.add("project#$projectId", timeForPayment, amount)
+                }
+                val customerId = invoice.kundeId
+                if (customerId != null) {
+                    statistics.add("customer#$customerId", timeForPayment, amount)
+                }
+                val account = accountCache.getKonto(invoice)
+                val accountId = account?.id
+                if (accountId != null) {
+                    statistics.add("account#$accountId", timeForPayment, amount)
+                }
+                var customerText = invoice.kundeText
+                if (customerText != null) {
+                    customerText = customerText.lowercase()
+                    statistics.add("customer:$customerText", timeForPayment, amount)
+                    if (customerText.length > 5) {
+                        customerText = customerText.substring(0, 5)
+                    }
+                    statistics.add("shortCustomer:$customerText", timeForPayment, amount)
+                }
+            }
+            return statistics
+        }
+
+        /**
+         * @param list The paid creditor invoices.
+         */
+        @JvmStatic
+        fun ofCreditorInvoices(list: Collection<EingangsrechnungDO>?): LiquidityPaymentStatistics {
+            val statistics = LiquidityPaymentStatistics()
+            list?.forEach { invoice ->
+                val date = fromOrNull(invoice.datum)
+                val dateOfPayment = fromOrNull(invoice.bezahlDatum)
+                if (date == null || dateOfPayment == null) {
+                    return@forEach
+                }
+                val timeForPayment = date.daysBetween(dateOfPayment).toInt()
+                val amount: Int = invoice.grossSum.toInt()
+                val account = invoice.konto
+                val accountId = account?.id
+                if (accountId != null) {
+                    statistics.add("account#$accountId", timeForPayment, amount)
+                }
+                var creditorText = invoice.kreditor
+                if (creditorText != null) {
+                    creditorText = creditorText.lowercase()
+                    statistics.add("creditor:$creditorText", timeForPayment, amount)
+                    if (creditorText.length > 5) {
+                        creditorText = creditorText.substring(0, 5)
+                    }
+                    statistics.add("shortCreditor:$creditorText", timeForPayment, amount)
+                }
+            }
+            return statistics
+        }
+    }
+}
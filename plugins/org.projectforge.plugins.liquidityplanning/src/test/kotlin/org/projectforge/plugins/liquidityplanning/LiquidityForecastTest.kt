@@ -0,0 +1,279 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.liquidityplanning
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.*
+import org.projectforge.framework.time.PFDay
+import org.projectforge.framework.time.PFDay.Companion.fromOrNull
+import org.projectforge.statistics.IntAggregatedValues
+import java.math.BigDecimal
+import java.time.LocalDate
+import kotlin.random.Random
+
+class LiquidityForecastTest {
+    @Test
+    fun cashFlowTest() {
+        val today = LocalDate.now()
+        val list = mutableListOf<LiquidityEntryDO>()
+        list.add(createEntry(today.minusDays(10), "100.5")) // Before base date: first day.
+        list.add(createEntry(today, "-20"))
+        list.add(createEntry(today, "0.00")) // Zero, ignored.
+        list.add(createEntry(today.plusDays(1), "1E+2")) // Negative scale.
+        list.add(createEntry(today.plusDays(1), "0.123"))
+        list.add(createEntry(today.plusDays(2), "-3.10"))
+        list.add(createEntry(today.plusDays(89), "42"))
+        list.add(createEntry(today.plusDays(90), "42")) // Out of range.
+        list.add(createEntry(null, "7.7"))
+        assertCashFlow(createForecast(list), 90)
+
+        val random = Random(42)
+        list.clear()
+        repeat(1000) {
+            val amount = BigDecimal.valueOf(random.nextLong(-1_000_000, 1_000_000), random.nextInt(0, 3))
+            list.add(createEntry(today.plusDays(random.nextLong(-10, 100)), amount.toPlainString()))
+        }
+        assertCashFlow(createForecast(list), 90)
+        assertCashFlow(createForecast(list), 30)
+
+        // Sums exceeding long values:
+        list.add(createEntry(today.plusDays(5), "9000000000000000000.5"))
+        list.add(createEntry(today.plusDays(5), "9000000000000000000"))
+        list.add(createEntry(today.plusDays(6), "-9000000000000000000.25"))
+        list.add(createEntry(today.plusDays(6), "-9000000000000000000"))
+        assertCashFlow(createForecast(list), 90)
+    }
+
+    @Test
+    fun cashFlowCacheTest() {
+        val today = LocalDate.now()
+        val forecast = createForecast(listOf(createEntry(today, "10"), createEntry(today.plusDays(1), "-5")))
+        val cashFlow = forecast.getCashFlow()
+        Assertions.assertSame(cashFlow, forecast.getCashFlow(90))
+        Assertions.assertNotSame(cashFlow, forecast.getCashFlow(30))
+        forecast.build()
+        Assertions.assertNotSame(cashFlow, forecast.getCashFlow(), "Cash flow must be recalculated after building.")
+    }
+
+    @Test
+    fun paymentStatisticsTest() {
+        val random = Random(42)
+        val today = LocalDate.now()
+        val accounts = (1..5).map { KontoDO().also { konto -> konto.id = it } }
+        val customers = (1..5).map { KundeDO().also { kunde -> kunde.nummer = it } }
+        val projects = (1..5).map { ProjektDO().also { projekt -> projekt.id = it } }
+        val names = listOf("ACME Inc.", "acme", "Micromata GmbH", "Foo", null)
+        val invoices = (1..500).map {
+            val invoice = RechnungDO()
+            initInvoice(invoice, random, today)
+            invoice.konto = accounts.getOrNull(random.nextInt(accounts.size + 1))
+            invoice.kunde = customers.getOrNull(random.nextInt(customers.size + 1))
+            invoice.projekt = projects.getOrNull(random.nextInt(projects.size + 1))
+            invoice.kundeText = names[random.nextInt(names.size)]
+            invoice
+        }
+        val creditorInvoices = (1..500).map {
+            val invoice = EingangsrechnungDO()
+            initInvoice(invoice, random, today)
+            invoice.konto = accounts.getOrNull(random.nextInt(accounts.size + 1))
+            invoice.kreditor = names[random.nextInt(names.size)]
+            invoice
+        }
+        val accountCache = object : KontoCache() {
+            override fun getKonto(invoice: RechnungDO?): KontoDO? {
+                return invoice?.konto ?: invoice?.projekt?.let { accounts[it.id!! - 1] }
+            }
+        }
+        assertPaymentStatistics(
+            ReferencePaymentStatistics.ofInvoices(invoices, accountCache),
+            LiquidityPaymentStatistics.ofInvoices(invoices, accountCache),
+        )
+        assertPaymentStatistics(
+            ReferencePaymentStatistics.ofCreditorInvoices(creditorInvoices),
+            LiquidityPaymentStatistics.ofCreditorInvoices(creditorInvoices),
+        )
+    }
+
+    private fun initInvoice(invoice: AbstractRechnungDO, random: Random, today: LocalDate) {
+        invoice.datum = today.minusDays(random.nextLong(0, 365))
+        if (random.nextInt(10) > 0) { // Some invoices aren't paid.
+            invoice.bezahlDatum = invoice.datum!!.plusDays(random.nextLong(0, 90))
+        }
+        val pos = if (invoice is RechnungDO) RechnungsPositionDO() else EingangsrechnungsPositionDO()
+        pos.einzelNetto = BigDecimal.valueOf(random.nextLong(1, 1_000_000), 2)
+        pos.vat = BigDecimal("0.19")
+        invoice.addPosition(pos)
+    }
+
+    private fun assertPaymentStatistics(expected: Map<String, IntAggregatedValues>, statistics: LiquidityPaymentStatistics) {
+        Assertions.assertTrue(expected.isNotEmpty())
+        Assertions.assertEquals(expected.size, statistics.size)
+        expected.forEach { (key, values) ->
+            val actual = statistics[key]
+            Assertions.assertNotNull(actual, key)
+            Assertions.assertEquals(values.numberOfValues, actual!!.numberOfValues, key)
+            Assertions.assertEquals(values.average, actual.average, key)
+            Assertions.assertEquals(values.weightedAverage, actual.weightedAverage, key)
+        }
+    }
+
+    private fun assertCashFlow(forecast: LiquidityForecast, nextDays: Int) {
+        val cashFlow = LiquidityForecastCashFlow(forecast, nextDays)
+        val expected = ReferenceCashFlow(forecast, nextDays)
+        Assertions.assertArrayEquals(expected.credits, cashFlow.credits)
+        Assertions.assertArrayEquals(expected.debits, cashFlow.debits)
+        Assertions.assertArrayEquals(expected.creditsExpected, cashFlow.creditsExpected)
+        Assertions.assertArrayEquals(expected.debitsExpected, cashFlow.debitsExpected)
+    }
+
+    private fun createForecast(list: List<LiquidityEntryDO>): LiquidityForecast {
+        return LiquidityForecast(KontoCache()).set(list).build()
+    }
+
+    private fun createEntry(dateOfPayment: LocalDate?, amount: String): LiquidityEntryDO {
+        val entry = LiquidityEntryDO()
+        entry.dateOfPayment = dateOfPayment
+        entry.amount = BigDecimal(amount)
+        entry.subject = "Entry $amount"
+        return entry
+    }
+
+    /**
+     * The former implementation of the payment statistics, calculated by LiquidityForecast itself.
+     */
+    private object ReferencePaymentStatistics {
+        fun ofInvoices(list: List<RechnungDO>, accountCache: KontoCache): Map<String, IntAggregatedValues> {
+            val map = mutableMapOf<String, IntAggregatedValues>()
+            for (invoice in list) {
+                val date = fromOrNull(invoice.datum)
+                val dateOfPayment = fromOrNull(invoice.bezahlDatum)
+                if (date == null || dateOfPayment == null) {
+                    continue
+                }
+                val timeForPayment = date.daysBetween(dateOfPayment).toInt()
+                val amount: Int = invoice.grossSum.toInt()
+                // Store values for different groups:
+                val projectId = invoice.projektId
+                if (projectId != null) {
+                    ensureAndAddPaymentValue(map, "project#$projectId", timeForPayment, amount)
+                }
+                val customerId = invoice.kundeId
+                if (customerId != null) {
+                    ensureAndAddPaymentValue(map, "customer#$customerId", timeForPayment, amount)
+                }
+                val account = accountCache.getKonto(invoice)
+                val accountId = account?.id
+                if (accountId != null) {
+                    ensureAndAddPaymentValue(map, "account#$accountId", timeForPayment, amount)
+                }
+                var customerText = invoice.kundeText
+                if (customerText != null) {
+                    customerText = customerText.lowercase()
+                    ensureAndAddPaymentValue(map, "customer:$customerText", timeForPayment, amount)
+                    if (customerText.length > 5) {
+                        customerText = customerText.substring(0, 5)
+                    }
+                    ensureAndAddPaymentValue(map, "shortCustomer:$customerText", timeForPayment, amount)
+                }
+            }
+            return map
+        }
+
+        fun ofCreditorInvoices(list: List<EingangsrechnungDO>): Map<String, IntAggregatedValues> {
+            val map = mutableMapOf<String, IntAggregatedValues>()
+            for (invoice in list) {
+                val date = fromOrNull(invoice.datum)
+                val dateOfPayment = fromOrNull(invoice.bezahlDatum)
+                if (date == null || dateOfPayment == null) {
+                    continue
+                }
+                val timeForPayment = date.daysBetween(dateOfPayment).toInt()
+                val amount: Int = invoice.grossSum.toInt()
+                val account = invoice.konto
+                val accountId = account?.id
+                if (accountId != null) {
+                    ensureAndAddPaymentValue(map, "account#$accountId", timeForPayment, amount)
+                }
+                var creditorText = invoice.kreditor
+                if (creditorText != null) {
+                    creditorText = creditorText.lowercase()
+                    ensureAndAddPaymentValue(map, "creditor:$creditorText", timeForPayment, amount)
+                    if (creditorText.length > 5) {
+                        creditorText = creditorText.substring(0, 5)
+                    }
+                    ensureAndAddPaymentValue(map, "shortCreditor:$creditorText", timeForPayment, amount)
+                }
+            }
+            return map
+        }
+
+        private fun ensureAndAddPaymentValue(map: MutableMap<String, IntAggregatedValues>, mapId: String, timeForPayment: Int, amount: Int) {
+            var values = map[mapId]
+            if (values == null) {
+                values = IntAggregatedValues()
+                map[mapId] = values
+            }
+            values.add(timeForPayment, amount)
+        }
+    }
+
+    /**
+     * The former implementation of the cash flow, summing up the BigDecimals directly.
+     */
+    private class ReferenceCashFlow(forecast: LiquidityForecast, nextDays: Int) {
+        val credits = Array<BigDecimal>(nextDays) { BigDecimal.ZERO }
+        val debits = Array<BigDecimal>(nextDays) { BigDecimal.ZERO }
+        val creditsExpected = Array<BigDecimal>(nextDays) { BigDecimal.ZERO }
+        val debitsExpected = Array<BigDecimal>(nextDays) { BigDecimal.ZERO }
+
+        init {
+            val baseDate = PFDay.fromOrNow(forecast.baseDate)
+            for (entry in forecast.getEntries()) {
+                val amount = entry.amount ?: continue
+                val dateOfPayment = entry.dateOfPayment
+                val expectedDateOfPayment = entry.expectedDateOfPayment ?: dateOfPayment
+                add(baseDate, dateOfPayment, amount, nextDays, debits, credits)
+                add(baseDate, expectedDateOfPayment, amount, nextDays, debitsExpected, creditsExpected)
+            }
+        }
+
+        private fun add(baseDate: PFDay, date: LocalDate?, amount: BigDecimal, nextDays: Int, debits: Array<BigDecimal>, credits: Array<BigDecimal>) {
+            var numberOfDay = 0
+            if (date != null) {
+                val day = PFDay.from(date)
+                if (baseDate.isBefore(day) && !baseDate.isSameDay(day)) {
+                    numberOfDay = baseDate.daysBetween(day).toInt()
+                }
+            }
+            if (numberOfDay < nextDays) {
+                if (amount.compareTo(BigDecimal.ZERO) > 0) {
+                    debits[numberOfDay] = debits[numberOfDay].add(amount)
+                } else if (amount.compareTo(BigDecimal.ZERO) < 0) {
+                    credits[numberOfDay] = credits[numberOfDay].add(amount)
+                }
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ package org.projectforge;
 import net.fortuna.ical4j.util.CompatibilityHints;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.projectforge.business.configuration.DomainService;
 import org.projectforge.business.systeminfo.SystemInfoCache;
 import org.projectforge.business.user.UserXmlPreferencesCache;
@@ -152,7 +153,9 @@ public class ProjectForgeApp {
   void postConstruct() {
     Registry.getInstance().init(applicationContext);
     if (!junitTestMode) { // On test cases on repo will be used, if any.
-      repoService.init(new File(ConfigXml.getInstance().getJcrDirectory()));
+      String blobStoreDir = environment.getProperty("projectforge.jcr.blobStoreDir");
+      repoService.init(new File(ConfigXml.getInstance().getJcrDirectory()), "ProjectForge",
+          StringUtils.isBlank(blobStoreDir) ? null : new File(blobStoreDir));
     }
     repoBackupService.initBackupDir(new File(ConfigXml.getInstance().getBackupDirectory()));
   }
@@ -96,6 +96,8 @@ public class AddressDao extends BaseDao<AddressDO> {
 
   private BirthdayCache birthdayCache;
 
+  private AddressPhoneIndex addressPhoneIndex;
+
   private List<AddressDeletionListener> deletionListeners = new ArrayList<>();
 
   public AddressDao() {
@@ -107,6 +109,8 @@ public class AddressDao extends BaseDao<AddressDO> {
   private void postConstruct() {
     addressCache = new AddressCache(this);
     birthdayCache = new BirthdayCache(this);
+    addressPhoneIndex = new AddressPhoneIndex(this);
+    register(addressPhoneIndex);
   }
 
   public void register(AddressDeletionListener listener) {
@@ -233,22 +237,18 @@ public class AddressDao extends BaseDao<AddressDO> {
   }
 
   private List<AddressDO> filterDoublets(List<AddressDO> result) {
-    final HashSet<String> fullnames = new HashSet<>();
-    final HashSet<String> doubletFullnames = new HashSet<>();
-    for (final AddressDO address : result) {
-      final String fullname = getNormalizedFullname(address);
-      if (fullnames.contains(fullname)) {
-        doubletFullnames.add(fullname);
-      }
-      fullnames.add(fullname);
+    final Set<AddressDO> doublets = new HashSet<>();
+    for (final AddressDoubletDetector.Doublet doublet : AddressDoubletDetector.detect(result)) {
+      doublets.add(doublet.getAddress());
+      doublets.add(doublet.getOther());
     }
-    final List<AddressDO> doublets = new ArrayList<>();
+    final List<AddressDO> list = new ArrayList<>();
     for (final AddressDO address : result) {
-      if (doubletFullnames.contains(getNormalizedFullname(address))) {
-        doublets.add(address);
+      if (doublets.contains(address)) {
+        list.add(address);
       }
     }
-    return doublets;
+    return list;
   }
 
   private void addAddressbookRestriction(final QueryFilter queryFilter, final AddressFilter addressFilter) {
@@ -412,17 +412,6 @@ public class AddressDao extends BaseDao<AddressDO> {
     birthdayCache.setExpired();
   }
 
-  protected static String getNormalizedFullname(final AddressDO address) {
-    final StringBuilder builder = new StringBuilder();
-    if (address.getFirstName() != null) {
-      builder.append(address.getFirstName().toLowerCase().trim());
-    }
-    if (address.getName() != null) {
-      builder.append(address.getName().toLowerCase().trim());
-    }
-    return builder.toString();
-  }
-
   /**
    * Get the birthdays of address entries.
    *
@@ -674,6 +663,20 @@ public class AddressDao extends BaseDao<AddressDO> {
   public String internalPhoneLookUp(String phoneNumber) {
     final String searchNumber = NumberHelper.extractPhonenumber(phoneNumber);
     log.info("number=" + phoneNumber + ", searchNumber=" + searchNumber);
+    final List<AddressPhoneIndex.Entry> matches = searchNumber != null ? addressPhoneIndex.lookup(searchNumber) : null;
+    if (matches != null) {
+      if (matches.isEmpty()) {
+        return null;
+      }
+      final AddressPhoneIndex.Entry result = matches.get(0); // The newest one.
+      final StringBuffer buf = new StringBuffer();
+      if (matches.size() > 1) {
+        buf.append("+"); // Mark that more than one entry does exist.
+      }
+      StringHelper.listToString(buf, "; ", result.getFullName(), result.getOrganization());
+      return buf.toString();
+    }
+    // Number is too short for the index, so use the full text search:
     final BaseSearchFilter filter = new BaseSearchFilter();
     filter.setSearchString("*" + searchNumber + "*");
     final QueryFilter queryFilter = new QueryFilter(filter);
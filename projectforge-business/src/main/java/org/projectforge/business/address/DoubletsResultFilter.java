@@ -26,37 +26,45 @@ package org.projectforge.business.address;
 import org.jetbrains.annotations.NotNull;
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+/**
+ * Filters all addresses having doublets. The doublets are detected by {@link AddressDoubletDetector}, so not every
+ * address has to be compared with each other.
+ */
 public class DoubletsResultFilter implements CustomResultFilter<AddressDO> {
-  final Set<String> fullnames = new HashSet<>();
-  final Set<String> doubletFullnames = new HashSet<>();
-  final List<AddressDO> all = new ArrayList<>(); // Already processed addresses to add doublets.
-  final Set<Integer> addedDoublets = new HashSet<>();
+  final AddressDoubletDetector detector = new AddressDoubletDetector();
+  final Map<Integer, Double> scores = new HashMap<>(); // Already added doublets with their similarity score.
 
   @Override
   public boolean match(@NotNull List<AddressDO> list, @NotNull AddressDO element) {
-    if (element.isDeleted()) {
+    final List<AddressDoubletDetector.Doublet> doublets = detector.add(element);
+    if (doublets.isEmpty()) {
       return false;
     }
-    final String fullname = AddressDao.getNormalizedFullname(element);
-    if (fullnames.contains(fullname)) {
-      doubletFullnames.add(fullname);
-      for (final AddressDO adr : all) {
-        if (addedDoublets.contains(adr.getId())) {
-          continue; // Already added.
-        } else if (doubletFullnames.contains(AddressDao.getNormalizedFullname(adr))) {
-          list.add(adr);
-          addedDoublets.add(adr.getId()); // Mark this address as already added.
-        }
+    double maxScore = 0.0;
+    for (final AddressDoubletDetector.Doublet doublet : doublets) {
+      final AddressDO other = doublet.getOther();
+      final Double otherScore = scores.get(other.getId());
+      if (otherScore == null) {
+        list.add(other);
       }
-      return true;
+      if (otherScore == null || otherScore < doublet.getScore()) {
+        scores.put(other.getId(), doublet.getScore());
+      }
+      maxScore = Math.max(maxScore, doublet.getScore());
     }
-    all.add(element);
-    fullnames.add(fullname);
-    return false;
+    scores.put(element.getId(), maxScore);
+    return true;
+  }
+
+  /**
+   * @return The maximum similarity score of the given address with its doublets or null, if the address isn't a
+   * doublet.
+   */
+  public Double getScore(final Integer addressId) {
+    return scores.get(addressId);
   }
 }
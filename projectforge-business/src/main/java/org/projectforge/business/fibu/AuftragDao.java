@@ -48,11 +48,20 @@ import org.projectforge.mail.SendMail;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.JoinType;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Repository
@@ -61,6 +70,11 @@ public class AuftragDao extends BaseDao<AuftragDO> {
 
   public final static int START_NUMBER = 1;
 
+  /**
+   * The incrementally maintained number of orders to be invoiced is reconciled with the data base after this interval.
+   */
+  static final long TO_BE_INVOICED_RECONCILIATION_INTERVAL_MS = 60 * 60 * 1000L; // 1 hour
+
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AuftragDao.class);
 
   private static final Class<?>[] ADDITIONAL_HISTORY_SEARCH_DOS = new Class[]{AuftragsPositionDO.class};
@@ -86,7 +100,35 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Autowired
   private SendMail sendMail;
 
-  private Integer toBeInvoicedCounter;
+  /**
+   * Ids of all orders to be invoiced. Maintained on every modification of orders and invoices and reconciled
+   * periodically with the result of the full query (see {@link #reconcileToBeInvoicedOrders()}).
+   */
+  private volatile Set<Integer> toBeInvoicedOrderIds;
+
+  /**
+   * Time of the last reconciliation (0, if a reconciliation is needed).
+   */
+  private volatile long toBeInvoicedReconciliationTime;
+
+  /**
+   * Incremented on every incremental update for detecting modifications while the full query is running.
+   */
+  private final AtomicLong toBeInvoicedModificationCounter = new AtomicLong();
+
+  private final AtomicBoolean toBeInvoicedReconciliationRunning = new AtomicBoolean();
+
+  /**
+   * Runs the reconciliations in the background (one at a time, see {@link #toBeInvoicedReconciliationRunning}).
+   */
+  private final ExecutorService toBeInvoicedExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "AuftragDao-toBeInvoiced");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Autowired
+  private RechnungDao rechnungDao;
 
   @Autowired
   private TaskDao taskDao;
@@ -104,6 +146,18 @@ public class AuftragDao extends BaseDao<AuftragDO> {
     userRightId = USER_RIGHT_ID;
   }
 
+  @PostConstruct
+  private void postConstruct() {
+    // The criteria are evaluated via AuftragsCache (see AuftragFilter.filterFakturiert), which depends on the invoices,
+    // so the orders of modified invoices have to be checked again:
+    rechnungCache.register(this::updateToBeInvoicedOrders);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    toBeInvoicedExecutor.shutdownNow();
+  }
+
   /**
    * Could not use injection by spring, because TaskTree is already injected in AuftragDao.
    *
@@ -267,22 +321,124 @@ public class AuftragDao extends BaseDao<AuftragDO> {
 
   /**
    * Number of all orders (finished, signed or escalated) which has to be invoiced.
+   * The counter is maintained on every modification of orders, so this method doesn't block. If the last reconciliation
+   * is older than {@link #TO_BE_INVOICED_RECONCILIATION_INTERVAL_MS}, a reconciliation is started in the background.
+   *
+   * @return The current number or null (unknown), if the first reconciliation isn't yet finished.
    */
-  public synchronized int getToBeInvoicedCounter() {
-    if (toBeInvoicedCounter != null) {
-      return toBeInvoicedCounter;
+  public Integer getToBeInvoicedCounter() {
+    if (System.currentTimeMillis() - toBeInvoicedReconciliationTime > TO_BE_INVOICED_RECONCILIATION_INTERVAL_MS) {
+      reconcileToBeInvoicedOrdersAsync();
+    }
+    final Set<Integer> ids = toBeInvoicedOrderIds;
+    return ids != null ? ids.size() : null;
+  }
+
+  private void reconcileToBeInvoicedOrdersAsync() {
+    if (!toBeInvoicedReconciliationRunning.compareAndSet(false, true)) {
+      return; // Reconciliation is already running.
+    }
+    try {
+      toBeInvoicedExecutor.execute(() -> {
+        try {
+          reconcileToBeInvoicedOrders();
+        } finally {
+          toBeInvoicedReconciliationRunning.set(false);
+        }
+      });
+    } catch (final RejectedExecutionException ex) {
+      // Executor is shut down (application is stopping).
+      toBeInvoicedReconciliationRunning.set(false);
     }
-    final AuftragFilter filter = new AuftragFilter();
-    filter.setAuftragFakturiertFilterStatus(AuftragFakturiertFilterStatus.ZU_FAKTURIEREN);
+  }
+
+  /**
+   * Gets all orders to be invoiced by the full query and replaces the incrementally maintained ids. On errors, the
+   * current ids are kept.
+   */
+  void reconcileToBeInvoicedOrders() {
+    final long modificationCounter = toBeInvoicedModificationCounter.get();
     try {
-      final List<AuftragDO> list = getList(filter, false);
-      toBeInvoicedCounter = list != null ? list.size() : 0;
-      return toBeInvoicedCounter;
+      final Set<Integer> ids = queryToBeInvoicedOrderIds(null);
+      final Set<Integer> oldIds = toBeInvoicedOrderIds;
+      if (oldIds != null && !oldIds.equals(ids)) {
+        log.info("Number of orders to be invoiced reconciled: " + oldIds.size() + " -> " + ids.size());
+      }
+      toBeInvoicedOrderIds = ids;
+      // Orders modified while querying may be missed, so reconcile again on next access:
+      toBeInvoicedReconciliationTime = modificationCounter == toBeInvoicedModificationCounter.get() ? System.currentTimeMillis() : 0;
     } catch (final Exception ex) {
       log.error("Exception occured while getting number of closed and not invoiced orders: " + ex.getMessage(), ex);
       // Exception e. g. if data-base update is needed.
-      return 0;
+      toBeInvoicedReconciliationTime = System.currentTimeMillis(); // Don't retry on every access.
+    }
+  }
+
+  /**
+   * Updates the ids of the orders to be invoiced for the given (modified) orders.
+   *
+   * @param orderIds The ids of the modified orders or null, if unknown (reconciliation on next access).
+   */
+  private void updateToBeInvoicedOrders(final Collection<Integer> orderIds) {
+    toBeInvoicedModificationCounter.incrementAndGet();
+    final Set<Integer> ids = toBeInvoicedOrderIds;
+    if (ids == null) {
+      return; // Not yet initialized.
+    }
+    if (orderIds == null) {
+      toBeInvoicedReconciliationTime = 0;
+      return;
+    }
+    if (orderIds.isEmpty()) {
+      return;
     }
+    try {
+      final Set<Integer> toBeInvoiced = queryToBeInvoicedOrderIds(orderIds);
+      for (final Integer orderId : orderIds) {
+        if (toBeInvoiced.contains(orderId)) {
+          ids.add(orderId);
+        } else {
+          ids.remove(orderId);
+        }
+      }
+    } catch (final Exception ex) {
+      log.error("Exception occured while checking orders to be invoiced (reconciling): " + ex.getMessage(), ex);
+      toBeInvoicedReconciliationTime = 0;
+    }
+  }
+
+  /**
+   * Same criteria as {@link #getList(BaseSearchFilter)} with {@link AuftragFakturiertFilterStatus#ZU_FAKTURIEREN}, but
+   * exceptions aren't swallowed (an empty result is always valid).
+   *
+   * @param orderIds If given, only these orders are queried. Their cached order infos are refreshed, because the
+   *                 modification may not yet be applied to {@link AuftragsCache}.
+   * @return The ids of the orders to be invoiced.
+   */
+  private Set<Integer> queryToBeInvoicedOrderIds(final Collection<Integer> orderIds) {
+    return emgrFactory.runRoTrans(emgr -> {
+      final TypedQuery<AuftragDO> query = emgr.getEntityManager().createQuery(
+              "select distinct t from AuftragDO t join t.positionen pos left join t.paymentSchedules ps"
+                  + " where t.deleted = false and (t.auftragsStatus = :status or pos.status = :positionStatus or ps.reached = true)"
+                  + (orderIds != null ? " and t.id in :orderIds" : ""), AuftragDO.class)
+          .setParameter("status", AuftragsStatus.ABGESCHLOSSEN)
+          .setParameter("positionStatus", AuftragsPositionsStatus.ABGESCHLOSSEN);
+      if (orderIds != null) {
+        query.setParameter("orderIds", orderIds);
+      }
+      final List<AuftragDO> list = query.getResultList();
+      if (orderIds != null) {
+        list.forEach(auftragsCache::setExpired);
+      }
+      // Inside the transaction, because the payment schedules are loaded lazy.
+      final AuftragFilter filter = new AuftragFilter();
+      filter.setAuftragFakturiertFilterStatus(AuftragFakturiertFilterStatus.ZU_FAKTURIEREN);
+      final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+      for (final AuftragDO order : filter.filterFakturiert(list)) {
+        ids.add(order.getId());
+      }
+      return ids;
+    });
   }
 
   @Override
@@ -462,7 +618,6 @@ public class AuftragDao extends BaseDao<AuftragDO> {
         position.checkVollstaendigFakturiert();
       }
     }
-    toBeInvoicedCounter = null;
     final String uiStatusAsXml = XmlObjectWriter.writeAsXml(obj.getUiStatus());
     obj.setUiStatusAsXml(uiStatusAsXml);
     final List<PaymentScheduleDO> paymentSchedules = obj.getPaymentSchedules();
@@ -551,6 +706,7 @@ public class AuftragDao extends BaseDao<AuftragDO> {
   @Override
   protected void afterSaveOrModify(final AuftragDO obj) {
     super.afterSaveOrModify(obj);
+    updateToBeInvoicedOrders(Collections.singleton(obj.getId()));
     if (taskTree != null) {
       taskTree.refreshOrderPositionReferences();
     }
@@ -32,9 +32,15 @@ import org.springframework.stereotype.Component;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Caches the order positions assigned to invoice positions.
+ * <p>
+ * Modifications of invoices are applied incrementally (see {@link #update(Integer)}), the full reload is only done on
+ * start-up and after expiry (periodic verification).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -45,36 +51,70 @@ public class RechnungCache extends AbstractCache {
   @Autowired
   protected PfEmgrFactory emgrFactory;
 
-  /**
-   * The key is the order id.
-   */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId;
+  private volatile InvoicePositionMaps maps;
 
-  /**
-   * The key is the order position id.
-   */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId;
+  private final List<Consumer<Set<Integer>>> invoicedOrdersListeners = new CopyOnWriteArrayList<>();
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragId(final Integer auftragId) {
     checkRefresh();
-    return invoicePositionMapByAuftragId.get(auftragId);
+    return maps.invoicePositionMapByAuftragId.get(auftragId);
   }
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragsPositionId(final Integer auftragsPositionId) {
     checkRefresh();
-    return invoicePositionMapByAuftragsPositionId.get(auftragsPositionId);
+    return maps.invoicePositionMapByAuftragsPositionId.get(auftragsPositionId);
+  }
+
+  /**
+   * Reloads the positions of the given invoice and replaces the cached ones. Should be called after any modification
+   * of an invoice (insert, update, delete, undelete).
+   *
+   * @param rechnungId The id of the modified invoice.
+   */
+  public void update(final Integer rechnungId) {
+    if (rechnungId == null) {
+      return;
+    }
+    final Set<Integer> auftragIds = updateMaps(rechnungId);
+    for (final Consumer<Set<Integer>> listener : invoicedOrdersListeners) {
+      listener.accept(auftragIds);
+    }
+  }
+
+  /**
+   * The listener is called after every modification of an invoice (see {@link #update(Integer)}) with the ids of all
+   * orders with changed invoice positions (previously and currently assigned orders), or with null, if the orders are
+   * unknown (cache isn't yet initialized).
+   */
+  public void register(final Consumer<Set<Integer>> listener) {
+    invoicedOrdersListeners.add(listener);
+  }
+
+  /**
+   * @return The ids of the orders with changed invoice positions or null, if the cache isn't yet initialized.
+   */
+  private synchronized Set<Integer> updateMaps(final Integer rechnungId) {
+    if (maps == null) {
+      return null; // Nothing to do, cache isn't yet initialized.
+    }
+    final List<RechnungsPositionDO> list = emgrFactory.runRoTrans(emgr -> {
+      EntityManager em = emgr.getEntityManager();
+      em.clear();
+      return em.createQuery("from RechnungsPositionDO t left join fetch t.auftragsPosition left join fetch t.auftragsPosition.auftrag where t.rechnung.id = :rechnungId and t.auftragsPosition is not null",
+              RechnungsPositionDO.class)
+              .setParameter("rechnungId", rechnungId)
+              .getResultList();
+    });
+    return maps.update(rechnungId, list);
   }
 
   /**
    * This method will be called by CacheHelper and is synchronized via getData();
    */
   @Override
-  @SuppressWarnings("unchecked")
   protected void refresh() {
     log.info("Initializing RechnungCache ...");
     // This method must not be synchronized because it works with a new copy of maps.
-    final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragId = new HashMap<>();
-    final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragsPositionId = new HashMap<>();
     final List<RechnungsPositionDO> list = emgrFactory.runRoTrans(emgr -> {
       EntityManager em = emgr.getEntityManager();
       em.clear();
@@ -82,38 +122,109 @@ public class RechnungCache extends AbstractCache {
               RechnungsPositionDO.class)
               .getResultList();
     });
-    for (final RechnungsPositionDO pos : list) {
-      RechnungDO rechnung = pos.getRechnung();
-      if (pos.getAuftragsPosition() == null || pos.getAuftragsPosition().getAuftrag() == null) {
-        log.error("Assigned order position expected: " + pos);
-        continue;
-      } else if (pos.isDeleted() || rechnung == null || rechnung.isDeleted()
-              || rechnung.getNummer() == null) {
-        // Invoice position or invoice is deleted.
-        continue;
+    final InvoicePositionMaps newMaps = new InvoicePositionMaps();
+    newMaps.update(null, list);
+    this.maps = newMaps;
+    log.info("Initializing of RechnungCache done.");
+  }
+
+  /**
+   * The maps of the invoice positions by order and order position. The sets of the maps are never modified after
+   * publication (copy-on-write), so readers don't need any synchronization. Modifications must be synchronized by the
+   * caller.
+   */
+  static class InvoicePositionMaps {
+    /**
+     * The key is the order id.
+     */
+    final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the order position id.
+     */
+    final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the invoice id, needed for removing the positions of modified invoices.
+     */
+    private final Map<Integer, Set<Integer>> auftragIdsByRechnungId = new HashMap<>();
+
+    /**
+     * The key is the invoice id, needed for removing the positions of modified invoices.
+     */
+    private final Map<Integer, Set<Integer>> auftragsPositionIdsByRechnungId = new HashMap<>();
+
+    /**
+     * @param rechnungId If given, all cached positions of this invoice will be replaced by the given ones. If null, the
+     *                   given positions are simply added (initial build).
+     * @param positions  The invoice positions with assigned order positions.
+     * @return The ids of all orders with replaced positions of the given invoice (previously and currently assigned
+     * orders), or null for the initial build.
+     */
+    Set<Integer> update(final Integer rechnungId, final Collection<RechnungsPositionDO> positions) {
+      final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragId = new HashMap<>();
+      final Map<Integer, Set<RechnungsPositionVO>> mapByAuftragsPositionId = new HashMap<>();
+      for (final RechnungsPositionDO pos : positions) {
+        final RechnungDO rechnung = pos.getRechnung();
+        if (pos.getAuftragsPosition() == null || pos.getAuftragsPosition().getAuftrag() == null) {
+          log.error("Assigned order position expected: " + pos);
+          continue;
+        } else if (pos.isDeleted() || rechnung == null || rechnung.isDeleted()
+                || rechnung.getNummer() == null) {
+          // Invoice position or invoice is deleted.
+          continue;
+        }
+        final AuftragsPositionDO auftragsPosition = pos.getAuftragsPosition();
+        final AuftragDO auftrag = auftragsPosition.getAuftrag();
+        final RechnungsPositionVO vo = new RechnungsPositionVO(pos);
+        mapByAuftragId.computeIfAbsent(auftrag.getId(), k -> new TreeSet<>()).add(vo);
+        mapByAuftragsPositionId.computeIfAbsent(auftragsPosition.getId(), k -> new TreeSet<>()).add(vo);
+        if (rechnungId == null) {
+          auftragIdsByRechnungId.computeIfAbsent(rechnung.getId(), k -> new HashSet<>()).add(auftrag.getId());
+          auftragsPositionIdsByRechnungId.computeIfAbsent(rechnung.getId(), k -> new HashSet<>()).add(auftragsPosition.getId());
+        }
       }
-      final AuftragsPositionDO auftragsPosition = pos.getAuftragsPosition();
-      final AuftragDO auftrag = auftragsPosition.getAuftrag();
-      Set<RechnungsPositionVO> setByAuftragId = mapByAuftragId.get(auftrag.getId());
-      if (setByAuftragId == null) {
-        setByAuftragId = new TreeSet<>();
-        mapByAuftragId.put(auftrag.getId(), setByAuftragId);
+      if (rechnungId == null) {
+        // Initial build: publish the new sets.
+        mapByAuftragId.forEach((id, set) -> invoicePositionMapByAuftragId.put(id, Collections.unmodifiableSet(set)));
+        mapByAuftragsPositionId.forEach((id, set) -> invoicePositionMapByAuftragsPositionId.put(id, Collections.unmodifiableSet(set)));
+        return null;
       }
-      Set<RechnungsPositionVO> setByAuftragsPositionId = mapByAuftragsPositionId.get(auftragsPosition.getId());
-      if (setByAuftragsPositionId == null) {
-        setByAuftragsPositionId = new TreeSet<>();
-        mapByAuftragsPositionId.put(auftragsPosition.getId(), setByAuftragsPositionId);
+      replace(rechnungId, invoicePositionMapByAuftragsPositionId, auftragsPositionIdsByRechnungId, mapByAuftragsPositionId);
+      return replace(rechnungId, invoicePositionMapByAuftragId, auftragIdsByRechnungId, mapByAuftragId);
+    }
+
+    /**
+     * @return The keys of all replaced entries (old and new ones).
+     */
+    private static Set<Integer> replace(final Integer rechnungId, final Map<Integer, Set<RechnungsPositionVO>> map,
+                                final Map<Integer, Set<Integer>> keysByRechnungId,
+                                final Map<Integer, Set<RechnungsPositionVO>> newPositions) {
+      final Set<Integer> keys = new HashSet<>(newPositions.keySet());
+      final Set<Integer> oldKeys = keysByRechnungId.get(rechnungId);
+      if (oldKeys != null) {
+        keys.addAll(oldKeys);
       }
-      final RechnungsPositionVO vo = new RechnungsPositionVO(pos);
-      if (!setByAuftragId.contains(vo)) {
-        setByAuftragId.add(vo);
+      for (final Integer key : keys) {
+        final Set<RechnungsPositionVO> oldSet = map.get(key);
+        final Set<RechnungsPositionVO> set = oldSet != null ? new TreeSet<>(oldSet) : new TreeSet<>();
+        set.removeIf(vo -> rechnungId.equals(vo.getRechnungId()));
+        final Set<RechnungsPositionVO> added = newPositions.get(key);
+        if (added != null) {
+          set.addAll(added);
+        }
+        if (set.isEmpty()) {
+          map.remove(key);
+        } else {
+          map.put(key, Collections.unmodifiableSet(set));
+        }
       }
-      if (!setByAuftragsPositionId.contains(vo)) {
-        setByAuftragsPositionId.add(vo);
+      if (newPositions.isEmpty()) {
+        keysByRechnungId.remove(rechnungId);
+      } else {
+        keysByRechnungId.put(rechnungId, new HashSet<>(newPositions.keySet()));
       }
+      return keys;
     }
-    this.invoicePositionMapByAuftragId = mapByAuftragId;
-    this.invoicePositionMapByAuftragsPositionId = mapByAuftragsPositionId;
-    log.info("Initializing of RechnungCache done.");
   }
 }
@@ -246,7 +246,7 @@ public class RechnungDao extends BaseDao<RechnungDO> {
 
   @Override
   protected void afterSaveOrModify(final RechnungDO obj) {
-    getRechnungCache().setExpired(); // Expire the cache because assignments to order position may be changed.
+    getRechnungCache().update(obj.getId()); // Assignments to order positions may be changed.
     auftragsCache.setExpired();
   }
 
@@ -47,6 +47,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Repository
 @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -203,18 +208,54 @@ public class DatevImportDao {
     sheet.calculateStatistics();
   }
 
+  /**
+   * The elements are grouped by their month (a DATEV sheet normally contains only one) and the already stored
+   * Buchungssätze are fetched with one query per month and matched by their satznr in memory. Only the records of one
+   * month are held at a time.
+   * All elements with a satznr used several times in the same month (in the sheet or in the data base) are marked as
+   * erroneous and deselected (including the first occurrence), because they can't be assigned unambiguously.
+   */
   private void reconcileBuchungsdaten(final ImportedSheet<BuchungssatzDO> sheet) {
     log.info("Reconcile Buchungsdaten called");
     if (sheet.getElements() != null) {
+      final long begin = System.currentTimeMillis();
+      final Map<Integer, List<ImportedElement<BuchungssatzDO>>> elementsByMonth = new TreeMap<>();
       for (final ImportedElement<BuchungssatzDO> el : sheet.getElements()) {
         final BuchungssatzDO satz = el.getValue();
         if (satz.getYear() != null && satz.getMonth() != null && satz.getSatznr() != null) {
-          final BuchungssatzDO dbSatz = buchungssatzDao.getBuchungssatz(satz.getYear(), satz.getMonth(), satz.getSatznr());
-          if (dbSatz != null) {
-            el.setOldValue(dbSatz);
+          elementsByMonth.computeIfAbsent(satz.getYear() * 100 + satz.getMonth(), key -> new ArrayList<>()).add(el);
+        }
+      }
+      for (final Map.Entry<Integer, List<ImportedElement<BuchungssatzDO>>> entry : elementsByMonth.entrySet()) {
+        final int year = entry.getKey() / 100;
+        final int month = entry.getKey() % 100;
+        final Map<Integer, List<BuchungssatzDO>> dbSaetze = buchungssatzDao.getBuchungssaetze(year, month);
+        final Set<Integer> satznrs = new HashSet<>();
+        final Set<Integer> duplicateSatznrs = new HashSet<>();
+        for (final ImportedElement<BuchungssatzDO> el : entry.getValue()) {
+          if (!satznrs.add(el.getValue().getSatznr())) {
+            duplicateSatznrs.add(el.getValue().getSatznr());
+          }
+        }
+        for (final ImportedElement<BuchungssatzDO> el : entry.getValue()) {
+          final Integer satznr = el.getValue().getSatznr();
+          final List<BuchungssatzDO> list = dbSaetze.get(satznr);
+          if (duplicateSatznrs.contains(satznr)) {
+            log.error("Satznr " + satznr + " of " + year + "/" + month + " is used several times in the import.");
+            el.putErrorProperty("satznr", "Satznummer ist mehrfach im Import vorhanden.");
+            el.setSelected(false);
+          } else if (list != null && list.size() > 1) {
+            log.error("Satznr " + satznr + " of " + year + "/" + month + " is used by " + list.size()
+                + " Buchungssätze in the data base.");
+            el.putErrorProperty("satznr", "Satznummer ist mehrfach in der Datenbank vorhanden.");
+            el.setSelected(false);
+          } else if (list != null) {
+            el.setOldValue(list.get(0));
           }
         }
       }
+      log.info("Reconciling " + sheet.getElements().size() + " Buchungssätze of " + elementsByMonth.size()
+          + " month(s) takes " + (System.currentTimeMillis() - begin) + "ms.");
     }
     sheet.setStatus(ImportStatus.RECONCILED);
     sheet.calculateStatistics();
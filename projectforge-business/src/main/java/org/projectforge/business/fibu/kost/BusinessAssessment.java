@@ -124,6 +124,7 @@ public class BusinessAssessment implements Serializable {
       return;
     }
     if (CollectionUtils.isNotEmpty(records)) {
+      final BusinessAssessmentPlan plan = config.getPlan();
       for (final BuchungssatzDO record : records) {
         counter++;
         // Diese Berechnungen werden anhand des Wertenachweises einer Bwa geführt:
@@ -133,15 +134,10 @@ public class BusinessAssessment implements Serializable {
         if (record.getKonto() == null && record.getGegenKonto() == null) {
           continue;
         }
-        boolean found = false;
-        for (final BusinessAssessmentRow row : rows) {
-          if (doesMatch(row, record)) {
-            row.addAccountRecord(record);
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
+        final int index = getRowIndex(plan, record);
+        if (index >= 0) {
+          rows.get(index).addAccountRecord(record);
+        } else {
           log.warn("Ignoring Satz: " + record);
           record.setIgnore(true);
         }
@@ -150,24 +146,28 @@ public class BusinessAssessment implements Serializable {
     }
   }
 
-  private boolean doesMatch(final BusinessAssessmentRow row, final BuchungssatzDO record) {
-    return doesMatch(row, record.getKonto()) || doesMatch(row, record.getGegenKonto());
+  /**
+   * @return The index of the first row matching the account or the contra account of the given record or -1 if no row
+   * matches.
+   */
+  private int getRowIndex(final BusinessAssessmentPlan plan, final BuchungssatzDO record) {
+    final int index = getRowIndex(plan, record.getKonto());
+    final int contraIndex = getRowIndex(plan, record.getGegenKonto());
+    if (index < 0 || (contraIndex >= 0 && contraIndex < index)) {
+      return contraIndex;
+    }
+    return index;
   }
 
-  private boolean doesMatch(final BusinessAssessmentRow row, final KontoDO account) {
-    return account != null && account.getNummer() != null && row.doesMatch(account.getNummer());
+  private int getRowIndex(final BusinessAssessmentPlan plan, final KontoDO account) {
+    return account != null ? plan.getRowIndex(account.getNummer()) : -1;
   }
 
   public void recalculate() {
-    if (rows == null) {
+    if (CollectionUtils.isEmpty(rows)) {
       return;
     }
-    for (final BusinessAssessmentRow row : rows) {
-      if (row == null) {
-        continue;
-      }
-      row.recalculate();
-    }
+    config.getPlan().calculate(this);
   }
 
   /**
@@ -26,8 +26,10 @@ package org.projectforge.business.fibu.kost;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.projectforge.framework.xmlstream.XmlField;
 import org.projectforge.framework.xmlstream.XmlObject;
+import org.projectforge.framework.xmlstream.XmlOmitField;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -49,6 +51,9 @@ public class BusinessAssessmentConfig implements Serializable
 
   private String overallPerformance, merchandisePurchase, preliminaryResult;
 
+  @XmlOmitField
+  private transient volatile BusinessAssessmentPlan plan;
+
   public BusinessAssessmentConfig()
   {
   }
@@ -75,6 +80,21 @@ public class BusinessAssessmentConfig implements Serializable
     return null;
   }
 
+  /**
+   * @return The precompiled rows (account number lookup table and order of calculation), built on first call.
+   */
+  BusinessAssessmentPlan getPlan()
+  {
+    if (plan == null) {
+      synchronized (this) {
+        if (plan == null) {
+          plan = new BusinessAssessmentPlan(rows != null ? rows : Collections.emptyList());
+        }
+      }
+    }
+    return plan;
+  }
+
   /**
    * @return the heading to be displayed first.
    */
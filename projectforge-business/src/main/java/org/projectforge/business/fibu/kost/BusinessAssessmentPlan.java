@@ -0,0 +1,362 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.kost;
+
+import org.apache.commons.lang3.StringUtils;
+import org.projectforge.business.scripting.GroovyExecutor;
+import org.projectforge.framework.utils.IntRanges;
+import org.projectforge.framework.utils.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * The precompiled row configuration of a business assessment, built once per {@link BusinessAssessmentConfig}:
+ * <ul>
+ * <li>A lookup table of disjoint account number intervals, each of them mapped to the first row (in order of the
+ * configuration) matching these account numbers. So the row of an account record is found by a binary search instead
+ * of testing the account number ranges of all rows.</li>
+ * <li>The rows with values in the order of their dependencies. Values of the form "=a+b-c" (only row ids and row
+ * numbers such as r1051 separated by '+' and '-') are calculated directly, all other values are executed as Groovy
+ * scripts.</li>
+ * </ul>
+ * Instances are immutable and may be used by several business assessments at the same time.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class BusinessAssessmentPlan implements Serializable {
+  private static final long serialVersionUID = -1434227213838957131L;
+
+  private static final Logger log = LoggerFactory.getLogger(BusinessAssessmentPlan.class);
+
+  private final int[] intervalStarts;
+
+  private final int[] intervalEnds;
+
+  private final int[] intervalRows;
+
+  /**
+   * The indexes of the rows with values in order of calculation.
+   */
+  private final int[] calculationOrder;
+
+  /**
+   * For each row the calculation formula or null, if the row has no value or the value has to be executed as script.
+   */
+  private final Formula[] formulas;
+
+  private final boolean scriptsExist;
+
+  /**
+   * The row indexes of the script variables (row ids and row numbers prefixed by 'r').
+   */
+  private final Map<String, Integer> variables = new HashMap<>();
+
+  BusinessAssessmentPlan(final List<BusinessAssessmentRowConfig> rows) {
+    final List<int[]> intervals = new ArrayList<>(); // {min, max, row index}
+    for (int i = 0; i < rows.size(); i++) {
+      final IntRanges ranges = rows.get(i).getAccountNumberRanges();
+      if (ranges == null) {
+        continue;
+      }
+      for (final Range<Integer> range : ranges.getRanges()) {
+        if (range.getMinValue() <= range.getMaxValue()) {
+          intervals.add(new int[]{range.getMinValue(), range.getMaxValue(), i});
+        }
+      }
+      for (final Integer value : ranges.getValues()) {
+        intervals.add(new int[]{value, value, i});
+      }
+    }
+    // Elementary intervals between all bounds, each mapped to the first row covering it:
+    final TreeSet<Long> bounds = new TreeSet<>();
+    for (final int[] interval : intervals) {
+      bounds.add((long) interval[0]);
+      bounds.add((long) interval[1] + 1);
+    }
+    final List<int[]> table = new ArrayList<>();
+    Long start = null;
+    for (final Long bound : bounds) {
+      if (start != null) {
+        final int min = start.intValue();
+        int row = -1;
+        for (final int[] interval : intervals) {
+          if (interval[0] <= min && min <= interval[1] && (row < 0 || interval[2] < row)) {
+            row = interval[2];
+          }
+        }
+        if (row >= 0) {
+          final int[] last = table.isEmpty() ? null : table.get(table.size() - 1);
+          if (last != null && last[2] == row && (long) last[1] + 1 == start) {
+            last[1] = (int) (bound - 1); // Merge adjacent intervals of the same row.
+          } else {
+            table.add(new int[]{min, (int) (bound - 1), row});
+          }
+        }
+      }
+      start = bound;
+    }
+    intervalStarts = new int[table.size()];
+    intervalEnds = new int[table.size()];
+    intervalRows = new int[table.size()];
+    for (int i = 0; i < table.size(); i++) {
+      intervalStarts[i] = table.get(i)[0];
+      intervalEnds[i] = table.get(i)[1];
+      intervalRows[i] = table.get(i)[2];
+    }
+    // The variables of the scripts (see BusinessAssessment.putBusinessAssessmentRows):
+    for (int i = 0; i < rows.size(); i++) {
+      final BusinessAssessmentRowConfig row = rows.get(i);
+      variables.put("r" + row.getNo(), i);
+      if (StringUtils.isNotBlank(row.getId())) {
+        variables.put(row.getId(), i);
+      }
+    }
+    formulas = new Formula[rows.size()];
+    final List<Integer> valueRows = new ArrayList<>();
+    boolean scripts = false;
+    for (int i = 0; i < rows.size(); i++) {
+      final String valueConfig = rows.get(i).getValueConfig();
+      if (StringUtils.isBlank(valueConfig)) {
+        continue;
+      }
+      valueRows.add(i);
+      formulas[i] = Formula.parse(valueConfig, variables);
+      if (formulas[i] == null) {
+        scripts = true;
+      }
+    }
+    scriptsExist = scripts;
+    calculationOrder = getCalculationOrder(rows, valueRows);
+  }
+
+  /**
+   * @return The index of the first row matching the given account number or -1 if no row matches.
+   */
+  int getRowIndex(final Integer accountNumber) {
+    if (accountNumber == null) {
+      return -1;
+    }
+    final int pos = Arrays.binarySearch(intervalStarts, accountNumber);
+    final int index = pos >= 0 ? pos : -pos - 2; // Last interval starting before the account number.
+    if (index < 0 || accountNumber > intervalEnds[index]) {
+      return -1;
+    }
+    return intervalRows[index];
+  }
+
+  /**
+   * Calculates the values of all rows of the given business assessment in order of their dependencies.
+   */
+  void calculate(final BusinessAssessment businessAssessment) {
+    final List<BusinessAssessmentRow> rows = businessAssessment.getRows();
+    final double[] amounts = new double[rows.size()];
+    for (int i = 0; i < rows.size(); i++) {
+      amounts[i] = getDouble(rows.get(i).getAmount());
+    }
+    final GroovyExecutor executor;
+    final Map<String, Object> vars;
+    if (scriptsExist) {
+      executor = new GroovyExecutor();
+      vars = new HashMap<>();
+      BusinessAssessment.putBusinessAssessmentRows(vars, businessAssessment);
+    } else {
+      executor = null;
+      vars = null;
+    }
+    for (final int index : calculationOrder) {
+      final BusinessAssessmentRow row = rows.get(index);
+      if (row.isAccountRecordsExist()) {
+        // Nothing to do.
+        continue;
+      }
+      // The amount of the row itself is zero while calculating.
+      amounts[index] = 0.0;
+      putVariables(vars, row, index, 0.0);
+      final Formula formula = formulas[index];
+      if (formula != null) {
+        row.recalculate(formula.calculate(amounts));
+      } else {
+        row.recalculate(executor, vars);
+      }
+      amounts[index] = getDouble(row.getAmount());
+      putVariables(vars, row, index, amounts[index]);
+    }
+  }
+
+  private void putVariables(final Map<String, Object> vars, final BusinessAssessmentRow row, final int index,
+                            final double amount) {
+    if (vars == null) {
+      return;
+    }
+    final String no = "r" + row.getNo();
+    if (Objects.equals(variables.get(no), index)) {
+      vars.put(no, amount);
+    }
+    if (StringUtils.isNotBlank(row.getId()) && Objects.equals(variables.get(row.getId()), index)) {
+      vars.put(row.getId(), amount);
+    }
+  }
+
+  private static double getDouble(final BigDecimal amount) {
+    return amount != null ? amount.doubleValue() : 0.0;
+  }
+
+  /**
+   * Orders the rows with values topologically: a formula is calculated after all rows referred by it, a script after
+   * all preceding rows with values (their variables aren't known). Otherwise the order of the configuration is kept.
+   * Rows of cyclic dependencies are calculated in order of the configuration.
+   */
+  private int[] getCalculationOrder(final List<BusinessAssessmentRowConfig> rows, final List<Integer> valueRows) {
+    final Map<Integer, Set<Integer>> dependencies = new HashMap<>();
+    final Set<Integer> valueRowSet = new HashSet<>(valueRows);
+    for (final int index : valueRows) {
+      final Set<Integer> set = new HashSet<>();
+      if (formulas[index] != null) {
+        for (final int ref : formulas[index].rows) {
+          if (ref != index && valueRowSet.contains(ref)) {
+            set.add(ref);
+          }
+        }
+      } else {
+        for (final int other : valueRows) {
+          if (other < index) {
+            set.add(other);
+          }
+        }
+      }
+      dependencies.put(index, set);
+    }
+    final int[] order = new int[valueRows.size()];
+    final Set<Integer> done = new HashSet<>();
+    final TreeSet<Integer> open = new TreeSet<>(valueRows);
+    int pos = 0;
+    while (!open.isEmpty()) {
+      Integer next = null;
+      for (final Integer index : open) {
+        if (done.containsAll(dependencies.get(index))) {
+          next = index;
+          break;
+        }
+      }
+      if (next == null) {
+        next = open.first();
+        log.warn("Cyclic dependencies of the business assessment row '" + rows.get(next).getNo() + "' ("
+            + rows.get(next).getId() + "), calculated in order of the configuration.");
+      }
+      open.remove(next);
+      done.add(next);
+      order[pos++] = next;
+    }
+    return order;
+  }
+
+  /**
+   * A sum of rows, such as "=umsatzErloese+bestVerdg-aktEigenleistungen".
+   */
+  static class Formula implements Serializable {
+    private static final long serialVersionUID = 5376254129867294183L;
+
+    final int[] rows;
+
+    final boolean[] negative;
+
+    private Formula(final int[] rows, final boolean[] negative) {
+      this.rows = rows;
+      this.negative = negative;
+    }
+
+    /**
+     * Adds the amounts from left to right as done by Groovy with double values.
+     */
+    double calculate(final double[] amounts) {
+      double result = negative[0] ? -amounts[rows[0]] : amounts[rows[0]];
+      for (int i = 1; i < rows.length; i++) {
+        if (negative[i]) {
+          result -= amounts[rows[i]];
+        } else {
+          result += amounts[rows[i]];
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return The formula or null, if the given value isn't a sum of known rows (must be executed as script).
+     */
+    static Formula parse(final String valueConfig, final Map<String, Integer> variables) {
+      final String str = valueConfig.trim();
+      if (!str.startsWith("=")) {
+        return null;
+      }
+      final List<Integer> rows = new ArrayList<>();
+      final List<Boolean> negative = new ArrayList<>();
+      boolean minus = false;
+      boolean operandExpected = true;
+      int pos = 1;
+      while (pos < str.length()) {
+        final char ch = str.charAt(pos);
+        if (Character.isWhitespace(ch)) {
+          pos++;
+        } else if (ch == '+' || ch == '-') {
+          if (operandExpected && (ch == '+' || !rows.isEmpty() || minus)) {
+            return null; // Only a leading minus is supported as unary operator.
+          }
+          minus = ch == '-';
+          operandExpected = true;
+          pos++;
+        } else if (Character.isJavaIdentifierStart(ch) && operandExpected) {
+          int end = pos + 1;
+          while (end < str.length() && Character.isJavaIdentifierPart(str.charAt(end))) {
+            end++;
+          }
+          final Integer row = variables.get(str.substring(pos, end));
+          if (row == null) {
+            return null;
+          }
+          rows.add(row);
+          negative.add(minus);
+          minus = false;
+          operandExpected = false;
+          pos = end;
+        } else {
+          return null;
+        }
+      }
+      if (operandExpected) {
+        return null; // Empty value or trailing operator.
+      }
+      final int[] rowArray = new int[rows.size()];
+      final boolean[] negativeArray = new boolean[rows.size()];
+      for (int i = 0; i < rowArray.length; i++) {
+        rowArray[i] = rows.get(i);
+        negativeArray[i] = negative.get(i);
+      }
+      return new Formula(rowArray, negativeArray);
+    }
+  }
+}
@@ -36,7 +36,6 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -200,7 +199,32 @@ public class BusinessAssessmentRow implements Serializable
     return config.getAccountNumberRanges();
   }
 
-  void recalculate()
+  /**
+   * @return true if account records were added, the amount of this row isn't calculated in this case.
+   */
+  boolean isAccountRecordsExist()
+  {
+    return accountRecordsExist;
+  }
+
+  /**
+   * Sets the calculated value of the formula of this row (see {@link BusinessAssessmentPlan}).
+   */
+  void recalculate(final double value)
+  {
+    if (accountRecordsExist) {
+      // Nothing to do.
+      return;
+    }
+    amount = new BigDecimal(String.valueOf(value)).setScale(getScale(), RoundingMode.HALF_UP);
+  }
+
+  /**
+   * Executes the value script of this row.
+   * @param executor The executor used for all scripts of the business assessment.
+   * @param vars The variables of the script (amounts of all rows, see {@link BusinessAssessment#putBusinessAssessmentRows(Map, BusinessAssessment)}).
+   */
+  void recalculate(final GroovyExecutor executor, final Map<String, Object> vars)
   {
     if (accountRecordsExist) {
       // Nothing to do.
@@ -212,9 +236,7 @@ public class BusinessAssessmentRow implements Serializable
       return;
     }
     amount = BigDecimal.ZERO;
-    final Map<String, Object> vars = new HashMap<>();
-    BusinessAssessment.putBusinessAssessmentRows(vars, businessAssessment);
-    final ScriptExecutionResult result = new GroovyExecutor().execute(groovyScript, vars);
+    final ScriptExecutionResult result = executor.execute(groovyScript, vars);
     final Object rval = result.getResult();
     if (rval instanceof BigDecimal) {
       amount = (BigDecimal)rval;
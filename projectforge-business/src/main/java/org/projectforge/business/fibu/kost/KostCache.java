@@ -25,6 +25,7 @@ package org.projectforge.business.fibu.kost;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.persistence.entities.DefaultBaseDO;
 import org.projectforge.framework.utils.NumberHelper;
 import org.projectforge.reporting.Kost2Art;
 import org.projectforge.reporting.impl.Kost2ArtImpl;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Component;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The kost2 entries will be cached.
@@ -49,15 +51,7 @@ public class KostCache extends AbstractCache {
   @Autowired
   private EntityManager em;
 
-  /**
-   * The key is the kost2-id.
-   */
-  private Map<Integer, Kost2DO> kost2Map;
-
-  /**
-   * The key is the kost2-id.
-   */
-  private Map<Integer, Kost1DO> kost1Map;
+  private volatile Indexes indexes;
 
   private List<Kost2Art> allKost2Arts;
 
@@ -67,7 +61,7 @@ public class KostCache extends AbstractCache {
     if (!NumberHelper.greaterZero(kost2Id)) {
       return null;
     }
-    return getKost2Map().get(kost2Id);
+    return getIndexes().kost2ById.get(kost2Id);
   }
 
   /**
@@ -83,24 +77,13 @@ public class KostCache extends AbstractCache {
   }
 
   public Kost2DO getKost2(final int nummernkreis, final int bereich, final int teilbereich, final int kost2art) {
-    for (final Kost2DO kost : getKost2Map().values()) {
-      if (kost.getNummernkreis() == nummernkreis
-              && kost.getBereich() == bereich
-              && kost.getTeilbereich() == teilbereich
-              && kost.getKost2ArtId() == kost2art) {
-        return kost;
-      }
-    }
-    return null;
+    return getIndexes().getKost2(nummernkreis, bereich, teilbereich, kost2art);
   }
 
   public List<Kost2DO> getActiveKost2(final int nummernkreis, final int bereich, final int teilbereich) {
     final List<Kost2DO> list = new ArrayList<>();
-    for (final Kost2DO kost : getKost2Map().values()) {
-      if (kost.getNummernkreis() == nummernkreis
-              && kost.getBereich() == bereich
-              && kost.getTeilbereich() == teilbereich
-              && (kost.getKostentraegerStatus() == KostentraegerStatus.ACTIVE || kost.getKostentraegerStatus() == null)) {
+    for (final Kost2DO kost : getIndexes().getKost2List(nummernkreis, bereich, teilbereich)) {
+      if (kost.getKostentraegerStatus() == KostentraegerStatus.ACTIVE || kost.getKostentraegerStatus() == null) {
         list.add(kost);
       }
     }
@@ -114,7 +97,7 @@ public class KostCache extends AbstractCache {
     if (!NumberHelper.greaterZero(kost1Id)) {
       return null;
     }
-    return getKost1Map().get(kost1Id);
+    return getIndexes().kost1ById.get(kost1Id);
   }
 
   /**
@@ -123,15 +106,10 @@ public class KostCache extends AbstractCache {
    */
   public Kost1DO getKost1(final String kostString) {
     final int[] kost = KostHelper.parseKostString(kostString);
-    for (final Kost1DO kost1 : getKost1Map().values()) {
-      if (kost[0] == kost1.getNummernkreis() &&
-              kost[1] == kost1.getBereich() &&
-              kost[2] == kost1.getTeilbereich() &&
-              kost[3] == kost1.getEndziffer()) {
-        return kost1;
-      }
+    if (kost == null) {
+      return null;
     }
-    return null;
+    return getIndexes().getKost1(kost[0], kost[1], kost[2], kost[3]);
   }
 
   /**
@@ -145,15 +123,13 @@ public class KostCache extends AbstractCache {
     if (projektId == null) {
       return set;
     }
-    for (final Kost2DO kost : getKost2Map().values()) {
+    for (final Kost2DO kost : getIndexes().getKost2ListOfProjekt(projektId)) {
       if (kost.isDeleted()) {
         continue;
       }
-      if (Objects.equals(projektId, kost.getProjektId())) {
-        final Kost2ArtDO kost2Art = kost.getKost2Art();
-        if (kost2Art != null) {
-          set.add(kost2Art);
-        }
+      final Kost2ArtDO kost2Art = kost.getKost2Art();
+      if (kost2Art != null) {
+        set.add(kost2Art);
       }
     }
     return set;
@@ -206,14 +182,20 @@ public class KostCache extends AbstractCache {
    * Should be called after user modifications.
    */
   void updateKost2(final Kost2DO kost2) {
-    getKost2Map().put(kost2.getId(), kost2);
+    // Refreshes are done inside the same lock (see checkRefresh), so the modification can't get lost:
+    synchronized (this) {
+      getIndexes().putKost2(kost2);
+    }
   }
 
   /**
    * Should be called after user modifications.
    */
   void updateKost1(final Kost1DO kost1) {
-    getKost1Map().put(kost1.getId(), kost1);
+    // Refreshes are done inside the same lock (see checkRefresh), so the modification can't get lost:
+    synchronized (this) {
+      getIndexes().putKost1(kost1);
+    }
   }
 
   void updateKost2Arts() {
@@ -230,14 +212,9 @@ public class KostCache extends AbstractCache {
     this.allKost2Arts = list;
   }
 
-  private Map<Integer, Kost2DO> getKost2Map() {
-    checkRefresh();
-    return kost2Map;
-  }
-
-  private Map<Integer, Kost1DO> getKost1Map() {
+  private Indexes getIndexes() {
     checkRefresh();
-    return kost1Map;
+    return indexes;
   }
 
   /**
@@ -246,28 +223,247 @@ public class KostCache extends AbstractCache {
   @Override
   protected void refresh() {
     log.info("Initializing KostCache ...");
-    // This method must not be synchronized because it works with a new copy of maps.
-    final Map<Integer, Kost1DO> map1 = new HashMap<>();
+    // This method must not be synchronized because it works with a new copy of indexes.
     final List<Kost1DO> list1 = em.createQuery("from Kost1DO t", Kost1DO.class)
             .setLockMode(LockModeType.NONE)
             .getResultList();
-    for (final Kost1DO kost1 : list1) {
-      map1.put(kost1.getId(), kost1);
-    }
-    this.kost1Map = map1;
-    final Map<Integer, Kost2DO> map2 = new HashMap<>();
     final List<Kost2DO> list2 = em.createQuery("from Kost2DO t", Kost2DO.class)
             .setLockMode(LockModeType.NONE)
             .getResultList();
     kost2EntriesExists = false;
     for (final Kost2DO kost2 : list2) {
-      if (!kost2EntriesExists && !kost2.isDeleted()) {
+      if (!kost2.isDeleted()) {
         kost2EntriesExists = true;
+        break;
       }
-      map2.put(kost2.getId(), kost2);
     }
-    this.kost2Map = map2;
+    this.indexes = new Indexes(list1, list2);
     updateKost2Arts();
     log.info("Initializing of KostCache done.");
   }
+
+  /**
+   * Lookup maps of the kost1 and kost2 entries by id, by number, and of the kost2 entries by number without kost2 art
+   * and by project. Built on refresh and published as a whole, modifications of single entries are applied by
+   * {@link #putKost1(Kost1DO)} and {@link #putKost2(Kost2DO)}. The lists of the maps are never modified, but replaced.
+   * If several entries have the same number, non-deleted entries are preferred over deleted ones and entries with lower
+   * ids over entries with higher ids (see {@link #isPreferred(DefaultBaseDO, DefaultBaseDO)}).
+   */
+  static class Indexes {
+    final Map<Integer, Kost1DO> kost1ById = new ConcurrentHashMap<>();
+
+    final Map<Integer, Kost2DO> kost2ById = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the number (see {@link #getKey(int, int, int, int)}).
+     */
+    private final Map<Long, Kost1DO> kost1ByNumber = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the number (see {@link #getKey(int, int, int, int)}).
+     */
+    private final Map<Long, Kost2DO> kost2ByNumber = new ConcurrentHashMap<>();
+
+    /**
+     * The key is the number without kost2 art (see {@link #getKey(int, int, int, int)}).
+     */
+    private final Map<Long, List<Kost2DO>> kost2ListByNumber = new ConcurrentHashMap<>();
+
+    private final Map<Integer, List<Kost2DO>> kost2ListByProjektId = new ConcurrentHashMap<>();
+
+    Indexes(final Collection<Kost1DO> kost1List, final Collection<Kost2DO> kost2List) {
+      for (final Kost1DO kost1 : kost1List) {
+        kost1ById.put(kost1.getId(), kost1);
+        indexKost1(kost1);
+      }
+      for (final Kost2DO kost2 : kost2List) {
+        kost2ById.put(kost2.getId(), kost2);
+        indexKost2(kost2);
+      }
+    }
+
+    Kost1DO getKost1(final int nummernkreis, final int bereich, final int teilbereich, final int endziffer) {
+      final Kost1DO kost1 = kost1ByNumber.get(getKey(nummernkreis, bereich, teilbereich, endziffer));
+      if (kost1 == null || matches(kost1, nummernkreis, bereich, teilbereich, endziffer)) {
+        return kost1;
+      }
+      // Numbers out of range (see getKey):
+      Kost1DO result = null;
+      for (final Kost1DO entry : kost1ById.values()) {
+        if (matches(entry, nummernkreis, bereich, teilbereich, endziffer) && isPreferred(entry, result)) {
+          result = entry;
+        }
+      }
+      return result;
+    }
+
+    Kost2DO getKost2(final int nummernkreis, final int bereich, final int teilbereich, final int kost2art) {
+      final Kost2DO kost2 = kost2ByNumber.get(getKey(nummernkreis, bereich, teilbereich, kost2art));
+      if (kost2 == null || matches(kost2, nummernkreis, bereich, teilbereich, kost2art)) {
+        return kost2;
+      }
+      // Numbers out of range (see getKey):
+      Kost2DO result = null;
+      for (final Kost2DO entry : kost2ById.values()) {
+        if (matches(entry, nummernkreis, bereich, teilbereich, kost2art) && isPreferred(entry, result)) {
+          result = entry;
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return All kost2 entries with the given number independent of the kost2 art (including deleted ones).
+     */
+    List<Kost2DO> getKost2List(final int nummernkreis, final int bereich, final int teilbereich) {
+      final List<Kost2DO> list = kost2ListByNumber.get(getKey(nummernkreis, bereich, teilbereich, 0));
+      if (list == null) {
+        return Collections.emptyList();
+      }
+      final List<Kost2DO> result = new ArrayList<>(list.size());
+      for (final Kost2DO kost2 : list) {
+        // Numbers out of range may share the same key (see getKey).
+        if (kost2.getNummernkreis() == nummernkreis && kost2.getBereich() == bereich
+            && kost2.getTeilbereich() == teilbereich) {
+          result.add(kost2);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return All kost2 entries of the given project (including deleted ones).
+     */
+    List<Kost2DO> getKost2ListOfProjekt(final Integer projektId) {
+      final List<Kost2DO> list = kost2ListByProjektId.get(projektId);
+      return list != null ? list : Collections.emptyList();
+    }
+
+    void putKost1(final Kost1DO kost1) {
+      final Kost1DO old = kost1ById.put(kost1.getId(), kost1);
+      if (old != null) {
+        final long oldKey = getKey(old);
+        if (kost1ByNumber.remove(oldKey, old)) {
+          // Other entries with the same number (e. g. deleted ones) may exist:
+          for (final Kost1DO entry : kost1ById.values()) {
+            if (getKey(entry) == oldKey) {
+              indexKost1(entry);
+            }
+          }
+        }
+      }
+      indexKost1(kost1);
+    }
+
+    void putKost2(final Kost2DO kost2) {
+      final Kost2DO old = kost2ById.put(kost2.getId(), kost2);
+      if (old != null) {
+        if (old.getKost2ArtId() != null) {
+          final long oldKey = getKey(old);
+          if (kost2ByNumber.remove(oldKey, old)) {
+            // Other entries with the same number (e. g. deleted ones) may exist:
+            for (final Kost2DO entry : kost2ById.values()) {
+              if (entry.getKost2ArtId() != null && getKey(entry) == oldKey) {
+                indexKost2Number(entry);
+              }
+            }
+          }
+        }
+        removeFromList(kost2ListByNumber, getKey(old.getNummernkreis(), old.getBereich(), old.getTeilbereich(), 0), old);
+        if (old.getProjektId() != null) {
+          removeFromList(kost2ListByProjektId, old.getProjektId(), old);
+        }
+      }
+      indexKost2(kost2);
+    }
+
+    private void indexKost1(final Kost1DO kost1) {
+      final long key = getKey(kost1);
+      if (isPreferred(kost1, kost1ByNumber.get(key))) {
+        kost1ByNumber.put(key, kost1);
+      }
+    }
+
+    private void indexKost2(final Kost2DO kost2) {
+      if (kost2.getKost2ArtId() != null) {
+        indexKost2Number(kost2);
+      }
+      addToList(kost2ListByNumber, getKey(kost2.getNummernkreis(), kost2.getBereich(), kost2.getTeilbereich(), 0),
+          kost2);
+      if (kost2.getProjektId() != null) {
+        addToList(kost2ListByProjektId, kost2.getProjektId(), kost2);
+      }
+    }
+
+    private void indexKost2Number(final Kost2DO kost2) {
+      final long key = getKey(kost2);
+      if (isPreferred(kost2, kost2ByNumber.get(key))) {
+        kost2ByNumber.put(key, kost2);
+      }
+    }
+
+    /**
+     * @return true, if the candidate should be found instead of the current entry with the same number: non-deleted
+     * entries are preferred over deleted ones, otherwise the entry with the lower id.
+     */
+    private static boolean isPreferred(final DefaultBaseDO candidate, final DefaultBaseDO current) {
+      if (current == null || Objects.equals(candidate.getId(), current.getId())) {
+        return true;
+      }
+      if (candidate.isDeleted() != current.isDeleted()) {
+        return !candidate.isDeleted();
+      }
+      return candidate.getId() < current.getId();
+    }
+
+    private static <K> void addToList(final Map<K, List<Kost2DO>> map, final K key, final Kost2DO kost2) {
+      final List<Kost2DO> list = map.get(key);
+      final List<Kost2DO> newList = list != null ? new ArrayList<>(list) : new ArrayList<>();
+      newList.add(kost2);
+      map.put(key, Collections.unmodifiableList(newList));
+    }
+
+    private static <K> void removeFromList(final Map<K, List<Kost2DO>> map, final K key, final Kost2DO kost2) {
+      final List<Kost2DO> list = map.get(key);
+      if (list == null) {
+        return;
+      }
+      final List<Kost2DO> newList = new ArrayList<>(list);
+      newList.remove(kost2);
+      if (newList.isEmpty()) {
+        map.remove(key);
+      } else {
+        map.put(key, Collections.unmodifiableList(newList));
+      }
+    }
+
+    private static boolean matches(final Kost1DO kost1, final int nummernkreis, final int bereich,
+                                   final int teilbereich, final int endziffer) {
+      return kost1.getNummernkreis() == nummernkreis && kost1.getBereich() == bereich
+          && kost1.getTeilbereich() == teilbereich && kost1.getEndziffer() == endziffer;
+    }
+
+    private static boolean matches(final Kost2DO kost2, final int nummernkreis, final int bereich,
+                                   final int teilbereich, final int kost2art) {
+      return kost2.getNummernkreis() == nummernkreis && kost2.getBereich() == bereich
+          && kost2.getTeilbereich() == teilbereich && Objects.equals(kost2.getKost2ArtId(), kost2art);
+    }
+
+    private static long getKey(final Kost1DO kost1) {
+      return getKey(kost1.getNummernkreis(), kost1.getBereich(), kost1.getTeilbereich(), kost1.getEndziffer());
+    }
+
+    private static long getKey(final Kost2DO kost2) {
+      return getKey(kost2.getNummernkreis(), kost2.getBereich(), kost2.getTeilbereich(), kost2.getKost2ArtId());
+    }
+
+    /**
+     * Each part of the number is stored in 16 bits, so the key is unique for all valid numbers (#.###.##.##). The
+     * lookups check the entries found, so numbers out of range are still found (by iterating over all entries).
+     */
+    static long getKey(final int nummernkreis, final int bereich, final int teilbereich, final int endziffer) {
+      return ((long) (nummernkreis & 0xFFFF) << 48) | ((long) (bereich & 0xFFFF) << 32)
+          | ((long) (teilbereich & 0xFFFF) << 16) | (endziffer & 0xFFFF);
+    }
+  }
 }
@@ -24,7 +24,6 @@
 package org.projectforge.business.fibu.kost.reporting;
 
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.Predicate;
 import org.projectforge.business.fibu.KostFormatter;
 import org.projectforge.business.fibu.kost.AccountingConfig;
 import org.projectforge.business.fibu.kost.BuchungssatzDO;
@@ -50,6 +49,12 @@ public class Report implements Serializable
 
   private transient Set<BuchungssatzDO> buchungssatzSet;
 
+  /**
+   * The formatted kost1 and kost2 of the account records (same order as buchungssaetze), if selected. They're formatted
+   * only once and given to the child reports.
+   */
+  private transient List<String[]> kostStrings;
+
   private transient ReportObjective reportObjective;
 
   private transient List<Report> childReports;
@@ -291,16 +296,27 @@ public class Report implements Serializable
   {
     if (childReports == null && hasChildren()) {
       childReports = new ArrayList<>();
-      for (final ReportObjective child : reportObjective.getChildReportObjectives()) {
-        final Report report = new Report(child, this);
-        report.select(this.buchungssaetze);
-        childReports.add(report);
+      final List<ReportObjective> childObjectives = reportObjective.getChildReportObjectives();
+      final int size = childObjectives.size();
+      final ReportMatcher[] matchers = new ReportMatcher[size];
+      final List<List<BuchungssatzDO>> childSelections = new ArrayList<>(size);
+      final List<List<String[]>> childKostStrings = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        matchers[i] = new ReportMatcher(childObjectives.get(i));
+        childSelections.add(new ArrayList<>());
+        childKostStrings.add(new ArrayList<>());
       }
-      if (this.buchungssaetze != null && (!reportObjective.isSuppressOther() || !reportObjective.isSuppressDuplicates())) {
-        for (final BuchungssatzDO satz : this.buchungssaetze) {
+      if (this.buchungssaetze != null) {
+        // Partitions the account records in one pass, the children get their selection directly:
+        final List<String[]> kostList = getKostStrings();
+        for (int pos = 0; pos < this.buchungssaetze.size(); pos++) {
+          final BuchungssatzDO satz = this.buchungssaetze.get(pos);
+          final String[] kost = kostList.get(pos);
           int n = 0;
-          for (final Report child : getChildren()) {
-            if (child.contains(satz)) {
+          for (int i = 0; i < size; i++) {
+            if (matchers[i].matches(kost[0], kost[1])) {
+              childSelections.get(i).add(satz);
+              childKostStrings.get(i).add(kost);
               n++;
             }
           }
@@ -319,6 +335,11 @@ public class Report implements Serializable
           }
         }
       }
+      for (int i = 0; i < size; i++) {
+        final Report report = new Report(childObjectives.get(i), this);
+        report.setSelection(childSelections.get(i), childKostStrings.get(i));
+        childReports.add(report);
+      }
       if (!reportObjective.isSuppressOther() && this.other != null) {
         final ReportObjective objective = new ReportObjective();
         final String other = ThreadLocalUserContext.getLocalizedString("fibu.reporting.other");
@@ -353,6 +374,7 @@ public class Report implements Serializable
   public void setBuchungssaetze(final List<BuchungssatzDO> buchungssaetze)
   {
     this.buchungssaetze = buchungssaetze;
+    this.kostStrings = null;
   }
 
   /**
@@ -385,45 +407,58 @@ public class Report implements Serializable
    */
   public void select(final List<BuchungssatzDO> list)
   {
-    final Predicate regExpPredicate = new Predicate() {
-      @Override
-      public boolean evaluate(final Object obj)
-      {
-        final BuchungssatzDO satz = (BuchungssatzDO) obj;
-        final String kost1 = KostFormatter.format(satz.getKost1());
-        final String kost2 = KostFormatter.format(satz.getKost2());
-
-        // 1st of all the Blacklists
-        if (match(reportObjective.getKost1ExcludeRegExpList(), kost1, false)) {
-          return false;
+    final ReportMatcher matcher = new ReportMatcher(reportObjective);
+    final List<BuchungssatzDO> selection = new ArrayList<>();
+    final List<String[]> selectionKostStrings = new ArrayList<>();
+    if (list != null) {
+      for (final BuchungssatzDO satz : list) {
+        final String[] kost = getKostStrings(satz);
+        if (matcher.matches(kost[0], kost[1])) {
+          selection.add(satz);
+          selectionKostStrings.add(kost);
         }
-        if (match(reportObjective.getKost2ExcludeRegExpList(), kost2, false)) {
-          return false;
-        }
-        // 2nd the whitelists
-        final boolean kost1Match = match(reportObjective.getKost1IncludeRegExpList(), kost1, true);
-        final boolean kost2Match = match(reportObjective.getKost2IncludeRegExpList(), kost2, true);
-        return kost1Match && kost2Match;
       }
-    };
-    this.buchungssaetze = new ArrayList<>();
-    this.buchungssatzSet = new HashSet<>();
+    }
+    setSelection(selection, selectionKostStrings);
+  }
+
+  private void setSelection(final List<BuchungssatzDO> selection, final List<String[]> selectionKostStrings)
+  {
+    this.buchungssaetze = selection;
+    this.kostStrings = selectionKostStrings;
+    this.buchungssatzSet = null;
     this.businessAssessment = null;
     this.businessAssessmentTable = null;
     this.childReports = null;
     this.duplicates = null;
     this.other = null;
-    CollectionUtils.select(list, regExpPredicate, this.buchungssaetze);
-    for (final BuchungssatzDO satz : this.buchungssaetze) {
-      this.buchungssatzSet.add(satz);
+  }
+
+  private List<String[]> getKostStrings()
+  {
+    if (kostStrings == null) {
+      final List<String[]> list = new ArrayList<>(buchungssaetze.size());
+      for (final BuchungssatzDO satz : buchungssaetze) {
+        list.add(getKostStrings(satz));
+      }
+      kostStrings = list;
     }
+    return kostStrings;
+  }
+
+  private static String[] getKostStrings(final BuchungssatzDO satz)
+  {
+    return new String[]{KostFormatter.format(satz.getKost1()), KostFormatter.format(satz.getKost2())};
   }
 
   public boolean contains(final BuchungssatzDO satz)
   {
-    if (buchungssatzSet == null) {
+    if (buchungssaetze == null) {
       return false;
     }
+    if (buchungssatzSet == null) {
+      buchungssatzSet = new HashSet<>(buchungssaetze);
+    }
     return this.buchungssatzSet.contains(satz);
   }
 
@@ -0,0 +1,99 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.kost.reporting;
+
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled include and exclude regular expressions of a {@link ReportObjective}. The expressions are modified (see
+ * {@link Report#modifyRegExp(String)}) and compiled only once instead of once per account record.
+ *
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * @see Report#match(List, String, boolean)
+ */
+class ReportMatcher
+{
+  private final Pattern[] kost1IncludePatterns;
+
+  private final Pattern[] kost1ExcludePatterns;
+
+  private final Pattern[] kost2IncludePatterns;
+
+  private final Pattern[] kost2ExcludePatterns;
+
+  ReportMatcher(final ReportObjective reportObjective)
+  {
+    kost1IncludePatterns = compile(reportObjective.getKost1IncludeRegExpList());
+    kost1ExcludePatterns = compile(reportObjective.getKost1ExcludeRegExpList());
+    kost2IncludePatterns = compile(reportObjective.getKost2IncludeRegExpList());
+    kost2ExcludePatterns = compile(reportObjective.getKost2ExcludeRegExpList());
+  }
+
+  /**
+   * @param kost1 The formatted kost1 of the account record.
+   * @param kost2 The formatted kost2 of the account record.
+   * @return true, if the account record isn't excluded by any black list and is included by the white lists.
+   */
+  boolean matches(final String kost1, final String kost2)
+  {
+    // 1st of all the Blacklists
+    if (match(kost1ExcludePatterns, kost1, false)) {
+      return false;
+    }
+    if (match(kost2ExcludePatterns, kost2, false)) {
+      return false;
+    }
+    // 2nd the whitelists
+    return match(kost1IncludePatterns, kost1, true) && match(kost2IncludePatterns, kost2, true);
+  }
+
+  private static boolean match(final Pattern[] patterns, final String kost, final boolean emptyListMatches)
+  {
+    if (patterns == null) {
+      // List is empty:
+      return emptyListMatches;
+    }
+    for (final Pattern pattern : patterns) {
+      if (pattern.matcher(kost).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Pattern[] compile(final List<String> regExpList)
+  {
+    if (CollectionUtils.isEmpty(regExpList)) {
+      return null;
+    }
+    final Pattern[] patterns = new Pattern[regExpList.size()];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = Pattern.compile(Report.modifyRegExp(regExpList.get(i)));
+    }
+    return patterns;
+  }
+}
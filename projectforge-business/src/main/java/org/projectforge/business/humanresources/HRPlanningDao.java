@@ -26,14 +26,19 @@ package org.projectforge.business.humanresources;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.projectforge.business.fibu.ProjektDO;
 import org.projectforge.business.fibu.ProjektDao;
 import org.projectforge.business.user.ProjectForgeGroup;
 import org.projectforge.business.user.UserDao;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.business.user.UserRightId;
+import org.projectforge.business.user.UserRightValue;
 import org.projectforge.framework.access.AccessChecker;
 import org.projectforge.framework.access.OperationType;
+import org.projectforge.common.i18n.Priority;
 import org.projectforge.common.i18n.UserException;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
@@ -50,8 +55,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.TypedQuery;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author Mario Groß (m.gross@micromata.de)
@@ -64,6 +72,11 @@ public class HRPlanningDao extends BaseDao<HRPlanningDO> {
 
   private static final Class<?>[] ADDITIONAL_SEARCH_DOS = new Class[]{HRPlanningEntryDO.class};
 
+  /**
+   * Fetch size of {@link #forEachEntry(HRPlanningFilter, Consumer)}.
+   */
+  private static final int SCROLL_BLOCK_SIZE = 500;
+
   @Autowired
   private ProjektDao projektDao;
 
@@ -184,6 +197,102 @@ public class HRPlanningDao extends BaseDao<HRPlanningDO> {
     return result;
   }
 
+  /**
+   * Iterates over all entries of the plannings matching the given filter, e. g. for exports of large periods. In
+   * contrast to {@link #getList(BaseSearchFilter)} the result list isn't materialized: the values of the entries are
+   * scrolled in blocks (no managed entities), so the memory usage doesn't depend on the number of entries. Instead of
+   * checking the select access of every planning, the plannings of other users are only selected, if the logged-in
+   * user is allowed to see them (see {@link HRPlanningRight#hasSelectAccess(PFUserDO, HRPlanningDO)}).
+   *
+   * @param consumer Gets detached entries (ordered by week desc and user) with the planning (week and user) and the
+   *                 project (id and name).
+   * @return The number of entries.
+   */
+  public long forEachEntry(final HRPlanningFilter filter, final Consumer<HRPlanningEntryDO> consumer) {
+    checkLoggedInUserSelectAccess();
+    Integer userId = filter.getUserId();
+    if (!accessChecker.hasLoggedInUserRight(userRightId, false, UserRightValue.READONLY, UserRightValue.READWRITE)) {
+      // Only own plannings are visible:
+      final Integer loggedInUserId = ThreadLocalUserContext.getUserId();
+      if (userId != null && !userId.equals(loggedInUserId)) {
+        return 0;
+      }
+      userId = loggedInUserId;
+    }
+    final StringBuilder sb = new StringBuilder();
+    sb.append("select p.week, p.user.id, pr.id, pr.name, e.status, e.priority, e.probability, e.unassignedHours,")
+            .append(" e.mondayHours, e.tuesdayHours, e.wednesdayHours, e.thursdayHours, e.fridayHours, e.weekendHours,")
+            .append(" e.description from HRPlanningEntryDO e join e.planning p left join e.projekt pr")
+            .append(" where p.deleted = false and e.deleted = false");
+    if (userId != null) {
+      sb.append(" and p.user.id = :userId");
+    }
+    if (filter.getStartDay() != null) {
+      sb.append(" and p.week >= :startDay");
+    }
+    if (filter.getStopDay() != null) {
+      sb.append(" and p.week <= :stopDay");
+    }
+    if (filter.getProjektId() != null) {
+      sb.append(" and pr.id = :projektId");
+    }
+    sb.append(" order by p.week desc, p.user.id, e.id");
+    final Integer queryUserId = userId;
+    return emgrFactory.runRoTrans(emgr -> {
+      final TypedQuery<Object[]> query = emgr.getEntityManager().createQuery(sb.toString(), Object[].class);
+      if (queryUserId != null) {
+        query.setParameter("userId", queryUserId);
+      }
+      if (filter.getStartDay() != null) {
+        query.setParameter("startDay", filter.getStartDay());
+      }
+      if (filter.getStopDay() != null) {
+        query.setParameter("stopDay", filter.getStopDay());
+      }
+      if (filter.getProjektId() != null) {
+        query.setParameter("projektId", filter.getProjektId());
+      }
+      long counter = 0;
+      try (final ScrollableResults results = query.unwrap(org.hibernate.query.Query.class)
+              .setCacheMode(CacheMode.IGNORE)
+              .setReadOnly(true)
+              .setFetchSize(SCROLL_BLOCK_SIZE)
+              .scroll(ScrollMode.FORWARD_ONLY)) {
+        while (results.next()) {
+          consumer.accept(createEntry(results.get()));
+          ++counter;
+        }
+      }
+      return counter;
+    });
+  }
+
+  private HRPlanningEntryDO createEntry(final Object[] values) {
+    final HRPlanningDO planning = new HRPlanningDO();
+    planning.setWeek((LocalDate) values[0]);
+    planning.setUser(userGroupCache.getUser((Integer) values[1]));
+    final HRPlanningEntryDO entry = new HRPlanningEntryDO();
+    entry.setPlanning(planning);
+    if (values[2] != null) {
+      final ProjektDO projekt = new ProjektDO();
+      projekt.setId((Integer) values[2]);
+      projekt.setName((String) values[3]);
+      entry.setProjekt(projekt);
+    }
+    entry.setStatus((HRPlanningEntryStatus) values[4]);
+    entry.setPriority((Priority) values[5]);
+    entry.setProbability((Integer) values[6]);
+    entry.setUnassignedHours((BigDecimal) values[7]);
+    entry.setMondayHours((BigDecimal) values[8]);
+    entry.setTuesdayHours((BigDecimal) values[9]);
+    entry.setWednesdayHours((BigDecimal) values[10]);
+    entry.setThursdayHours((BigDecimal) values[11]);
+    entry.setFridayHours((BigDecimal) values[12]);
+    entry.setWeekendHours((BigDecimal) values[13]);
+    entry.setDescription((String) values[14]);
+    return entry;
+  }
+
   private boolean entryHasUpdates(final HRPlanningEntryDO entry, final HRPlanningDO existingPlanning) {
     if (entry.getId() == null) {
       return true;
@@ -24,16 +24,24 @@
 package org.projectforge.business.humanresources;
 
 import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.projectforge.business.excel.*;
+import org.projectforge.common.i18n.Priority;
 import org.projectforge.export.MyXlsContentProvider;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateTimeFormatter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * For excel exports.
@@ -84,6 +92,14 @@ public class HRPlanningExport
 
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HRPlanningExport.class);
 
+  /**
+   * Number of rows held in memory by the streaming export, all other rows are already flushed to a temporary file.
+   */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  @Autowired
+  private HRPlanningDao hrPlanningDao;
+
   final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.instance();
 
   private enum Col
@@ -107,19 +123,119 @@ public class HRPlanningExport
     return xls.getAsByteArray();
   }
 
-  public ExportWorkbook exportCompleteList(final List<HRPlanningDO> list, final ExportWorkbook xls, final Locale locale)
+  /**
+   * Exports all planning entries matching the given filter as xlsx file (one row per entry with the columns of
+   * {@link #exportCompleteList(List, ExportWorkbook, Locale)}). In contrast to {@link #export(List, Locale)} neither the
+   * plannings nor the workbook are held in memory: the entries are scrolled from the data base and the rows are written
+   * through a streaming workbook, so the heap usage doesn't depend on the number of entries (e. g. for year-long exports
+   * of the whole company).
+   *
+   * @param out The xlsx file is written to this stream (not closed).
+   * @return The number of exported entries.
+   * @see HRPlanningDao#forEachEntry(HRPlanningFilter, Consumer)
+   */
+  public long export(final HRPlanningFilter filter, final OutputStream out) throws IOException
   {
+    log.info("Exporting resourceplanning entries (streaming).");
+    final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+    workbook.setCompressTempFiles(true);
+    try {
+      final SXSSFSheet sheet = workbook.createSheet(ThreadLocalUserContext.getLocalizedString("hr.plannings"));
+      sheet.createFreezePane(8, 1);
+      final ExportColumn[] cols = getCompleteListColumns();
+      final Row headerRow = sheet.createRow(0);
+      final CellStyle headerStyle = createCellStyle(workbook, null, true, false);
+      for (int i = 0; i < cols.length; i++) {
+        sheet.setColumnWidth(i, cols[i].getWidth() * 256);
+        final Cell cell = headerRow.createCell(i);
+        cell.setCellValue(cols[i].getTitle());
+        cell.setCellStyle(headerStyle);
+      }
+      // Styles are shared by all cells (index 0: odd rows, index 1: even rows).
+      final CellStyle[] textStyles = { createCellStyle(workbook, null, false, false),
+          createCellStyle(workbook, null, false, true) };
+      final CellStyle[] hoursStyles = { createCellStyle(workbook, "0.00", false, false),
+          createCellStyle(workbook, "0.00", false, true) };
+      final Map<Priority, String> priorities = new EnumMap<>(Priority.class);
+      for (final Priority priority : Priority.values()) {
+        priorities.put(priority, ThreadLocalUserContext.getLocalizedString(priority.getI18nKey()));
+      }
+      final long counter = hrPlanningDao.forEachEntry(filter, entry -> {
+        final Row row = sheet.createRow(sheet.getLastRowNum() + 1);
+        final int styleIndex = row.getRowNum() % 2 == 0 ? 1 : 0;
+        final CellStyle textStyle = textStyles[styleIndex];
+        final CellStyle hoursStyle = hoursStyles[styleIndex];
+        final PFUserDO user = entry.getPlanning().getUser();
+        addCell(row, Col.USER, user != null ? user.getFullname() : null, textStyle);
+        addCell(row, Col.PROJEKT, entry.getProjektNameOrStatus(), textStyle);
+        addCell(row, Col.WEEK_OF_YEAR, entry.getPlanning().getFormattedWeekOfYear(), textStyle);
+        addCell(row, Col.PRIORITY, entry.getPriority() != null ? priorities.get(entry.getPriority()) : null, textStyle);
+        final Cell probabilityCell = row.createCell(Col.PROBABILITY.ordinal());
+        probabilityCell.setCellStyle(textStyle);
+        if (entry.getProbability() != null) {
+          probabilityCell.setCellValue(entry.getProbability());
+        }
+        addHoursCell(row, Col.UNASSIGNEDHOURS, entry.getUnassignedHours(), hoursStyle);
+        addHoursCell(row, Col.MONDAYHOURS, entry.getMondayHours(), hoursStyle);
+        addHoursCell(row, Col.TUESDAYHOURS, entry.getTuesdayHours(), hoursStyle);
+        addHoursCell(row, Col.WEDNESDAYHOURS, entry.getWednesdayHours(), hoursStyle);
+        addHoursCell(row, Col.THURSDAYHOURS, entry.getThursdayHours(), hoursStyle);
+        addHoursCell(row, Col.FRIDAYHOURS, entry.getFridayHours(), hoursStyle);
+        addHoursCell(row, Col.WEEKENDHOURS, entry.getWeekendHours(), hoursStyle);
+        addCell(row, Col.DESCRIPTION, entry.getDescription(), textStyle);
+      });
+      sheet.setZoom(75); // 75%
+      workbook.write(out);
+      log.info("Exported " + counter + " resourceplanning entries.");
+      return counter;
+    } finally {
+      workbook.dispose(); // Deletes the temporary files.
+      workbook.close();
+    }
+  }
 
-    final ContentProvider contentProvider = new MyContentProvider(xls);
+  private CellStyle createCellStyle(final Workbook workbook, final String dataFormat, final boolean bold,
+      final boolean grey)
+  {
+    final CellStyle style = workbook.createCellStyle();
+    final Font font = workbook.createFont();
+    font.setFontName("Arial");
+    font.setFontHeightInPoints((short) 10);
+    font.setBold(bold);
+    style.setFont(font);
+    style.setFillForegroundColor(grey ? HSSFColor.HSSFColorPredefined.GREY_25_PERCENT.getIndex()
+        : HSSFColor.HSSFColorPredefined.WHITE.getIndex());
+    style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    if (dataFormat != null) {
+      style.setDataFormat(workbook.createDataFormat().getFormat(dataFormat));
+    }
+    return style;
+  }
 
-    // create a default Date format and currency column
-    xls.setContentProvider(contentProvider);
+  private void addCell(final Row row, final Col col, final String value, final CellStyle style)
+  {
+    final Cell cell = row.createCell(col.ordinal());
+    cell.setCellStyle(style);
+    if (value != null) {
+      cell.setCellValue(value);
+    }
+  }
 
-    final String sheetTitle = ThreadLocalUserContext.getLocalizedString("hr.plannings");
-    final ExportSheet sheet = xls.addSheet(sheetTitle);
-    sheet.createFreezePane(8, 1);
+  private void addHoursCell(final Row row, final Col col, final BigDecimal value, final CellStyle style)
+  {
+    final Cell cell = row.createCell(col.ordinal());
+    cell.setCellStyle(style);
+    if (value != null) {
+      cell.setCellValue(value.doubleValue());
+    }
+  }
 
-    final ExportColumn[] cols = new ExportColumn[] { //
+  /**
+   * The columns of the complete list (the order is the order of {@link Col}).
+   */
+  private ExportColumn[] getCompleteListColumns()
+  {
+    return new ExportColumn[] { //
         new I18nExportColumn(Col.USER, "timesheet.user", MyXlsContentProvider.LENGTH_USER),
         new I18nExportColumn(Col.PROJEKT, "fibu.projekt", MyXlsContentProvider.LENGTH_STD),
         new I18nExportColumn(Col.WEEK_OF_YEAR, "calendar.weekOfYearShortLabel", 4),
@@ -133,6 +249,21 @@ public class HRPlanningExport
         new I18nExportColumn(Col.FRIDAYHOURS, "calendar.shortday.friday", 4),
         new I18nExportColumn(Col.WEEKENDHOURS, "resourceplanning.weekend", MyXlsContentProvider.LENGTH_STD),
         new I18nExportColumn(Col.DESCRIPTION, "timesheet.description", MyXlsContentProvider.LENGTH_EXTRA_LONG) };
+  }
+
+  public ExportWorkbook exportCompleteList(final List<HRPlanningDO> list, final ExportWorkbook xls, final Locale locale)
+  {
+
+    final ContentProvider contentProvider = new MyContentProvider(xls);
+
+    // create a default Date format and currency column
+    xls.setContentProvider(contentProvider);
+
+    final String sheetTitle = ThreadLocalUserContext.getLocalizedString("hr.plannings");
+    final ExportSheet sheet = xls.addSheet(sheetTitle);
+    sheet.createFreezePane(8, 1);
+
+    final ExportColumn[] cols = getCompleteListColumns();
 
     // column property names
     sheet.setColumns(cols);
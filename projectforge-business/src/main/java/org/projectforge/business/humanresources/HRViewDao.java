@@ -42,9 +42,7 @@ import org.projectforge.framework.utils.NumberHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -81,29 +79,9 @@ public class HRViewDao implements IDao<HRViewData> {
       filter.setStartDay(PFDay.today().getLocalDate());
     }
     if (filter.isShowBookedTimesheets()) {
-      final TimesheetFilter tsFilter = new TimesheetFilter();
-      tsFilter.setStartTime(PFDateTime.fromOrNull(filter.getStartDay()).getBeginOfDay().getUtilDate());
-      tsFilter.setStopTime(PFDateTime.fromOrNull(filter.getStopDay()).getEndOfDay().getUtilDate());
-      final List<TimesheetDO> sheets = timesheetDao.getList(tsFilter);
-      for (final TimesheetDO sheet : sheets) {
-        final PFUserDO user = userGroupCache.getUser(sheet.getUserId());
-        if (user == null) {
-          log.error("Oups, user of time sheet is null or unknown? Ignoring entry: " + sheet);
-          continue;
-        }
-        final ProjektDO projekt = taskTree.getProjekt(sheet.getTaskId());
-        final Object targetObject = getTargetObject(userGroupCache, filter, projekt);
-        if (targetObject == null) {
-          data.addTimesheet(sheet, user);
-        } else if (targetObject instanceof ProjektDO) {
-          data.addTimesheet(sheet, user, (ProjektDO) targetObject);
-        } else if (targetObject instanceof KundeDO) {
-          data.addTimesheet(sheet, user, (KundeDO) targetObject);
-        } else {
-          log.error("Target object of type " + targetObject + " not supported.");
-          data.addTimesheet(sheet, user);
-        }
-      }
+      final Date startTime = PFDateTime.fromOrNull(filter.getStartDay()).getBeginOfDay().getUtilDate();
+      final Date stopTime = PFDateTime.fromOrNull(filter.getStopDay()).getEndOfDay().getUtilDate();
+      addAggregatedTimesheets(data, filter, startTime, stopTime);
     }
     if (filter.isShowPlanning()) {
       final HRPlanningFilter hrFilter = new HRPlanningFilter();
@@ -161,6 +139,82 @@ public class HRViewDao implements IDao<HRViewData> {
     return data;
   }
 
+  /**
+   * Adds the durations of the time sheets of the given period, aggregated by the data base per (user, task). The
+   * access is checked once per (user, task) instead of per time sheet and the project and customer of each task is
+   * resolved only once. Results are the same as of {@link #addTimesheets(HRViewData, HRFilter, Date, Date)}.
+   */
+  void addAggregatedTimesheets(final HRViewData data, final HRFilter filter, final Date startTime,
+                               final Date stopTime) {
+    // Target objects (ProjektDO, KundeDO or null) by task id:
+    final Map<Integer, Object> targetObjects = new HashMap<>();
+    final TimesheetDO accessCheckSheet = new TimesheetDO();
+    for (final Object[] row : timesheetDao.readDurationsByUserAndTask(startTime, stopTime)) {
+      final Integer userId = (Integer) row[0];
+      final Integer taskId = (Integer) row[1];
+      final long seconds = (Long) row[2];
+      final PFUserDO user = userGroupCache.getUser(userId);
+      if (user == null) {
+        log.error("Oups, user of time sheets is null or unknown? Ignoring entries of user with id " + userId
+            + " and task with id " + taskId);
+        continue;
+      }
+      // The access to time sheets depends only on the user and task of the time sheet:
+      accessCheckSheet.setUser(user);
+      accessCheckSheet.setTask(taskTree.getTaskById(taskId));
+      if (!timesheetDao.hasLoggedInUserSelectAccess(accessCheckSheet, false)) {
+        continue;
+      }
+      final Object targetObject;
+      if (targetObjects.containsKey(taskId)) {
+        targetObject = targetObjects.get(taskId);
+      } else {
+        targetObject = getTargetObject(userGroupCache, filter, taskTree.getProjekt(taskId));
+        targetObjects.put(taskId, targetObject);
+      }
+      if (targetObject == null) {
+        data.addTimesheetDuration(seconds, user);
+      } else if (targetObject instanceof ProjektDO) {
+        data.addTimesheetDuration(seconds, user, (ProjektDO) targetObject);
+      } else if (targetObject instanceof KundeDO) {
+        data.addTimesheetDuration(seconds, user, (KundeDO) targetObject);
+      } else {
+        log.error("Target object of type " + targetObject + " not supported.");
+        data.addTimesheetDuration(seconds, user);
+      }
+    }
+  }
+
+  /**
+   * Adds all time sheets of the given period by loading each time sheet. Slow for large periods, use
+   * {@link #addAggregatedTimesheets(HRViewData, HRFilter, Date, Date)} instead.
+   */
+  void addTimesheets(final HRViewData data, final HRFilter filter, final Date startTime, final Date stopTime) {
+    final TimesheetFilter tsFilter = new TimesheetFilter();
+    tsFilter.setStartTime(startTime);
+    tsFilter.setStopTime(stopTime);
+    final List<TimesheetDO> sheets = timesheetDao.getList(tsFilter);
+    for (final TimesheetDO sheet : sheets) {
+      final PFUserDO user = userGroupCache.getUser(sheet.getUserId());
+      if (user == null) {
+        log.error("Oups, user of time sheet is null or unknown? Ignoring entry: " + sheet);
+        continue;
+      }
+      final ProjektDO projekt = taskTree.getProjekt(sheet.getTaskId());
+      final Object targetObject = getTargetObject(userGroupCache, filter, projekt);
+      if (targetObject == null) {
+        data.addTimesheet(sheet, user);
+      } else if (targetObject instanceof ProjektDO) {
+        data.addTimesheet(sheet, user, (ProjektDO) targetObject);
+      } else if (targetObject instanceof KundeDO) {
+        data.addTimesheet(sheet, user, (KundeDO) targetObject);
+      } else {
+        log.error("Target object of type " + targetObject + " not supported.");
+        data.addTimesheet(sheet, user);
+      }
+    }
+  }
+
   /**
    * Returns a list of all users which are accessible by the current logged in user and not planned in the given
    * HRViewData object.
@@ -85,6 +85,30 @@ public class HRViewData implements Serializable
     sortedUserDatas = null;
   }
 
+  /**
+   * Adds the already aggregated duration of time sheets (see {@link HRViewDao#getResources(HRFilter)}).
+   * @param seconds The sum of the time sheet durations in seconds.
+   */
+  void addTimesheetDuration(final long seconds, final PFUserDO user)
+  {
+    ensureAndGetUserData(user).addTimesheetDuration(seconds, (ProjektDO) null);
+    sortedUserDatas = null;
+  }
+
+  void addTimesheetDuration(final long seconds, final PFUserDO user, final ProjektDO projekt)
+  {
+    ensureAndGetUserData(user).addTimesheetDuration(seconds, projekt);
+    addProjekt(projekt);
+    sortedUserDatas = null;
+  }
+
+  void addTimesheetDuration(final long seconds, final PFUserDO user, final KundeDO kunde)
+  {
+    ensureAndGetUserData(user).addTimesheetDuration(seconds, kunde);
+    addKunde(kunde);
+    sortedUserDatas = null;
+  }
+
   void addHRPlanningEntry(final HRPlanningEntryDO entry, final PFUserDO user)
   {
     ensureAndGetUserData(user).addPlanningEntry(entry);
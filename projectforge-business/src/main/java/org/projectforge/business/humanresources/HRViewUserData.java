@@ -69,19 +69,29 @@ public class HRViewUserData implements Comparable<HRViewUserData>, Serializable,
 
   void addTimesheet(final TimesheetDO timesheet, final ProjektDO projekt)
   {
-    ensureAndGetEntry(projekt).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    addTimesheetDuration(timesheet.getDuration() / 1000, projekt);
+  }
+
+  void addTimesheet(final TimesheetDO timesheet, final KundeDO kunde)
+  {
+    addTimesheetDuration(timesheet.getDuration() / 1000, kunde);
+  }
+
+  void addTimesheetDuration(final long seconds, final ProjektDO projekt)
+  {
+    ensureAndGetEntry(projekt).addActualSeconds(seconds);
+    actualSecondsSum += seconds;
     if (projekt == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += seconds;
     }
   }
 
-  void addTimesheet(final TimesheetDO timesheet, final KundeDO kunde)
+  void addTimesheetDuration(final long seconds, final KundeDO kunde)
   {
-    ensureAndGetEntry(kunde).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    ensureAndGetEntry(kunde).addActualSeconds(seconds);
+    actualSecondsSum += seconds;
     if (kunde == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += seconds;
     }
   }
 
@@ -66,7 +66,12 @@ public class HRViewUserEntryData implements Comparable<HRViewUserEntryData>, Ser
 
   void addTimesheet(final TimesheetDO timesheet)
   {
-    actualSeconds += (timesheet.getDuration() / 1000);
+    addActualSeconds(timesheet.getDuration() / 1000);
+  }
+
+  void addActualSeconds(final long seconds)
+  {
+    actualSeconds += seconds;
   }
 
   void addPlanningEntry(final HRPlanningEntryDO entry)
@@ -23,12 +23,9 @@
 
 package org.projectforge.business.jobs;
 
-import org.projectforge.framework.persistence.api.ReindexSettings;
 import org.projectforge.framework.persistence.database.DatabaseService;
-import org.projectforge.framework.persistence.history.HibernateSearchReindexer;
-import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
+import org.projectforge.framework.persistence.history.HistoryIndexer;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
-import org.projectforge.framework.time.PFDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -46,7 +43,7 @@ public class CronReindexingHourlyJob {
   private DatabaseService databaseService;
 
   @Autowired
-  private HibernateSearchReindexer hibernateSearchReindexer;
+  private HistoryIndexer historyIndexer;
 
   @Autowired
   private PfEmgrFactory emgrFactory;
@@ -61,10 +58,8 @@ public class CronReindexingHourlyJob {
   public void execute() {
     log.info("Hourly job started.");
     try {
-      log.info("Starting (re-)indexing of history entries of the last 24 hours.");
-      final PFDateTime dt = PFDateTime.now().minusDays(1);
-      final ReindexSettings settings = new ReindexSettings(dt.getUtilDate(), null);
-      hibernateSearchReindexer.rebuildDatabaseSearchIndices(settings, PfHistoryMasterDO.class);
+      log.info("Starting indexing of new history entries.");
+      historyIndexer.indexNewEntries();
     } catch (final Throwable ex) {
       log.error("While executing fix job for data base history entries: " + ex.getMessage(), ex);
     }
@@ -86,6 +86,24 @@ public class DatabaseSupport
     }
   }
 
+  /**
+   * Optimization for getting the number of rows of large tables without a full table scan. Currently only implemented
+   * for PostgreSQL by using the estimates of the catalog (updated by vacuum and analyze): "select reltuples from
+   * pg_class" of the current schema. The table name is given as parameter of the statement.<br/>
+   * If no optimization is given, the caller should count the rows ("select count(*)").
+   *
+   * @return select string or null if for the used database no estimates are available.
+   */
+  public String getTableRowCountEstimateStatement()
+  {
+    if (dialect == DatabaseDialect.PostgreSQL) {
+      return "SELECT CAST(c.reltuples AS BIGINT) FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+          + " WHERE c.relkind = 'r' AND n.nspname = current_schema() AND c.relname = LOWER(?)";
+    } else {
+      return null;
+    }
+  }
+
   /**
    * Will be called on shutdown by WicketApplication.
    */
@@ -44,6 +44,7 @@ import org.projectforge.framework.persistence.database.DatabaseDao;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
 import org.projectforge.framework.persistence.history.HibernateSearchDependentObjectsReindexer;
 import org.projectforge.framework.persistence.history.HistoryBaseDaoAdapter;
+import org.projectforge.framework.persistence.history.HistoryEntrySummary;
 import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
@@ -396,6 +397,42 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return HistoryBaseDaoAdapter.getHistoryFor(obj);
   }
 
+  /**
+   * Gets one page of the history entries of the object, newest first.
+   *
+   * @param afterPk    The pk of the last entry of the previous page or null for the first page.
+   * @param maxResults The page size.
+   * @see HistoryBaseDaoAdapter#getHistoryEntries(BaseDO, Long, int)
+   */
+  public List<PfHistoryMasterDO> getHistoryEntries(final O obj, final Long afterPk, final int maxResults) {
+    accessChecker.checkRestrictedUser();
+    checkLoggedInUserHistoryAccess(obj);
+    return HistoryBaseDaoAdapter.getHistoryEntries(obj, afterPk, maxResults);
+  }
+
+  /**
+   * Gets the last changes of the object without loading the property changes.
+   *
+   * @see HistoryBaseDaoAdapter#getLastHistoryEntrySummaries(BaseDO, int)
+   * @see #getHistoryEntry(ExtendedBaseDO, Long)
+   */
+  public List<HistoryEntrySummary> getLastHistoryEntrySummaries(final O obj, final int maxResults) {
+    accessChecker.checkRestrictedUser();
+    checkLoggedInUserHistoryAccess(obj);
+    return HistoryBaseDaoAdapter.getLastHistoryEntrySummaries(obj, maxResults);
+  }
+
+  /**
+   * Gets a single history entry of the object including the property changes (expanding a summary).
+   *
+   * @return The history entry or null, if not found for the given object.
+   */
+  public PfHistoryMasterDO getHistoryEntry(final O obj, final Long pk) {
+    accessChecker.checkRestrictedUser();
+    checkLoggedInUserHistoryAccess(obj);
+    return HistoryBaseDaoAdapter.getHistoryEntry(obj, pk);
+  }
+
   /**
    * Gets the history entries of the object in flat format.<br/>
    * Please note: If user has no access an empty list will be returned.
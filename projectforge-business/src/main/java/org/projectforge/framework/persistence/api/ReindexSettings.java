@@ -34,6 +34,10 @@ public class ReindexSettings
 
   private Integer lastNEntries;
 
+  private Long afterId;
+
+  private Long untilId;
+
   public ReindexSettings()
   {
   }
@@ -43,6 +47,20 @@ public class ReindexSettings
     this.fromDate = fromDate;
     this.lastNEntries = lastNEntries;
   }
+
+  /**
+   * Re-indexes only the objects of the given id range (for entities with ids of type Long).
+   *
+   * @param afterId Objects with ids greater than this id.
+   * @param untilId Objects with ids less or equal than this id.
+   */
+  public static ReindexSettings createForIdRange(final long afterId, final long untilId)
+  {
+    final ReindexSettings settings = new ReindexSettings();
+    settings.afterId = afterId;
+    settings.untilId = untilId;
+    return settings;
+  }
   
   public Date getFromDate()
   {
@@ -53,6 +71,16 @@ public class ReindexSettings
   {
     return lastNEntries;
   }
+
+  public Long getAfterId()
+  {
+    return afterId;
+  }
+
+  public Long getUntilId()
+  {
+    return untilId;
+  }
   
   @Override
   public String toString()
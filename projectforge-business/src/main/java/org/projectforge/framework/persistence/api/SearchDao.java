@@ -23,10 +23,15 @@
 
 package org.projectforge.framework.persistence.api;
 
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+import org.projectforge.framework.persistence.user.api.UserContext;
+import org.projectforge.security.RegisterUser4Thread;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
-import java.util.List;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de) TODO RK check if needed and may replace
@@ -35,7 +40,271 @@ import java.util.List;
 public class SearchDao {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SearchDao.class);
 
+  /**
+   * Maximum number of areas searched in parallel by {@link #search(List, long)}.
+   */
+  public static final int MAX_PARALLEL_AREAS = 4;
+
+  /**
+   * Default time budget of {@link #search(List, long)} for each area.
+   */
+  public static final long DEFAULT_AREA_TIME_BUDGET_MS = 10000;
+
+  private final AtomicInteger threadCounter = new AtomicInteger();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_AREAS, runnable -> {
+    final Thread thread = new Thread(runnable, "SearchDao-" + threadCounter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * An area to search in (entity class with its dao) for {@link #search(List, long)}.
+   */
+  public static class SearchArea {
+    private final String id;
+
+    private final BaseDao<?> baseDao;
+
+    private final BaseSearchFilter filter;
+
+    /**
+     * @param id     The id of the area (e. g. id of the registry entry).
+     * @param filter The filter to use for this area (may be shared by all areas).
+     */
+    public SearchArea(final String id, final BaseDao<?> baseDao, final BaseSearchFilter filter) {
+      this.id = id;
+      this.baseDao = baseDao;
+      this.filter = filter;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public BaseDao<?> getBaseDao() {
+      return baseDao;
+    }
+
+    public BaseSearchFilter getFilter() {
+      return filter;
+    }
+
+    /**
+     * Called by worker threads of the search dao (the user context of the caller is registered).
+     */
+    protected List<SearchResultData> search(final SearchDao searchDao) {
+      return searchDao.getEntriesInternal(filter, baseDao.getDOClass(), baseDao);
+    }
+  }
+
+  /**
+   * The running search of an area by {@link #search(List, long)}.
+   */
+  private static class AreaTask {
+    private final SearchArea area;
+
+    /**
+     * Time when a worker thread started the search of this area (0, if still waiting for a free thread).
+     */
+    private volatile long startTime;
+
+    /**
+     * Time when the search of this area was finished (0, if still running).
+     */
+    private volatile long endTime;
+
+    private Future<List<SearchResultData>> future;
+
+    private AreaTask(final SearchArea area) {
+      this.area = area;
+    }
+  }
+
+  /**
+   * Result of {@link #search(List, long)}.
+   */
+  public static class SearchResult {
+    private final Map<String, List<SearchResultData>> areaResults = new LinkedHashMap<>();
+
+    private final Map<String, Long> areaDurations = new HashMap<>();
+
+    private final List<String> timedOutAreas = new ArrayList<>();
+
+    private final List<SearchResultData> entries = new ArrayList<>();
+
+    /**
+     * @return The result of the given area as returned by {@link #getEntries(BaseSearchFilter, Class, BaseDao)} (null,
+     * if an error occurred or the area timed out).
+     */
+    public List<SearchResultData> getAreaResult(final String areaId) {
+      return areaResults.get(areaId);
+    }
+
+    /**
+     * @return true, if the given area was part of the search (also if it timed out).
+     */
+    public boolean isSearched(final String areaId) {
+      return areaResults.containsKey(areaId);
+    }
+
+    /**
+     * @return The ids of all areas which weren't searched completely within the time budget.
+     */
+    public List<String> getTimedOutAreas() {
+      return timedOutAreas;
+    }
+
+    public boolean isTimedOut(final String areaId) {
+      return timedOutAreas.contains(areaId);
+    }
+
+    /**
+     * @return The duration of the search of the given area in milliseconds (from start of its search until it was
+     * finished or cancelled) or null, if the area wasn't searched.
+     */
+    public Long getAreaDuration(final String areaId) {
+      return areaDurations.get(areaId);
+    }
+
+    /**
+     * @return The found entries of all areas ranked by relevance. The order of entries inside each area is used as
+     * relevance, so the best matches of all areas come first (ties are ordered by time of last update, newest first).
+     */
+    public List<SearchResultData> getEntries() {
+      return entries;
+    }
+  }
+
+  /**
+   * Searches all given areas in parallel (at maximum {@link #MAX_PARALLEL_AREAS} areas at the same time). Each area
+   * has the given time budget, measured from the start of its search (time waiting for a free thread isn't counted).
+   * Areas exceeding their time budget are cancelled and the results of all other areas are returned.
+   *
+   * @param areas            The areas to search in.
+   * @param areaTimeBudgetMs The time budget of each area in milliseconds.
+   * @return The results of all areas and the merged, ranked entries. The access of the logged-in user is checked.
+   */
+  public SearchResult search(final List<? extends SearchArea> areas, final long areaTimeBudgetMs) {
+    final long start = System.currentTimeMillis();
+    final UserContext userContext = ThreadLocalUserContext.getUserContext();
+    final List<AreaTask> tasks = new ArrayList<>();
+    for (final SearchArea area : areas) {
+      if (area.getFilter() == null) {
+        continue;
+      }
+      updateUseModificationFilter(area.getFilter()); // Done here, because filters may be shared by the areas.
+      final AreaTask task = new AreaTask(area);
+      task.future = executor.submit(() -> {
+        task.startTime = System.currentTimeMillis();
+        try {
+          if (userContext != null) {
+            RegisterUser4Thread.INSTANCE.registerUser(userContext);
+          }
+          return area.search(this);
+        } finally {
+          RegisterUser4Thread.INSTANCE.unregister();
+          task.endTime = System.currentTimeMillis();
+        }
+      });
+      tasks.add(task);
+    }
+    final SearchResult result = new SearchResult();
+    for (final AreaTask task : tasks) {
+      final String areaId = task.area.getId();
+      result.areaResults.put(areaId, waitForResult(task, areaTimeBudgetMs, result));
+      if (task.startTime > 0) {
+        final long endTime = task.endTime > 0 ? task.endTime : System.currentTimeMillis();
+        result.areaDurations.put(areaId, endTime - task.startTime);
+      }
+    }
+    mergeEntries(result);
+    log.info("Search in " + tasks.size() + " areas took " + (System.currentTimeMillis() - start) + "ms.");
+    return result;
+  }
+
+  /**
+   * Waits for the result of the given task. The task is cancelled, if its time budget (measured from the start of the
+   * task) is exceeded.
+   *
+   * @return The result or null, if an error occurred or the task was cancelled.
+   */
+  private List<SearchResultData> waitForResult(final AreaTask task, final long areaTimeBudgetMs,
+                                               final SearchResult result) {
+    final String areaId = task.area.getId();
+    try {
+      while (true) {
+        final long startTime = task.startTime;
+        // If the task is still waiting for a free thread, wait for the full budget and check again:
+        final long timeout = startTime > 0 ? startTime + areaTimeBudgetMs - System.currentTimeMillis() : areaTimeBudgetMs;
+        try {
+          return task.future.get(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException ex) {
+          if (startTime > 0 || task.startTime > 0 && task.startTime + areaTimeBudgetMs <= System.currentTimeMillis()) {
+            log.warn("Search in area '" + areaId + "' cancelled, time budget of " + areaTimeBudgetMs + "ms exceeded.");
+            task.future.cancel(true);
+            result.timedOutAreas.add(areaId);
+            return null;
+          }
+        }
+      }
+    } catch (final InterruptedException ex) {
+      task.future.cancel(true);
+      result.timedOutAreas.add(areaId);
+      Thread.currentThread().interrupt();
+    } catch (final ExecutionException ex) {
+      log.error("Error while searching in area '" + areaId + "': " + ex.getCause().getMessage(), ex.getCause());
+    }
+    return null;
+  }
+
+  /**
+   * Ranks the entries of all areas by their position in the result list of their area.
+   */
+  private void mergeEntries(final SearchResult result) {
+    final List<SearchResultData> entries = result.entries;
+    final Map<SearchResultData, Integer> ranks = new IdentityHashMap<>();
+    for (final List<SearchResultData> areaResult : result.areaResults.values()) {
+      if (areaResult == null) {
+        continue;
+      }
+      int rank = 0;
+      for (final SearchResultData data : areaResult) {
+        if (data.getDataObject() == null) {
+          continue; // Marker for 'more entries'.
+        }
+        ranks.put(data, rank++);
+        entries.add(data);
+      }
+    }
+    entries.sort(Comparator.<SearchResultData>comparingInt(ranks::get)
+        .thenComparing(data -> data.getDataObject().getLastUpdate(),
+            Comparator.nullsLast(Comparator.<Date>reverseOrder())));
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    executor.shutdownNow();
+  }
+
   public List<SearchResultData> getEntries(final BaseSearchFilter filter, final Class clazz, final BaseDao baseDao) {
+    if (filter != null) {
+      updateUseModificationFilter(filter);
+    }
+    return getEntriesInternal(filter, clazz, baseDao);
+  }
+
+  private void updateUseModificationFilter(final BaseSearchFilter filter) {
+    if (filter.getModifiedByUserId() != null
+            || filter.getStartTimeOfModification() != null
+            || filter.getStopTimeOfModification() != null) {
+      filter.setUseModificationFilter(true);
+    } else {
+      filter.setUseModificationFilter(false);
+    }
+  }
+
+  private List<SearchResultData> getEntriesInternal(final BaseSearchFilter filter, final Class clazz, final BaseDao baseDao) {
     if (filter == null) {
       log.info("Filter or rows in filter is null (may be Search as redirect after login): " + filter);
       return null;
@@ -45,13 +314,6 @@ public class SearchDao {
       // User has in general no access to history entries of the given object type (clazz).
       return null;
     }
-    if (filter.getModifiedByUserId() != null
-            || filter.getStartTimeOfModification() != null
-            || filter.getStopTimeOfModification() != null) {
-      filter.setUseModificationFilter(true);
-    } else {
-      filter.setUseModificationFilter(false);
-    }
     final List<ExtendedBaseDO> list = baseDao.getListForSearchDao(filter);
     if (list == null) {
       // An error occured.
@@ -83,6 +83,8 @@ import java.util.zip.GZIPOutputStream;
  * Dumps and restores the data-base.
  * <p>
  * TODO RK delete this class.
+ * <p>
+ * For large data bases use {@link StreamingXmlDump} (constant memory usage, parallel restore).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -33,17 +33,21 @@ import de.micromata.genome.jpa.events.EmgrUpdateCopyFilterEvent;
 import de.micromata.genome.util.runtime.ClassUtils;
 import de.micromata.hibernate.history.delta.PropertyDelta;
 import de.micromata.hibernate.history.delta.SimplePropertyDelta;
+import org.hibernate.Hibernate;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.persistence.api.BaseDO;
 import org.projectforge.framework.persistence.api.ExtendedBaseDO;
 import org.projectforge.framework.persistence.api.ModificationStatus;
 import org.projectforge.framework.persistence.api.PFPersistancyBehavior;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.persistence.jpa.PfEmgr;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import java.io.Serializable;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
@@ -83,6 +87,132 @@ public class HistoryBaseDaoAdapter {
     return nret;
   }
 
+  /**
+   * Gets one page of the history entries of the given object (including the entries of its nested entities, such as
+   * the positions of an order), newest first. The paging is done by the data base (keyset by modifiedAt and pk), so
+   * only the entries of the requested page (and their attributes) are loaded.
+   *
+   * @param afterPk    The pk of the last entry of the previous page or null for getting the first page. An unknown pk
+   *                   or the pk of an entry of another object results in an empty page.
+   * @param maxResults The maximum number of entries of the page.
+   */
+  public static List<PfHistoryMasterDO> getHistoryEntries(BaseDO<?> ob, Long afterPk, int maxResults) {
+    PfEmgrFactory emf = ApplicationContextProvider.getApplicationContext().getBean(PfEmgrFactory.class);
+    return emf.runRoTrans((emgr) -> {
+      final EntityManager em = emgr.getEntityManager();
+      final TypedQuery<PfHistoryMasterDO> query = createHistoryQuery(em, ob, "select h", afterPk, PfHistoryMasterDO.class);
+      if (query == null) {
+        return Collections.emptyList();
+      }
+      return query.setMaxResults(maxResults).getResultList();
+    });
+  }
+
+  /**
+   * Gets the last changes of the given object (including its nested entities), newest first. The attributes
+   * (property changes) of the entries aren't loaded, use {@link #getHistoryEntry(BaseDO, Long)} for expanding an entry.
+   *
+   * @param maxResults The maximum number of entries.
+   */
+  public static List<HistoryEntrySummary> getLastHistoryEntrySummaries(BaseDO<?> ob, int maxResults) {
+    PfEmgrFactory emf = ApplicationContextProvider.getApplicationContext().getBean(PfEmgrFactory.class);
+    return emf.runRoTrans((emgr) -> {
+      final EntityManager em = emgr.getEntityManager();
+      final TypedQuery<HistoryEntrySummary> query = createHistoryQuery(em, ob,
+              "select new " + HistoryEntrySummary.class.getName()
+                      + "(h.pk, h.modifiedAt, h.modifiedBy, h.entityName, h.entityId, h.entityOpType)",
+              null, HistoryEntrySummary.class);
+      if (query == null) {
+        return Collections.emptyList();
+      }
+      return query.setMaxResults(maxResults).getResultList();
+    });
+  }
+
+  /**
+   * Gets a single history entry including its attributes.
+   *
+   * @param pk The pk of the history entry (see {@link HistoryEntrySummary#getPk()}).
+   * @return The history entry or null, if no such history entry of the given object (or its nested entities) exists.
+   */
+  public static PfHistoryMasterDO getHistoryEntry(BaseDO<?> ob, Long pk) {
+    PfEmgrFactory emf = ApplicationContextProvider.getApplicationContext().getBean(PfEmgrFactory.class);
+    return emf.runRoTrans((emgr) -> {
+      final PfHistoryMasterDO entry = emgr.getEntityManager().find(PfHistoryMasterDO.class, pk);
+      if (entry == null) {
+        return null;
+      }
+      final Set<Long> ids = getHistoryEntityIds(emgr.getEntityManager(), ob).get(entry.getEntityName());
+      return ids != null && ids.contains(entry.getEntityId()) ? entry : null;
+    });
+  }
+
+  /**
+   * @return The query or null, if the object isn't persisted (yet) or if the given afterPk doesn't exist (or belongs to
+   * another object).
+   */
+  private static <T> TypedQuery<T> createHistoryQuery(EntityManager em, BaseDO<?> ob, String select, Long afterPk,
+                                                      Class<T> resultClass) {
+    final Map<String, Set<Long>> entityIds = getHistoryEntityIds(em, ob);
+    if (entityIds.isEmpty()) {
+      return null;
+    }
+    final StringBuilder sb = new StringBuilder();
+    sb.append(select).append(" from ").append(PfHistoryMasterDO.class.getName()).append(" h where (");
+    for (int i = 0; i < entityIds.size(); i++) {
+      if (i > 0) {
+        sb.append(" or ");
+      }
+      sb.append("(h.entityName = :entityName").append(i).append(" and h.entityId in (:entityIds").append(i).append("))");
+    }
+    sb.append(")");
+    Date afterModifiedAt = null;
+    if (afterPk != null) {
+      final PfHistoryMasterDO afterEntry = em.find(PfHistoryMasterDO.class, afterPk);
+      final Set<Long> ids = afterEntry != null ? entityIds.get(afterEntry.getEntityName()) : null;
+      if (ids == null || !ids.contains(afterEntry.getEntityId())) {
+        return null; // Unknown entry or entry of another object, don't deliver the first page again.
+      }
+      afterModifiedAt = afterEntry.getModifiedAt();
+      if (afterModifiedAt == null) {
+        return null;
+      }
+      sb.append(" and (h.modifiedAt < :afterModifiedAt or (h.modifiedAt = :afterModifiedAt and h.pk < :afterPk))");
+    }
+    sb.append(" order by h.modifiedAt desc, h.pk desc");
+    final TypedQuery<T> query = em.createQuery(sb.toString(), resultClass);
+    int i = 0;
+    for (Map.Entry<String, Set<Long>> entry : entityIds.entrySet()) {
+      query.setParameter("entityName" + i, entry.getKey());
+      query.setParameter("entityIds" + i, entry.getValue());
+      ++i;
+    }
+    if (afterModifiedAt != null) {
+      query.setParameter("afterModifiedAt", afterModifiedAt);
+      query.setParameter("afterPk", afterPk);
+    }
+    return query;
+  }
+
+  /**
+   * @return The ids of the given object and its nested entities (such as order positions) by entity name.
+   */
+  private static Map<String, Set<Long>> getHistoryEntityIds(EntityManager em, BaseDO<?> ob) {
+    final Map<String, Set<Long>> result = new LinkedHashMap<>();
+    if (ob == null || ob.getId() == null) {
+      return result;
+    }
+    // Get the attached object, because nested entities may be lazy loaded:
+    final BaseDO<?> dbObj = (BaseDO<?>) em.find(Hibernate.getClass(ob), ob.getId());
+    for (BaseDO<?> entity : getSubEntitiesToHistoricizeDeep(dbObj != null ? dbObj : ob)) {
+      if (entity.getId() instanceof Number) {
+        result.computeIfAbsent(Hibernate.getClass(entity).getName(), key -> new HashSet<>())
+                .add(((Number) entity.getId()).longValue());
+      }
+    }
+    return result;
+  }
+
   public static PropertyDelta diffEntryToPropertyDelta(DiffEntry de) {
     //long begin = System.currentTimeMillis();
     SimplePropertyDelta ret = new SimplePropertyDelta(de.getPropertyName(), String.class, de.getOldValue(),
@@ -46,7 +46,8 @@ import java.util.Map;
 @Entity()
 @Table(name = "t_pf_history", indexes = {
     @Index(name = "ix_pf_history_ent", columnList = "ENTITY_ID,ENTITY_NAME"),
-    @Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT")
+    @Index(name = "ix_pf_history_mod", columnList = "MODIFIEDAT"),
+    @Index(name = "ix_pf_history_ent_mod", columnList = "ENTITY_ID,ENTITY_NAME,MODIFIEDAT,PK")
 })
 @Indexed()
 @ClassBridge(impl = HistoryMasterClassBridge.class)
@@ -0,0 +1,216 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import org.apache.commons.text.similarity.JaroWinklerSimilarity
+
+/**
+ * Detects doublets of addresses without comparing every address with each other: Each address is assigned to a few
+ * blocks (phonetic code of the name, e-mail domain, suffix of phone numbers) and is only compared with the last
+ * [windowSize] addresses of each of its blocks. Addresses with identical full names (the former doublet criteria) are
+ * always detected, independent of the window size.
+ *
+ * Addresses may be added one by one (e. g. while iterating a result list) or all at once by [detect].
+ */
+class AddressDoubletDetector @JvmOverloads constructor(
+  val threshold: Double = DEFAULT_THRESHOLD,
+  val windowSize: Int = DEFAULT_WINDOW_SIZE,
+) {
+  /**
+   * A detected doublet: [address] is a doublet of the previously added address [other].
+   * @param score The similarity of both addresses (0..1).
+   */
+  class Doublet(val address: AddressDO, val other: AddressDO, val score: Double)
+
+  private class Entry(val address: AddressDO, val normalizedFullname: String, val emails: Set<String>, val phones: Set<String>)
+
+  private val fullnameMap = mutableMapOf<String, MutableList<Entry>>()
+
+  private val blocks = mutableMapOf<String, ArrayDeque<Entry>>()
+
+  /**
+   * Adds the given address and returns all doublets of this address found among the already added addresses.
+   * Deleted addresses are ignored.
+   */
+  fun add(address: AddressDO): List<Doublet> {
+    if (address.isDeleted) {
+      return emptyList()
+    }
+    val entry = Entry(address, getNormalizedFullname(address), getEmails(address), getPhoneSuffixes(address))
+    val result = mutableListOf<Doublet>()
+    val compared = mutableSetOf<Entry>()
+    fullnameMap[entry.normalizedFullname]?.forEach { other ->
+      // Identical full names: always a doublet.
+      compared.add(other)
+      result.add(Doublet(address, other.address, 1.0))
+    }
+    fullnameMap.getOrPut(entry.normalizedFullname) { mutableListOf() }.add(entry)
+    getBlockingKeys(address, entry).forEach { key ->
+      val block = blocks.getOrPut(key) { ArrayDeque() }
+      block.forEach { other ->
+        if (compared.add(other)) {
+          val score = getScore(entry, other)
+          if (score >= threshold) {
+            result.add(Doublet(address, other.address, score))
+          }
+        }
+      }
+      block.addLast(entry)
+      if (block.size > windowSize) {
+        block.removeFirst()
+      }
+    }
+    return result
+  }
+
+  private fun getScore(entry: Entry, other: Entry): Double {
+    var score = jaroWinkler.apply(entry.normalizedFullname, other.normalizedFullname)
+    if (entry.emails.any { other.emails.contains(it) }) {
+      score += 0.1
+    }
+    if (entry.phones.any { other.phones.contains(it) }) {
+      score += 0.1
+    }
+    return minOf(score, 1.0)
+  }
+
+  private fun getBlockingKeys(address: AddressDO, entry: Entry): Set<String> {
+    val keys = mutableSetOf<String>()
+    val phonetic = getColognePhonetic(address.name)
+    if (phonetic.isNotEmpty()) {
+      keys.add("n:$phonetic")
+    }
+    entry.emails.forEach { email ->
+      keys.add("e:${email.substringAfter('@')}")
+    }
+    entry.phones.forEach { phone ->
+      keys.add("p:$phone")
+    }
+    return keys
+  }
+
+  companion object {
+    const val DEFAULT_THRESHOLD = 0.9
+
+    const val DEFAULT_WINDOW_SIZE = 50
+
+    /**
+     * Number of digits of phone numbers used for comparing (independent of country or area codes).
+     */
+    internal const val PHONE_SUFFIX_LENGTH = 7
+
+    private val jaroWinkler = JaroWinklerSimilarity()
+
+    /**
+     * Detects all doublets of the given addresses.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun detect(
+      addresses: Collection<AddressDO>,
+      threshold: Double = DEFAULT_THRESHOLD,
+      windowSize: Int = DEFAULT_WINDOW_SIZE,
+    ): List<Doublet> {
+      val detector = AddressDoubletDetector(threshold, windowSize)
+      return addresses.flatMap { detector.add(it) }
+    }
+
+    /**
+     * First name and name in lower case (trimmed).
+     */
+    @JvmStatic
+    fun getNormalizedFullname(address: AddressDO): String {
+      return "${address.firstName?.lowercase()?.trim() ?: ""}${address.name?.lowercase()?.trim() ?: ""}"
+    }
+
+    internal fun getEmails(address: AddressDO): Set<String> {
+      return listOfNotNull(address.email, address.privateEmail)
+        .map { it.trim().lowercase() }
+        .filter { it.contains('@') }
+        .toSet()
+    }
+
+    internal fun getPhoneSuffixes(address: AddressDO): Set<String> {
+      return listOfNotNull(address.businessPhone, address.mobilePhone, address.privatePhone, address.privateMobilePhone)
+        .map { phone -> phone.filter { it.isDigit() } }
+        .filter { it.length >= PHONE_SUFFIX_LENGTH }
+        .map { it.takeLast(PHONE_SUFFIX_LENGTH) }
+        .toSet()
+    }
+
+    /**
+     * Phonetic code of the given string (Kölner Phonetik), names sounding alike get the same code (e. g. Meier, Mayer
+     * and Maier).
+     */
+    internal fun getColognePhonetic(str: String?): String {
+      str ?: return ""
+      val chars = StringBuilder()
+      str.uppercase().forEach { ch ->
+        when (ch) {
+          'Ä' -> chars.append('A')
+          'Ö' -> chars.append('O')
+          'Ü' -> chars.append('U')
+          'ß' -> chars.append('S')
+          in 'A'..'Z' -> chars.append(ch)
+        }
+      }
+      val codes = StringBuilder()
+      for (i in chars.indices) {
+        val ch = chars[i]
+        val prev = if (i > 0) chars[i - 1] else ' '
+        val next = if (i + 1 < chars.length) chars[i + 1] else ' '
+        val code = when (ch) {
+          'A', 'E', 'I', 'J', 'O', 'U', 'Y' -> "0"
+          'H' -> ""
+          'B' -> "1"
+          'P' -> if (next == 'H') "3" else "1"
+          'D', 'T' -> if (next in "CSZ") "8" else "2"
+          'F', 'V', 'W' -> "3"
+          'G', 'K', 'Q' -> "4"
+          'C' -> if (i == 0) {
+            if (next in "AHKLOQRUX") "4" else "8"
+          } else {
+            if (next in "AHKOQUX" && prev !in "SZ") "4" else "8"
+          }
+          'X' -> if (prev in "CKQ") "8" else "48"
+          'L' -> "5"
+          'M', 'N' -> "6"
+          'R' -> "7"
+          'S', 'Z' -> "8"
+          else -> ""
+        }
+        code.forEach {
+          if (codes.isEmpty() || codes.last() != it) {
+            codes.append(it)
+          }
+        }
+      }
+      if (codes.isEmpty()) {
+        return ""
+      }
+      // Remove all zeros except at the beginning:
+      return "${codes[0]}${codes.substring(1).replace("0", "")}"
+    }
+  }
+}
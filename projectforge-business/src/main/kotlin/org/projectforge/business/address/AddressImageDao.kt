@@ -74,8 +74,7 @@ open class AddressImageDao {
      */
     open fun saveOrUpdate(addressId: Int, image: ByteArray): Boolean {
         val address = addressDao.getById(addressId)
-        addressDao.internalModifyImageData(address, true)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
+        addressDao.hasLoggedInUserUpdateAccess(address, address, true) // Throws an exception if the logged-in user has now access.
         val addressImage = get(address.id) ?: AddressImageDO()
         addressImage.address = address
         addressImage.image = image
@@ -91,6 +90,9 @@ open class AddressImageDao {
                 emgr.flush()
             }
         }
+        // Update the address after persisting the image, so the listeners of the address (e. g. vcard caches) get the new image:
+        addressDao.internalModifyImageData(address, true)
+        addressDao.update(address)
         log.info("New image for address ${address.id} (${address.fullName}) saved.")
         return true
     }
@@ -100,9 +102,8 @@ open class AddressImageDao {
      */
     open fun delete(addressId: Int): Boolean {
         val address = addressDao.getById(addressId)
-        addressDao.internalModifyImageData(address, false)
-        addressDao.update(address) // Throws an exception if the logged-in user has now access.
-        return emgrFactory.runInTrans { emgr ->
+        addressDao.hasLoggedInUserUpdateAccess(address, address, true) // Throws an exception if the logged-in user has now access.
+        val deleted = emgrFactory.runInTrans { emgr ->
             val addressImage = emgr.find(AddressImageDO::class.java, address.id)
             if (addressImage != null) {
                 emgr.deleteAttached(addressImage)
@@ -112,6 +113,10 @@ open class AddressImageDao {
                 false
             }
         }
+        // Update the address after deleting the image, so the listeners of the address (e. g. vcard caches) get no image:
+        addressDao.internalModifyImageData(address, false)
+        addressDao.update(address)
+        return deleted
     }
 
     private fun get(addressId: Int): AddressImageDO? {
@@ -0,0 +1,209 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address
+
+import mu.KotlinLogging
+import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.utils.NumberHelper
+import java.util.*
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Index of the phone numbers of all addresses for reverse lookups of incoming calls (used by
+ * [AddressDao.internalPhoneLookUp]). The phone numbers are normalized by [NumberHelper.extractPhonenumber] and indexed
+ * by their last [SUFFIX_LENGTH] digits, so a lookup needs no database access.
+ *
+ * The index is maintained on every modification of addresses and rebuilt once a day.
+ */
+class AddressPhoneIndex(private val addressDao: AddressDao) : AbstractCache(TICKS_PER_DAY),
+  BaseDOChangedListener<AddressDO> {
+  /**
+   * @param numbers The normalized phone numbers of the address.
+   */
+  class Entry(
+    val addressId: Int,
+    val fullName: String?,
+    val organization: String?,
+    val lastUpdate: Date?,
+    val numbers: List<String>,
+  )
+
+  /**
+   * The index itself, not thread safe.
+   */
+  internal class Index {
+    private val suffixMap = HashMap<String, MutableList<Entry>>()
+
+    private val entryMap = HashMap<Int, Entry>()
+
+    val size: Int
+      get() = entryMap.size
+
+    /**
+     * Adds the given entry or replaces an existing one with the same address id.
+     */
+    fun put(entry: Entry) {
+      remove(entry.addressId)
+      entryMap[entry.addressId] = entry
+      getSuffixes(entry).forEach { suffix ->
+        suffixMap.getOrPut(suffix) { ArrayList(1) }.add(entry)
+      }
+    }
+
+    fun remove(addressId: Int) {
+      val entry = entryMap.remove(addressId) ?: return
+      getSuffixes(entry).forEach { suffix ->
+        suffixMap[suffix]?.let { list ->
+          list.remove(entry)
+          if (list.isEmpty()) {
+            suffixMap.remove(suffix)
+          }
+        }
+      }
+    }
+
+    /**
+     * @param number The normalized phone number to search for.
+     * @return All entries with a phone number matching the given number (see [matches]). Null, if the given number is
+     * too short for the index.
+     */
+    fun lookup(number: String): List<Entry>? {
+      if (number.length < SUFFIX_LENGTH) {
+        return null
+      }
+      val candidates = suffixMap[number.takeLast(SUFFIX_LENGTH)] ?: return emptyList()
+      return candidates.filter { entry ->
+        entry.numbers.any { matches(it, number) }
+      }
+    }
+
+    private fun getSuffixes(entry: Entry): Set<String> {
+      return entry.numbers.filter { it.length >= SUFFIX_LENGTH }.mapTo(mutableSetOf()) { it.takeLast(SUFFIX_LENGTH) }
+    }
+  }
+
+  private var index = Index()
+
+  /**
+   * Not synchronized on this, because [refresh] holds that lock and modifications shouldn't wait for it.
+   */
+  private val indexLock = Any()
+
+  /**
+   * Addresses modified while refreshing (the refresh may have read them before), null values for deleted addresses.
+   * These modifications are applied to the new index afterwards.
+   */
+  private var modifiedWhileRefreshing: MutableMap<Int, AddressDO?>? = null
+
+  /**
+   * @param number The normalized phone number (see [NumberHelper.extractPhonenumber]) to search for.
+   * @return All matching entries, the newest first. Null, if the given number is too short for the index (less than
+   * [SUFFIX_LENGTH] digits).
+   */
+  fun lookup(number: String): List<Entry>? {
+    checkRefresh()
+    val result = synchronized(indexLock) {
+      index.lookup(number)
+    } ?: return null
+    return result.sortedByDescending { it.lastUpdate }
+  }
+
+  override fun afterSaveOrModify(changedObject: AddressDO, operationType: OperationType) {
+    val id = changedObject.id ?: return
+    val deleted = operationType == OperationType.DELETE || changedObject.isDeleted
+    synchronized(indexLock) {
+      update(index, id, if (deleted) null else changedObject)
+      modifiedWhileRefreshing?.put(id, if (deleted) null else changedObject)
+    }
+  }
+
+  /**
+   * This method will be called by CacheHelper and is synchronized via getData();
+   */
+  override fun refresh() {
+    log.info("Refreshing AddressPhoneIndex ...")
+    synchronized(indexLock) {
+      modifiedWhileRefreshing = mutableMapOf()
+    }
+    val newIndex = Index()
+    try {
+      addressDao.internalLoadAllNotDeleted().forEach { address ->
+        address.id?.let { newIndex.put(createEntry(it, address)) }
+      }
+      synchronized(indexLock) {
+        modifiedWhileRefreshing?.forEach { (id, address) -> update(newIndex, id, address) }
+        index = newIndex
+      }
+    } finally {
+      synchronized(indexLock) {
+        modifiedWhileRefreshing = null
+      }
+    }
+    log.info("Refreshing AddressPhoneIndex done (${newIndex.size} addresses).")
+  }
+
+  private fun update(index: Index, id: Int, address: AddressDO?) {
+    if (address == null) {
+      index.remove(id)
+    } else {
+      index.put(createEntry(id, address))
+    }
+  }
+
+  companion object {
+    /**
+     * Number of trailing digits used as key of the index. Shorter numbers aren't indexed.
+     */
+    const val SUFFIX_LENGTH = 6
+
+    /**
+     * Two normalized phone numbers match, if they are equal or if the shorter one is a local number (without country
+     * and area prefix, so not beginning with 0) and the longer one ends with it. Local numbers are numbers of the
+     * own country, so they never match foreign numbers (beginning with 00):
+     * "3167930" matches "05613167930", but neither "00445613167930" nor "05613167930" matches "00445613167930".
+     */
+    internal fun matches(number1: String, number2: String): Boolean {
+      if (number1 == number2) {
+        return true
+      }
+      val (shorter, longer) = if (number1.length < number2.length) number1 to number2 else number2 to number1
+      return !shorter.startsWith("0") && !longer.startsWith("00") && longer.endsWith(shorter)
+    }
+
+    internal fun createEntry(id: Int, address: AddressDO): Entry {
+      val numbers = listOf(
+        address.businessPhone,
+        address.mobilePhone,
+        address.fax,
+        address.privatePhone,
+        address.privateMobilePhone,
+      ).mapNotNull { NumberHelper.extractPhonenumber(it) }.filter { it.isNotEmpty() }.distinct()
+      return Entry(id, address.fullName, address.organization, address.lastUpdate, numbers)
+    }
+  }
+}
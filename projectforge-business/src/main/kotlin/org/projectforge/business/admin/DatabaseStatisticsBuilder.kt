@@ -28,13 +28,15 @@ import mu.KotlinLogging
 import org.projectforge.business.task.TaskDO
 import org.projectforge.business.task.TaskTree
 import org.projectforge.business.timesheet.TimesheetDO
-import org.projectforge.framework.persistence.api.HibernateUtils
+import org.projectforge.framework.persistence.history.entities.PfHistoryAttrDO
 import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import org.projectforge.framework.time.DateHelper
+import org.projectforge.framework.utils.NumberFormatter
 import org.projectforge.framework.utils.NumberHelper
 import org.springframework.beans.factory.annotation.Autowired
-import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
 import org.springframework.stereotype.Service
 import java.math.BigDecimal
 import java.math.RoundingMode
@@ -47,11 +49,13 @@ class DatabaseStatisticsBuilder : SystemsStatisticsBuilderInterface {
   @Autowired
   private lateinit var dataSource: DataSource
 
+  @Autowired
+  private lateinit var tableStatisticsCache: TableStatisticsCache
+
   @Autowired
   private lateinit var taskTree: TaskTree
 
   override fun addStatisticsEntries(stats: SystemStatisticsData) {
-    val jdbc = JdbcTemplate(dataSource)
     val totalDuration = taskTree.rootTaskNode.getDuration(taskTree, true)
     var totalPersonDays = BigDecimal(totalDuration).divide(DateHelper.SECONDS_PER_WORKING_DAY, 2, RoundingMode.HALF_UP)
     totalPersonDays = NumberHelper.setDefaultScale(totalPersonDays)!!
@@ -76,24 +80,26 @@ class DatabaseStatisticsBuilder : SystemsStatisticsBuilderInterface {
     }
     stats.add(
       "totalNumberOfTimesheets", "data base", "system.statistics.totalNumberOfTimesheets",
-      getTableCount(jdbc, TimesheetDO::class.java)
+      getTableCount(TimesheetDO::class.java)
     )
     stats.add("totalTimesheetDurations", "data base", "system.statistics.totalTimesheetDurations", totalPersonDays)
     stats.add(
       "totalNumberOfUsers", "data base", "system.statistics.totalNumberOfUsers",
-      getTableCount(jdbc, PFUserDO::class.java)
+      getTableCount(PFUserDO::class.java)
     )
     stats.add(
       "totalNumberOfTasks", "data base", "system.statistics.totalNumberOfTasks",
-      getTableCount(jdbc, TaskDO::class.java)
-    )
-    val totalNumberOfHistoryEntries = getTableCount(jdbc, PfHistoryMasterDO::class.java) + getTableCount(
-      jdbc,
-      PfHistoryMasterDO::class.java
+      getTableCount(TaskDO::class.java)
     )
+    val historyMasters = tableStatisticsCache.getCount(PfHistoryMasterDO::class.java)
+    val historyAttrs = tableStatisticsCache.getCount(PfHistoryAttrDO::class.java)
     stats.add(
       "totalNumberOfHistoryEntries", "data base", "system.statistics.totalNumberOfHistoryEntries",
-      totalNumberOfHistoryEntries
+      if (historyMasters == null || historyAttrs == null) {
+        NOT_YET_COUNTED
+      } else {
+        format(historyMasters.count + historyAttrs.count, historyMasters.estimated || historyAttrs.estimated)
+      }
     )
 
     stats.add(
@@ -102,12 +108,41 @@ class DatabaseStatisticsBuilder : SystemsStatisticsBuilderInterface {
     )
   }
 
-  private fun getTableCount(jdbc: JdbcTemplate, entity: Class<*>): Int {
-    return try {
-      jdbc.queryForObject("SELECT COUNT(*) FROM " + HibernateUtils.getDBTableName(entity), Int::class.java)!!
-    } catch (ex: Exception) {
-      log.error(ex.message, ex)
-      0
-    }
+  /**
+   * Counts the tables in the background, so the first request of the statistics doesn't wait for counting. Started
+   * after the start-up, when the data base dialect is known (for using the estimates, see [TableStatisticsCache]).
+   */
+  @EventListener(ApplicationReadyEvent::class)
+  fun warmUp() {
+    tableStatisticsCache.warmUp(
+      TimesheetDO::class.java,
+      PFUserDO::class.java,
+      TaskDO::class.java,
+      PfHistoryMasterDO::class.java,
+      PfHistoryAttrDO::class.java,
+    )
+  }
+
+  /**
+   * The counts are cached and may be estimated (see [TableStatisticsCache]).
+   */
+  private fun getTableCount(entity: Class<*>): String {
+    val tableCount = tableStatisticsCache.getCount(entity) ?: return NOT_YET_COUNTED
+    return format(tableCount.count, tableCount.estimated)
+  }
+
+  /**
+   * Estimated counts are marked with a leading '~'.
+   */
+  private fun format(count: Long, estimated: Boolean): String {
+    val value = NumberFormatter.format(count)
+    return if (estimated) "~$value" else value
+  }
+
+  companion object {
+    /**
+     * Shown for tables not yet counted (see [TableStatisticsCache]).
+     */
+    private const val NOT_YET_COUNTED = "?"
   }
 }
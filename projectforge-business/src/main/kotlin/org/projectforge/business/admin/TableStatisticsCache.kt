@@ -0,0 +1,172 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.admin
+
+import mu.KotlinLogging
+import org.projectforge.database.DatabaseSupport
+import org.projectforge.framework.persistence.api.HibernateUtils
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.annotation.PreDestroy
+import javax.sql.DataSource
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Caches the number of rows of data base tables for the system statistics, so large tables (e. g. history tables)
+ * aren't counted on every request. The estimates of the data base catalog are used, if available (see
+ * [DatabaseSupport.getTableRowCountEstimateStatement]), otherwise the rows are counted. The counting is always done in
+ * the background (never in the request), expired counts are refreshed and until then the former counts are returned.
+ * Use [warmUp] for counting tables at start-up.
+ */
+@Service
+class TableStatisticsCache {
+  class TableCount(
+    val count: Long,
+    /**
+     * True, if the count is an estimate of the data base catalog.
+     */
+    val estimated: Boolean,
+    val timestamp: Long = System.currentTimeMillis(),
+  )
+
+  @Autowired
+  private lateinit var dataSource: DataSource
+
+  /**
+   * Time to live of the counts in minutes.
+   */
+  @Value("\${projectforge.statistics.tableCountsTtlMinutes:60}")
+  internal var ttlMinutes: Long = 60
+
+  private val counts = ConcurrentHashMap<Class<*>, TableCount>()
+
+  /**
+   * All entities requested so far (counted and refreshed by [refreshInBackground]).
+   */
+  private val entities = ConcurrentHashMap.newKeySet<Class<*>>()
+
+  private val refreshInProgress = AtomicBoolean(false)
+
+  /**
+   * The data base support is set by ProjectForgeApp on [org.springframework.boot.context.event.ApplicationReadyEvent],
+   * so the dialect is determined here, if counting is requested earlier (otherwise the estimates wouldn't be used).
+   */
+  private val databaseSupport by lazy {
+    DatabaseSupport.getInstance() ?: DatabaseSupport(HibernateUtils.getDialect())
+  }
+
+  private val executor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+    Thread(runnable, "TableStatisticsCache").also { it.isDaemon = true }
+  }
+
+  /**
+   * @param entity The entity class of the table.
+   * @return The cached count or null, if the table isn't counted yet (the count is started in the background).
+   */
+  fun getCount(entity: Class<*>): TableCount? {
+    val tableCount = counts[entity]
+    if (tableCount == null) {
+      entities.add(entity)
+      refreshInBackground()
+    } else if (isExpired(tableCount)) {
+      refreshInBackground()
+    }
+    return tableCount
+  }
+
+  /**
+   * Counts the given tables in the background, e. g. at start-up.
+   */
+  fun warmUp(vararg entities: Class<*>) {
+    this.entities.addAll(entities)
+    refreshInBackground()
+  }
+
+  /**
+   * Counts all requested tables without or with expired count in the background, if no refresh is already running.
+   * @return false, if a refresh was already running.
+   */
+  fun refreshInBackground(): Boolean {
+    if (!refreshInProgress.compareAndSet(false, true)) {
+      return false
+    }
+    executor.submit {
+      try {
+        entities.forEach { entity ->
+          val tableCount = counts[entity]
+          if (tableCount == null || isExpired(tableCount)) {
+            // On failure the former count (if any) is kept and the table is counted again on the next refresh.
+            count(entity)?.let { counts[entity] = it }
+          }
+        }
+      } catch (ex: Exception) {
+        log.error("Error while refreshing table counts: ${ex.message}", ex)
+      } finally {
+        refreshInProgress.set(false)
+      }
+    }
+    return true
+  }
+
+  private fun isExpired(tableCount: TableCount): Boolean {
+    return System.currentTimeMillis() - tableCount.timestamp > ttlMinutes * 60_000
+  }
+
+  /**
+   * @return The count or null, if the table couldn't be counted.
+   */
+  internal fun count(entity: Class<*>): TableCount? {
+    val jdbc = JdbcTemplate(dataSource)
+    val table = HibernateUtils.getDBTableName(entity)
+    databaseSupport.tableRowCountEstimateStatement?.let { sql ->
+      try {
+        val estimate = jdbc.queryForList(sql, Long::class.java, table).firstOrNull()
+        // Estimate is -1 or 0, if the table wasn't analyzed yet:
+        if (estimate != null && estimate > 0) {
+          return TableCount(estimate, true)
+        }
+      } catch (ex: Exception) {
+        log.warn("Can't get estimated number of rows of table '$table', counting: ${ex.message}")
+      }
+    }
+    return try {
+      TableCount(jdbc.queryForObject("SELECT COUNT(*) FROM $table", Long::class.java)!!, false)
+    } catch (ex: Exception) {
+      log.error("Can't count rows of table '$table': ${ex.message}", ex)
+      null
+    }
+  }
+
+  @PreDestroy
+  fun shutdown() {
+    executor.shutdownNow()
+  }
+}
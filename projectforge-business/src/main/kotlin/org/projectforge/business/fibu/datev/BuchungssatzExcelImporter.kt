@@ -28,10 +28,13 @@ import de.micromata.merlin.excel.importer.ImportHelper
 import de.micromata.merlin.excel.importer.ImportLogger
 import de.micromata.merlin.excel.importer.ImportStorage
 import de.micromata.merlin.excel.importer.ImportedSheet
+import org.projectforge.business.fibu.KontoDO
 import org.projectforge.business.fibu.KontoDao
 import org.projectforge.business.fibu.KostFormatter
 import org.projectforge.business.fibu.kost.BuchungssatzDO
+import org.projectforge.business.fibu.kost.Kost1DO
 import org.projectforge.business.fibu.kost.Kost1Dao
+import org.projectforge.business.fibu.kost.Kost2DO
 import org.projectforge.business.fibu.kost.Kost2Dao
 import org.projectforge.framework.persistence.utils.MyImportedElement
 import org.projectforge.framework.time.PFDay
@@ -45,6 +48,11 @@ class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzD
             minimum = LocalDate.of(1990, 1, 1),
             maximum = LocalDate.of(2100, 12, 31))
 
+    // Lookups of this import: a DATEV export references only a few accounts and cost units, but each of them in many rows.
+    private val kontoCache = mutableMapOf<Int?, KontoDO?>()
+    private val kost1Cache = mutableMapOf<String?, Kost1DO?>()
+    private val kost2Cache = mutableMapOf<String?, Kost2DO?>()
+
     private enum class Cols(override val head: String, override vararg val aliases: String) : ExcelColumnName {
         SATZNR("SatzNr.", "Satz-Nr."),
         BETRAG("Betrag"),
@@ -151,28 +159,28 @@ class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzD
             satz.betrag = satz.betrag?.setScale(2, RoundingMode.HALF_UP)
             satz.setSH(excelSheet.getCellString(row, Cols.SH)!!)
             var kontoInt = excelSheet.getCellInt(row, Cols.KONTO)
-            var konto = kontoDao.getKonto(kontoInt)
+            var konto = getKonto(kontoInt)
             if (konto != null) {
                 satz.konto = konto
             } else {
                 element.putErrorProperty("konto", kontoInt!!)
             }
             kontoInt = excelSheet.getCellInt(row, Cols.GEGENKONTO)
-            konto = kontoDao.getKonto(kontoInt)
+            konto = getKonto(kontoInt)
             if (konto != null) {
                 satz.gegenKonto = konto
             } else {
                 element.putErrorProperty("gegenkonto", kontoInt)
             }
             var kostString = excelSheet.getCellString(row, Cols.KOST1)
-            val kost1 = kost1Dao.getKost1(kostString)
+            val kost1 = getKost1(kostString)
             if (kost1 != null) {
                 satz.kost1 = kost1
             } else {
                 element.putErrorProperty("kost1", kostString)
             }
             kostString = excelSheet.getCellString(row, Cols.KOST2)
-            val kost2 = kost2Dao.getKost2(kostString)
+            val kost2 = getKost2(kostString)
             if (kost2 != null) {
                 satz.kost2 = kost2
             } else {
@@ -189,6 +197,30 @@ class BuchungssatzExcelImporter(private val storage: ImportStorage<BuchungssatzD
         return importedSheet
     }
 
+    private fun getKonto(nummer: Int?): KontoDO? {
+        return lookup(kontoCache, nummer) { kontoDao.getKonto(it) }
+    }
+
+    private fun getKost1(kostString: String?): Kost1DO? {
+        return lookup(kost1Cache, kostString) { kost1Dao.getKost1(it) }
+    }
+
+    private fun getKost2(kostString: String?): Kost2DO? {
+        return lookup(kost2Cache, kostString) { kost2Dao.getKost2(it) }
+    }
+
+    /**
+     * Unknown keys are cached as well (as null), they result in the same validation error for every row.
+     */
+    private fun <K, V> lookup(cache: MutableMap<K, V?>, key: K, loader: (K) -> V?): V? {
+        if (cache.containsKey(key)) {
+            return cache[key]
+        }
+        val value = loader(key)
+        cache[key] = value
+        return value
+    }
+
     companion object {
         private val log = LoggerFactory.getLogger(BuchungssatzExcelImporter::class.java)
     }
@@ -47,7 +47,9 @@ import javax.persistence.*
 @WithHistory
 @NamedQueries(
         NamedQuery(name = BuchungssatzDO.FIND_BY_YEAR_MONTH_SATZNR,
-                query = "from BuchungssatzDO where year=:year and month=:month and satznr=:satznr"))
+                query = "from BuchungssatzDO where year=:year and month=:month and satznr=:satznr"),
+        NamedQuery(name = BuchungssatzDO.FIND_BY_YEAR_MONTH,
+                query = "select t from BuchungssatzDO t left join fetch t.konto left join fetch t.gegenKonto left join fetch t.kost1 left join fetch t.kost2 where t.year=:year and t.month=:month"))
 open class BuchungssatzDO : DefaultBaseDO(), Comparable<BuchungssatzDO> {
     /**
      * Jahr zu der die Buchung gehört.
@@ -232,5 +234,7 @@ open class BuchungssatzDO : DefaultBaseDO(), Comparable<BuchungssatzDO> {
         private val log = LoggerFactory.getLogger(BuchungssatzDO::class.java)
 
         internal const val FIND_BY_YEAR_MONTH_SATZNR = "BuchungssatzDO_FindByYearMonthSatznr"
+
+        internal const val FIND_BY_YEAR_MONTH = "BuchungssatzDO_FindByYearMonth"
     }
 }
@@ -80,6 +80,22 @@ open class BuchungssatzDao : BaseDao<BuchungssatzDO>(BuchungssatzDO::class.java)
                         .setParameter("satznr", satznr))
     }
 
+    /**
+     * All accounting records of the given month grouped by their satznr. Konto, Gegenkonto, Kost1 and Kost2 are fetched
+     * within the same query, so reconciling a whole month costs one query instead of one query per record.
+     * The satznr should be unique per month, but duplicates aren't dropped: the caller has to handle lists with more
+     * than one record (see [getBuchungssatz], which fails on them).
+     * @param month 1-January, ..., 12-December
+     */
+    open fun getBuchungssaetze(year: Int, month: Int): Map<Int, List<BuchungssatzDO>> {
+        return em.createNamedQuery(BuchungssatzDO.FIND_BY_YEAR_MONTH, BuchungssatzDO::class.java)
+                .setParameter("year", year)
+                .setParameter("month", month)
+                .resultList
+                .filter { it.satznr != null }
+                .groupBy { it.satznr!! }
+    }
+
     private fun validateTimeperiod(myFilter: BuchungssatzFilter): Boolean {
         val fromMonth = myFilter.fromMonth
         val fromYear = myFilter.fromYear
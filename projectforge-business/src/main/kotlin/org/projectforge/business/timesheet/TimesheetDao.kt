@@ -39,6 +39,7 @@ import org.projectforge.common.i18n.MessageParam
 import org.projectforge.common.i18n.UserException
 import org.projectforge.common.task.TaskStatus
 import org.projectforge.common.task.TimesheetBookingStatus
+import org.projectforge.database.DatabaseSupport
 import org.projectforge.framework.access.AccessException
 import org.projectforge.framework.access.AccessType
 import org.projectforge.framework.access.OperationType
@@ -69,6 +70,7 @@ import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Repository
 import java.util.*
+import javax.persistence.Tuple
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
@@ -209,6 +211,44 @@ open class TimesheetDao : BaseDao<TimesheetDO>(TimesheetDO::class.java) {
     return queryFilter
   }
 
+  /**
+   * Sums up the durations of all time sheets (not deleted) overlapping the given period grouped by user and task. No
+   * entities are loaded and no access checking is done, the caller has to check the access per (user, task).
+   * If the data base supports it (see [DatabaseSupport.getIntervalInSeconds]) the sums are calculated by the data base,
+   * otherwise only start and stop times are selected and summed up here.
+   * @return List of (user id, task id, duration in seconds).
+   */
+  open fun readDurationsByUserAndTask(startTime: Date, stopTime: Date): List<Array<Any>> {
+    val intervalInSeconds = DatabaseSupport.getInstance().getIntervalInSeconds("t.startTime", "t.stopTime")
+    if (intervalInSeconds != null) {
+      return em.createQuery(
+        "select t.user.id, t.task.id, $intervalInSeconds from TimesheetDO t where t.deleted=false"
+            + " and t.stopTime>=:startTime and t.startTime<=:stopTime group by t.user.id, t.task.id",
+        Tuple::class.java
+      )
+        .setParameter("startTime", startTime)
+        .setParameter("stopTime", stopTime)
+        .resultList
+        .map { arrayOf<Any>(it.get(0), it.get(1), (it.get(2) as Number?)?.toLong() ?: 0L) }
+    }
+    val result = em.createQuery(
+      "select t.user.id, t.task.id, t.startTime, t.stopTime from TimesheetDO t where t.deleted=false"
+          + " and t.stopTime>=:startTime and t.startTime<=:stopTime",
+      Tuple::class.java
+    )
+      .setParameter("startTime", startTime)
+      .setParameter("stopTime", stopTime)
+      .resultList
+    // Key is (user id, task id), the durations of each time sheet are truncated to seconds as TimesheetDO.getDuration()/1000.
+    val durations = mutableMapOf<Pair<Int, Int>, Long>()
+    for (tuple in result) {
+      val key = Pair(tuple.get(0) as Int, tuple.get(1) as Int)
+      val duration = maxOf(0L, (tuple.get(3) as Date).time - (tuple.get(2) as Date).time) / 1000
+      durations[key] = (durations[key] ?: 0L) + duration
+    }
+    return durations.map { arrayOf<Any>(it.key.first, it.key.second, it.value) }
+  }
+
   /**
    * @see org.projectforge.framework.persistence.api.BaseDao.getListForSearchDao
    */
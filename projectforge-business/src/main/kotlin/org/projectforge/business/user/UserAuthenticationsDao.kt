@@ -28,6 +28,7 @@ import org.apache.commons.lang3.Validate
 import org.projectforge.business.configuration.ConfigurationService
 import org.projectforge.framework.access.AccessException
 import org.projectforge.framework.access.OperationType
+import org.projectforge.framework.persistence.api.BaseDOChangedListener
 import org.projectforge.framework.persistence.api.BaseDao
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
 import org.projectforge.framework.persistence.user.entities.PFUserDO
@@ -60,10 +61,24 @@ open class UserAuthenticationsDao : BaseDao<UserAuthenticationsDO>(UserAuthentic
 
   private lateinit var authenticationTokenEncryptionKey: String
 
+  internal val tokenCache = UserTokenCache()
+
+  /**
+   * Removes the verified tokens of deactivated and deleted users from the token cache.
+   */
+  internal class UserChangeListener(val tokenCache: UserTokenCache) : BaseDOChangedListener<PFUserDO> {
+    override fun afterSaveOrModify(changedObject: PFUserDO, operationType: OperationType) {
+      if (!changedObject.hasSystemAccess()) {
+        changedObject.id?.let { tokenCache.invalidate(it) }
+      }
+    }
+  }
+
   @PostConstruct
   private fun postContruct() {
     //authenticationTokenEncryptionKey = StringUtils.rightPad(configurationService.securityConfig.authenticationTokenEncryptionKey, 32, "x")
     authenticationTokenEncryptionKey = configurationService.securityConfig.authenticationTokenEncryptionKey
+    userDao.register(UserChangeListener(tokenCache))
   }
 
   /**
@@ -115,11 +130,16 @@ open class UserAuthenticationsDao : BaseDao<UserAuthenticationsDO>(UserAuthentic
     return ensureAuthentications(userId)
   }
 
+  /**
+   * Successfully verified tokens are cached (see [UserTokenCache]), so repeated calls within the ttl of the cache don't
+   * need any data base query.
+   */
   open fun getUserByToken(userId: Int, type: UserTokenType, token: String?): PFUserDO? {
     if (token.isNullOrBlank() || token.trim().length < 10) {
       log.warn("Token for user $userId too short, aborting.")
       return null
     }
+    getCachedUser("id:$userId", type, token)?.let { return it }
     val queryName = when (type) {
       UserTokenType.CALENDAR_REST -> UserAuthenticationsDO.FIND_USER_BY_USERID_AND_CALENDAR_TOKEN
       UserTokenType.DAV_TOKEN -> UserAuthenticationsDO.FIND_USER_BY_USERID_AND_DAV_TOKEN
@@ -140,14 +160,20 @@ open class UserAuthenticationsDao : BaseDao<UserAuthenticationsDO>(UserAuthentic
       log.warn("Deleted user '${user.username}' tried to login (via token '$type').")
       return null
     }
+    user?.id?.let { tokenCache.put("id:$userId", type, token, it) }
     return user
   }
 
+  /**
+   * Successfully verified tokens are cached (see [UserTokenCache]), so repeated calls within the ttl of the cache don't
+   * need any data base query.
+   */
   open fun getUserByToken(username: String, type: UserTokenType, token: String?): PFUserDO? {
     if (token.isNullOrBlank() || token.trim().length < 10) {
       log.warn("Token for user '$username' too short, aborting.")
       return null
     }
+    getCachedUser("name:$username", type, token)?.let { return it }
     val queryName = when (type) {
       UserTokenType.CALENDAR_REST -> UserAuthenticationsDO.FIND_USER_BY_USERNAME_AND_CALENDAR_TOKEN
       UserTokenType.DAV_TOKEN -> UserAuthenticationsDO.FIND_USER_BY_USERNAME_AND_DAV_TOKEN
@@ -168,9 +194,23 @@ open class UserAuthenticationsDao : BaseDao<UserAuthenticationsDO>(UserAuthentic
       log.warn("Deleted user '${user.username}' tried to login (via token '$type').")
       return null
     }
+    user?.id?.let { tokenCache.put("name:$username", type, token, it) }
     return user
   }
 
+  /**
+   * @return The user of the cached token, if the token was verified before and the user has still system access.
+   */
+  private fun getCachedUser(user: String, type: UserTokenType, token: String): PFUserDO? {
+    val userId = tokenCache.getUserId(user, type, token) ?: return null
+    val cachedUser = userGroupCache.getUser(userId)
+    if (cachedUser == null || !cachedUser.hasSystemAccess()) {
+      tokenCache.invalidate(userId)
+      return null
+    }
+    return cachedUser
+  }
+
   /**
    * Returns the user's authentication token if exists (must be not blank with a size >= 10). If not, a new token key
    * will be generated.
@@ -285,6 +325,7 @@ open class UserAuthenticationsDao : BaseDao<UserAuthenticationsDO>(UserAuthentic
     }
     authentications.setToken(type, createEncryptedAuthenticationToken(type), true)
     update(authentications)
+    tokenCache.invalidate(userId, type)
     log.info("Authentication token '$type' renewed for user: $userId")
   }
 
@@ -83,10 +83,14 @@ open class UserGroupCache() : AbstractCache() {
   private var groupMap: Map<Int, GroupDO>? = null
 
   /**
-   * List of all rights (value) defined for the user ids (key).
+   * Users (by id, username and full name) and rights. Built by [refresh] and [updateUser] and replaced as a whole by
+   * a single volatile write, so readers always see a consistent state.
    */
-  private var rightMap: Map<Int, List<UserRightDO>>? = null
-  private var userMap: MutableMap<Int, PFUserDO?>? = null
+  @Volatile
+  private var indexes: Indexes? = null
+
+  @Volatile
+  private var refreshCounter = 0L
 
   /**
    * Key is user id.
@@ -124,18 +128,16 @@ open class UserGroupCache() : AbstractCache() {
     if (username.isBlank()) {
       return null
     }
-    // checkRefresh(); Done by getUserMap().
-    val user = getUserMap()?.values?.find { username == it?.username }
-    return user
+    checkRefresh()
+    return indexes?.usernameMap?.get(username)
   }
 
   fun getUserByFullname(fullname: String): PFUserDO? {
     if (fullname.isBlank()) {
       return null
     }
-    // checkRefresh(); Done by getUserMap().
-    val user = getUserMap()?.values?.find { fullname == it?.getFullname() }
-    return user
+    checkRefresh()
+    return indexes?.fullnameMap?.get(fullname)
   }
 
   /**
@@ -156,7 +158,7 @@ open class UserGroupCache() : AbstractCache() {
    * Only for internal use.
    */
   fun internalGetNumberOfUsers(): Int {
-    return if (userMap == null) {
+    return if (indexes == null) {
       0
     } else { // checkRefresh(); Done by getUserMap().
       getUserMap()!!.size
@@ -320,14 +322,14 @@ open class UserGroupCache() : AbstractCache() {
   }
 
   fun getUserRight(userId: Int?, rightId: UserRightId): UserRightDO? {
-    val rights = getUserRights(userId) ?: return null
-    return rights.find { it.rightIdString == rightId.id }
+    checkRefresh()
+    return indexes?.userRightIdMap?.get(userId)?.get(rightId.id)
   }
 
   private val userRightMap: Map<Int, List<UserRightDO>>?
     get() {
       checkRefresh()
-      return rightMap
+      return indexes?.rightMap
     }
 
   /**
@@ -375,15 +377,31 @@ open class UserGroupCache() : AbstractCache() {
   }
 
   /**
-   * Should be called after user modifications.
+   * Should be called after user modifications. Synchronized with [refresh] (called by [checkRefresh]), so a concurrent
+   * refresh can't overwrite this modification or vice versa.
    */
+  @Synchronized
   fun updateUser(user: PFUserDO) {
-    getUserMap()!![user.id] = user
+    checkRefresh()
+    val current = indexes ?: return
+    val uMap = HashMap(current.userMap)
+    uMap[user.id] = user
+    indexes = Indexes(uMap, current.rightMap) // Username or full name may be changed.
   }
 
-  private fun getUserMap(): MutableMap<Int, PFUserDO?>? {
+  /**
+   * Incremented on every refresh (e. g. after modifications of groups or user rights). Usable as part of cache keys
+   * of data depending on the groups and rights of users, such as the user's menu.
+   */
+  val version: Long
+    get() {
+      checkRefresh()
+      return refreshCounter
+    }
+
+  private fun getUserMap(): Map<Int, PFUserDO?>? {
     checkRefresh()
-    return userMap
+    return indexes?.userMap
   }
 
   /**
@@ -459,7 +477,6 @@ open class UserGroupCache() : AbstractCache() {
         }
       }
     }
-    userMap = uMap
     groupMap = gMap
     val nEmployeeMap = mutableMapOf<Int?, EmployeeDO>()
     employeeDao.internalLoadAll().forEach { employeeDO ->
@@ -507,7 +524,8 @@ open class UserGroupCache() : AbstractCache() {
         list!!.add(right)
       }
     }
-    rightMap = rMap
+    indexes = Indexes(uMap, rMap)
+    ++refreshCounter
     log.info("Initializing of UserGroupCache done. Found ${uMap.size} entries.")
     Login.getInstance().afterUserGroupCacheRefresh(users, groups)
     val end = System.currentTimeMillis()
@@ -517,6 +535,45 @@ open class UserGroupCache() : AbstractCache() {
     }.start()
   }
 
+  /**
+   * Immutable lookup tables, built once per refresh or user update. The given maps mustn't be modified afterwards.
+   * @param userMap All users (value) by user id (key).
+   * @param rightMap List of all rights (value) defined for the user ids (key).
+   */
+  internal class Indexes(val userMap: Map<Int, PFUserDO?>, val rightMap: Map<Int, List<UserRightDO>>) {
+    /**
+     * Users by username.
+     */
+    val usernameMap: Map<String, PFUserDO>
+
+    /**
+     * Users by full name (first user wins, if full names aren't unique).
+     */
+    val fullnameMap: Map<String, PFUserDO>
+
+    /**
+     * Rights of the users by user id and right id.
+     */
+    val userRightIdMap: Map<Int, Map<String, UserRightDO>>
+
+    init {
+      val uMap = HashMap<String, PFUserDO>()
+      val fMap = HashMap<String, PFUserDO>()
+      userMap.values.forEach { user ->
+        user ?: return@forEach
+        user.username?.let { uMap.putIfAbsent(it, user) }
+        fMap.putIfAbsent(user.getFullname(), user)
+      }
+      usernameMap = uMap
+      fullnameMap = fMap
+      userRightIdMap = rightMap.mapValues { (_, rights) ->
+        val map = HashMap<String, UserRightDO>()
+        rights.forEach { right -> right.rightIdString?.let { map.putIfAbsent(it, right) } }
+        map
+      }
+    }
+  }
+
   @Synchronized
   fun internalSetAdminUser(adminUser: PFUserDO) {
     checkRefresh()
@@ -0,0 +1,111 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.user
+
+import java.security.SecureRandom
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Cache of successfully verified authentication tokens. CalDAV/CardDAV clients and calendar subscriptions are polling
+ * frequently, so the encryption of the token and the data base query is only done once per [ttlMillis].
+ *
+ * The tokens itself aren't stored, only a keyed hash (HMAC with a random key created on start-up) of user, token type
+ * and token. The number of entries is limited by [maxSize] (least recently used entries are removed first).
+ */
+internal class UserTokenCache(
+  val maxSize: Int = DEFAULT_MAX_SIZE,
+  val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+) {
+  private class TokenEntry(val userId: Int, val type: UserTokenType, val expires: Long)
+
+  private val hmacKey = SecretKeySpec(ByteArray(32).also { SecureRandom().nextBytes(it) }, HMAC_ALGORITHM)
+
+  private val entries = object : LinkedHashMap<String, TokenEntry>(16, 0.75f, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, TokenEntry>?): Boolean {
+      return size > maxSize
+    }
+  }
+
+  val size: Int
+    get() = synchronized(entries) { entries.size }
+
+  /**
+   * @param user Identifier of the user (id or username), given by the client.
+   * @return The id of the user, if the given token was successfully verified before and isn't expired or invalidated.
+   */
+  fun getUserId(user: String, type: UserTokenType, token: String): Int? {
+    val key = getKey(user, type, token)
+    synchronized(entries) {
+      val entry = entries[key] ?: return null
+      if (entry.expires < System.currentTimeMillis()) {
+        entries.remove(key)
+        return null
+      }
+      return entry.userId
+    }
+  }
+
+  /**
+   * Registers a successfully verified token.
+   * @param user Identifier of the user (id or username), given by the client.
+   */
+  fun put(user: String, type: UserTokenType, token: String, userId: Int) {
+    val entry = TokenEntry(userId, type, System.currentTimeMillis() + ttlMillis)
+    val key = getKey(user, type, token)
+    synchronized(entries) {
+      entries[key] = entry
+    }
+  }
+
+  /**
+   * Removes all entries of the given user (e. g. after renewal of the token or deactivation of the user).
+   * @param type If given, only the entries of this token type are removed.
+   */
+  fun invalidate(userId: Int, type: UserTokenType? = null) {
+    synchronized(entries) {
+      entries.values.removeIf { it.userId == userId && (type == null || it.type == type) }
+    }
+  }
+
+  fun clear() {
+    synchronized(entries) {
+      entries.clear()
+    }
+  }
+
+  private fun getKey(user: String, type: UserTokenType, token: String): String {
+    val mac = Mac.getInstance(HMAC_ALGORITHM)
+    mac.init(hmacKey)
+    return mac.doFinal("$user\n$type\n$token".toByteArray()).joinToString("") { "%02x".format(it) }
+  }
+
+  companion object {
+    const val DEFAULT_MAX_SIZE = 1000
+
+    const val DEFAULT_TTL_MILLIS = 10 * 60 * 1000L // 10 minutes
+
+    private const val HMAC_ALGORITHM = "HmacSHA256"
+  }
+}
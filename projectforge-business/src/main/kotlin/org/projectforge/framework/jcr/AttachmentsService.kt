@@ -71,6 +71,11 @@ open class AttachmentsService {
   @Autowired
   private lateinit var userGroupCache: UserGroupCache
 
+  /**
+   * Striped locks for serializing the updates of the attachments info of data objects.
+   */
+  private val updateLocks = Array(UPDATE_LOCK_STRIPES) { Any() }
+
   /**
    * @param path Unique path of data object.
    * @param id Id of data object.
@@ -378,7 +383,8 @@ open class AttachmentsService {
       baseDao,
       obj,
       AttachmentsEventType.UPLOAD,
-      fileInfo,
+      listOf(fileInfo),
+      listOf(attachment),
       subPath = subPath,
       lastUserAction = "Attachment uploaded: '${fileInfo.fileName}'.",
       userString = userString
@@ -386,6 +392,81 @@ open class AttachmentsService {
     return attachment
   }
 
+  /**
+   * Uploads several files at once. In contrast to calling [addAttachment] for each file, the data object is updated
+   * only once (attachments info, history and search index). If the upload of a file fails, the attachments info is
+   * recalculated for the files uploaded so far and the exception is thrown.
+   * @param path Unique path of data object.
+   * @param files The file infos and contents of the files to upload.
+   * @param password Optional password for encryption. The password will not be stored in any kind!
+   */
+  @JvmOverloads
+  open fun addAttachments(
+    path: String,
+    files: List<Pair<FileInfo, InputStream>>,
+    baseDao: BaseDao<out ExtendedBaseDO<Int>>,
+    obj: ExtendedBaseDO<Int>,
+    accessChecker: AttachmentsAccessChecker,
+    subPath: String? = null,
+    password: String? = null,
+    /**
+     * Only for external users. Otherwise logged in user will be assumed.
+     */
+    userString: String? = null,
+    allowDuplicateFiles: Boolean = false,
+  ): List<Attachment> {
+    if (files.isEmpty()) {
+      return emptyList()
+    }
+    accessChecker.checkUploadAccess(ThreadLocalUserContext.user, path = path, id = obj.id, subPath = subPath)
+    if (!allowDuplicateFiles) {
+      val fileNames = getAttachments(path, obj.id, null, subPath)?.map { it.name }?.toMutableSet() ?: mutableSetOf()
+      files.forEach { (fileInfo, _) ->
+        if (!fileNames.add(fileInfo.fileName)) {
+          log.warn { "Can't upload file '${fileInfo.fileName}' of size ${FormatterUtils.formatBytes(fileInfo.size)}. A file with same name does already exist." }
+          throw UserException("file.upload.error.fileAlreadyExists", fileInfo.fileName)
+        }
+      }
+    }
+    val attachments = mutableListOf<Attachment>()
+    try {
+      files.forEach { (fileInfo, inputStream) ->
+        attachments.add(
+          addAttachment(path, obj.id, fileInfo, inputStream, false, accessChecker, subPath, password, userString, obj)
+        )
+      }
+    } catch (ex: Exception) {
+      if (attachments.isNotEmpty()) {
+        // Some files are already stored, so recalculate the attachments info by listing all attachments:
+        val uploadedFiles = files.take(attachments.size).map { it.first }
+        updateAttachmentsInfo(
+          path,
+          baseDao,
+          obj,
+          AttachmentsEventType.UPLOAD,
+          uploadedFiles,
+          null,
+          subPath = subPath,
+          lastUserAction = "Attachments uploaded: ${uploadedFiles.joinToString { "'${it.fileName}'" }}.",
+          userString = userString
+        )
+      }
+      throw ex
+    }
+    updateAttachmentsInfo(
+      path,
+      baseDao,
+      obj,
+      AttachmentsEventType.UPLOAD,
+      files.map { it.first },
+      attachments,
+      subPath = subPath,
+      lastUserAction = "Attachments uploaded: ${files.joinToString { "'${it.first.fileName}'" }}.",
+      userString = userString
+    )
+    return attachments
+  }
+
   /**
    * @param path Unique path of data object.
    * @param id Id of data object.
@@ -460,7 +541,8 @@ open class AttachmentsService {
         baseDao,
         obj,
         AttachmentsEventType.DELETE,
-        fileObject,
+        listOf(fileObject),
+        listOf(Attachment(fileObject)),
         subPath = subPath,
         lastUserAction = "Attachment '${fileObject.fileName}' deleted.",
         userString = userString
@@ -552,7 +634,8 @@ open class AttachmentsService {
         baseDao,
         obj,
         AttachmentsEventType.MODIFICATION,
-        fileObject,
+        listOf(fileObject),
+        listOf(Attachment(fileObject)),
         subPath = subPath,
         lastUserAction = "Attachment infos changed of file '${result.fileName}': ${fileNameChanged ?: " "}${descriptionChanged ?: ""}".trim()
       )
@@ -568,12 +651,20 @@ open class AttachmentsService {
     return "$path/$id"
   }
 
+  /**
+   * Updates the attachments info (names, ids, counter and size) of the data object. The changes of the given files are
+   * applied to the current attachments info, only if this isn't possible, all attachments are listed (see
+   * [applyChanges]). Updates of the same data object are serialized, so concurrent changes aren't lost.
+   * @param fileInfos The file infos for the [AttachmentsEventListener].
+   * @param changes The uploaded, deleted or modified attachments or null, if all attachments should be listed.
+   */
   private fun updateAttachmentsInfo(
     path: String,
     baseDao: BaseDao<out ExtendedBaseDO<Int>>,
     obj: ExtendedBaseDO<Int>,
     event: AttachmentsEventType,
-    fileInfo: FileInfo,
+    fileInfos: List<FileInfo>,
+    changes: List<Attachment>?,
     subPath: String? = null,
     lastUserAction: String? = null,
     /**
@@ -584,33 +675,58 @@ open class AttachmentsService {
     if (obj !is AttachmentsInfo) {
       return // Nothing to do.
     }
+    synchronized(getUpdateLock(path, obj.id)) {
+      updateAttachmentsInfoSynchronized(
+        path, baseDao, obj, event, fileInfos, changes, subPath, lastUserAction, userString
+      )
+    }
+  }
+
+  private fun updateAttachmentsInfoSynchronized(
+    path: String,
+    baseDao: BaseDao<out ExtendedBaseDO<Int>>,
+    obj: ExtendedBaseDO<Int>,
+    event: AttachmentsEventType,
+    fileInfos: List<FileInfo>,
+    changes: List<Attachment>?,
+    subPath: String?,
+    lastUserAction: String?,
+    userString: String?,
+  ) {
     val dbObj = baseDao.internalGetById(obj.id)
     if (dbObj is AttachmentsInfo) {
       // TODO: multiple subPath support (all attachments of all lists should be used for indexing).
-      if (subPath != null && subPath != DEFAULT_NODE) {
+      val defaultNode = subPath == null || subPath == DEFAULT_NODE
+      if (!defaultNode) {
         log.warn("********* Support of multiple lists in attachments not yet supported by search index.")
       }
-      val attachments = getAttachments(path, obj.id, null)//, subPath)
-      if (attachments != null) {
-        dbObj.attachmentsNames = attachments.joinToString(separator = " ") { "${it.name}" }
-        dbObj.attachmentsIds = attachments.joinToString(separator = " ") { "${it.fileId}" }
-        dbObj.attachmentsCounter = attachments.size
-        dbObj.attachmentsSize = attachments.sumByLong { it.size ?: 0 }
-        if (fileInfo.fileName.isNullOrBlank() && fileInfo is FileObject) {
-          // Try to get filename from attachments
-          fileInfo.fileName = attachments.find { it.fileId == fileInfo.fileId }?.name
+      if (!defaultNode || changes == null || !applyChanges(dbObj, event, changes)) {
+        val attachments = getAttachments(path, obj.id, null)//, subPath)
+        if (attachments != null) {
+          dbObj.attachmentsNames = attachments.joinToString(separator = " ") { "${it.name}" }
+          dbObj.attachmentsIds = attachments.joinToString(separator = " ") { "${it.fileId}" }
+          dbObj.attachmentsCounter = attachments.size
+          dbObj.attachmentsSize = attachments.sumByLong { it.size ?: 0 }
+          fileInfos.forEach { fileInfo ->
+            if (fileInfo.fileName.isNullOrBlank() && fileInfo is FileObject) {
+              // Try to get filename from attachments
+              fileInfo.fileName = attachments.find { it.fileId == fileInfo.fileId }?.name
+            }
+          }
+        } else {
+          dbObj.attachmentsNames = null
+          dbObj.attachmentsIds = null
+          dbObj.attachmentsCounter = null
+          dbObj.attachmentsSize = null
         }
-      } else {
-        dbObj.attachmentsNames = null
-        dbObj.attachmentsIds = null
-        dbObj.attachmentsCounter = null
-        dbObj.attachmentsSize = null
       }
       if (dbObj is DefaultBaseDO && lastUserAction != null) {
         dbObj.attachmentsLastUserAction = lastUserAction
       }
       if (baseDao is AttachmentsEventListener) {
-        baseDao.onAttachmentEvent(event, fileInfo, dbObj, ThreadLocalUserContext.user, userString)
+        fileInfos.forEach { fileInfo ->
+          baseDao.onAttachmentEvent(event, fileInfo, dbObj, ThreadLocalUserContext.user, userString)
+        }
       }
       // Without access checking, because there is no logged-in user or access checking is already done by caller.
       baseDao.internalUpdateAny(dbObj)
@@ -624,6 +740,10 @@ open class AttachmentsService {
     }
   }
 
+  private fun getUpdateLock(path: String, id: Any?): Any {
+    return updateLocks[Math.floorMod(getPath(path, id ?: "").hashCode(), updateLocks.size)]
+  }
+
   private fun asAttachment(fileObject: FileObject): Attachment {
     val attachment = Attachment(fileObject)
     NumberHelper.parseInteger(fileObject.createdByUser, false)?.let {
@@ -655,5 +775,77 @@ open class AttachmentsService {
   companion object {
     const val DEFAULT_NODE = "attachments"
     const val MAX_DEFAULT_FILE_SIZE_SPRING_PROPERTY = "projectforge.jcr.maxDefaultFileSize"
+
+    private const val UPDATE_LOCK_STRIPES = 64
+
+    /**
+     * Applies the uploaded, deleted or renamed attachments to the attachments info without listing all attachments.
+     * Uploaded attachments are the newest ones, so they're prepended (attachments are ordered by creation date,
+     * newest first).
+     * @return false, if the changes can't be applied, because the current attachments info is unknown or inconsistent
+     * or the names of the attachments are ambiguous (names containing spaces). The attachments info is left unmodified
+     * in this case and must be recalculated by listing all attachments.
+     */
+    internal fun applyChanges(info: AttachmentsInfo, event: AttachmentsEventType, changes: List<Attachment>): Boolean {
+      val counter = info.attachmentsCounter ?: return false
+      var size = info.attachmentsSize ?: return false
+      val ids = split(info.attachmentsIds)
+      if (ids.size != counter || changes.any { it.fileId.isNullOrBlank() || it.name.isNullOrBlank() }) {
+        return false
+      }
+      // Names are only separable, if no name contains a space:
+      val names = split(info.attachmentsNames).takeIf {
+        it.size == counter && it.joinToString(separator = " ") == (info.attachmentsNames ?: "")
+      }
+      when (event) {
+        AttachmentsEventType.UPLOAD -> {
+          var attachmentsNames = info.attachmentsNames ?: ""
+          changes.forEach { attachment ->
+            if (ids.contains(attachment.fileId)) {
+              return false // Inconsistent: uploaded attachment is already part of the attachments info.
+            }
+            ids.add(0, attachment.fileId!!)
+            attachmentsNames = if (attachmentsNames.isEmpty()) attachment.name!! else "${attachment.name} $attachmentsNames"
+            size += attachment.size ?: 0
+          }
+          info.attachmentsNames = attachmentsNames
+        }
+        AttachmentsEventType.DELETE -> {
+          names ?: return false
+          changes.forEach { attachment ->
+            val index = ids.indexOf(attachment.fileId)
+            if (index < 0) {
+              return false
+            }
+            ids.removeAt(index)
+            names.removeAt(index)
+            size -= attachment.size ?: 0
+          }
+          info.attachmentsNames = names.joinToString(separator = " ")
+        }
+        AttachmentsEventType.MODIFICATION -> {
+          changes.forEach { attachment ->
+            val index = ids.indexOf(attachment.fileId)
+            if (index < 0) {
+              return false
+            }
+            if (names?.get(index) != attachment.name) {
+              names ?: return false
+              names[index] = attachment.name!!
+            }
+          }
+          names?.let { info.attachmentsNames = it.joinToString(separator = " ") }
+        }
+        else -> return true // Nothing to do.
+      }
+      info.attachmentsIds = ids.joinToString(separator = " ")
+      info.attachmentsCounter = ids.size
+      info.attachmentsSize = size
+      return true
+    }
+
+    private fun split(value: String?): MutableList<String> {
+      return value?.split(' ')?.filter { it.isNotEmpty() }?.toMutableList() ?: mutableListOf()
+    }
   }
 }
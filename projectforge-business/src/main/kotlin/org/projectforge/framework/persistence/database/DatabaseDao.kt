@@ -82,11 +82,29 @@ open class DatabaseDao {
         }
     }
 
+    /**
+     * Re-indexes the objects of the given settings (e. g. an id range).
+     * @return The number of re-indexed objects or null, if another re-index job is running.
+     */
+    fun <T> reindexPartly(clazz: Class<T>, settings: ReindexSettings): Long? {
+        if (currentReindexRun != null) {
+            return null
+        }
+        synchronized(this) {
+            try {
+                currentReindexRun = Date()
+                return reindexObjects(clazz, settings) as Long
+            } finally {
+                currentReindexRun = null
+            }
+        }
+    }
+
     /**
      * @param clazz
      */
     private fun <T> reindex(clazz: Class<T>, settings: ReindexSettings) {
-        if (settings.lastNEntries != null || settings.fromDate != null) { // OK, only partly re-index required:
+        if (settings.lastNEntries != null || settings.fromDate != null || settings.afterId != null) { // OK, only partly re-index required:
             reindexObjects(clazz, settings)
             return
         }
@@ -102,8 +120,8 @@ open class DatabaseDao {
         return false
     }
 
-    private fun <T> reindexObjects(clazz: Class<T>, settings: ReindexSettings?) {
-        runInTrans(emgrFactory) { em: EntityManager ->
+    private fun <T> reindexObjects(clazz: Class<T>, settings: ReindexSettings?): Any? {
+        return runInTrans(emgrFactory) { em: EntityManager ->
             val number = getRowCount(em, clazz, settings) // Get number of objects to re-index (select count(*) from).
             if (number == 0L) {
                 log.info("Reindexing [${clazz.simpleName}]: 0 entries found. Nothing to-do.")
@@ -146,9 +164,11 @@ open class DatabaseDao {
             if (bigResultSetHandler.totalRead != number) {
                 log.error("Oups, number of elements was $number, but read ${bigResultSetHandler.totalRead}.")
             }
-            log.info("Reindexing [${clazz.simpleName}]: optimizing of " + number + " objects...")
-            val searchFactory = fullTextSession.searchFactory
-            searchFactory.optimize(clazz)
+            if (settings?.afterId == null) { // Don't optimize the whole index for small increments.
+                log.info("Reindexing [${clazz.simpleName}]: optimizing of " + number + " objects...")
+                val searchFactory = fullTextSession.searchFactory
+                searchFactory.optimize(clazz)
+            }
             log.info("Reindexing [${clazz.simpleName}]: reindexing done.")
             return@runInTrans index
         }
@@ -170,7 +190,12 @@ open class DatabaseDao {
         val idsOnly = if (queryMode == QueryMode.SELECT_IDS_ONLY) "select ${strategy.idProperty} " else ""
         val join = if (queryMode == QueryMode.NORMAL && settings?.lastNEntries == null) strategy.join else "" // Don't join for last n entries (not supported by Hibernate).
         val select = if (rowCountOnly) "select count(*) from ${clazz.simpleName} as t" else "${idsOnly}from ${clazz.simpleName} as t$join"
-        if (settings?.fromDate != null) {
+        if (settings?.afterId != null) {
+            val query = entityManager.createQuery("$select where t.${strategy.idProperty} > :afterId and t.${strategy.idProperty} <= :untilId", resultClazz)
+            query.setParameter("afterId", settings.afterId)
+            query.setParameter("untilId", settings.untilId)
+            return query
+        } else if (settings?.fromDate != null) {
             if (strategy.modifiedAtProperty != null) {
                 val query = entityManager.createQuery("$select where t.${strategy.modifiedAtProperty} > :modifiedAt", resultClazz)
                 query.setParameter("modifiedAt", settings.fromDate)
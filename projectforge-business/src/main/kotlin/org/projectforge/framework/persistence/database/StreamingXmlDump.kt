@@ -0,0 +1,533 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.database
+
+import mu.KotlinLogging
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.stereotype.Service
+import java.io.*
+import java.math.BigDecimal
+import java.nio.charset.StandardCharsets
+import java.sql.*
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.LocalTime
+import java.time.OffsetDateTime
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import javax.sql.DataSource
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLOutputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Dumps and restores the data base table by table. In contrast to [XmlDump] every table is written as a separate
+ * (gzipped) xml stream row by row, so no object graphs are held in memory and the memory usage doesn't depend on the
+ * size of the data base. The ids are preserved.
+ *
+ * The restore expects an empty data base schema (e. g. created by flyway). Tables without dependencies to each other
+ * are restored in parallel using JDBC batches, ordered by their foreign keys. Foreign keys referencing the own table
+ * (e. g. parent task) or tables of a dependency cycle are set after all tables are restored.
+ *
+ * Please note: The full text indices aren't updated by the restore, so rebuild them afterwards.
+ */
+@Service
+class StreamingXmlDump {
+  @Autowired
+  private lateinit var dataSource: DataSource
+
+  @Autowired
+  private lateinit var emf: PfEmgrFactory
+
+  class Statistics(val tables: Int, val rows: Long, val millis: Long) {
+    val rowsPerSecond: Long
+      get() = if (millis > 0) rows * 1000 / millis else rows
+
+    override fun toString(): String {
+      return "$tables tables, $rows rows in ${millis}ms ($rowsPerSecond rows/s)"
+    }
+  }
+
+  /**
+   * Writes all tables into the given directory (one file per table, existing files will be overwritten).
+   * All tables are read in one read-only transaction (repeatable read), so the dump is a consistent snapshot, also
+   * if the data base is modified while dumping.
+   */
+  fun dump(dir: File): Statistics {
+    val started = System.currentTimeMillis()
+    dir.mkdirs()
+    var rows = 0L
+    var tables = 0
+    dataSource.connection.use { connection ->
+      val autoCommit = connection.autoCommit
+      val readOnly = connection.isReadOnly
+      val transactionIsolation = connection.transactionIsolation
+      // Must be set before the first statement (also the meta data queries) starts the transaction:
+      connection.isReadOnly = true
+      connection.transactionIsolation = Connection.TRANSACTION_REPEATABLE_READ
+      connection.autoCommit = false // Otherwise PostgreSQL ignores the fetch size and loads the whole result set.
+      try {
+        readTables(connection).forEach { table ->
+          val counter = dumpTable(connection, table, File(dir, "${table.name}$FILE_EXTENSION"))
+          log.info { "Table ${table.name}: $counter rows written." }
+          rows += counter
+          ++tables
+        }
+        connection.commit()
+      } finally {
+        connection.autoCommit = autoCommit
+        connection.transactionIsolation = transactionIsolation
+        connection.isReadOnly = readOnly
+      }
+    }
+    val statistics = Statistics(tables, rows, System.currentTimeMillis() - started)
+    log.info { "Data base dumped to '${dir.absolutePath}': $statistics" }
+    return statistics
+  }
+
+  /**
+   * Restores the dump of the given directory into the (empty) data base.
+   * @param parallelism Maximum number of tables restored in parallel.
+   */
+  fun restore(dir: File, parallelism: Int = DEFAULT_PARALLELISM): Statistics {
+    val started = System.currentTimeMillis()
+    val files = dir.listFiles { file -> file.name.endsWith(FILE_EXTENSION) }
+      ?.associateBy { it.name.removeSuffix(FILE_EXTENSION).uppercase() }
+      ?: throw IllegalArgumentException("Directory '${dir.absolutePath}' not found.")
+    val tables = dataSource.connection.use { readTables(it) }.filter { files.containsKey(it.key) }
+    files.keys.filter { key -> tables.none { it.key == key } }.forEach {
+      log.warn { "Table '$it' of dump doesn't exist in data base. Ignoring it." }
+    }
+    val tableKeys = tables.map { it.key }.toSet()
+    val restored = mutableSetOf<String>()
+    val deferred = mutableMapOf<TableInfo, List<String>>()
+    val rows = AtomicLong()
+    val executor = Executors.newFixedThreadPool(parallelism.coerceAtLeast(1))
+    try {
+      val remaining = tables.toMutableList()
+      while (remaining.isNotEmpty()) {
+        var level = remaining.filter { table ->
+          table.dependencies.all { it == table.key || !tableKeys.contains(it) || restored.contains(it) }
+        }
+        if (level.isEmpty()) {
+          // Dependency cycle: restore the table with the fewest missing dependencies, these references are set later.
+          level = listOf(remaining.minByOrNull { table ->
+            table.dependencies.count { tableKeys.contains(it) && !restored.contains(it) }
+          }!!)
+          log.info { "Dependency cycle detected, restoring table ${level[0].name} first." }
+        }
+        level.map { table ->
+          val deferredColumns = table.foreignKeys
+            .filter { it.table == table.key || (tableKeys.contains(it.table) && !restored.contains(it.table)) }
+            .flatMap { it.columns }
+            .filter { column -> table.columns.any { it.name == column && it.nullable } }
+            .distinct()
+          if (deferredColumns.isNotEmpty()) {
+            deferred[table] = deferredColumns
+          }
+          executor.submit(Callable { rows.addAndGet(restoreTable(table, files[table.key]!!, deferredColumns)) })
+        }.forEach { it.get() }
+        restored.addAll(level.map { it.key })
+        remaining.removeAll(level)
+      }
+      deferred.map { (table, columns) ->
+        executor.submit(Callable { restoreDeferredColumns(table, files[table.key]!!, columns) })
+      }.forEach { it.get() }
+    } finally {
+      executor.shutdown()
+    }
+    dataSource.connection.use { restartSequences(it, tables) }
+    emf.entityManagerFactory.cache.evictAll()
+    val statistics = Statistics(tables.size, rows.get(), System.currentTimeMillis() - started)
+    log.info { "Data base restored from '${dir.absolutePath}': $statistics" }
+    return statistics
+  }
+
+  private fun dumpTable(connection: Connection, table: TableInfo, file: File): Long {
+    var counter = 0L
+    val orderBy = if (table.primaryKey.isEmpty()) "" else " order by ${table.primaryKey.joinToString()}"
+    connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).use { statement ->
+      statement.fetchSize = FETCH_SIZE
+      statement.executeQuery("select * from ${table.name}$orderBy").use { rs ->
+        val metaData = rs.metaData
+        val types = IntArray(metaData.columnCount) { metaData.getColumnType(it + 1) }
+        GZIPOutputStream(BufferedOutputStream(FileOutputStream(file))).use { out ->
+          val writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8")
+          writer.writeStartDocument("UTF-8", "1.0")
+          writer.writeStartElement("table")
+          writer.writeAttribute("name", table.name)
+          writer.writeStartElement("columns")
+          types.forEachIndexed { index, type ->
+            writer.writeEmptyElement("column")
+            writer.writeAttribute("name", metaData.getColumnName(index + 1))
+            writer.writeAttribute("type", "$type")
+          }
+          writer.writeEndElement()
+          while (rs.next()) {
+            writer.writeStartElement("row")
+            types.forEachIndexed { index, type ->
+              val value = readValue(rs, index + 1, type)
+              if (value == null) {
+                writer.writeEmptyElement("v")
+                writer.writeAttribute("null", "true")
+              } else {
+                writer.writeStartElement("v")
+                if (isXmlCompatible(value)) {
+                  writer.writeCharacters(value)
+                } else {
+                  writer.writeAttribute("base64", "true")
+                  writer.writeCharacters(Base64.getEncoder().encodeToString(value.toByteArray(StandardCharsets.UTF_8)))
+                }
+                writer.writeEndElement()
+              }
+            }
+            writer.writeEndElement()
+            ++counter
+          }
+          writer.writeEndElement()
+          writer.writeEndDocument()
+          writer.close()
+        }
+      }
+    }
+    return counter
+  }
+
+  private fun restoreTable(table: TableInfo, file: File, deferredColumns: List<String>): Long {
+    var counter = 0L
+    DumpReader(file).use { reader ->
+      val columns = reader.getTargetColumns(table)
+      val sql = "insert into ${table.name} (${columns.joinToString { it.second.name }}) values (${columns.joinToString { "?" }})"
+      dataSource.connection.use { connection ->
+        checkEmpty(connection, table)
+        val autoCommit = connection.autoCommit
+        connection.autoCommit = false
+        try {
+          connection.prepareStatement(sql).use { statement ->
+            while (true) {
+              val values = reader.next() ?: break
+              columns.forEachIndexed { index, (dumpIndex, column) ->
+                val value = if (deferredColumns.contains(column.name)) null else values[dumpIndex]
+                writeValue(statement, index + 1, column.type, value)
+              }
+              statement.addBatch()
+              if (++counter % BATCH_SIZE == 0L) {
+                statement.executeBatch()
+                connection.commit()
+              }
+            }
+            statement.executeBatch()
+            connection.commit()
+          }
+        } finally {
+          connection.autoCommit = autoCommit
+        }
+      }
+    }
+    log.info { "Table ${table.name}: $counter rows restored." }
+    return counter
+  }
+
+  /**
+   * Second pass for setting the foreign keys which couldn't be set while inserting the rows.
+   */
+  private fun restoreDeferredColumns(table: TableInfo, file: File, deferredColumns: List<String>) {
+    if (table.primaryKey.isEmpty()) {
+      log.error { "Can't restore columns $deferredColumns of table ${table.name} without primary key." }
+      return
+    }
+    DumpReader(file).use { reader ->
+      val columns = reader.getTargetColumns(table)
+      val setColumns = columns.filter { deferredColumns.contains(it.second.name) }
+      val whereColumns = table.primaryKey.map { pk -> columns.first { it.second.name == pk } }
+      val sql = "update ${table.name} set ${setColumns.joinToString { "${it.second.name} = ?" }} " +
+          "where ${whereColumns.joinToString(" and ") { "${it.second.name} = ?" }}"
+      dataSource.connection.use { connection ->
+        val autoCommit = connection.autoCommit
+        connection.autoCommit = false
+        try {
+          connection.prepareStatement(sql).use { statement ->
+            var counter = 0L
+            while (true) {
+              val values = reader.next() ?: break
+              if (setColumns.all { values[it.first] == null }) {
+                continue // Nothing to update.
+              }
+              (setColumns + whereColumns).forEachIndexed { index, (dumpIndex, column) ->
+                writeValue(statement, index + 1, column.type, values[dumpIndex])
+              }
+              statement.addBatch()
+              if (++counter % BATCH_SIZE == 0L) {
+                statement.executeBatch()
+                connection.commit()
+              }
+            }
+            statement.executeBatch()
+            connection.commit()
+          }
+        } finally {
+          connection.autoCommit = autoCommit
+        }
+      }
+    }
+  }
+
+  private fun checkEmpty(connection: Connection, table: TableInfo) {
+    connection.createStatement().use { statement ->
+      statement.executeQuery("select count(*) from ${table.name}").use { rs ->
+        if (rs.next() && rs.getLong(1) > 0) {
+          throw IllegalStateException("Can't restore table ${table.name}, because it isn't empty.")
+        }
+      }
+    }
+  }
+
+  /**
+   * The ids are preserved, so the sequences must be restarted after the highest restored id.
+   */
+  private fun restartSequences(connection: Connection, tables: List<TableInfo>) {
+    var maxId = 0L
+    tables.forEach { table ->
+      val pk = table.primaryKey.singleOrNull() ?: return@forEach
+      if (table.columns.none { it.name == pk && INTEGER_TYPES.contains(it.type) }) {
+        return@forEach
+      }
+      connection.createStatement().use { statement ->
+        statement.executeQuery("select max($pk) from ${table.name}").use { rs ->
+          if (rs.next()) {
+            maxId = maxOf(maxId, rs.getLong(1))
+          }
+        }
+      }
+    }
+    val sequences = mutableListOf<String>()
+    connection.prepareStatement("select sequence_name from information_schema.sequences where sequence_schema = ?")
+      .use { statement ->
+        statement.setString(1, connection.schema)
+        statement.executeQuery().use { rs ->
+          while (rs.next()) {
+            sequences.add(rs.getString(1))
+          }
+        }
+      }
+    sequences.forEach { sequence ->
+      try {
+        connection.createStatement().use { it.execute("alter sequence $sequence restart with ${maxId + 1}") }
+      } catch (ex: SQLException) {
+        log.warn { "Can't restart sequence $sequence: ${ex.message}" }
+      }
+    }
+  }
+
+  private fun readTables(connection: Connection): List<TableInfo> {
+    val metaData = connection.metaData
+    val schema = connection.schema
+    val tables = mutableListOf<TableInfo>()
+    metaData.getTables(null, schema, "%", arrayOf("TABLE")).use { rs ->
+      while (rs.next()) {
+        val name = rs.getString("TABLE_NAME")
+        if (!name.startsWith("flyway", ignoreCase = true)) {
+          tables.add(TableInfo(name))
+        }
+      }
+    }
+    val escape = metaData.searchStringEscape
+    tables.forEach { table ->
+      val pattern = table.name.replace("_", "${escape}_").replace("%", "$escape%")
+      metaData.getColumns(null, schema, pattern, "%").use { rs ->
+        while (rs.next()) {
+          if (rs.getString("TABLE_NAME") == table.name) {
+            table.columns.add(
+              ColumnInfo(
+                rs.getString("COLUMN_NAME"),
+                rs.getInt("DATA_TYPE"),
+                rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+              )
+            )
+          }
+        }
+      }
+      metaData.getPrimaryKeys(null, schema, table.name).use { rs ->
+        val pk = sortedMapOf<Int, String>()
+        while (rs.next()) {
+          pk[rs.getInt("KEY_SEQ")] = rs.getString("COLUMN_NAME")
+        }
+        table.primaryKey.addAll(pk.values)
+      }
+      metaData.getImportedKeys(null, schema, table.name).use { rs ->
+        val foreignKeys = mutableMapOf<String, ForeignKey>()
+        while (rs.next()) {
+          val referencedTable = rs.getString("PKTABLE_NAME").uppercase()
+          val fkName = rs.getString("FK_NAME") ?: referencedTable
+          foreignKeys.getOrPut(fkName) { ForeignKey(referencedTable) }.columns.add(rs.getString("FKCOLUMN_NAME"))
+        }
+        table.foreignKeys.addAll(foreignKeys.values)
+      }
+    }
+    return tables
+  }
+
+  private class TableInfo(val name: String) {
+    val key = name.uppercase()
+    val columns = mutableListOf<ColumnInfo>()
+    val primaryKey = mutableListOf<String>()
+    val foreignKeys = mutableListOf<ForeignKey>()
+    val dependencies: Set<String>
+      get() = foreignKeys.map { it.table }.toSet()
+  }
+
+  private class ColumnInfo(val name: String, val type: Int, val nullable: Boolean)
+
+  private class ForeignKey(val table: String) {
+    val columns = mutableListOf<String>()
+  }
+
+  /**
+   * Reads the rows of a table dump one by one.
+   */
+  private class DumpReader(file: File) : Closeable {
+    private val input = GZIPInputStream(BufferedInputStream(FileInputStream(file)))
+    private val reader: XMLStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(input, "UTF-8")
+    val columns = mutableListOf<String>()
+
+    init {
+      reader.nextTag() // <table>
+      reader.nextTag() // <columns>
+      while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+        columns.add(reader.getAttributeValue(null, "name"))
+        reader.nextTag() // </column>
+      }
+    }
+
+    /**
+     * @return Pairs of the index of the dumped column and the column of the data base table.
+     */
+    fun getTargetColumns(table: TableInfo): List<Pair<Int, ColumnInfo>> {
+      return columns.mapIndexedNotNull { index, name ->
+        val column = table.columns.find { it.name.equals(name, ignoreCase = true) }
+        if (column == null) {
+          log.warn { "Column ${table.name}.$name of dump doesn't exist in data base. Ignoring it." }
+        }
+        column?.let { Pair(index, it) }
+      }
+    }
+
+    /**
+     * @return The values of the next row or null, if no more rows are available.
+     */
+    fun next(): Array<String?>? {
+      if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+        return null // </table>
+      }
+      val values = arrayOfNulls<String>(columns.size)
+      var index = 0
+      while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+        val isNull = reader.getAttributeValue(null, "null") == "true"
+        val base64 = reader.getAttributeValue(null, "base64") == "true"
+        val text = reader.elementText // Moves to </v>
+        values[index++] = if (isNull) {
+          null
+        } else if (base64) {
+          String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8)
+        } else {
+          text
+        }
+      }
+      return values
+    }
+
+    override fun close() {
+      reader.close()
+      input.close()
+    }
+  }
+
+  companion object {
+    const val FILE_EXTENSION = ".xml.gz"
+
+    const val DEFAULT_PARALLELISM = 4
+
+    private const val FETCH_SIZE = 1000
+
+    private const val BATCH_SIZE = 500
+
+    private val INTEGER_TYPES = setOf(Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT)
+
+    private val BINARY_TYPES = setOf(Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB)
+
+    private fun readValue(rs: ResultSet, index: Int, type: Int): String? {
+      val value: Any? = when (type) {
+        in BINARY_TYPES -> rs.getBytes(index)?.let { Base64.getEncoder().encodeToString(it) }
+        Types.DATE -> rs.getObject(index, LocalDate::class.java)
+        Types.TIME -> rs.getObject(index, LocalTime::class.java)
+        Types.TIMESTAMP -> rs.getObject(index, LocalDateTime::class.java)
+        Types.TIMESTAMP_WITH_TIMEZONE -> rs.getObject(index, OffsetDateTime::class.java)
+        Types.BIT, Types.BOOLEAN -> rs.getBoolean(index)
+        else -> rs.getString(index)
+      }
+      return if (rs.wasNull()) null else value?.toString()
+    }
+
+    private fun writeValue(statement: PreparedStatement, index: Int, type: Int, value: String?) {
+      if (value == null) {
+        statement.setNull(index, type)
+        return
+      }
+      when (type) {
+        in BINARY_TYPES -> statement.setBytes(index, Base64.getDecoder().decode(value))
+        Types.DATE -> statement.setObject(index, LocalDate.parse(value))
+        Types.TIME -> statement.setObject(index, LocalTime.parse(value))
+        Types.TIMESTAMP -> statement.setObject(index, LocalDateTime.parse(value))
+        Types.TIMESTAMP_WITH_TIMEZONE -> statement.setObject(index, OffsetDateTime.parse(value))
+        Types.BIT, Types.BOOLEAN -> statement.setBoolean(index, value.toBoolean())
+        Types.TINYINT, Types.SMALLINT, Types.INTEGER -> statement.setInt(index, value.toInt())
+        Types.BIGINT -> statement.setLong(index, value.toLong())
+        Types.REAL, Types.FLOAT, Types.DOUBLE -> statement.setDouble(index, value.toDouble())
+        Types.NUMERIC, Types.DECIMAL -> statement.setBigDecimal(index, BigDecimal(value))
+        Types.OTHER -> statement.setObject(index, value, Types.OTHER)
+        else -> statement.setString(index, value)
+      }
+    }
+
+    /**
+     * Carriage returns and control characters can't be stored as xml text (the xml parser normalizes or rejects them).
+     */
+    private fun isXmlCompatible(value: String): Boolean {
+      for (ch in value) {
+        if (ch < ' ' && ch != '\n' && ch != '\t' || ch == '￾' || ch == '￿' || Character.isSurrogate(ch)) {
+          return false
+        }
+      }
+      return true
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import de.micromata.genome.db.jpa.history.entities.EntityOpType
+import java.io.Serializable
+import java.util.*
+
+/**
+ * Lightweight view of a history entry without its attributes (property changes). Use
+ * [HistoryBaseDaoAdapter.getHistoryEntry] for expanding a single entry on demand.
+ *
+ * Used as JPQL constructor expression, so don't change the order and types of the constructor params.
+ */
+class HistoryEntrySummary(
+  val pk: Long?,
+  val modifiedAt: Date?,
+  val modifiedBy: String?,
+  val entityName: String?,
+  val entityId: Long?,
+  val entityOpType: EntityOpType?,
+) : Serializable {
+  companion object {
+    private const val serialVersionUID = 2208342931946421473L
+  }
+}
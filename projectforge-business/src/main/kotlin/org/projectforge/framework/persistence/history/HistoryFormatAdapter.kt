@@ -26,6 +26,7 @@ package org.projectforge.framework.persistence.history
 import de.micromata.genome.db.jpa.history.api.HistoryEntry
 import org.projectforge.business.user.UserGroupCache
 import org.projectforge.framework.i18n.TimeAgo
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO
 import org.projectforge.framework.persistence.user.entities.PFUserDO
 import javax.persistence.EntityManager
 
@@ -65,6 +66,7 @@ open class HistoryFormatAdapter(
       // Ignore error.
     }
     val entryDTO = HistoryFormatService.DisplayHistoryEntryDTO(
+      id = (historyEntry as? PfHistoryMasterDO)?.pk,
       modifiedAt = historyEntry.modifiedAt,
       timeAgo = TimeAgo.getMessage(historyEntry.modifiedAt),
       modifiedByUserId = historyEntry.modifiedBy,
@@ -57,6 +57,10 @@ class HistoryFormatService {
   private lateinit var stdHistoryFormatAdapter: HistoryFormatAdapter
 
   data class DisplayHistoryEntryDTO(
+    /**
+     * Pk of the history entry, may be used as afterPk for getting the next page of history entries.
+     */
+    var id: Long? = null,
     var modifiedAt: Date? = null,
     var timeAgo: String? = null,
     var modifiedByUserId: String? = null,
@@ -101,6 +105,16 @@ class HistoryFormatService {
     return entries.sortedByDescending { it.modifiedAt }
   }
 
+  /**
+   * Formats only the given page of history entries (see [org.projectforge.framework.persistence.api.BaseDao.getHistoryEntries]).
+   * Additional entries of the adapters (see [HistoryFormatAdapter.convertEntries], such as the history of user rights)
+   * aren't part of the paged query, so they're not appended (otherwise they would be appended on every page and their
+   * ids would be used as afterPk).
+   */
+  fun <O : ExtendedBaseDO<Int>> format(item: O, page: List<HistoryEntry<*>>): List<DisplayHistoryEntryDTO> {
+    return page.map { convert(item, it) }
+  }
+
   fun <O : ExtendedBaseDO<Int>> convert(item: O, historyEntry: HistoryEntry<*>): DisplayHistoryEntryDTO {
     val adapter = historyServiceAdapters[item::class.java]
     return adapter?.convert(item, historyEntry) ?: stdHistoryFormatAdapter.convert(item, historyEntry)
@@ -0,0 +1,228 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import mu.KotlinLogging
+import org.projectforge.business.admin.SystemStatistics
+import org.projectforge.business.admin.SystemStatisticsData
+import org.projectforge.business.admin.SystemsStatisticsBuilderInterface
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.api.ReindexSettings
+import org.projectforge.framework.persistence.database.DatabaseDao
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Service
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.*
+import javax.annotation.PostConstruct
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Indexes new history entries incrementally. The highest indexed pk (high-water mark) is persisted in the directory of
+ * the search index, so every history entry is indexed only once (and the full index is rebuilt nightly anyway).
+ *
+ * Ids are assigned before commit, so entries younger than [settleMillis] are left for the next run (a long running
+ * transaction might commit an entry with a lower pk later on).
+ */
+@Service
+class HistoryIndexer : SystemsStatisticsBuilderInterface {
+  class Run(
+    /**
+     * Entries after this pk were indexed (exclusive), normally the pk of the last indexed entry of the previous run.
+     */
+    val afterPk: Long?,
+    /**
+     * Pk of the last indexed entry (inclusive).
+     */
+    val untilPk: Long?,
+    val indexed: Long,
+    val millis: Long,
+  ) {
+    val entriesPerSecond: Long
+      get() = if (millis > 0) indexed * 1000 / millis else indexed
+  }
+
+  @Autowired
+  private lateinit var databaseDao: DatabaseDao
+
+  @Autowired
+  private lateinit var emgrFactory: PfEmgrFactory
+
+  @Autowired
+  private lateinit var systemStatistics: SystemStatistics
+
+  @Value("\${hibernate.search.default.indexBase}")
+  private lateinit var hibernateIndexDir: String
+
+  internal var settleMillis = 5 * AbstractCache.TICKS_PER_MINUTE
+
+  /**
+   * The last run indexing any entries.
+   */
+  @Volatile
+  var lastRun: Run? = null
+    private set
+
+  @Volatile
+  var totalIndexed = 0L
+    private set
+
+  private val watermarkFile: File
+    get() = File(hibernateIndexDir, WATERMARK_FILENAME)
+
+  @PostConstruct
+  private fun postConstruct() {
+    systemStatistics.registerStatisticsBuilder(this)
+  }
+
+  /**
+   * Indexes all history entries after the high-water mark. On the first run (no high-water mark available), the
+   * entries of the last 24 hours are indexed.
+   * @return The result of this run or null, if another re-index job is running.
+   */
+  @Synchronized
+  fun indexNewEntries(): Run? {
+    val started = System.currentTimeMillis()
+    val untilPk = getMaxPk(Date(started - settleMillis)) ?: return Run(null, null, 0, 0) // No history entries.
+    var afterPk = readWatermark()
+    if (afterPk != null && afterPk > untilPk) {
+      log.info { "High-water mark $afterPk of history index is beyond the data base (restored?), starting new." }
+      afterPk = null
+    }
+    val from = afterPk ?: getMinPk(Date(started - AbstractCache.TICKS_PER_DAY))?.let { it - 1 } ?: untilPk
+    if (from >= untilPk) {
+      if (afterPk == null) {
+        writeWatermark(untilPk) // No entries of the last 24 hours, start from here.
+      }
+      return Run(from, untilPk, 0, System.currentTimeMillis() - started) // Nothing to index.
+    }
+    val expected = count(from, untilPk)
+    val settings = ReindexSettings.createForIdRange(from, untilPk)
+    val indexed = databaseDao.reindexPartly(PfHistoryMasterDO::class.java, settings) ?: return null
+    if (indexed != expected) {
+      // Verification: keep the high-water mark, so this range will be indexed again.
+      log.error { "$indexed history entries indexed, but $expected expected (pk in ($from, $untilPk]), will retry." }
+      return Run(from, untilPk, indexed, System.currentTimeMillis() - started)
+    }
+    writeWatermark(untilPk)
+    val run = Run(from, untilPk, indexed, System.currentTimeMillis() - started)
+    totalIndexed += indexed
+    lastRun = run
+    log.info { "$indexed history entries indexed in ${run.millis}ms (${run.entriesPerSecond}/s), pk: $untilPk." }
+    return run
+  }
+
+  /**
+   * The next run starts from scratch (entries of the last 24 hours).
+   */
+  fun resetWatermark() {
+    watermarkFile.delete()
+  }
+
+  override fun addStatisticsEntries(stats: SystemStatisticsData) {
+    val watermark = readWatermark()
+    val lag = if (watermark != null) {
+      emgrFactory.runRoTrans { emgr ->
+        val result = emgr.entityManager.createQuery(
+          "select count(h.pk), min(h.modifiedAt) from PfHistoryMasterDO h where h.pk > :pk",
+          Array<Any?>::class.java
+        ).setParameter("pk", watermark).singleResult
+        val oldest = result[1] as Date?
+        val seconds = if (oldest != null) (System.currentTimeMillis() - oldest.time) / 1000 else 0
+        "${format(result[0] as Number)} entries, ${format(seconds)}s"
+      }
+    } else {
+      "--"
+    }
+    stats.add("historyIndexLag", "search index", "system.statistics.historyIndexLag", lag)
+    val throughput = lastRun?.let {
+      "${format(it.indexed)} entries in ${format(it.millis)}ms (${format(it.entriesPerSecond)}/s), " +
+          "total: ${format(totalIndexed)}"
+    }
+    stats.add("historyIndexThroughput", "search index", "system.statistics.historyIndexThroughput", throughput)
+  }
+
+  private fun getMaxPk(until: Date): Long? {
+    return emgrFactory.runRoTrans { emgr ->
+      emgr.entityManager.createQuery(
+        "select max(h.pk) from PfHistoryMasterDO h where h.modifiedAt <= :until",
+        java.lang.Long::class.java
+      ).setParameter("until", until).singleResult?.toLong()
+    }
+  }
+
+  private fun getMinPk(from: Date): Long? {
+    return emgrFactory.runRoTrans { emgr ->
+      emgr.entityManager.createQuery(
+        "select min(h.pk) from PfHistoryMasterDO h where h.modifiedAt > :from",
+        java.lang.Long::class.java
+      ).setParameter("from", from).singleResult?.toLong()
+    }
+  }
+
+  private fun count(afterPk: Long, untilPk: Long): Long {
+    return emgrFactory.runRoTrans { emgr ->
+      emgr.entityManager.createQuery(
+        "select count(h.pk) from PfHistoryMasterDO h where h.pk > :afterPk and h.pk <= :untilPk",
+        java.lang.Long::class.java
+      ).setParameter("afterPk", afterPk).setParameter("untilPk", untilPk).singleResult.toLong()
+    }
+  }
+
+  private fun readWatermark(): Long? {
+    val file = watermarkFile
+    if (!file.exists()) {
+      return null
+    }
+    return try {
+      val properties = Properties()
+      file.inputStream().use { properties.load(it) }
+      properties.getProperty(WATERMARK_PROPERTY)?.toLong()
+    } catch (ex: Exception) {
+      log.error(ex) { "Can't read high-water mark of history index from '${file.absolutePath}': ${ex.message}" }
+      null
+    }
+  }
+
+  private fun writeWatermark(pk: Long) {
+    val file = watermarkFile
+    file.parentFile?.mkdirs()
+    val tmpFile = File(file.parentFile, "${file.name}.tmp")
+    val properties = Properties()
+    properties.setProperty(WATERMARK_PROPERTY, "$pk")
+    tmpFile.outputStream().use { properties.store(it, "High-water mark of incremental history indexing.") }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+  }
+
+  companion object {
+    private const val WATERMARK_FILENAME = "history-index-watermark.properties"
+
+    private const val WATERMARK_PROPERTY = "pk"
+  }
+}
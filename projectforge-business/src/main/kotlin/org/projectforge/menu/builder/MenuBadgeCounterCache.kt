@@ -0,0 +1,148 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.menu.builder
+
+import mu.KotlinLogging
+import org.projectforge.framework.cache.AbstractCache
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.projectforge.security.RegisterUser4Thread
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Badge counters of menu items per user. The counters are computed in the background, so building a menu never waits
+ * for a (slow) counter. A counter older than [maxAgeMillis] is recomputed asynchronously and the last value is used
+ * until the new one is available. The first request of a counter returns null (no badge).
+ *
+ * The counters are computed by a dedicated thread pool (see [shutdown]). Entries not requested for [entryTtlMillis]
+ * (e. g. of users logged out) are evicted.
+ */
+internal class MenuBadgeCounterCache(
+  private val maxAgeMillis: Long = AbstractCache.TICKS_PER_MINUTE,
+  private val entryTtlMillis: Long = AbstractCache.TICKS_PER_HOUR,
+) {
+  private class Entry {
+    @Volatile
+    var counter: Int? = null
+
+    /**
+     * Time of the last computation (0, if never computed).
+     */
+    @Volatile
+    var timestamp = 0L
+
+    val computing = AtomicBoolean()
+
+    /**
+     * Time of the last request of this counter.
+     */
+    @Volatile
+    var lastAccess = System.currentTimeMillis()
+  }
+
+  /**
+   * MenuItemDefs are used by identity (ids of menu items aren't unique, e. g. ORDER_LIST).
+   */
+  private data class Key(val userId: Int?, val menuItemDef: MenuItemDef)
+
+  private val entries = ConcurrentHashMap<Key, Entry>()
+
+  @Volatile
+  private var lastEviction = System.currentTimeMillis()
+
+  private val threadCounter = AtomicInteger()
+
+  private val executor = Executors.newFixedThreadPool(MAX_THREADS) { runnable ->
+    val thread = Thread(runnable, "MenuBadgeCounter-${threadCounter.incrementAndGet()}")
+    thread.isDaemon = true
+    thread
+  }
+
+  internal val size: Int
+    get() = entries.size
+
+  /**
+   * @param userContext The user context of the current request, registered in the thread computing the counter.
+   * @return The last computed counter or null, if not yet computed.
+   */
+  fun getCounter(userContext: UserContext, menuItemDef: MenuItemDef): Int? {
+    val badgeCounter = menuItemDef.badgeCounter ?: return null
+    val now = System.currentTimeMillis()
+    evictOutdatedEntries(now)
+    val entry = entries.computeIfAbsent(Key(userContext.user?.id, menuItemDef)) { Entry() }
+    entry.lastAccess = now
+    if (now - entry.timestamp > maxAgeMillis && entry.computing.compareAndSet(false, true)) {
+      try {
+        executor.execute {
+          try {
+            RegisterUser4Thread.registerUser(userContext)
+            entry.counter = badgeCounter()
+          } catch (ex: Exception) {
+            log.error("Error while computing badge counter of menu item '${menuItemDef.id}': ${ex.message}", ex)
+          } finally {
+            RegisterUser4Thread.unregister()
+            entry.timestamp = System.currentTimeMillis()
+            entry.computing.set(false)
+          }
+        }
+      } catch (ex: RejectedExecutionException) {
+        // Executor is shut down (application is stopping).
+        entry.computing.set(false)
+      }
+    }
+    return entry.counter
+  }
+
+  fun clear() {
+    entries.clear()
+  }
+
+  fun shutdown() {
+    executor.shutdownNow()
+  }
+
+  /**
+   * Removes all entries not requested for [entryTtlMillis]. Checked at most once per [maxAgeMillis].
+   */
+  private fun evictOutdatedEntries(now: Long) {
+    if (now - lastEviction < maxAgeMillis) {
+      return
+    }
+    lastEviction = now
+    entries.values.removeIf { now - it.lastAccess > entryTtlMillis }
+  }
+
+  companion object {
+    /**
+     * Maximum number of counters computed in parallel.
+     */
+    const val MAX_THREADS = 4
+  }
+}
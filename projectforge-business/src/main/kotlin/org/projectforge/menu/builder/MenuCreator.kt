@@ -39,20 +39,25 @@ import org.projectforge.business.orga.PosteingangDao
 import org.projectforge.business.orga.VisitorbookDao
 import org.projectforge.business.sipgate.SipgateConfiguration
 import org.projectforge.business.user.ProjectForgeGroup
+import org.projectforge.business.user.UserGroupCache
 import org.projectforge.business.user.UserRightValue
 import org.projectforge.business.vacation.service.ConflictingVacationsCache
 import org.projectforge.business.vacation.service.VacationMenuCounterCache
 import org.projectforge.business.vacation.service.VacationService
 import org.projectforge.framework.access.AccessChecker
+import org.projectforge.framework.cache.AbstractCache
 import org.projectforge.framework.configuration.Configuration
 import org.projectforge.framework.persistence.api.IUserRightId
 import org.projectforge.framework.persistence.api.UserRightService.*
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.framework.persistence.user.api.UserContext
 import org.projectforge.menu.Menu
 import org.projectforge.menu.MenuItem
 import org.projectforge.sms.SmsSenderConfig
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
+import java.util.concurrent.ConcurrentHashMap
+import javax.annotation.PreDestroy
 
 private val log = KotlinLogging.logger {}
 
@@ -74,8 +79,28 @@ open class MenuCreator {
     }
   }
 
+  /**
+   * The accessible menu item definitions of a user (menu tree without badges).
+   */
+  private class UserMenuItemDef(val menuItemDef: MenuItemDef, val children: List<UserMenuItemDef>)
+
+  private class UserMenu(val menuItemDefs: List<UserMenuItemDef>, val rightsVersion: Long) {
+    val created = System.currentTimeMillis()
+  }
+
   private var menuItemDefHolder = MenuItemDefHolder()
 
+  /**
+   * The accessible menu items per user id. The entries are valid until the user's groups or rights are modified
+   * (version of [UserGroupCache]), but not longer than [USER_MENU_MAX_AGE_MS].
+   */
+  private val userMenuCache = ConcurrentHashMap<Int, UserMenu>()
+
+  private val badgeCounterCache = MenuBadgeCounterCache()
+
+  @Autowired
+  private lateinit var userGroupCache: UserGroupCache
+
   @Autowired
   private lateinit var accessChecker: AccessChecker
 
@@ -121,15 +146,31 @@ open class MenuCreator {
      */
     @JvmStatic
     var testCase = false
+
+    /**
+     * Some access checks of menu items don't depend on user rights, so rebuild the cached menus after this time.
+     */
+    private const val USER_MENU_MAX_AGE_MS = 10 * AbstractCache.TICKS_PER_MINUTE
   }
 
   @Synchronized
   fun refresh() {
     initialized = false
     menuItemDefHolder = MenuItemDefHolder()
+    clearCaches()
     initialize()
   }
 
+  private fun clearCaches() {
+    userMenuCache.clear()
+    badgeCounterCache.clear()
+  }
+
+  @PreDestroy
+  private fun shutdown() {
+    badgeCounterCache.shutdown()
+  }
+
   /**
    * Registers menu entry definition. It's important that a parent menu entry item definition is registered before its
    * sub menu entry items.
@@ -145,6 +186,7 @@ open class MenuCreator {
         log.error { "Can't add Menu ${menuItemDef.id}: parentId=$parentId not found." }
       }
     }
+    userMenuCache.clear()
   }
 
   /**
@@ -557,30 +599,64 @@ open class MenuCreator {
   }
 
   /**
-   * Builds the user's menu.
+   * Builds the user's menu. The accessible menu items of the user are cached and the badge counters are computed in
+   * the background, so this method doesn't wait for any counter.
    */
   fun build(menuCreatorContext: MenuCreatorContext): Menu {
     initialize()
+    val userContext = ThreadLocalUserContext.userContext?.takeIf { it.user?.id == menuCreatorContext.user.id }
+      ?: UserContext(menuCreatorContext.user)
     val menu = Menu()
-    menuItemDefHolder.menuItems.forEach { menuItemDef ->
-      menu.add(build(null, menuItemDef, menuCreatorContext))
+    getUserMenu(menuCreatorContext).menuItemDefs.forEach { userMenuItemDef ->
+      menu.add(build(null, userMenuItemDef, menuCreatorContext, userContext))
     }
     menu.postProcess()
     return menu
   }
 
-  private fun build(parent: MenuItem?, menuItemDef: MenuItemDef, menuCreatorContext: MenuCreatorContext): MenuItem? {
-    if (!checkAccess(menuCreatorContext, menuItemDef))
-      return null // No access
-    val menuItem = menuItemDef.createMenu(parent, menuCreatorContext)
-
+  private fun build(
+    parent: MenuItem?,
+    userMenuItemDef: UserMenuItemDef,
+    menuCreatorContext: MenuCreatorContext,
+    userContext: UserContext,
+  ): MenuItem {
+    val menuItemDef = userMenuItemDef.menuItemDef
+    val menuItem =
+      menuItemDef.createMenu(parent, menuCreatorContext, badgeCounterCache.getCounter(userContext, menuItemDef))
     parent?.add(menuItem)
-    menuItemDef.children?.forEach { childMenuItemDef ->
-      build(menuItem, childMenuItemDef, menuCreatorContext)
+    userMenuItemDef.children.forEach { child ->
+      build(menuItem, child, menuCreatorContext, userContext)
     }
     return menuItem
   }
 
+  private fun getUserMenu(menuCreatorContext: MenuCreatorContext): UserMenu {
+    val rightsVersion = if (this::userGroupCache.isInitialized) userGroupCache.version else 0L // 0 for test cases.
+    val userId = menuCreatorContext.user.id
+    userId?.let {
+      userMenuCache[it]?.let { userMenu ->
+        if (userMenu.rightsVersion == rightsVersion &&
+          System.currentTimeMillis() - userMenu.created < USER_MENU_MAX_AGE_MS
+        ) {
+          return userMenu
+        }
+      }
+    }
+    val userMenu = UserMenu(
+      menuItemDefHolder.menuItems.mapNotNull { getUserMenuItemDef(it, menuCreatorContext) },
+      rightsVersion
+    )
+    userId?.let { userMenuCache[it] = userMenu }
+    return userMenu
+  }
+
+  private fun getUserMenuItemDef(menuItemDef: MenuItemDef, menuCreatorContext: MenuCreatorContext): UserMenuItemDef? {
+    if (!checkAccess(menuCreatorContext, menuItemDef))
+      return null // No access
+    val children = menuItemDef.children?.mapNotNull { getUserMenuItemDef(it, menuCreatorContext) } ?: emptyList()
+    return UserMenuItemDef(menuItemDef, children)
+  }
+
   private fun checkAccess(menuBuilderContext: MenuCreatorContext, menuItemDef: MenuItemDef): Boolean {
     if (menuItemDef.checkAccess?.invoke() == false)
       return false
@@ -129,15 +129,15 @@ constructor(
   /**
    * @param parentMenu Only needed for building unique keys
    * @param menuCreatorContext
+   * @param counter The badge counter (see [MenuBadgeCounterCache]).
    */
-  internal fun createMenu(parentMenu: MenuItem?, menuCreatorContext: MenuCreatorContext): MenuItem {
+  internal fun createMenu(parentMenu: MenuItem?, menuCreatorContext: MenuCreatorContext, counter: Int?): MenuItem {
     val title = if (menuCreatorContext.translate) translate(i18nKey) else i18nKey
     val menuItem = MenuItem(id, title = title, i18nKey = i18nKey, url = this.url)
     if (parentMenu != null)
       menuItem.key = "${parentMenu.key}.$id"
     else
       menuItem.key = id
-    val counter = badgeCounter?.invoke()
     if (counter ?: -1 > 0) {
       menuItem.badge = MenuBadge(counter, style = "danger")
       if (badgeTooltipKey != null)
@@ -0,0 +1,4 @@
+-- Index for paging the history entries of an object (newest first).
+
+CREATE INDEX ix_pf_history_ent_mod
+  ON t_pf_history (entity_id, entity_name, modifiedat, pk);
@@ -580,6 +580,33 @@ public class AuftragDaoTest extends AbstractTestBase {
     assertEquals(6, auftragDao.getList(auftragFilter).size());
   }
 
+  @Test
+  public void toBeInvoicedCounter() {
+    logon(AbstractTestBase.TEST_FINANCE_USER);
+    auftragDao.reconcileToBeInvoicedOrders();
+    final int counter = auftragDao.getToBeInvoicedCounter();
+
+    final AuftragDO auftrag = new AuftragDO();
+    auftrag.setNummer(auftragDao.getNextNumber(auftrag));
+    dbNumber++;
+    auftrag.setAuftragsStatus(AuftragsStatus.ABGESCHLOSSEN);
+    final AuftragsPositionDO position = new AuftragsPositionDO();
+    position.setStatus(AuftragsPositionsStatus.ABGESCHLOSSEN);
+    position.setNettoSumme(new BigDecimal("100"));
+    auftrag.addPosition(position);
+    final Serializable id = auftragDao.save(auftrag);
+    assertEquals(counter + 1, (int) auftragDao.getToBeInvoicedCounter(), "Counter should be updated on save.");
+    auftragDao.reconcileToBeInvoicedOrders();
+    assertEquals(counter + 1, (int) auftragDao.getToBeInvoicedCounter(), "Reconciliation should give the same result.");
+
+    final AuftragDO dbAuftrag = auftragDao.getById(id);
+    dbAuftrag.getPositionenIncludingDeleted().get(0).setVollstaendigFakturiert(true);
+    auftragDao.update(dbAuftrag);
+    assertEquals(counter, (int) auftragDao.getToBeInvoicedCounter(), "Counter should be updated on update.");
+    auftragDao.reconcileToBeInvoicedOrders();
+    assertEquals(counter, (int) auftragDao.getToBeInvoicedCounter(), "Reconciliation should give the same result.");
+  }
+
   private void setPeriodOfPerformanceStartDateAndEndDate(final AuftragFilter auftragFilter, final int startYear, final int startMonth, final int startDay,
                                                          final int endYear, final int endMonth, final int endDay) {
     auftragFilter.setPeriodOfPerformanceStartDate(PFDay.withDate(startYear, startMonth, startDay).getLocalDate());
@@ -75,6 +75,11 @@ public class BusinessAssessmentConfigTest
   }
 
   static BusinessAssessmentConfig getBusinessAssessmentConfig()
+  {
+    return getBusinessAssessmentConfig(xml);
+  }
+
+  static BusinessAssessmentConfig getBusinessAssessmentConfig(final String xml)
   {
     final AliasMap aliasMap = new AliasMap();
     aliasMap.put(BusinessAssessmentRowConfig.class, "row");
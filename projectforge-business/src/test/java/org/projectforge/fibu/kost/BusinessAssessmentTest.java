@@ -28,12 +28,14 @@ import org.projectforge.business.fibu.KontoDO;
 import org.projectforge.business.fibu.kost.BuchungssatzDO;
 import org.projectforge.business.fibu.kost.BusinessAssessment;
 import org.projectforge.business.fibu.kost.BusinessAssessmentConfig;
+import org.projectforge.framework.xmlstream.XmlHelper;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BusinessAssessmentTest
 {
@@ -67,6 +69,49 @@ public class BusinessAssessmentTest
     assertEquals(new BigDecimal("0.68"), bwa.getRow("relativePerformance").getAmount()); // profit / revenue
   }
 
+  @Test
+  public void testAccountLookupAndDependencies()
+  {
+    final BusinessAssessmentConfig bwaConfig = BusinessAssessmentConfigTest.getBusinessAssessmentConfig(XmlHelper
+        .replaceQuotes(XmlHelper.XML_HEADER + "\n" //
+            + "<businessAssessment heading='BWA'>\n" //
+            + "  <rows>\n" //
+            + "    <row no='1' id='total' value='=sum-c' />\n" // Refers successive rows.
+            + "    <row no='2' id='a' accountRange='4000-4999' />\n" //
+            + "    <row no='3' id='b' accountRange='4500,4600-4700,8000' />\n" // 4500-4700 is part of row a.
+            + "    <row no='4' id='sum' value='=a+r3' />\n" //
+            + "    <row no='5' id='c' accountRange='3000-3999,4999' />\n" //
+            + "    <row no='6' id='quota' value='return total / 2' />\n" // Groovy script.
+            + "  </rows>\n" //
+            + "</businessAssessment>"));
+    final List<BuchungssatzDO> records = new ArrayList<>();
+    records.add(createRecord(1, 4500)); // a
+    records.add(createRecord(2, 4999)); // a
+    records.add(createRecord(4, 8000)); // b
+    records.add(createRecord(8, 9999, 8000)); // b (contra account)
+    records.add(createRecord(16, 8000, 4100)); // a (first row matching account or contra account)
+    records.add(createRecord(32, 3000)); // c
+    final BuchungssatzDO unknown = createRecord(64, 2999);
+    records.add(unknown);
+    final BusinessAssessment bwa = new BusinessAssessment(bwaConfig, records);
+    assertTrue(unknown.isIgnore());
+    assertEquals(0, new BigDecimal("19").compareTo(bwa.getRow("a").getAmount()));
+    assertEquals(0, new BigDecimal("12").compareTo(bwa.getRow("b").getAmount()));
+    assertEquals(0, new BigDecimal("32").compareTo(bwa.getRow("c").getAmount()));
+    assertEquals(new BigDecimal("31.00"), bwa.getRow("sum").getAmount());
+    assertEquals(new BigDecimal("-1.00"), bwa.getRow("total").getAmount());
+    assertEquals(new BigDecimal("-0.50"), bwa.getRow("quota").getAmount());
+  }
+
+  private BuchungssatzDO createRecord(final double amount, final int accountNumber, final int contraAccountNumber)
+  {
+    final BuchungssatzDO record = createRecord(amount, accountNumber);
+    final KontoDO konto = new KontoDO();
+    konto.setNummer(contraAccountNumber);
+    record.setGegenKonto(konto);
+    return record;
+  }
+
   private BuchungssatzDO createRecord(final double amount, final int accountNumber)
   {
     final BuchungssatzDO record = new BuchungssatzDO();
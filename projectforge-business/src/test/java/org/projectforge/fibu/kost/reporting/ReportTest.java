@@ -24,6 +24,9 @@
 package org.projectforge.fibu.kost.reporting;
 
 import org.junit.jupiter.api.Test;
+import org.projectforge.business.fibu.kost.BuchungssatzDO;
+import org.projectforge.business.fibu.kost.Kost2ArtDO;
+import org.projectforge.business.fibu.kost.Kost2DO;
 import org.projectforge.business.fibu.kost.reporting.Report;
 import org.projectforge.business.fibu.kost.reporting.ReportDao;
 import org.projectforge.business.fibu.kost.reporting.ReportObjective;
@@ -99,4 +102,61 @@ public class ReportTest extends AbstractTestBase
     assertFalse(Report.match(regExpList, "5.200.01.03", true));
     assertTrue(Report.match(regExpList, "5.190.01.02", true));
   }
+
+  @Test
+  public void testChildren()
+  {
+    logon(AbstractTestBase.TEST_CONTROLLING_USER);
+    final ReportObjective root = createObjective("root", "5.*");
+    final ReportObjective web = createObjective("web", "5.020.01.*");
+    root.addChildReportObjective(web);
+    root.addChildReportObjective(createObjective("acme", "5.020.*"));
+    root.addChildReportObjective(createObjective("java", "5.030.*"));
+    web.addChildReportObjective(createObjective("travel", "*.02"));
+    final List<BuchungssatzDO> records = new ArrayList<>();
+    records.add(createRecord(5, 20, 1, 1)); // web, acme (duplicate)
+    records.add(createRecord(5, 20, 1, 2)); // web (travel), acme (duplicate)
+    records.add(createRecord(5, 20, 2, 1)); // acme
+    records.add(createRecord(5, 30, 1, 1)); // java
+    records.add(createRecord(5, 40, 1, 1)); // other
+    records.add(createRecord(6, 20, 1, 1)); // not selected
+    final Report report = new Report(root, 2023, 1, 2023, 12);
+    report.select(records);
+    assertEquals(5, report.getBuchungssaetze().size());
+    final List<Report> children = report.getChildren();
+    assertEquals(5, children.size()); // web, acme, java, other, duplicates
+    assertEquals(2, report.findById("web").getBuchungssaetze().size());
+    assertEquals(3, report.findById("acme").getBuchungssaetze().size());
+    assertEquals(1, report.findById("java").getBuchungssaetze().size());
+    assertSame(records.get(4), report.getOther().get(0));
+    assertEquals(1, report.getOther().size());
+    assertEquals(2, report.getDuplicates().size());
+    assertTrue(report.findById("acme").contains(records.get(2)));
+    assertFalse(report.findById("java").contains(records.get(2)));
+    final Report travel = report.findById("travel");
+    assertEquals(1, travel.getBuchungssaetze().size());
+    assertSame(records.get(1), travel.getBuchungssaetze().get(0));
+    assertEquals(1, report.findById("web").getOther().size());
+  }
+
+  private ReportObjective createObjective(final String id, final String kost2Include)
+  {
+    final ReportObjective objective = new ReportObjective();
+    objective.setId(id);
+    objective.setTitle(id);
+    objective.addKost2IncludeRegExp(kost2Include);
+    return objective;
+  }
+
+  private BuchungssatzDO createRecord(final int nummernkreis, final int bereich, final int teilbereich, final int kost2Art)
+  {
+    final Kost2DO kost2 = new Kost2DO();
+    kost2.setNummernkreis(nummernkreis);
+    kost2.setBereich(bereich);
+    kost2.setTeilbereich(teilbereich);
+    kost2.setKost2Art(new Kost2ArtDO().withId(kost2Art));
+    final BuchungssatzDO record = new BuchungssatzDO();
+    record.setKost2(kost2);
+    return record;
+  }
 }
@@ -23,19 +23,51 @@
 
 package org.projectforge.framework.persistence.database;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.projectforge.business.address.AddressDO;
+import org.projectforge.business.address.AddressDao;
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.test.AbstractTestBase;
+import org.projectforge.test.TestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class XmlDumpTestFork extends AbstractTestBase
 {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(XmlDumpTestFork.class);
 
+  private static final int NUMBER_OF_ADDRESSES = 1000;
+
   @Autowired
   private DatabaseService databaseService;
 
   @Autowired
   private XmlDump xmlDump;
 
+  @Autowired
+  private StreamingXmlDump streamingXmlDump;
+
+  @Autowired
+  private AddressDao addressDao;
+
+  @Autowired
+  private DataSource dataSource;
+
   @Override
   protected void initDb()
   {
@@ -43,4 +75,96 @@ public class XmlDumpTestFork extends AbstractTestBase
     init(false);
   }
 
+  @Override
+  protected void afterAll()
+  {
+    recreateDataBase();
+  }
+
+  @Test
+  void streamingDumpRoundTrip() throws IOException
+  {
+    init(true);
+    logon(ADMIN);
+    for (int i = 0; i < NUMBER_OF_ADDRESSES; i++) {
+      final AddressDO address = new AddressDO();
+      address.setName("Name " + i);
+      address.setFirstName("Firstname " + i);
+      address.setComment("Comment with line break\r\nand special chars <&> " + i);
+      addressDao.internalSave(address);
+    }
+    logoff();
+    final Map<String, Long> rowCounts = getRowCounts();
+
+    long millis = System.currentTimeMillis();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlDump.dumpDatabase("dump.xml.gz", out);
+    log.info("XmlDump: " + out.size() + " bytes written in " + (System.currentTimeMillis() - millis) + "ms.");
+
+    final TestUtils testUtils = new TestUtils("projectforge-business");
+    final File dumpDir = testUtils.deleteAndCreateTestFile("streamingDump");
+    final StreamingXmlDump.Statistics dumpStatistics = streamingXmlDump.dump(dumpDir);
+    log.info("StreamingXmlDump.dump: " + dumpStatistics);
+    assertEquals(rowCounts.size(), dumpStatistics.getTables());
+
+    clearDatabase();
+    final StreamingXmlDump.Statistics parallelStatistics = streamingXmlDump.restore(dumpDir, 4);
+    log.info("StreamingXmlDump.restore (parallel): " + parallelStatistics);
+    assertEquals(dumpStatistics.getRows(), parallelStatistics.getRows());
+    assertEquals(rowCounts, getRowCounts());
+
+    // The restored data base must give the same XmlDump as the original one:
+    final ByteArrayOutputStream restoredOut = new ByteArrayOutputStream();
+    xmlDump.dumpDatabase("dump.xml.gz", restoredOut);
+    assertEquals(readGzip(out.toByteArray()), readGzip(restoredOut.toByteArray()),
+        "XmlDump of restored data base differs from XmlDump of original data base.");
+
+    final File secondDumpDir = testUtils.deleteAndCreateTestFile("streamingDump2");
+    streamingXmlDump.dump(secondDumpDir);
+    for (final File file : dumpDir.listFiles()) {
+      assertArrayEquals(readGzipFile(file), readGzipFile(new File(secondDumpDir, file.getName())),
+          "Dump of restored table differs: " + file.getName());
+    }
+
+    clearDatabase();
+    final StreamingXmlDump.Statistics sequentialStatistics = streamingXmlDump.restore(dumpDir, 1);
+    log.info("StreamingXmlDump.restore (sequential): " + sequentialStatistics);
+    assertEquals(rowCounts, getRowCounts());
+    userGroupCache.setExpired();
+
+    logon(ADMIN);
+    final AddressDO address = addressDao.internalLoadAll().stream()
+        .filter(it -> "Name 42".equals(it.getName())).findFirst().orElse(null);
+    assertNotNull(address);
+    assertEquals("Comment with line break\r\nand special chars <&> 42", address.getComment());
+    logoff();
+  }
+
+  private Map<String, Long> getRowCounts()
+  {
+    final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    final Map<String, Long> result = new HashMap<>();
+    for (final String table : jdbc.queryForList(
+        "select table_name from information_schema.tables where table_schema = 'PUBLIC' and table_type = 'BASE TABLE'",
+        String.class)) {
+      if (!table.toLowerCase().startsWith("flyway")) {
+        result.put(table, jdbc.queryForObject("select count(*) from " + table, Long.class));
+      }
+    }
+    return result;
+  }
+
+  private byte[] readGzipFile(final File file) throws IOException
+  {
+    try (final InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+      return IOUtils.toByteArray(in);
+    }
+  }
+
+  private String readGzip(final byte[] bytes) throws IOException
+  {
+    try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+  }
 }
@@ -23,6 +23,8 @@
 
 package org.projectforge.humanresources;
 
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.KundeDao;
@@ -40,6 +42,10 @@ import org.projectforge.framework.time.PFDay;
 import org.projectforge.test.AbstractTestBase;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -59,6 +65,9 @@ public class HRPlanningTest extends AbstractTestBase {
   @Autowired
   private HRPlanningDao hrPlanningDao;
 
+  @Autowired
+  private HRPlanningExport hrPlanningExport;
+
   @Autowired
   private KundeDao kundeDao;
 
@@ -192,6 +201,65 @@ public class HRPlanningTest extends AbstractTestBase {
     hrPlanningDao.update(planning);
   }
 
+  @Test
+  public void testStreamingExport() throws IOException {
+    logon(AbstractTestBase.TEST_FINANCE_USER);
+    final PFUserDO user = getUser(AbstractTestBase.TEST_USER);
+    final PFUserDO otherUser = initTestDB.addUser("HRPlanningExportTestUser");
+    HRPlanningDO planning = new HRPlanningDO();
+    planning.setUser(user);
+    planning.setWeek(LocalDate.of(2011, Month.MARCH, 7));
+    HRPlanningEntryDO entry = new HRPlanningEntryDO();
+    setHours(entry, 1, 2, 3, 4, 5, 6);
+    entry.setProjekt(projekt1);
+    planning.addEntry(entry);
+    entry = new HRPlanningEntryDO();
+    setHours(entry, 2, 4, 6, 8, 10, 12);
+    entry.setStatus(HRPlanningEntryStatus.OTHER);
+    planning.addEntry(entry);
+    hrPlanningDao.save(planning);
+    planning = new HRPlanningDO();
+    planning.setUser(otherUser);
+    planning.setWeek(LocalDate.of(2011, Month.MARCH, 14));
+    entry = new HRPlanningEntryDO();
+    setHours(entry, 8, 7, 6, 5, 4, 3);
+    entry.setProjekt(projekt2);
+    entry.setDescription("Streaming");
+    planning.addEntry(entry);
+    hrPlanningDao.save(planning);
+
+    final HRPlanningFilter filter = new HRPlanningFilter();
+    filter.setStartDay(LocalDate.of(2011, Month.MARCH, 1));
+    filter.setStopDay(LocalDate.of(2011, Month.MARCH, 31));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(3, hrPlanningExport.export(filter, out));
+    try (final XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+      final Sheet sheet = workbook.getSheetAt(0);
+      assertEquals(3, sheet.getLastRowNum());
+      // Ordered by week desc:
+      assertEquals(otherUser.getFullname(), sheet.getRow(1).getCell(0).getStringCellValue());
+      assertEquals(projekt2.getName(), sheet.getRow(1).getCell(1).getStringCellValue());
+      assertEquals(8.0, sheet.getRow(1).getCell(6).getNumericCellValue(), 0.0001);
+      assertEquals(3.0, sheet.getRow(1).getCell(11).getNumericCellValue(), 0.0001);
+      assertEquals("Streaming", sheet.getRow(1).getCell(12).getStringCellValue());
+      assertEquals(user.getFullname(), sheet.getRow(2).getCell(0).getStringCellValue());
+      assertEquals(user.getFullname(), sheet.getRow(3).getCell(0).getStringCellValue());
+    }
+
+    filter.setProjektId(projekt1.getId());
+    assertEquals(1, hrPlanningExport.export(filter, OutputStream.nullOutputStream()));
+    filter.setProjektId(null);
+    filter.setUserId(otherUser.getId());
+    assertEquals(1, hrPlanningExport.export(filter, OutputStream.nullOutputStream()));
+
+    // Users without hr planning rights see only their own plannings:
+    logon(otherUser);
+    filter.setUserId(null);
+    assertEquals(1, hrPlanningExport.export(filter, OutputStream.nullOutputStream()));
+    filter.setUserId(user.getId());
+    assertEquals(0, hrPlanningExport.export(filter, OutputStream.nullOutputStream()));
+  }
+
   private void setHours(final HRPlanningEntryDO entry, final int monday, final int tuesday, final int wednesday,
                         final int thursday,
                         final int friday, final int weekend) {
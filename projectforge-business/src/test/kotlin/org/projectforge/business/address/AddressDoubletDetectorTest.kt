@@ -0,0 +1,133 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.address
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.Random
+
+class AddressDoubletDetectorTest {
+  @Test
+  fun colognePhoneticTest() {
+    Assertions.assertEquals("65752682", AddressDoubletDetector.getColognePhonetic("Müller-Lüdenscheidt"))
+    Assertions.assertEquals("67", AddressDoubletDetector.getColognePhonetic("Meier"))
+    Assertions.assertEquals("67", AddressDoubletDetector.getColognePhonetic("Mayer"))
+    Assertions.assertEquals("67", AddressDoubletDetector.getColognePhonetic("Maier"))
+    Assertions.assertEquals("", AddressDoubletDetector.getColognePhonetic(null))
+  }
+
+  @Test
+  fun detectTest() {
+    val addresses = listOf(
+      createAddress(1, "Kai", "Reinhard", email = "k.reinhard@example.org"),
+      createAddress(2, "Berta", "Smith", phone = "+49 561 1234567"),
+      createAddress(3, "Kai", "Reinhardt", email = "k.reinhard@example.org"),
+      createAddress(4, "berta ", "smith"),
+      createAddress(5, "Horst", "Miller", phone = "0561-1234567"),
+      createAddress(6, "Kai", "Reinhard", deleted = true),
+    )
+    val doublets = AddressDoubletDetector.detect(addresses)
+    Assertions.assertEquals(2, doublets.size)
+    doublets[0].let {
+      Assertions.assertEquals(3, it.address.id)
+      Assertions.assertEquals(1, it.other.id)
+      Assertions.assertTrue(it.score > 0.9 && it.score <= 1.0)
+    }
+    doublets[1].let {
+      Assertions.assertEquals(4, it.address.id)
+      Assertions.assertEquals(2, it.other.id)
+      Assertions.assertEquals(1.0, it.score)
+    }
+  }
+
+  /**
+   * The former filter detected addresses with identical normalized full names as doublets. All of them must be
+   * found by the new detector as well (recall not lower than before).
+   */
+  @Test
+  fun recallTest() {
+    val random = Random(42)
+    val addresses = mutableListOf<AddressDO>()
+    for (i in 1..20000) {
+      addresses.add(
+        createAddress(
+          i,
+          FIRST_NAMES[random.nextInt(FIRST_NAMES.size)],
+          NAMES[random.nextInt(NAMES.size)] + if (random.nextInt(10) == 0) "" else "${random.nextInt(300)}",
+          email = if (random.nextBoolean()) "user${random.nextInt(5000)}@${DOMAINS[random.nextInt(DOMAINS.size)]}" else null,
+          phone = if (random.nextBoolean()) "+49 ${random.nextInt(100000000)}" else null,
+          deleted = random.nextInt(50) == 0,
+        )
+      )
+    }
+    val filter = DoubletsResultFilter()
+    val list = mutableListOf<AddressDO>()
+    addresses.forEach {
+      if (filter.match(list, it)) {
+        list.add(it)
+      }
+    }
+    val found = list.map { it.id }.toSet()
+    Assertions.assertEquals(list.size, found.size, "Each doublet should only be added once.")
+    val expected = getDoubletsByFullname(addresses)
+    Assertions.assertTrue(expected.isNotEmpty())
+    expected.forEach {
+      Assertions.assertTrue(found.contains(it.id), "Doublet ${it.firstName} ${it.name} not found.")
+      Assertions.assertEquals(1.0, filter.getScore(it.id))
+    }
+  }
+
+  /**
+   * The doublet detection as it was done before (identical normalized full names).
+   */
+  private fun getDoubletsByFullname(addresses: List<AddressDO>): List<AddressDO> {
+    val all = addresses.filter { !it.isDeleted }
+    val doubletFullnames = all.groupBy { AddressDoubletDetector.getNormalizedFullname(it) }.filter { it.value.size > 1 }.keys
+    return all.filter { doubletFullnames.contains(AddressDoubletDetector.getNormalizedFullname(it)) }
+  }
+
+  private fun createAddress(
+    id: Int,
+    firstName: String?,
+    name: String?,
+    email: String? = null,
+    phone: String? = null,
+    deleted: Boolean = false,
+  ): AddressDO {
+    val address = AddressDO()
+    address.id = id
+    address.firstName = firstName
+    address.name = name
+    address.email = email
+    address.businessPhone = phone
+    address.isDeleted = deleted
+    return address
+  }
+
+  companion object {
+    private val FIRST_NAMES = arrayOf("Kai", "Berta", "Horst", "Anna", "Ute", "Jan", "Eva", "Otto")
+    private val NAMES = arrayOf("Meier", "Mayer", "Schmidt", "Schmitt", "Müller", "Reinhard", "Smith", "Miller")
+    private val DOMAINS = arrayOf("example.org", "example.com", "projectforge.org")
+  }
+}
@@ -0,0 +1,101 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.utils.NumberHelper
+
+class AddressPhoneIndexTest {
+  @Test
+  fun lookupTest() {
+    val index = AddressPhoneIndex.Index()
+    index.put(createEntry(1, "Kai", "Reinhard", businessPhone = "+49 561 / 316793-0", mobilePhone = "0170 1234567"))
+    index.put(createEntry(2, "Berta", "Smith", privatePhone = "316793-0"))
+    index.put(createEntry(3, "Horst", "Miller", fax = "+44 561 / 316793-0"))
+    Assertions.assertNull(index.lookup("12345"), "Number to short for index.")
+    Assertions.assertEquals(listOf(1, 2), lookup(index, "05613167930"))
+    Assertions.assertEquals(listOf(1, 2), lookup(index, "3167930"), "Local number shouldn't match foreign numbers.")
+    Assertions.assertEquals(listOf(3), lookup(index, "00445613167930"), "UK number shouldn't match German numbers.")
+    Assertions.assertEquals(listOf(1), lookup(index, "01701234567"))
+    Assertions.assertEquals(emptyList<Int>(), lookup(index, "01701234568"))
+
+    // Modification:
+    index.put(createEntry(1, "Kai", "Reinhard", mobilePhone = "0170 1234568"))
+    Assertions.assertEquals(listOf(2), lookup(index, "05613167930"))
+    Assertions.assertEquals(listOf(1), lookup(index, "01701234568"))
+    Assertions.assertEquals(emptyList<Int>(), lookup(index, "01701234567"))
+
+    // Deletion:
+    index.remove(2)
+    Assertions.assertEquals(emptyList<Int>(), lookup(index, "05613167930"))
+    Assertions.assertEquals(emptyList<Int>(), lookup(index, "3167930"))
+    Assertions.assertEquals(listOf(3), lookup(index, "00445613167930"))
+    Assertions.assertEquals(2, index.size)
+  }
+
+  @Test
+  fun matchesTest() {
+    Assertions.assertTrue(AddressPhoneIndex.matches("05613167930", "05613167930"))
+    Assertions.assertTrue(AddressPhoneIndex.matches("3167930", "05613167930"))
+    Assertions.assertTrue(AddressPhoneIndex.matches("05613167930", "3167930"))
+    Assertions.assertFalse(AddressPhoneIndex.matches("00445613167930", "3167930"))
+    Assertions.assertFalse(AddressPhoneIndex.matches("00445613167930", "05613167930"))
+    Assertions.assertFalse(AddressPhoneIndex.matches("004905613167930", "05613167930"))
+    Assertions.assertFalse(AddressPhoneIndex.matches("05613167930", "04413167930"))
+  }
+
+  private fun lookup(index: AddressPhoneIndex.Index, number: String): List<Int>? {
+    return index.lookup(number)?.map { it.addressId }?.sorted()
+  }
+
+  private fun createEntry(
+    id: Int,
+    firstName: String,
+    name: String,
+    businessPhone: String? = null,
+    mobilePhone: String? = null,
+    fax: String? = null,
+    privatePhone: String? = null,
+  ): AddressPhoneIndex.Entry {
+    val address = AddressDO()
+    address.firstName = firstName
+    address.name = name
+    address.businessPhone = businessPhone
+    address.mobilePhone = mobilePhone
+    address.fax = fax
+    address.privatePhone = privatePhone
+    return AddressPhoneIndex.createEntry(id, address)
+  }
+
+  companion object {
+    @JvmStatic
+    @BeforeAll
+    fun setup() {
+      NumberHelper.TEST_COUNTRY_PREFIX_USAGE_IN_TESTCASES_ONLY = "+49"
+    }
+  }
+}
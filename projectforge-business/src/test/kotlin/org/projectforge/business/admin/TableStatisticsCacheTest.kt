@@ -0,0 +1,75 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.admin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.book.BookDO
+import org.projectforge.business.task.TaskDO
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class TableStatisticsCacheTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var tableStatisticsCache: TableStatisticsCache
+
+  @Test
+  fun countTest() {
+    Assertions.assertNull(tableStatisticsCache.getCount(BookDO::class.java), "Tables shouldn't be counted in request.")
+    Assertions.assertNotNull(waitForCount(BookDO::class.java, null), "Table should be counted in background.")
+
+    val tableCount = waitForCount(TaskDO::class.java, null)!!
+    Assertions.assertFalse(tableCount.estimated, "No estimates on HSQLDB.")
+    Assertions.assertTrue(tableCount.count > 0)
+    Assertions.assertSame(tableCount, tableStatisticsCache.getCount(TaskDO::class.java), "Count should be cached.")
+
+    initTestDB.addTask("tableStatisticsCacheTest", "root")
+    Assertions.assertEquals(tableCount.count + 1, tableStatisticsCache.count(TaskDO::class.java)!!.count)
+    Assertions.assertSame(tableCount, tableStatisticsCache.getCount(TaskDO::class.java), "Count not yet expired.")
+
+    val ttlMinutes = tableStatisticsCache.ttlMinutes
+    try {
+      tableStatisticsCache.ttlMinutes = -1
+      // Expired: former count is returned and refreshed in the background.
+      Assertions.assertSame(tableCount, tableStatisticsCache.getCount(TaskDO::class.java))
+      Assertions.assertEquals(tableCount.count + 1, waitForCount(TaskDO::class.java, tableCount)!!.count)
+    } finally {
+      tableStatisticsCache.ttlMinutes = ttlMinutes
+    }
+  }
+
+  /**
+   * Waits until the count of the given entity differs from the given one.
+   */
+  private fun waitForCount(entity: Class<*>, oldCount: TableStatisticsCache.TableCount?): TableStatisticsCache.TableCount? {
+    for (i in 0..100) {
+      val tableCount = tableStatisticsCache.getCount(entity)
+      if (tableCount != null && tableCount !== oldCount) {
+        return tableCount
+      }
+      Thread.sleep(50)
+    }
+    return tableStatisticsCache.getCount(entity)
+  }
+}
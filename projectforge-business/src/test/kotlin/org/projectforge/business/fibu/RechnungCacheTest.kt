@@ -0,0 +1,93 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.math.BigDecimal
+import java.time.LocalDate
+
+class RechnungCacheTest {
+  @Test
+  fun incrementalUpdateTest() {
+    val orders = createOrders(3, 2)
+    val invoice1 = createInvoice(1, orders[0].positionen!![0], orders[0].positionen!![1])
+    val invoice2 = createInvoice(2, orders[0].positionen!![0], orders[1].positionen!![0])
+    val maps = RechnungCache.InvoicePositionMaps()
+    maps.update(null, invoice1.positionen!! + invoice2.positionen!!)
+    Assertions.assertEquals(3, maps.invoicePositionMapByAuftragId[orders[0].id]!!.size)
+    Assertions.assertEquals(2, maps.invoicePositionMapByAuftragsPositionId[orders[0].positionen!![0].id]!!.size)
+    Assertions.assertEquals(1, maps.invoicePositionMapByAuftragId[orders[1].id]!!.size)
+
+    // Invoice 1 is re-assigned to the third order:
+    invoice1.positionen!![0].auftragsPosition = orders[2].positionen!![0]
+    invoice1.positionen!![1].auftragsPosition = orders[2].positionen!![1]
+    val oldSet = maps.invoicePositionMapByAuftragId[orders[0].id]!!
+    Assertions.assertEquals(setOf(orders[0].id, orders[2].id), maps.update(invoice1.id, invoice1.positionen!!))
+    Assertions.assertEquals(3, oldSet.size, "Published sets must not be modified (copy-on-write).")
+    Assertions.assertEquals(1, maps.invoicePositionMapByAuftragId[orders[0].id]!!.size)
+    Assertions.assertNull(maps.invoicePositionMapByAuftragsPositionId[orders[0].positionen!![1].id])
+    Assertions.assertEquals(2, maps.invoicePositionMapByAuftragId[orders[2].id]!!.size)
+
+    // Invoice 2 is deleted:
+    invoice2.isDeleted = true
+    Assertions.assertEquals(setOf(orders[0].id, orders[1].id), maps.update(invoice2.id, invoice2.positionen!!))
+    Assertions.assertNull(maps.invoicePositionMapByAuftragId[orders[0].id])
+    Assertions.assertNull(maps.invoicePositionMapByAuftragId[orders[1].id])
+    Assertions.assertEquals(2, maps.invoicePositionMapByAuftragId[orders[2].id]!!.size)
+  }
+
+  private fun createOrders(number: Int, numberOfPositions: Int): List<AuftragDO> {
+    var positionId = 0
+    return (1..number).map { i ->
+      val order = AuftragDO()
+      order.id = i
+      order.positionen = (1..numberOfPositions).map { posNumber ->
+        val pos = AuftragsPositionDO()
+        pos.id = ++positionId
+        pos.number = posNumber.toShort()
+        pos.auftrag = order
+        pos
+      }.toMutableList()
+      order
+    }
+  }
+
+  private fun createInvoice(id: Int, vararg orderPositions: AuftragsPositionDO): RechnungDO {
+    val invoice = RechnungDO()
+    invoice.id = id
+    invoice.nummer = id
+    invoice.datum = LocalDate.of(2022, 1, 1)
+    invoice.positionen = orderPositions.mapIndexed { index, orderPosition ->
+      val pos = RechnungsPositionDO()
+      pos.number = (index + 1).toShort()
+      pos.rechnung = invoice
+      pos.auftragsPosition = orderPosition
+      pos.menge = BigDecimal.ONE
+      pos.einzelNetto = BigDecimal.TEN
+      pos
+    }.toMutableList()
+    return invoice
+  }
+}
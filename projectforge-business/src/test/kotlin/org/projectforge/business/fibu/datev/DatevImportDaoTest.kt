@@ -0,0 +1,206 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.datev
+
+import de.micromata.merlin.excel.importer.ImportStorage
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.KontoDO
+import org.projectforge.business.fibu.KontoDao
+import org.projectforge.business.fibu.kost.*
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.math.BigDecimal
+import java.time.LocalDate
+
+class DatevImportDaoTest : AbstractTestBase() {
+    @Autowired
+    private lateinit var datevImportDao: DatevImportDao
+
+    @Autowired
+    private lateinit var buchungssatzDao: BuchungssatzDao
+
+    @Autowired
+    private lateinit var kontoDao: KontoDao
+
+    @Autowired
+    private lateinit var kost1Dao: Kost1Dao
+
+    @Autowired
+    private lateinit var kost2Dao: Kost2Dao
+
+    @Test
+    fun importTest() {
+        logon(TEST_FINANCE_USER)
+        createKostAndKonten(2)
+        val year = 2019
+        val records = (1..3).map { Record(it, BigDecimal("${it}00.00"), LocalDate.of(year, 1, it)) }
+        var storage = importBuchungsdaten(records)
+        var sheet = storage.sheets[0]
+        Assertions.assertEquals(3, sheet.elements.size)
+        datevImportDao.reconcile(storage, sheet.name)
+        sheet.elements.forEach { Assertions.assertNull(it.oldValue, "New record expected.") }
+        datevImportDao.commit(storage, sheet.name)
+
+        val dbSaetze = buchungssatzDao.getBuchungssaetze(year, 1).mapValues { it.value.single() }
+        Assertions.assertEquals(3, dbSaetze.size)
+        dbSaetze[2]!!.let {
+            Assertions.assertEquals(0, BigDecimal("200.00").compareTo(it.betrag))
+            Assertions.assertEquals(KONTO_NUMMER_BASE, it.konto?.nummer)
+            Assertions.assertEquals(KONTO_NUMMER_BASE + 1, it.gegenKonto?.nummer)
+            Assertions.assertEquals(KOST_STRING_BASE + "01", it.kost1?.formattedNumber)
+            Assertions.assertEquals(KOST_STRING_BASE + "01", it.kost2?.formattedNumber)
+        }
+        Assertions.assertTrue(buchungssatzDao.getBuchungssaetze(year, 2).isEmpty())
+
+        // Second import of the same month with one modified and one new record:
+        val modifiedRecords = records.toMutableList()
+        modifiedRecords[1] = Record(2, BigDecimal("222.22"), LocalDate.of(year, 1, 2))
+        modifiedRecords.add(Record(4, BigDecimal("400.00"), LocalDate.of(year, 1, 4)))
+        storage = importBuchungsdaten(modifiedRecords)
+        sheet = storage.sheets[0]
+        datevImportDao.reconcile(storage, sheet.name)
+        Assertions.assertEquals(4, sheet.elements.size)
+        sheet.elements.forEach {
+            val satznr = it.value!!.satznr!!
+            if (satznr <= 3) {
+                Assertions.assertEquals(dbSaetze[satznr]!!.id, it.oldValue?.id)
+            } else {
+                Assertions.assertNull(it.oldValue)
+            }
+        }
+        datevImportDao.commit(storage, sheet.name)
+        val result = buchungssatzDao.getBuchungssaetze(year, 1).mapValues { it.value.single() }
+        Assertions.assertEquals(4, result.size)
+        Assertions.assertEquals(0, BigDecimal("222.22").compareTo(result[2]!!.betrag))
+        Assertions.assertEquals(dbSaetze[2]!!.id, result[2]!!.id)
+    }
+
+    @Test
+    fun duplicatesTest() {
+        logon(TEST_FINANCE_USER)
+        createKostAndKonten(1)
+        val year = 2017
+        val records = listOf(
+            Record(1, BigDecimal("100.00"), LocalDate.of(year, 1, 1)),
+            Record(2, BigDecimal("200.00"), LocalDate.of(year, 1, 2)),
+            Record(2, BigDecimal("222.22"), LocalDate.of(year, 1, 3)),
+        )
+        val storage = importBuchungsdaten(records)
+        val sheet = storage.sheets[0]
+        datevImportDao.reconcile(storage, sheet.name)
+        Assertions.assertEquals(3, sheet.elements.size)
+        Assertions.assertTrue(sheet.elements[0].errorProperties.isNullOrEmpty(), "Unique satznr expected.")
+        // All occurrences of a duplicate satznr are errors, because it's unknown which one is the right one:
+        for (i in 1..2) {
+            Assertions.assertNotNull(sheet.elements[i].errorProperties?.get("satznr"), "Duplicate satznr should be an error.")
+            Assertions.assertFalse(sheet.elements[i].selected)
+        }
+        datevImportDao.commit(storage, sheet.name)
+        val result = buchungssatzDao.getBuchungssaetze(year, 1)
+        Assertions.assertEquals(listOf(1), result.keys.sorted())
+    }
+
+    /**
+     * Creates the accounts [KONTO_NUMMER_BASE]... and kost1 [KOST_STRING_BASE]01... as well as kost2
+     * [KOST_STRING_BASE]01, if not yet existing.
+     */
+    private fun createKostAndKonten(number: Int) {
+        for (i in 0 until number) {
+            if (kontoDao.getKonto(KONTO_NUMMER_BASE + i) == null) {
+                val konto = KontoDO()
+                konto.nummer = KONTO_NUMMER_BASE + i
+                konto.bezeichnung = "Test account $i"
+                kontoDao.save(konto)
+            }
+            if (kost1Dao.getKost1(5, 987, 1, i + 1) == null) {
+                val kost1 = Kost1DO()
+                kost1.nummernkreis = 5
+                kost1.bereich = 987
+                kost1.teilbereich = 1
+                kost1.endziffer = i + 1
+                kost1Dao.save(kost1)
+            }
+        }
+        if (kost2Dao.getKost2(5, 987, 1, 1) == null) {
+            val kost2 = Kost2DO()
+            kost2.nummernkreis = 5
+            kost2.bereich = 987
+            kost2.teilbereich = 1
+            kost2.kost2Art = Kost2ArtDO().withId(1)
+            kost2Dao.save(kost2)
+        }
+    }
+
+    private fun importBuchungsdaten(records: List<Record>): ImportStorage<BuchungssatzDO> {
+        return datevImportDao.importBuchungsdaten(ByteArrayInputStream(createExcel(records)), "buchungssaetze.xlsx")
+    }
+
+    /**
+     * Creates a DATEV export of January (sheet '01').
+     */
+    private fun createExcel(records: List<Record>): ByteArray {
+        XSSFWorkbook().use { workbook ->
+            val sheet = workbook.createSheet("01")
+            val dateStyle = workbook.createCellStyle()
+            dateStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat("dd.MM.yyyy")
+            val headRow = sheet.createRow(0)
+            HEADERS.forEachIndexed { idx, head -> headRow.createCell(idx).setCellValue(head) }
+            records.forEachIndexed { idx, record ->
+                val row = sheet.createRow(idx + 1)
+                row.createCell(0).setCellValue(record.satznr.toDouble())
+                row.createCell(1).setCellValue(record.betrag.toDouble())
+                row.createCell(2).setCellValue("S")
+                row.createCell(3).setCellValue("$KOST_STRING_BASE${"%02d".format(record.kost + 1)}")
+                row.createCell(4).setCellValue("${KOST_STRING_BASE}01")
+                row.createCell(5).setCellValue((KONTO_NUMMER_BASE + record.kost).toDouble())
+                row.createCell(6).setCellValue((KONTO_NUMMER_BASE + 1).toDouble())
+                row.createCell(7).setCellValue("")
+                row.createCell(8).setCellValue("B${record.satznr}")
+                val dateCell = row.createCell(9)
+                dateCell.setCellValue(record.datum)
+                dateCell.cellStyle = dateStyle
+                row.createCell(10).setCellValue("Record #${record.satznr}")
+                row.createCell(11).setCellValue("")
+            }
+            val out = ByteArrayOutputStream()
+            workbook.write(out)
+            return out.toByteArray()
+        }
+    }
+
+    private class Record(val satznr: Int, val betrag: BigDecimal, val datum: LocalDate, val kost: Int = 0)
+
+    companion object {
+        private const val KONTO_NUMMER_BASE = 98700
+
+        private const val KOST_STRING_BASE = "5.987.01."
+
+        private val HEADERS = arrayOf("SatzNr.", "Betrag", "SH", "Alt.-Kst.", "Kostenstelle/-träger", "Konto", "Gegenkonto",
+                "Menge", "Beleg", "Datum", "Text", "Kommentar")
+    }
+}
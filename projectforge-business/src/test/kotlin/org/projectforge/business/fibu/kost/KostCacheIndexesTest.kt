@@ -0,0 +1,124 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.kost
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.ProjektDO
+
+class KostCacheIndexesTest {
+  @Test
+  fun indexesTest() {
+    val kost1List = listOf(createKost1(1, 5, 123, 4, 2), createKost1(2, 5, 123, 4, 3))
+    val projekt = ProjektDO()
+    projekt.id = 42
+    val kost2List = listOf(
+      createKost2(1, 5, 123, 4, 1, projekt),
+      createKost2(2, 5, 123, 4, 2, projekt, KostentraegerStatus.ENDED),
+      createKost2(3, 5, 123, 5, 1),
+    )
+    val indexes = KostCache.Indexes(kost1List, kost2List)
+    Assertions.assertEquals(2, indexes.getKost1(5, 123, 4, 3)?.id)
+    Assertions.assertNull(indexes.getKost1(5, 123, 4, 4))
+    Assertions.assertEquals(1, indexes.getKost2(5, 123, 4, 1)?.id)
+    Assertions.assertEquals(3, indexes.getKost2(5, 123, 5, 1)?.id)
+    Assertions.assertNull(indexes.getKost2(5, 123, 5, 2))
+    Assertions.assertEquals(listOf(1, 2), indexes.getKost2List(5, 123, 4).map { it.id }.sortedBy { it })
+    Assertions.assertEquals(listOf(1, 2), indexes.getKost2ListOfProjekt(42).map { it.id }.sortedBy { it })
+    Assertions.assertTrue(indexes.getKost2ListOfProjekt(43).isEmpty())
+
+    // Modification of the number and project of kost2 #1:
+    val modified = createKost2(1, 5, 123, 5, 2)
+    indexes.putKost2(modified)
+    Assertions.assertNull(indexes.getKost2(5, 123, 4, 1))
+    Assertions.assertSame(modified, indexes.getKost2(5, 123, 5, 2))
+    Assertions.assertEquals(listOf(2), indexes.getKost2List(5, 123, 4).map { it.id })
+    Assertions.assertEquals(listOf(1, 3), indexes.getKost2List(5, 123, 5).map { it.id }.sortedBy { it })
+    Assertions.assertEquals(listOf(2), indexes.getKost2ListOfProjekt(42).map { it.id })
+
+    indexes.putKost1(createKost1(2, 5, 123, 4, 5))
+    Assertions.assertNull(indexes.getKost1(5, 123, 4, 3))
+    Assertions.assertEquals(2, indexes.getKost1(5, 123, 4, 5)?.id)
+
+    // Numbers out of range (sharing the same key) are found as well:
+    val outOfRange = createKost1(3, 5, 123, 4, 2 + 0x10000)
+    indexes.putKost1(outOfRange)
+    Assertions.assertEquals(KostCache.Indexes.getKey(5, 123, 4, 2), KostCache.Indexes.getKey(5, 123, 4, 2 + 0x10000))
+    Assertions.assertSame(outOfRange, indexes.getKost1(5, 123, 4, 2 + 0x10000))
+    Assertions.assertEquals(1, indexes.getKost1(5, 123, 4, 2)?.id)
+  }
+
+  @Test
+  fun duplicatesTest() {
+    val indexes = KostCache.Indexes(
+      listOf(createKost1(1, 5, 123, 4, 2, true), createKost1(2, 5, 123, 4, 2)),
+      listOf(createKost2(1, 5, 123, 4, 1, deleted = true), createKost2(2, 5, 123, 4, 1)),
+    )
+    Assertions.assertEquals(2, indexes.getKost1(5, 123, 4, 2)?.id, "Non-deleted entry should be preferred.")
+    Assertions.assertEquals(2, indexes.getKost2(5, 123, 4, 1)?.id, "Non-deleted entry should be preferred.")
+
+    indexes.putKost1(createKost1(2, 5, 123, 4, 2, true))
+    Assertions.assertEquals(1, indexes.getKost1(5, 123, 4, 2)?.id, "Both deleted, lower id should be preferred.")
+    indexes.putKost1(createKost1(2, 5, 123, 4, 2))
+    Assertions.assertEquals(2, indexes.getKost1(5, 123, 4, 2)?.id)
+    indexes.putKost1(createKost1(1, 5, 123, 4, 2))
+    Assertions.assertEquals(1, indexes.getKost1(5, 123, 4, 2)?.id, "Both non-deleted, lower id should be preferred.")
+    indexes.putKost1(createKost1(1, 5, 123, 4, 3))
+    Assertions.assertEquals(2, indexes.getKost1(5, 123, 4, 2)?.id)
+    Assertions.assertEquals(1, indexes.getKost1(5, 123, 4, 3)?.id)
+
+    indexes.putKost2(createKost2(2, 5, 123, 4, 2))
+    Assertions.assertEquals(1, indexes.getKost2(5, 123, 4, 1)?.id, "Deleted entry should be found, if it's the only one.")
+    Assertions.assertEquals(2, indexes.getKost2(5, 123, 4, 2)?.id)
+  }
+
+  private fun createKost1(
+    id: Int, nummernkreis: Int, bereich: Int, teilbereich: Int, endziffer: Int, deleted: Boolean = false,
+  ): Kost1DO {
+    val kost1 = Kost1DO()
+    kost1.isDeleted = deleted
+    kost1.id = id
+    kost1.nummernkreis = nummernkreis
+    kost1.bereich = bereich
+    kost1.teilbereich = teilbereich
+    kost1.endziffer = endziffer
+    return kost1
+  }
+
+  private fun createKost2(
+    id: Int, nummernkreis: Int, bereich: Int, teilbereich: Int, kost2Art: Int, projekt: ProjektDO? = null,
+    status: KostentraegerStatus = KostentraegerStatus.ACTIVE, deleted: Boolean = false,
+  ): Kost2DO {
+    val kost2 = Kost2DO()
+    kost2.isDeleted = deleted
+    kost2.id = id
+    kost2.nummernkreis = nummernkreis
+    kost2.bereich = bereich
+    kost2.teilbereich = teilbereich
+    kost2.kost2Art = Kost2ArtDO().withId(kost2Art)
+    kost2.projekt = projekt
+    kost2.kostentraegerStatus = status
+    return kost2
+  }
+}
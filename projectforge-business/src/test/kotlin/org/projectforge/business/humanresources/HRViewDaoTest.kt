@@ -0,0 +1,161 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.humanresources
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.fibu.KundeDO
+import org.projectforge.business.fibu.KundeDao
+import org.projectforge.business.fibu.ProjektDO
+import org.projectforge.business.fibu.ProjektDao
+import org.projectforge.business.timesheet.TimesheetDO
+import org.projectforge.business.timesheet.TimesheetDao
+import org.projectforge.framework.time.PFDateTime
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.time.LocalDate
+import java.time.Month
+
+class HRViewDaoTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var hrViewDao: HRViewDao
+
+  @Autowired
+  private lateinit var kundeDao: KundeDao
+
+  @Autowired
+  private lateinit var projektDao: ProjektDao
+
+  @Autowired
+  private lateinit var timesheetDao: TimesheetDao
+
+  @Test
+  fun aggregatedTimesheetsTest() {
+    logon(TEST_FINANCE_USER)
+    initTestDB.addUser("$prefix-user1")
+    initTestDB.addUser("$prefix-user2")
+    initTestDB.addTask(prefix, "root")
+    initTestDB.addTask("$prefix.1", prefix)
+    initTestDB.addTask("$prefix.1.1", "$prefix.1")
+    initTestDB.addTask("$prefix.2", prefix)
+    initTestDB.addTask("$prefix.3", prefix)
+    val kunde = KundeDO()
+    kunde.id = 733
+    kunde.name = "HR view customer"
+    kundeDao.save(kunde)
+    createProjekt(1, "$prefix.1", kunde)
+    createProjekt(2, "$prefix.2", kunde)
+
+    logon(ADMIN)
+    var day = 1
+    createTimesheet("user1", "1", day++, 30)
+    createTimesheet("user1", "1.1", day++, 45)
+    createTimesheet("user1", "1.1", day++, 0)
+    createTimesheet("user1", "2", day++, 15)
+    createTimesheet("user1", "3", day++, 0)
+    createTimesheet("user2", "1", day++, 59)
+    createTimesheet("user2", "3", day++, 1)
+    createTimesheet("user2", "3", day++, 0).let { timesheetDao.internalMarkAsDeleted(it) }
+    // Outside the period:
+    createTimesheet("user2", "2", 30, 0)
+
+    val filter = HRFilter()
+    filter.startDay = LocalDate.of(2021, Month.APRIL, 1)
+    filter.stopDay = LocalDate.of(2021, Month.APRIL, 20)
+    logon(TEST_FINANCE_USER)
+    var data = assertSameResults(filter)
+    Assertions.assertEquals(2, data.projects.count { it.kundeId == kunde.id })
+    val user1 = data.getUserData(getUser("$prefix-user1"))
+    Assertions.assertEquals(5L * 3600 + (30 + 45 + 15) * 60, user1.actualSecondsSum)
+    Assertions.assertEquals(3600L, user1.actualSecondsRestSum)
+    Assertions.assertEquals(3L * 3600 + (30 + 45) * 60, user1.getEntry(data.projects.find { it.nummer == 1 }).actualSeconds)
+    val user2 = data.getUserData(getUser("$prefix-user2"))
+    Assertions.assertEquals(2L * 3600 + (59 + 1) * 60, user2.actualSecondsSum, "Deleted time sheet shouldn't be counted.")
+
+    filter.isAllProjectsGroupedByCustomer = true
+    data = assertSameResults(filter)
+    Assertions.assertTrue(data.customers.any { it.id == kunde.id })
+    Assertions.assertEquals(4L * 3600 + (30 + 45 + 15) * 60, data.getUserData(getUser("$prefix-user1")).getEntry(kunde).actualSeconds)
+
+    filter.isAllProjectsGroupedByCustomer = false
+    filter.isOtherProjectsGroupedByCustomer = true
+    assertSameResults(filter)
+
+    // No access to time sheets of other users:
+    logon(TEST_USER)
+    filter.isOtherProjectsGroupedByCustomer = false
+    data = assertSameResults(filter)
+    Assertions.assertNull(data.getUserData(getUser("$prefix-user1")))
+  }
+
+  /**
+   * Compares the results of the aggregated data base query with the results of the time sheet entities.
+   * @return The aggregated result.
+   */
+  private fun assertSameResults(filter: HRFilter): HRViewData {
+    val startTime = PFDateTime.from(filter.startDay).beginOfDay.utilDate
+    val stopTime = PFDateTime.from(filter.stopDay).endOfDay.utilDate
+    val expected = HRViewData(filter)
+    hrViewDao.addTimesheets(expected, filter, startTime, stopTime)
+    val aggregated = HRViewData(filter)
+    hrViewDao.addAggregatedTimesheets(aggregated, filter, startTime, stopTime)
+    Assertions.assertEquals(expected.userDatas.keys, aggregated.userDatas.keys)
+    Assertions.assertEquals(expected.projects.mapNotNull { it.id }.sorted(), aggregated.projects.mapNotNull { it.id }.sorted())
+    Assertions.assertEquals(expected.customers.mapNotNull { it.id }.sorted(), aggregated.customers.mapNotNull { it.id }.sorted())
+    expected.userDatas.values.forEach { userData ->
+      val other = aggregated.userDatas[userData.userId]!!
+      Assertions.assertEquals(userData.actualSecondsSum, other.actualSecondsSum)
+      Assertions.assertEquals(userData.actualSecondsRestSum, other.actualSecondsRestSum)
+      Assertions.assertEquals(userData.entries.size, other.entries.size)
+      userData.entries.forEach { entry ->
+        val otherEntry = if (entry.kunde != null) other.getEntry(entry.kunde) else other.getEntry(entry.projekt)
+        Assertions.assertEquals(entry.actualSeconds, otherEntry.actualSeconds)
+      }
+    }
+    return aggregated
+  }
+
+  private fun createProjekt(nummer: Int, taskName: String, kunde: KundeDO) {
+    val projekt = ProjektDO()
+    projekt.name = "HR view project $nummer"
+    projekt.nummer = nummer
+    projekt.kunde = kunde
+    projekt.task = initTestDB.getTask(taskName)
+    projektDao.save(projekt)
+  }
+
+  private fun createTimesheet(user: String, taskName: String, day: Int, minutes: Int): TimesheetDO {
+    val ts = TimesheetDO()
+    ts.startTime = PFDateTime.withDate(2021, Month.APRIL, day, 8, 0, 0).utilDate
+    ts.stopTime = PFDateTime.withDate(2021, Month.APRIL, day, 9, minutes).utilDate
+    ts.task = initTestDB.getTask("$prefix.$taskName")
+    ts.user = getUser("$prefix-$user")
+    timesheetDao.internalSave(ts)
+    return ts
+  }
+
+  companion object {
+    const val prefix = "hrview"
+  }
+}
@@ -23,6 +23,7 @@
 
 package org.projectforge.business.user
 
+import org.hibernate.SessionFactory
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.fail
@@ -93,6 +94,34 @@ class UserAuthenticationsDaoTest : AbstractTestBase() {
         Assertions.assertEquals(loggedInUser.id, user.id)
     }
 
+    @Test
+    fun tokenCacheTest() {
+        logon(TEST_USER)
+        val loggedInUser = ThreadLocalUserContext.user!!
+        userAuthenticationsDao.getByUserId(loggedInUser.id)
+        val davToken = userAuthenticationsDao.getToken(loggedInUser.id, UserTokenType.DAV_TOKEN)!!
+        logoff()
+        Assertions.assertEquals(loggedInUser.id, userAuthenticationsDao.getUserByToken(loggedInUser.id, UserTokenType.DAV_TOKEN, davToken)!!.id)
+        val statistics = em.entityManagerFactory.unwrap(SessionFactory::class.java).statistics
+        val statisticsEnabled = statistics.isStatisticsEnabled
+        try {
+            statistics.setStatisticsEnabled(true)
+            statistics.clear()
+            for (i in 0..9) {
+                Assertions.assertEquals(loggedInUser.id, userAuthenticationsDao.getUserByToken(loggedInUser.id, UserTokenType.DAV_TOKEN, davToken)!!.id)
+            }
+            Assertions.assertEquals(0, statistics.queryExecutionCount, "Verified token should be cached.")
+            Assertions.assertNull(userAuthenticationsDao.getUserByToken(loggedInUser.id, UserTokenType.DAV_TOKEN, "${davToken}x"))
+            Assertions.assertEquals(1, statistics.queryExecutionCount, "Unknown token must be checked by the data base.")
+        } finally {
+            statistics.setStatisticsEnabled(statisticsEnabled)
+        }
+        logon(TEST_USER)
+        userAuthenticationsDao.renewToken(loggedInUser.id, UserTokenType.DAV_TOKEN)
+        logoff()
+        Assertions.assertNull(userAuthenticationsDao.getUserByToken(loggedInUser.id, UserTokenType.DAV_TOKEN, davToken), "Renewed token must not be cached anymore.")
+    }
+
     @Test
     fun decryptTest() {
         logon(TEST_USER)
@@ -0,0 +1,63 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.user
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+import org.projectforge.framework.persistence.user.entities.UserRightDO
+
+class UserGroupCacheIndexesTest {
+  @Test
+  fun indexesTest() {
+    val users = createUsers(100)
+    val rightMap = mapOf(
+      1 to listOf(UserRightDO(users[0], UserRightId.FIBU_AUSGANGSRECHNUNGEN), UserRightDO(users[0], UserRightId.PM_ORDER_BOOK)),
+      2 to listOf(UserRightDO(users[1], UserRightId.HR_EMPLOYEE)),
+    )
+    val indexes = UserGroupCache.Indexes(users.associateBy { it.id!! } + (0 to null), rightMap)
+    Assertions.assertEquals(3, indexes.userMap[3]?.id)
+    Assertions.assertEquals(5, indexes.usernameMap["user5"]?.id)
+    Assertions.assertNull(indexes.usernameMap["unknown"])
+    Assertions.assertEquals(7, indexes.fullnameMap["Firstname7 Lastname7"]?.id)
+    Assertions.assertEquals(
+      UserRightId.PM_ORDER_BOOK.id,
+      indexes.userRightIdMap[1]?.get(UserRightId.PM_ORDER_BOOK.id)?.rightIdString
+    )
+    Assertions.assertNull(indexes.userRightIdMap[1]?.get(UserRightId.HR_EMPLOYEE.id))
+    Assertions.assertNotNull(indexes.userRightIdMap[2]?.get(UserRightId.HR_EMPLOYEE.id))
+    Assertions.assertNull(indexes.userRightIdMap[3])
+  }
+
+  private fun createUsers(number: Int): List<PFUserDO> {
+    return (1..number).map {
+      val user = PFUserDO()
+      user.id = it
+      user.username = "user$it"
+      user.firstname = "Firstname$it"
+      user.lastname = "Lastname$it"
+      user
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.user
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class UserTokenCacheTest {
+  @Test
+  fun cacheTest() {
+    val cache = UserTokenCache(maxSize = 3)
+    cache.put("id:1", UserTokenType.DAV_TOKEN, "token-1", 1)
+    cache.put("id:1", UserTokenType.REST_CLIENT, "token-2", 1)
+    cache.put("id:2", UserTokenType.DAV_TOKEN, "token-3", 2)
+    Assertions.assertEquals(1, cache.getUserId("id:1", UserTokenType.DAV_TOKEN, "token-1"))
+    Assertions.assertNull(cache.getUserId("id:1", UserTokenType.DAV_TOKEN, "token-2"), "Wrong token.")
+    Assertions.assertNull(cache.getUserId("id:1", UserTokenType.CALENDAR_REST, "token-1"), "Wrong token type.")
+    Assertions.assertNull(cache.getUserId("id:2", UserTokenType.DAV_TOKEN, "token-1"), "Wrong user.")
+
+    cache.invalidate(1, UserTokenType.DAV_TOKEN)
+    Assertions.assertNull(cache.getUserId("id:1", UserTokenType.DAV_TOKEN, "token-1"))
+    Assertions.assertEquals(1, cache.getUserId("id:1", UserTokenType.REST_CLIENT, "token-2"))
+    cache.invalidate(1)
+    Assertions.assertNull(cache.getUserId("id:1", UserTokenType.REST_CLIENT, "token-2"))
+    Assertions.assertEquals(1, cache.size)
+
+    for (i in 10..19) {
+      cache.put("id:$i", UserTokenType.DAV_TOKEN, "token-$i", i)
+    }
+    Assertions.assertEquals(3, cache.size, "Cache should be bounded.")
+    Assertions.assertNull(cache.getUserId("id:2", UserTokenType.DAV_TOKEN, "token-3"), "Eldest entry should be removed.")
+    Assertions.assertEquals(19, cache.getUserId("id:19", UserTokenType.DAV_TOKEN, "token-19"))
+  }
+
+  @Test
+  fun expiryTest() {
+    val cache = UserTokenCache(ttlMillis = -1)
+    cache.put("name:kai", UserTokenType.DAV_TOKEN, "token", 1)
+    Assertions.assertNull(cache.getUserId("name:kai", UserTokenType.DAV_TOKEN, "token"), "Entry should be expired.")
+    Assertions.assertEquals(0, cache.size)
+  }
+}
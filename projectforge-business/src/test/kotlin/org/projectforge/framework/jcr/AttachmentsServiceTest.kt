@@ -0,0 +1,170 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.jcr
+
+import org.hibernate.SessionFactory
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.book.BookDO
+import org.projectforge.business.book.BookDao
+import org.projectforge.business.book.BookStatus
+import org.projectforge.jcr.FileInfo
+import org.projectforge.jcr.FileSizeStandardChecker
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+import java.io.InputStream
+
+class AttachmentsServiceTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var attachmentsService: AttachmentsService
+
+  @Autowired
+  private lateinit var bookDao: BookDao
+
+  @Test
+  fun attachmentsInfoTest() {
+    logon(ADMIN)
+    val accessChecker = AttachmentsDaoAccessChecker(bookDao, JCR_PATH, null, FileSizeStandardChecker(1_000_000))
+    val book = BookDO()
+    book.title = "AttachmentsServiceTest"
+    book.status = BookStatus.PRESENT
+    bookDao.save(book)
+    val statistics = emf.entityManagerFactory.unwrap(SessionFactory::class.java).statistics
+    val statisticsEnabled = statistics.isStatisticsEnabled
+    statistics.setStatisticsEnabled(true)
+
+    statistics.clear()
+    for (i in 1..3) {
+      val (fileInfo, content) = createFile("single-$i.txt")
+      attachmentsService.addAttachment(JCR_PATH, fileInfo, content, bookDao, book, accessChecker)
+    }
+    Assertions.assertEquals(3L, getUpdateCount(statistics), "Each upload updates the book.")
+    assertAttachmentsInfo(book, 3)
+
+    statistics.clear()
+    val files = (1..100).map { createFile("batch-$it.txt") }
+    val attachments = attachmentsService.addAttachments(JCR_PATH, files, bookDao, book, accessChecker)
+    Assertions.assertEquals(100, attachments.size)
+    Assertions.assertEquals(1L, getUpdateCount(statistics), "The batch upload should update the book only once.")
+    assertAttachmentsInfo(book, 103)
+
+    Assertions.assertThrows(Exception::class.java) {
+      attachmentsService.addAttachments(JCR_PATH, listOf(createFile("new.txt"), createFile("batch-1.txt")), bookDao, book, accessChecker)
+    }
+    assertAttachmentsInfo(book, 103)
+
+    attachmentsService.deleteAttachment(JCR_PATH, attachments[42].fileId!!, bookDao, book, accessChecker)
+    assertAttachmentsInfo(book, 102)
+    attachmentsService.changeFileInfo(JCR_PATH, attachments[43].fileId!!, bookDao, book, "renamed.txt", null, accessChecker)
+    assertAttachmentsInfo(book, 102)
+
+    // Names with spaces can't be separated, so the attachments info is recalculated:
+    val (fileInfo, content) = createFile("name with spaces.txt")
+    attachmentsService.addAttachment(JCR_PATH, fileInfo, content, bookDao, book, accessChecker)
+    assertAttachmentsInfo(book, 103)
+    attachmentsService.deleteAttachment(JCR_PATH, attachments[44].fileId!!, bookDao, book, accessChecker)
+    attachmentsService.changeFileInfo(JCR_PATH, attachments[45].fileId!!, bookDao, book, "renamed 2.txt", null, accessChecker)
+    assertAttachmentsInfo(book, 102)
+
+    // Second file of batch exceeds the maximum file size, but the first file is already stored:
+    Assertions.assertThrows(Exception::class.java) {
+      attachmentsService.addAttachments(
+        JCR_PATH,
+        listOf(createFile("partial.txt"), Pair(FileInfo("too-large.txt"), ByteArray(2_000_000).inputStream())),
+        bookDao,
+        book,
+        accessChecker
+      )
+    }
+    assertAttachmentsInfo(book, 103)
+    statistics.setStatisticsEnabled(statisticsEnabled)
+  }
+
+  @Test
+  fun applyChangesTest() {
+    val info = BookDO()
+    Assertions.assertFalse(AttachmentsService.applyChanges(info, AttachmentsEventType.UPLOAD, listOf(attachment("1", "a"))))
+    info.attachmentsCounter = 0
+    info.attachmentsSize = 0
+    Assertions.assertTrue(AttachmentsService.applyChanges(info, AttachmentsEventType.UPLOAD, listOf(attachment("1", "a"))))
+    Assertions.assertTrue(
+      AttachmentsService.applyChanges(info, AttachmentsEventType.UPLOAD, listOf(attachment("2", "b"), attachment("3", "c")))
+    )
+    Assertions.assertEquals("c b a", info.attachmentsNames)
+    Assertions.assertEquals("3 2 1", info.attachmentsIds)
+    Assertions.assertEquals(3, info.attachmentsCounter)
+    Assertions.assertEquals(30L, info.attachmentsSize)
+
+    Assertions.assertTrue(AttachmentsService.applyChanges(info, AttachmentsEventType.DELETE, listOf(attachment("2", "b"))))
+    Assertions.assertEquals("c a", info.attachmentsNames)
+    Assertions.assertEquals("3 1", info.attachmentsIds)
+    Assertions.assertEquals(2, info.attachmentsCounter)
+    Assertions.assertEquals(20L, info.attachmentsSize)
+    Assertions.assertFalse(AttachmentsService.applyChanges(info, AttachmentsEventType.DELETE, listOf(attachment("2", "b"))))
+
+    Assertions.assertTrue(AttachmentsService.applyChanges(info, AttachmentsEventType.MODIFICATION, listOf(attachment("1", "d"))))
+    Assertions.assertEquals("c d", info.attachmentsNames)
+    Assertions.assertTrue(AttachmentsService.applyChanges(info, AttachmentsEventType.UPLOAD, listOf(attachment("4", "e f"))))
+    Assertions.assertEquals("e f c d", info.attachmentsNames)
+    // Names aren't separable anymore:
+    Assertions.assertFalse(AttachmentsService.applyChanges(info, AttachmentsEventType.DELETE, listOf(attachment("1", "d"))))
+    Assertions.assertEquals("4 3 1", info.attachmentsIds, "Attachments info shouldn't be modified on failure.")
+  }
+
+  private fun attachment(fileId: String, name: String): Attachment {
+    val attachment = Attachment()
+    attachment.fileId = fileId
+    attachment.name = name
+    attachment.size = 10
+    return attachment
+  }
+
+  /**
+   * Compares the attachments info of the book with the attachments info calculated of all attachments.
+   */
+  private fun assertAttachmentsInfo(book: BookDO, expectedCounter: Int) {
+    val dbBook = bookDao.internalGetById(book.id)
+    val attachments = attachmentsService.internalGetAttachments(JCR_PATH, book.id)
+    Assertions.assertEquals(expectedCounter, attachments.size)
+    Assertions.assertEquals(attachments.size, dbBook.attachmentsCounter)
+    Assertions.assertEquals(attachments.sumOf { it.size ?: 0L }, dbBook.attachmentsSize)
+    Assertions.assertEquals(attachments.map { it.fileId }.sortedBy { it }, dbBook.attachmentsIds!!.split(' ').sorted())
+    Assertions.assertEquals(
+      attachments.joinToString(separator = " ") { "${it.name}" }.split(' ').sorted(),
+      dbBook.attachmentsNames!!.split(' ').sorted()
+    )
+  }
+
+  private fun getUpdateCount(statistics: org.hibernate.stat.Statistics): Long {
+    return statistics.getEntityStatistics(BookDO::class.java.name).updateCount
+  }
+
+  private fun createFile(fileName: String): Pair<FileInfo, InputStream> {
+    return Pair(FileInfo(fileName), "Content of $fileName".toByteArray().inputStream())
+  }
+
+  companion object {
+    private const val JCR_PATH = "AttachmentsServiceTest"
+  }
+}
@@ -0,0 +1,116 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.api
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.address.AddressDO
+import org.projectforge.business.address.AddressDao
+import org.projectforge.business.book.BookDO
+import org.projectforge.business.book.BookDao
+import org.projectforge.business.book.BookStatus
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class SearchDaoTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var addressDao: AddressDao
+
+  @Autowired
+  private lateinit var bookDao: BookDao
+
+  @Autowired
+  private lateinit var searchDao: SearchDao
+
+  @Test
+  fun searchTest() {
+    logon(ADMIN)
+    createEntries("searchdaotest", 3)
+    val filter = BaseSearchFilter()
+    filter.searchString = "searchdaotest*"
+    val slowArea = object : SearchDao.SearchArea("SLOW", bookDao, filter) {
+      override fun search(searchDao: SearchDao): List<SearchResultData> {
+        Thread.sleep(5000)
+        return emptyList()
+      }
+    }
+    val start = System.currentTimeMillis()
+    val result = searchDao.search(
+      listOf(
+        SearchDao.SearchArea("ADDRESS", addressDao, filter),
+        slowArea,
+        SearchDao.SearchArea("BOOK", bookDao, filter),
+      ), 2000
+    )
+    Assertions.assertTrue(System.currentTimeMillis() - start < 4000, "Slow area should be cancelled.")
+    Assertions.assertEquals(listOf("SLOW"), result.timedOutAreas)
+    Assertions.assertTrue(result.isSearched("SLOW"))
+    Assertions.assertNull(result.getAreaResult("SLOW"))
+    Assertions.assertEquals(3, result.getAreaResult("ADDRESS").size)
+    Assertions.assertEquals(3, result.getAreaResult("BOOK").size)
+    Assertions.assertFalse(result.isSearched("UNKNOWN"))
+    // Merged result: the best matches of each area first.
+    Assertions.assertEquals(6, result.entries.size)
+    val firstAreas = result.entries.take(2).map { it.dataObject::class.java }.toSet()
+    Assertions.assertEquals(setOf(AddressDO::class.java, BookDO::class.java), firstAreas)
+
+    logoff()
+    val noUserResult = searchDao.search(listOf(SearchDao.SearchArea("ADDRESS", addressDao, filter)), 2000)
+    Assertions.assertNull(noUserResult.getAreaResult("ADDRESS"), "No access without logged-in user.")
+  }
+
+  @Test
+  fun areaTimeBudgetTest() {
+    val filter = BaseSearchFilter()
+    val areas = (0..SearchDao.MAX_PARALLEL_AREAS).map { index ->
+      object : SearchDao.SearchArea("AREA$index", bookDao, filter) {
+        override fun search(searchDao: SearchDao): List<SearchResultData> {
+          // The last area waits for a free thread and would exceed the budget, if measured from the call.
+          Thread.sleep(if (index < SearchDao.MAX_PARALLEL_AREAS) 1500 else 1000)
+          return emptyList()
+        }
+      }
+    }
+    val result = searchDao.search(areas, 2000)
+    Assertions.assertTrue(result.timedOutAreas.isEmpty(), "Time budget should start with the search of each area.")
+    areas.forEach { area ->
+      Assertions.assertNotNull(result.getAreaResult(area.id))
+      val duration = result.getAreaDuration(area.id)!!
+      Assertions.assertTrue(duration in 1000L..2000L, "Unexpected duration of area ${area.id}: $duration")
+    }
+  }
+
+  private fun createEntries(prefix: String, number: Int) {
+    for (i in 1..number) {
+      val address = AddressDO()
+      address.name = "$prefix$i"
+      addressDao.internalSave(address)
+      val book = BookDO()
+      book.title = "$prefix$i"
+      book.status = BookStatus.PRESENT
+      bookDao.internalSave(book)
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.book.BookDao
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class HistoryIndexerTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var bookDao: BookDao
+
+  @Autowired
+  private lateinit var emgrFactory: PfEmgrFactory
+
+  @Autowired
+  private lateinit var historyIndexer: HistoryIndexer
+
+  @Test
+  fun indexEachEntryOnceTest() {
+    logon(ADMIN)
+    historyIndexer.settleMillis = 0
+    historyIndexer.resetWatermark()
+    HistoryTestUtils.createBook(bookDao, emgrFactory, "HistoryIndexerTest-1", 10)
+
+    val runs = mutableListOf<HistoryIndexer.Run>()
+    runs.add(historyIndexer.indexNewEntries()!!)
+    Assertions.assertTrue(runs[0].indexed >= 11, "All entries of the last 24 hours expected.")
+
+    runs.add(historyIndexer.indexNewEntries()!!)
+    Assertions.assertEquals(0, runs[1].indexed, "No new entries, nothing to index.")
+
+    HistoryTestUtils.createBook(bookDao, emgrFactory, "HistoryIndexerTest-2", 100)
+    runs.add(historyIndexer.indexNewEntries()!!)
+    Assertions.assertEquals(101, runs[2].indexed, "Only the new entries (insert and manual entries) expected.")
+    Assertions.assertEquals(runs[0].untilPk, runs[2].afterPk, "Consecutive runs expected.")
+    Assertions.assertEquals(
+      countHistoryEntries(runs[0].afterPk ?: 0), runs.sumOf { it.indexed }, "Each entry should be indexed once."
+    )
+    Assertions.assertNotNull(historyIndexer.lastRun)
+  }
+
+  private fun countHistoryEntries(afterPk: Long): Long {
+    return emgrFactory.runRoTrans { emgr ->
+      emgr.entityManager.createQuery(
+        "select count(h.pk) from PfHistoryMasterDO h where h.pk > :afterPk", java.lang.Long::class.java
+      ).setParameter("afterPk", afterPk).singleResult.toLong()
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.history
+
+import de.micromata.genome.db.jpa.history.api.HistoryEntry
+import de.micromata.genome.db.jpa.history.entities.EntityOpType
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.business.book.BookDO
+import org.projectforge.business.book.BookDao
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.test.AbstractTestBase
+import org.springframework.beans.factory.annotation.Autowired
+
+class HistoryPagingTest : AbstractTestBase() {
+  @Autowired
+  private lateinit var bookDao: BookDao
+
+  @Autowired
+  private lateinit var emgrFactory: PfEmgrFactory
+
+  @Test
+  fun pagingTest() {
+    logon(ADMIN)
+    val book = HistoryTestUtils.createBook(bookDao, emgrFactory, "HistoryPagingTest", NUMBER_OF_ENTRIES)
+    val otherBook = HistoryTestUtils.createBook(bookDao, emgrFactory, "HistoryPagingTest-other", 10)
+
+    val pks = mutableListOf<Long>()
+    var afterPk: Long? = null
+    var lastEntry: HistoryEntry<*>? = null
+    do {
+      val page = bookDao.getHistoryEntries(book, afterPk, 1000)
+      page.forEach { entry ->
+        lastEntry?.let {
+          Assertions.assertFalse(entry.modifiedAt.after(it.modifiedAt), "Newest entries first expected.")
+        }
+        lastEntry = entry
+        pks.add(entry.pk)
+      }
+      afterPk = page.lastOrNull()?.pk
+    } while (page.size == 1000)
+    // Manual entries plus the insert entry:
+    Assertions.assertEquals(NUMBER_OF_ENTRIES + 1, pks.size)
+    Assertions.assertEquals(pks.size, pks.toSet().size, "Each entry expected only once.")
+    Assertions.assertEquals(EntityOpType.Insert, lastEntry!!.entityOpType)
+    Assertions.assertEquals(
+      bookDao.getHistoryEntries(book).size, pks.size,
+      "Paged history should contain the same entries as the whole history."
+    )
+
+    val summaries = bookDao.getLastHistoryEntrySummaries(book, 10)
+    Assertions.assertEquals(pks.take(10), summaries.map { it.pk })
+    Assertions.assertEquals(BookDO::class.java.name, summaries[0].entityName)
+    Assertions.assertEquals(book.id.toLong(), summaries[0].entityId)
+    val expanded = bookDao.getHistoryEntry(book, summaries[0].pk)!!
+    Assertions.assertEquals("title", expanded.diffEntries.single().propertyName)
+    Assertions.assertEquals("title-${NUMBER_OF_ENTRIES}", expanded.diffEntries.single().newValue)
+    Assertions.assertNull(
+      bookDao.getHistoryEntry(otherBook, summaries[0].pk),
+      "History entry of other objects shouldn't be expanded."
+    )
+    Assertions.assertEquals(11, bookDao.getHistoryEntries(otherBook, null, 100).size)
+    Assertions.assertTrue(bookDao.getHistoryEntries(BookDO(), null, 100).isEmpty())
+    Assertions.assertTrue(bookDao.getHistoryEntries(book, -1L, 100).isEmpty(), "Unknown afterPk: empty page expected.")
+    val otherPk = bookDao.getHistoryEntries(otherBook, null, 1).single().pk
+    Assertions.assertTrue(
+      bookDao.getHistoryEntries(book, otherPk, 100).isEmpty(),
+      "afterPk of other object: empty page expected."
+    )
+  }
+
+  companion object {
+    private const val NUMBER_OF_ENTRIES = 10000
+  }
+}
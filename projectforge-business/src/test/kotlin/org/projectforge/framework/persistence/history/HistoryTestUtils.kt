@@ -0,0 +1,60 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history
+
+import de.micromata.genome.db.jpa.history.api.HistoryServiceManager
+import de.micromata.genome.db.jpa.history.entities.EntityOpType
+import org.projectforge.business.book.BookDO
+import org.projectforge.business.book.BookDao
+import org.projectforge.business.book.BookStatus
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.test.AbstractTestBase
+
+/**
+ * Fixtures for history tests.
+ */
+internal object HistoryTestUtils {
+  /**
+   * Saves a new book and adds the given number of manual history entries (modifications of the title by the admin
+   * user). Together with the insert entry, the book has numberOfHistoryEntries + 1 history entries.
+   */
+  fun createBook(bookDao: BookDao, emgrFactory: PfEmgrFactory, title: String, numberOfHistoryEntries: Int): BookDO {
+    val book = BookDO()
+    book.title = title
+    book.status = BookStatus.PRESENT
+    bookDao.save(book)
+    val historyService = HistoryServiceManager.get().historyService
+    emgrFactory.runInTrans { emgr ->
+      for (i in 1..numberOfHistoryEntries) {
+        historyService.insertManualEntry(
+          emgr, EntityOpType.Update, BookDO::class.java.name, book.id, "${AbstractTestBase.ADMIN_USER.id}",
+          "title", String::class.java.name, "title-${i - 1}", "title-$i"
+        )
+      }
+      null
+    }
+    return book
+  }
+}
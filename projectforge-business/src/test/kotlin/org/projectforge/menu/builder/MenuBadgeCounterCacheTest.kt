@@ -0,0 +1,84 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.menu.builder
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.projectforge.framework.persistence.user.api.UserContext
+import org.projectforge.framework.persistence.user.entities.PFUserDO
+
+class MenuBadgeCounterCacheTest {
+  @Test
+  fun slowCounterTest() {
+    val cache = MenuBadgeCounterCache(maxAgeMillis = 500)
+    val user = PFUserDO()
+    user.id = 1
+    user.username = "kai"
+    val userContext = UserContext(user)
+    var calls = 0
+    val menuItemDef = MenuItemDef("SLOW", "slow", badgeCounter = {
+      Thread.sleep(1000) // Slow counter, e. g. data base query.
+      ++calls
+    })
+    var start = System.currentTimeMillis()
+    Assertions.assertNull(cache.getCounter(userContext, menuItemDef), "Counter not yet computed.")
+    Assertions.assertNull(cache.getCounter(userContext, menuItemDef), "Counter not yet computed.")
+    Assertions.assertTrue(System.currentTimeMillis() - start < 500, "Menu delivery shouldn't wait for slow counters.")
+    Thread.sleep(1500)
+    Assertions.assertEquals(1, cache.getCounter(userContext, menuItemDef), "Counter computed once in background.")
+    Thread.sleep(600) // Counter is now outdated.
+    start = System.currentTimeMillis()
+    Assertions.assertEquals(1, cache.getCounter(userContext, menuItemDef), "Last value expected while recomputing.")
+    Assertions.assertTrue(System.currentTimeMillis() - start < 500, "Menu delivery shouldn't wait for slow counters.")
+    Thread.sleep(1500)
+    Assertions.assertEquals(2, cache.getCounter(userContext, menuItemDef))
+
+    Assertions.assertNull(cache.getCounter(userContext, MenuItemDef("NO_COUNTER", "noCounter")))
+    cache.shutdown()
+  }
+
+  @Test
+  fun evictionTest() {
+    val cache = MenuBadgeCounterCache(maxAgeMillis = 100, entryTtlMillis = 300)
+    val menuItemDef = MenuItemDef("COUNTER", "counter", badgeCounter = { 42 })
+    cache.getCounter(createUserContext(1), menuItemDef)
+    cache.getCounter(createUserContext(2), menuItemDef)
+    Assertions.assertEquals(2, cache.size)
+    Thread.sleep(200)
+    cache.getCounter(createUserContext(2), menuItemDef)
+    Assertions.assertEquals(2, cache.size, "Entries not yet outdated.")
+    Thread.sleep(200)
+    cache.getCounter(createUserContext(2), menuItemDef)
+    Assertions.assertEquals(1, cache.size, "Entry of user 1 should be evicted.")
+    cache.shutdown()
+  }
+
+  private fun createUserContext(id: Int): UserContext {
+    val user = PFUserDO()
+    user.id = id
+    user.username = "user$id"
+    return UserContext(user)
+  }
+}
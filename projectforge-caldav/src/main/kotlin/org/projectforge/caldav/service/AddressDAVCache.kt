@@ -32,14 +32,25 @@ import org.projectforge.caldav.model.Contact
 import org.projectforge.framework.access.OperationType
 import org.projectforge.framework.cache.AbstractCache
 import org.projectforge.framework.persistence.api.BaseDOChangedListener
+import org.projectforge.framework.persistence.jpa.PfEmgrFactory
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext
+import org.projectforge.security.RegisterUser4Thread
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Service
+import java.util.*
+import java.util.concurrent.Executors
 import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
 
 private val log = KotlinLogging.logger {}
 
 /**
  * Cache needed, because vcard generation takes lot of cpu power....
+ *
+ * The rendered vcards are held by a size-bounded [VCardStore] keyed by address id and last update. Only the versions
+ * (last updates) of the requested addresses are read from the data base, so a full sync of an address book is served
+ * without vcard rendering. Modified addresses being part of the store are re-rendered in the background directly after
+ * saving.
  */
 @Service
 open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListener<AddressDO> {
@@ -49,19 +60,27 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
     @Autowired
     private lateinit var addressImageDao: AddressImageDao
 
+    @Autowired
+    private lateinit var emgrFactory: PfEmgrFactory
+
     @Autowired
     private lateinit var vCardService: VCardService
 
-    private var contactMap = mutableMapOf<Int, Contact>()
+    internal val vCardStore = VCardStore()
+
+    /**
+     * Single thread, so modifications of the same address are rendered in the order of saving.
+     */
+    private val renderExecutor = Executors.newSingleThreadExecutor()
 
     open fun getContacts(addressBook: AddressBook, ids: List<Int>): List<Contact> {
         val result = mutableListOf<Contact>()
         val missedInCache = mutableListOf<Int>()
+        val lastUpdates = getLastUpdates(ids)
         ids.forEach {
-            val contact = getCachedAddress(it)
-            if (contact != null) {
-                val copy = Contact(contact, addressBook)
-                result.add(copy)
+            val entry = vCardStore.get(it, lastUpdates[it])
+            if (entry != null) {
+                result.add(createContact(entry, addressBook))
             } else {
                 missedInCache.add(it)
             }
@@ -69,35 +88,68 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
         log.info("Got ${result.size} addresses from cache and must load ${missedInCache.size} from data base...")
         if (missedInCache.size > 0) {
             addressDao.internalLoad(missedInCache).forEach {
-                val vcard = vCardService.buildVCardByteArray(it, addressImageDao)
-                val contact = Contact(it.id, it.fullName, it.lastUpdate, vcard)
-                addCachedContact(it.id, contact)
-                val copy = Contact(contact, addressBook)
-                result.add(copy)
+                result.add(createContact(render(it), addressBook))
             }
         }
         return result
     }
 
-    private fun getCachedAddress(id: Int): Contact? {
-        synchronized(contactMap) {
-            return contactMap[id]
-        }
+    private fun render(address: AddressDO): VCardStore.Entry {
+        val vcard = vCardService.buildVCardByteArray(address, addressImageDao)
+        val entry = VCardStore.Entry(address.id, address.lastUpdate, address.fullName, vcard)
+        vCardStore.put(entry)
+        return entry
     }
 
-    private fun addCachedContact(id: Int, contact: Contact) {
-        synchronized(contactMap) {
-            contactMap[id] = contact
+    private fun createContact(entry: VCardStore.Entry, addressBook: AddressBook): Contact {
+        val contact = Contact(entry.addressId, entry.fullName, entry.lastUpdate, entry.vcard)
+        contact.addressBook = addressBook
+        return contact
+    }
+
+    /**
+     * @param ids The address ids to get the last updates for or null for all addresses.
+     */
+    private fun getLastUpdates(ids: Collection<Int>?): Map<Int, Date?> {
+        if (ids != null && ids.isEmpty()) {
+            return emptyMap()
+        }
+        return emgrFactory.runRoTrans { emgr ->
+            val query = if (ids == null) {
+                emgr.entityManager.createQuery("select a.id, a.lastUpdate from AddressDO a", Array<Any?>::class.java)
+            } else {
+                emgr.entityManager.createQuery(
+                    "select a.id, a.lastUpdate from AddressDO a where a.id in :ids",
+                    Array<Any?>::class.java
+                ).setParameter("ids", ids)
+            }
+            query.resultList.associate { (it[0] as Int) to (it[1] as Date?) }
         }
     }
 
     /**
-     * After modification of any address (insert, update, delete, undelete) this address should be removed from
-     * this cache.
+     * After modification of any address (insert, update, delete, undelete) this address is removed from this cache.
+     * If the address was part of the cache, it will be re-rendered in the background.
      */
     override fun afterSaveOrModify(changedObject: AddressDO, operationType: OperationType) {
-        synchronized(contactMap) {
-            contactMap.remove(changedObject.id)
+        val id = changedObject.id ?: return
+        if (!vCardStore.contains(id)) {
+            return // Not part of any address book yet, will be rendered on demand.
+        }
+        vCardStore.remove(id)
+        if (operationType == OperationType.DELETE) {
+            return
+        }
+        val userContext = ThreadLocalUserContext.userContext
+        renderExecutor.execute {
+            try {
+                userContext?.let { RegisterUser4Thread.registerUser(it) } // Needed for access checking of images.
+                addressDao.internalGetById(id)?.let { render(it) }
+            } catch (ex: Exception) {
+                log.error("Error while rendering vcard of address #$id: ${ex.message}", ex)
+            } finally {
+                RegisterUser4Thread.unregister()
+            }
         }
     }
 
@@ -106,10 +158,17 @@ open class AddressDAVCache : AbstractCache(TICKS_PER_HOUR), BaseDOChangedListene
         addressDao.register(this)
     }
 
+    @PreDestroy
+    fun preDestroy() {
+        renderExecutor.shutdownNow()
+    }
+
+    /**
+     * Removes outdated entries (e. g. modified by other nodes or directly in the data base).
+     */
     override fun refresh() {
-        log.info("Clearing cache ${this::class.java.simpleName}.")
-        synchronized(contactMap) {
-            contactMap.clear()
-        }
+        log.info("Refreshing cache ${this::class.java.simpleName}.")
+        val removed = vCardStore.removeOutdated(getLastUpdates(null))
+        log.info("$removed outdated entries removed, ${vCardStore.size} vcards cached.")
     }
 }
@@ -0,0 +1,132 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.caldav.service
+
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Size-bounded, concurrent store of rendered vcards. An entry is only valid for the version of the address given by
+ * its last update, so stale entries are never delivered (key is (addressId, lastUpdate)).
+ *
+ * If the store exceeds [maxSize], the least recently used entries are removed, until 90% of [maxSize] is reached.
+ */
+internal class VCardStore(val maxSize: Int = DEFAULT_MAX_SIZE) {
+    class Entry(val addressId: Int, val lastUpdate: Date?, val fullName: String?, val vcard: ByteArray) {
+        @Volatile
+        internal var lastAccess = accessCounter.incrementAndGet()
+    }
+
+    private val entries = ConcurrentHashMap<Int, Entry>()
+
+    private val evictionLock = Any()
+
+    val size: Int
+        get() = entries.size
+
+    fun contains(addressId: Int): Boolean {
+        return entries.containsKey(addressId)
+    }
+
+    /**
+     * @return The entry of the given address, if the version (last update) matches.
+     */
+    fun get(addressId: Int, lastUpdate: Date?): Entry? {
+        val entry = entries[addressId] ?: return null
+        if (!isSameVersion(entry.lastUpdate, lastUpdate)) {
+            return null
+        }
+        entry.lastAccess = accessCounter.incrementAndGet()
+        return entry
+    }
+
+    /**
+     * Stores the given entry, if no entry of a newer version of the address exists.
+     */
+    fun put(entry: Entry) {
+        entries.merge(entry.addressId, entry) { old, new -> if (isNewer(old.lastUpdate, new.lastUpdate)) old else new }
+        if (entries.size > maxSize) {
+            evict()
+        }
+    }
+
+    fun remove(addressId: Int) {
+        entries.remove(addressId)
+    }
+
+    /**
+     * Removes all entries not matching the given versions.
+     * @param lastUpdates The last updates of all (current) addresses by id.
+     * @return The number of removed entries.
+     */
+    fun removeOutdated(lastUpdates: Map<Int, Date?>): Int {
+        var counter = 0
+        entries.values.forEach { entry ->
+            val lastUpdate = lastUpdates[entry.addressId]
+            if (!lastUpdates.containsKey(entry.addressId) || !isSameVersion(lastUpdate, entry.lastUpdate)) {
+                if (entries.remove(entry.addressId, entry)) {
+                    ++counter
+                }
+            }
+        }
+        return counter
+    }
+
+    fun clear() {
+        entries.clear()
+    }
+
+    private fun evict() {
+        synchronized(evictionLock) {
+            if (entries.size <= maxSize) {
+                return // Already done by another thread.
+            }
+            val toRemove = entries.size - maxSize * 9 / 10
+            entries.values.sortedBy { it.lastAccess }.take(toRemove).forEach {
+                entries.remove(it.addressId, it)
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 20_000
+
+        /**
+         * Logical clock for LRU (cheaper and more precise than System.currentTimeMillis()).
+         */
+        private val accessCounter = AtomicLong()
+
+        /**
+         * Compares the time only (java.sql.Timestamp and java.util.Date aren't equal).
+         */
+        private fun isSameVersion(date: Date?, other: Date?): Boolean {
+            return date?.time == other?.time
+        }
+
+        private fun isNewer(date: Date?, other: Date?): Boolean {
+            return date != null && (other == null || date.time > other.time)
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.caldav.service
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.sql.Timestamp
+import java.util.*
+
+class VCardStoreTest {
+    @Test
+    fun versionTest() {
+        val store = VCardStore()
+        store.put(VCardStore.Entry(1, Date(1000), "1", ByteArray(0)))
+        Assertions.assertNotNull(store.get(1, Date(1000)))
+        Assertions.assertNotNull(store.get(1, Timestamp(1000)), "Timestamps should match dates.")
+        Assertions.assertNull(store.get(1, Date(2000)), "Outdated version shouldn't be delivered.")
+
+        store.put(VCardStore.Entry(1, Date(2000), "1", ByteArray(0)))
+        store.put(VCardStore.Entry(1, Date(1500), "1", ByteArray(0))) // Older version mustn't overwrite newer one.
+        Assertions.assertNotNull(store.get(1, Date(2000)))
+
+        store.put(VCardStore.Entry(2, Date(1000), "2", ByteArray(0)))
+        store.put(VCardStore.Entry(3, Date(1000), "3", ByteArray(0)))
+        Assertions.assertEquals(1, store.removeOutdated(mapOf(1 to Date(2000), 2 to Date(1000))))
+        Assertions.assertFalse(store.contains(3))
+        Assertions.assertEquals(2, store.size)
+    }
+
+    @Test
+    fun evictionTest() {
+        val store = VCardStore(100)
+        for (i in 1..100) {
+            store.put(VCardStore.Entry(i, Date(1000), "$i", ByteArray(0)))
+        }
+        Assertions.assertNotNull(store.get(1, Date(1000))) // Entry 1 is now the most recently used one.
+        store.put(VCardStore.Entry(101, Date(1000), "101", ByteArray(0)))
+        Assertions.assertEquals(90, store.size)
+        Assertions.assertTrue(store.contains(1))
+        Assertions.assertTrue(store.contains(101))
+        Assertions.assertFalse(store.contains(2))
+    }
+
+}
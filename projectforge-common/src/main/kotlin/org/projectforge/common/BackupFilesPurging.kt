@@ -47,6 +47,9 @@ object BackupFilesPurging {
      * @param baseDate Optional date as base date (today is the default value).
      * @param dateFormatter The format of the date in the filenames (default value is 'yyyy-MM-dd'.
      * @param dateRegex The regex matching the [dateFormatter] (default value is '\d{4}-\d{2}-\d{2}Ä).
+     * @param getRequiredFiles Optional function returning the names of the files (in the backup directory) a backup file
+     * depends on, e. g. the base archive of an incremental backup. Required files of kept files are never deleted (resolved
+     * recursively), so a kept incremental backup keeps its whole chain.
      */
     @JvmStatic
     @JvmOverloads
@@ -65,7 +68,8 @@ object BackupFilesPurging {
                         */
                        baseDate: LocalDate = LocalDate.now(),
                        dateFormatter: DateTimeFormatter = DATE_FORMATTER,
-                       dateRegex: Regex = DATE_REGEX) {
+                       dateRegex: Regex = DATE_REGEX,
+                       getRequiredFiles: ((File) -> Collection<String>)? = null) {
         if (!backupDirectory.exists() || !backupDirectory.isDirectory) {
             log.error { "Can't purge directory ${backupDirectory.absolutePath}, it doesn't exist." }
             return
@@ -75,8 +79,8 @@ object BackupFilesPurging {
         val keepDailyBackupsUntil = baseDate.minusDays(keepDailyBackups)
         val keepWeeklyBackupsUntil = baseDate.minusDays(keepWeeklyBackups * 7)
         log.info { "Keeping daily backups back until ${DATE_FORMATTER.format(keepDailyBackupsUntil)}, wwekly backups until ${DATE_FORMATTER.format(keepWeeklyBackupsUntil)} and keeping monthly backups forever in ${backupDirectory.absolutePath}/${filePrefix ?: ""}*..." }
-        var deletedFiles = 0
-        var keptFiles = 0
+        val filesToDelete = mutableListOf<File>()
+        val keptFiles = mutableListOf<File>()
         var totalFiles = 0
         backupDirectory.listFiles()?.sorted()?.let { fileList ->
             for (file in fileList) {
@@ -96,32 +100,60 @@ object BackupFilesPurging {
                     monthsSet.add(monthOfYear)
                     if (firstEntryOfMonth) {
                         // Don't remove the first file of each month.
-                        keptFiles++
+                        keptFiles.add(file)
                     } else if (firstEntryOfWeek) {
                         // Remove first entries of week only after keepWeeklyBackupsUntil
                         if (date.isBefore(keepDailyBackupsUntil) && date.isBefore(keepWeeklyBackupsUntil)) {
-                            log.info { "Deleting file '${file.absolutePath}'..." }
-                            file.delete()
-                            deletedFiles++
+                            filesToDelete.add(file)
                         } else {
-                            keptFiles++
+                            keptFiles.add(file)
                         }
                     } else if (date.dayOfMonth > 1) {
                         // Daily backup not at the beginning of a month.
                         if (date.isBefore(keepDailyBackupsUntil)) {
-                            log.info { "Deleting file '${file.absolutePath}'..." }
-                            file.delete()
-                            deletedFiles++
+                            filesToDelete.add(file)
                         } else {
-                            keptFiles++
+                            keptFiles.add(file)
                         }
                     } else {
-                        keptFiles++
+                        keptFiles.add(file)
                     }
                 }
             }
         }
-        log.info { "Deleted $deletedFiles/$totalFiles files ($keptFiles kept) in ${backupDirectory.absolutePath}'" }
+        if (getRequiredFiles != null) {
+            keepRequiredFiles(backupDirectory, keptFiles, filesToDelete, getRequiredFiles)
+        }
+        filesToDelete.forEach { file ->
+            log.info { "Deleting file '${file.absolutePath}'..." }
+            file.delete()
+        }
+        log.info { "Deleted ${filesToDelete.size}/$totalFiles files (${keptFiles.size} kept) in ${backupDirectory.absolutePath}'" }
+    }
+
+    /**
+     * Moves all files required by kept files (recursively) from [filesToDelete] to [keptFiles].
+     */
+    private fun keepRequiredFiles(backupDirectory: File, keptFiles: MutableList<File>, filesToDelete: MutableList<File>,
+                                  getRequiredFiles: (File) -> Collection<String>) {
+        val visited = mutableSetOf<String>()
+        val stack = ArrayDeque(keptFiles)
+        while (stack.isNotEmpty()) {
+            val file = stack.removeLast()
+            if (!visited.add(file.name)) {
+                continue
+            }
+            getRequiredFiles(file).forEach { name ->
+                val required = File(backupDirectory, name)
+                if (filesToDelete.remove(required)) {
+                    log.info { "Keeping file '${required.absolutePath}', it's required by '${file.name}'." }
+                    keptFiles.add(required)
+                }
+                if (required.exists()) {
+                    stack.add(required)
+                }
+            }
+        }
     }
 
     private val DATE_REGEX = """\d{4}-\d{2}-\d{2}""".toRegex()
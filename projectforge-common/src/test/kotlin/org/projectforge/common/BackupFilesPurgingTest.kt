@@ -117,6 +117,46 @@ class BackupFilesPurgingTest {
     }
   }
 
+  @Test
+  fun purgeRequiredFilesTest() {
+    val tmpDir = createTempDir("BackupFilesPurgingRequiredTest")
+    try {
+      val basename = "projectforge"
+      val baseDate = LocalDate.of(2021, Month.JANUARY, 18)
+      createTempFiles(tmpDir, baseDate, basename)
+      val dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd")
+      // Full backups on the 1st, 11th and 21st of each month (and the oldest one), incremental backups based on the
+      // previous day otherwise:
+      val getRequiredFiles = { file: File ->
+        val date = LocalDate.parse(file.name.removePrefix("$basename-").substring(0, 10), dateFormatter)
+        if (date.dayOfMonth % 10 == 1 || !date.isAfter(baseDate.minusMonths(5))) {
+          emptyList()
+        } else {
+          listOf("$basename-${dateFormatter.format(date.minusDays(1))}$SUFFIX")
+        }
+      }
+      BackupFilesPurging.purgeDirectory(tmpDir, baseDate = baseDate, keepDailyBackups = 8, keepWeeklyBackups = 4,
+        getRequiredFiles = getRequiredFiles)
+      val files = tmpDir.listFiles()
+      // First day of week 04.01. and its chain back to the full backup of 01.01.:
+      Assertions.assertTrue(files.any { it.name == "$basename-2021-01-04$SUFFIX" })
+      Assertions.assertTrue(files.any { it.name == "$basename-2021-01-03$SUFFIX" })
+      Assertions.assertTrue(files.any { it.name == "$basename-2021-01-02$SUFFIX" })
+      Assertions.assertTrue(files.any { it.name == "$basename-2021-01-01$SUFFIX" })
+      Assertions.assertFalse(files.any { it.name == "$basename-2020-12-31$SUFFIX" })
+      // Daily backups until 2021-01-10 require the chain back to the full backup of 01.01. as well:
+      Assertions.assertTrue(files.any { it.name == "$basename-2021-01-09$SUFFIX" })
+      // Every kept file has all its required files:
+      files.forEach { file ->
+        getRequiredFiles(file).forEach { required ->
+          Assertions.assertTrue(File(tmpDir, required).exists(), "'$required' required by '${file.name}' was deleted.")
+        }
+      }
+    } finally {
+      tmpDir.deleteRecursively()
+    }
+  }
+
   private fun createTempFiles(tmpDir: File, baseDate: LocalDate, vararg basenames: String) {
     var current = baseDate.minusMonths(5)
     val dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd")
@@ -32,13 +32,19 @@ import java.util.zip.ZipOutputStream
 
 class BackupMain {
     companion object {
+        private const val BLOB_STORE_DIR_OPTION = "--blobStoreDir="
+
+        private const val BLOB_STORE_DIR_PROPERTY = "projectforge.jcr.blobStoreDir"
+
         @JvmStatic
-        fun main(args: Array<String>) {
+        fun main(allArgs: Array<String>) {
+            val args = getArgs(allArgs)
             if (args.isEmpty() || args.size > 2) {
                 printHelp()
                 return
             }
             val repositoryLocation = checkRepoDir(args[0]) ?: return
+            val blobStoreDir = getBlobStorePath(allArgs)?.let { checkBlobStoreDir(it) ?: return }
             val backupFile =
                     if (args.size == 2) {
                         checkBackupFileWriteable(File(args[1], RepoBackupService.backupFilename).absolutePath)
@@ -46,21 +52,21 @@ class BackupMain {
                         checkBackupFileWriteable(RepoBackupService.backupFilename)
                     }
             backupFile ?: return
-            val repoBackupService = prepare(repositoryLocation)
+            val repoBackupService = prepare(repositoryLocation, blobStoreDir)
             ZipOutputStream(FileOutputStream(backupFile)).use {
                 repoBackupService.backupAsZipArchive(backupFile.name, it)
             }
             shutdown(repoBackupService)
         }
 
-        internal fun prepare(repositoryLocation: File): RepoBackupService {
+        internal fun prepare(repositoryLocation: File, blobStoreDir: File?): RepoBackupService {
             val loggerContext = LoggerFactory.getILoggerFactory() as LoggerContext
             loggerContext.getLogger("org.apache").level = Level.INFO
             loggerContext.getLogger("org.projectforge").level = Level.INFO
 
             val repoService = RepoService()
             val repoBackupService = RepoBackupService()
-            repoService.init(repositoryLocation)
+            repoService.init(repositoryLocation, blobStoreDir = blobStoreDir)
             repoBackupService.repoService = repoService
             val jcrCheckSanityJob = JCRCheckSanityJob()
             jcrCheckSanityJob.repoService = repoService
@@ -77,6 +83,35 @@ class BackupMain {
             println(readme)
         }
 
+        /**
+         * @return The arguments without options (--option=value).
+         */
+        internal fun getArgs(args: Array<String>): List<String> {
+            return args.filter { !it.startsWith("--") }
+        }
+
+        /**
+         * The blob store dir of the repository (if used) must be given as option --blobStoreDir=dir or as system
+         * property projectforge.jcr.blobStoreDir (as configured for ProjectForge).
+         */
+        internal fun getBlobStorePath(args: Array<String>): String? {
+            val path = args.find { it.startsWith(BLOB_STORE_DIR_OPTION) }?.removePrefix(BLOB_STORE_DIR_OPTION)
+                ?: System.getProperty(BLOB_STORE_DIR_PROPERTY)
+            return if (path.isNullOrBlank()) null else path
+        }
+
+        internal fun checkBlobStoreDir(blobStorePath: String): File? {
+            val dir = File(blobStorePath)
+            // A non existing dir will be created (e. g. on restoring into a new repository).
+            if (dir.exists() && !dir.isDirectory()) {
+                println("****** Blob store dir isn't a directory: ${dir.absolutePath}")
+                printHelp()
+                return null
+            }
+            println("Using blob store directory: ${dir.absolutePath}")
+            return dir
+        }
+
         internal fun checkRepoDir(repoPath: String): File? {
             val dir = File(repoPath)
             if (!dir.exists() || !dir.isDirectory()) {
@@ -0,0 +1,127 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.jcr
+
+import java.util.*
+
+/**
+ * Manifest of a backup archive (stored as manifest.json in every backup archive). It lists all files (binaries) of
+ * the repository at backup time and is used as base of the next incremental backup.
+ */
+class BackupManifest() {
+  constructor(archiveName: String, baseManifest: BackupManifest? = null) : this() {
+    this.archiveName = archiveName
+    this.baseArchiveName = baseManifest?.archiveName
+    this.increment = if (baseManifest != null) baseManifest.increment + 1 else 0
+    this.created = Date()
+  }
+
+  /**
+   * Name of the backup archive, this manifest belongs to.
+   */
+  var archiveName: String? = null
+
+  /**
+   * Name of the previous archive of the backup chain, if this is an incremental backup. Null for full backups.
+   */
+  var baseArchiveName: String? = null
+
+  /**
+   * Number of incremental backups since the last full backup of the chain (0 for full backups).
+   */
+  var increment: Int = 0
+
+  var created: Date? = null
+
+  /**
+   * All files of the repository at backup time (not only the binaries contained in this archive).
+   */
+  var entries = mutableListOf<Entry>()
+
+  /**
+   * Paths of the file nodes listed in the manifest of the base archive, but deleted since then.
+   */
+  var tombstones = mutableListOf<String>()
+
+  val incremental: Boolean
+    get() = baseArchiveName != null
+
+  class Entry() {
+    constructor(path: String, fileObject: FileObject, archiveName: String) : this() {
+      this.path = path
+      this.fileName = PFJcrUtils.createSafeFilename(fileObject)
+      this.checksum = fileObject.checksum
+      this.size = fileObject.size
+      this.lastModified = fileObject.lastUpdate
+      this.archiveName = archiveName
+    }
+
+    /**
+     * Absolute path of the file node.
+     */
+    var path: String? = null
+
+    /**
+     * Name of the binary inside the archive (in the directory of the file node path).
+     */
+    var fileName: String? = null
+    var checksum: String? = null
+    var size: Long? = null
+    var lastModified: Date? = null
+
+    /**
+     * Name of the archive of the backup chain containing the binary.
+     */
+    var archiveName: String? = null
+
+    /**
+     * A file is unchanged, if checksum and size are equal. If no valid checksum is given (calculation of checksum
+     * pending), the last modification date is compared instead.
+     */
+    internal fun isUnchanged(fileObject: FileObject): Boolean {
+      if (size != fileObject.size) {
+        return false
+      }
+      val currentChecksum = fileObject.checksum
+      return if (hasValidChecksum(checksum) && hasValidChecksum(currentChecksum)) {
+        checksum == currentChecksum
+      } else {
+        lastModified != null && lastModified == fileObject.lastUpdate
+      }
+    }
+
+    private fun hasValidChecksum(checksum: String?): Boolean {
+      return checksum != null && checksum.length > 10
+    }
+  }
+
+  companion object {
+    internal const val FILENAME = "manifest.json"
+
+    /**
+     * Contains the name of the base archive, written as first entry of incremental backups.
+     */
+    internal const val BASE_ARCHIVE_FILENAME = "base-archive.txt"
+  }
+}
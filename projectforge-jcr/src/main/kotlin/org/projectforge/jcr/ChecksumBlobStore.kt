@@ -0,0 +1,184 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.jcr
+
+import mu.KotlinLogging
+import org.apache.commons.codec.binary.Hex
+import org.apache.jackrabbit.oak.spi.blob.BlobOptions
+import org.apache.jackrabbit.oak.spi.blob.BlobStore
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.DigestOutputStream
+import java.security.MessageDigest
+
+private val log = KotlinLogging.logger {}
+
+/**
+ * Content addressed blob store for the binaries of the jcr repository (local file system).
+ *
+ * Each binary is stored exactly once as file named by the SHA-256 of its content, sharded in two directory levels
+ * (e. g. 59/73/5973306df0e1...). The blob id is the SHA-256 hex string, so it's identical to the checksum value
+ * [RepoService.storeFile] stores as file property (without prefix "SHA256: "). Identical uploads share one blob.
+ *
+ * Small binaries (less than approx. 16KB) are still inlined in the segment store by Oak itself.
+ *
+ * Blobs aren't deleted if the referencing file nodes are deleted (they may be shared by other files). Blobs of deleted
+ * files and of rejected uploads (e. g. too large) are removed by [collectGarbage], called by the [JCRCheckSanityJob].
+ */
+class ChecksumBlobStore(val baseDir: File) : BlobStore {
+  private val tmpDir = File(baseDir, TMP_DIR)
+
+  init {
+    if (!tmpDir.exists() && !tmpDir.mkdirs()) {
+      throw IOException("Can't create directory for blob store: ${tmpDir.absolutePath}")
+    }
+    log.info { "Using checksum blob store in: ${baseDir.absolutePath}" }
+  }
+
+  override fun writeBlob(inputStream: InputStream): String {
+    val digest = MessageDigest.getInstance("SHA-256")
+    val tmpFile = File.createTempFile("blob", ".tmp", tmpDir)
+    try {
+      DigestOutputStream(tmpFile.outputStream(), digest).use { out ->
+        inputStream.copyTo(out)
+      }
+      val blobId = Hex.encodeHexString(digest.digest())
+      val file = getFile(blobId)
+      if (file.exists()) {
+        log.debug { "Blob '$blobId' already exists, re-using it." }
+        return blobId
+      }
+      file.parentFile.mkdirs()
+      try {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE)
+      } catch (ex: FileAlreadyExistsException) {
+        // Concurrent upload of the same content. Nothing to do.
+      }
+      return blobId
+    } finally {
+      tmpFile.delete()
+    }
+  }
+
+  override fun writeBlob(inputStream: InputStream, options: BlobOptions?): String {
+    return writeBlob(inputStream)
+  }
+
+  override fun readBlob(blobId: String, pos: Long, buff: ByteArray, off: Int, length: Int): Int {
+    RandomAccessFile(getExistingFile(blobId), "r").use { file ->
+      if (pos >= file.length()) {
+        return -1
+      }
+      file.seek(pos)
+      return file.read(buff, off, length)
+    }
+  }
+
+  override fun getBlobLength(blobId: String): Long {
+    return getExistingFile(blobId).length()
+  }
+
+  override fun getInputStream(blobId: String): InputStream {
+    return FileInputStream(getExistingFile(blobId))
+  }
+
+  /**
+   * References are the blob ids themselves.
+   */
+  override fun getBlobId(reference: String): String? {
+    return if (isValidBlobId(reference)) reference else null
+  }
+
+  override fun getReference(blobId: String): String {
+    return blobId
+  }
+
+  override fun close() {
+  }
+
+  /**
+   * @return true, if a blob with the given checksum (with or without prefix "SHA256: ") exists.
+   */
+  fun contains(checksum: String?): Boolean {
+    val blobId = checksum?.removePrefix(RepoService.CHECKSUM_PREFIX) ?: return false
+    return isValidBlobId(blobId) && getFile(blobId).exists()
+  }
+
+  /**
+   * Deletes all blobs not referenced by the given checksums (with or without prefix "SHA256: "). Blobs modified within
+   * the last [minAgeMillis] are kept, because they may belong to uploads in progress (not yet saved in a session).
+   * @return Number of deleted blobs.
+   */
+  @JvmOverloads
+  fun collectGarbage(referencedChecksums: Collection<String>, minAgeMillis: Long = GC_MIN_AGE_MILLIS): Int {
+    val referenced = referencedChecksums.map { it.removePrefix(RepoService.CHECKSUM_PREFIX) }.toHashSet()
+    val maxLastModified = System.currentTimeMillis() - minAgeMillis
+    var counter = 0
+    baseDir.walkTopDown()
+      .onEnter { it != tmpDir }
+      .filter { it.isFile && isValidBlobId(it.name) && !referenced.contains(it.name) && it.lastModified() <= maxLastModified }
+      .forEach {
+        log.info { "Deleting unreferenced blob: ${it.name}" }
+        if (it.delete()) {
+          ++counter
+        }
+      }
+    log.info { "Garbage collection of blob store finished: $counter unreferenced blobs deleted." }
+    return counter
+  }
+
+  internal fun getFile(blobId: String): File {
+    return File(baseDir, "${blobId.substring(0, 2)}/${blobId.substring(2, 4)}/$blobId")
+  }
+
+  private fun getExistingFile(blobId: String): File {
+    if (!isValidBlobId(blobId)) {
+      throw IllegalArgumentException("Invalid blob id: $blobId")
+    }
+    val file = getFile(blobId)
+    if (!file.exists()) {
+      throw FileNotFoundException("Blob '$blobId' not found in blob store: ${baseDir.absolutePath}")
+    }
+    return file
+  }
+
+  companion object {
+    private const val TMP_DIR = "tmp"
+
+    private const val GC_MIN_AGE_MILLIS = 24 * 3600 * 1000L
+
+    private val BLOB_ID_REGEX = "[0-9a-f]{64}".toRegex()
+
+    internal fun isValidBlobId(blobId: String): Boolean {
+      return BLOB_ID_REGEX.matches(blobId)
+    }
+  }
+}
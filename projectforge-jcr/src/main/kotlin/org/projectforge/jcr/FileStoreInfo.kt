@@ -32,6 +32,7 @@ class FileStoreInfo(repoService: RepoService) {
   val approximateSize = FormatterUtils.formatBytes(repoService.fileStore?.stats?.approximateSize)
   val tarFileCount = repoService.fileStore?.stats?.tarFileCount
   val location = repoService.fileStoreLocation?.absolutePath
+  val blobStoreLocation = repoService.blobStore?.baseDir?.absolutePath
 
   override fun toString(): String {
     return PFJcrUtils.toJson(this)
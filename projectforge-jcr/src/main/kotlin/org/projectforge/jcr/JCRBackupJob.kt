@@ -31,6 +31,7 @@ import org.springframework.scheduling.annotation.Scheduled
 import org.springframework.stereotype.Component
 import java.io.File
 import java.io.FileOutputStream
+import java.util.zip.ZipFile
 import java.util.zip.ZipOutputStream
 
 private val log = KotlinLogging.logger {}
@@ -46,6 +47,9 @@ class JCRBackupJob {
   @Value("\${projectforge.jcr.cron.purgeBackupKeepWeeklyBackups}")
   private val keepWeeklyBackups: Long? = null
 
+  @Value("\${projectforge.jcr.backupMaxIncrements:0}")
+  private val maxIncrements: Int? = null
+
   // projectforge.jcr.cron.backup=0 30 0 * * *
   @Scheduled(cron = "\${projectforge.jcr.cron.backup}")
   fun execute() {
@@ -54,8 +58,9 @@ class JCRBackupJob {
     val backupFile = RepoBackupService.backupFilename
     val backupDirectory = repoBackupService.backupDirectory!!
     val zipFile = File(backupDirectory, backupFile)
+    val baseManifest = getBaseManifest(backupDirectory)
     ZipOutputStream(FileOutputStream(zipFile)).use {
-      repoBackupService.backupAsZipArchive(zipFile.name, it)
+      repoBackupService.backupAsZipArchive(zipFile.name, it, baseManifest = baseManifest)
     }
     log.info("JCR backup job finished after ${(System.currentTimeMillis() - time) / 1000} seconds.")
     BackupFilesPurging.purgeDirectory(
@@ -63,6 +68,48 @@ class JCRBackupJob {
       filePrefix = RepoBackupService.backupFilenamePrefix,
       keepDailyBackups = keepDailyBackups ?: 8,
       keepWeeklyBackups = keepWeeklyBackups ?: 4,
+      getRequiredFiles = { getRequiredArchives(it) },
     )
   }
+
+  /**
+   * Incremental backups need their base archive (and recursively the whole chain up to the full backup) for restoring.
+   */
+  private fun getRequiredArchives(archive: File): List<String> {
+    if (!archive.name.endsWith(".zip")) {
+      return emptyList()
+    }
+    return try {
+      listOfNotNull(repoBackupService.getBaseArchiveName(archive))
+    } catch (ex: Exception) {
+      log.error("Can't read manifest of backup '${archive.absolutePath}' while purging backups: ${ex.message}", ex)
+      emptyList()
+    }
+  }
+
+  /**
+   * @return The manifest of the newest backup in the backup directory, if incremental backups are configured and the
+   * maximum number of increments isn't yet reached. Otherwise null (full backup).
+   */
+  private fun getBaseManifest(backupDirectory: File): BackupManifest? {
+    val max = maxIncrements ?: 0
+    if (max <= 0) {
+      return null
+    }
+    val lastBackup = backupDirectory.listFiles { file ->
+      file.isFile && file.name.startsWith(RepoBackupService.backupFilenamePrefix) && file.name.endsWith(".zip")
+    }?.maxByOrNull { it.name } ?: return null // Date in ISO format is part of the filename.
+    return try {
+      val manifest = ZipFile(lastBackup).use { repoBackupService.readManifest(it) }
+      if (manifest == null || manifest.increment >= max) {
+        null
+      } else {
+        log.info { "Writing incremental backup based on '${lastBackup.name}'." }
+        manifest
+      }
+    } catch (ex: Exception) {
+      log.error("Can't read manifest of last backup '${lastBackup.absolutePath}', writing full backup: ${ex.message}", ex)
+      null
+    }
+  }
 }
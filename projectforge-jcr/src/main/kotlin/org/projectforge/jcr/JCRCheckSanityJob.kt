@@ -63,6 +63,9 @@ open class JCRCheckSanityJob {
     log.info("JCR sanity check job started.")
     val errors = mutableListOf<String>()
     val warnings = mutableListOf<String>()
+    // Checksums of the stored content (equal to the blob ids of the blob store) for the garbage collection:
+    val checksums = mutableSetOf<String>()
+    var checksumsComplete = true
     val walker = object : RepoTreeWalker(repoService) {
       override fun visitFile(fileNode: Node, fileObject: FileObject) {
         fileObject.checksum.let { repoChecksum ->
@@ -71,6 +74,7 @@ open class JCRCheckSanityJob {
             val checksum =
               repoService.getFileInputStream(fileNode, fileObject, true, useEncryptedFile = true)
                 .use { istream -> RepoService.checksum(istream) }
+            checksums.add(checksum)
             if (!validateChecksum(checksum, repoChecksum)) {
               val msg =
                 "Checksum of file '${fileObject.fileName}' from repository '${normalizeChecksum(checksum)}' differs from repository value '${
@@ -84,6 +88,7 @@ open class JCRCheckSanityJob {
           } else {
             val msg =
               "Checksum of file '${fileObject.fileName}' from repository not given (skipping checksum check). ['${fileNode.path}']"
+            checksumsComplete = false
             warnings.add(msg)
             log.info { msg }
           }
@@ -121,6 +126,13 @@ open class JCRCheckSanityJob {
       }
     }
     walker.walk()
+    repoService.blobStore?.let { blobStore ->
+      if (errors.isEmpty() && checksumsComplete) {
+        blobStore.collectGarbage(checksums)
+      } else {
+        log.warn { "Skipping garbage collection of blob store, because not all files were checked successfully." }
+      }
+    }
     log.info { "JCR sanity check job finished. ${walker.numberOfVisitedFiles} Files checked with ${warnings.size} warnings and ${errors.size} errors." }
     return CheckResult(errors, warnings, walker.numberOfVisitedFiles, walker.numberOfVisitedNodes)
   }
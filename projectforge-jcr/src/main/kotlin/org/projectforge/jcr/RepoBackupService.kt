@@ -31,11 +31,13 @@ import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Service
 import java.io.ByteArrayInputStream
 import java.io.File
+import java.io.FileInputStream
 import java.nio.charset.StandardCharsets
 import java.time.ZoneOffset
 import java.time.ZonedDateTime
 import java.time.format.DateTimeFormatter
 import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
 import java.util.zip.ZipInputStream
 import java.util.zip.ZipOutputStream
 import javax.jcr.Binary
@@ -94,19 +96,26 @@ open class RepoBackupService {
 
   /**
    * @param absPath If not given, [RepoService.mainNodeName] is used.
+   * @param baseManifest If given, an incremental backup is written: only binaries which are new or modified since
+   * the backup described by the given manifest are written. All other content (nodes and properties) is written as
+   * for full backups.
+   * @return The manifest of the written backup (also written as manifest.json into the archive).
    */
+  @JvmOverloads
   open fun backupAsZipArchive(
     archiveName: String,
     zipOut: ZipOutputStream,
-    absPath: String = "/${repoService.mainNodeName}"
-  ) {
-    val archivNameWithoutExtension = if (archiveName.contains('.')) {
-      archiveName.substring(0, archiveName.indexOf('.'))
-    } else {
-      archiveName
-    }
+    absPath: String = "/${repoService.mainNodeName}",
+    baseManifest: BackupManifest? = null,
+  ): BackupManifest {
+    val archivNameWithoutExtension = getArchiveNameWithoutExtension(archiveName)
+    val manifest = BackupManifest(archiveName, baseManifest)
+    val baseEntries = baseManifest?.entries?.associateBy { it.path }
+    var numberOfWrittenFiles = 0
 
-    log.info { "Creating backup of document view and binaries of path '$absPath' as '$archiveName'..." }
+    log.info {
+      "Creating ${if (manifest.incremental) "incremental " else ""}backup of document view and binaries of path '$absPath' as '$archiveName'..."
+    }
 
     // Write README.TXT
     zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, "README.TXT"))
@@ -114,6 +123,11 @@ open class RepoBackupService {
       val readme = it.readText()
       zipOut.write(readme.toByteArray(StandardCharsets.UTF_8))
     }
+    if (manifest.incremental) {
+      // Written before any content, so restoring an incremental archive as single archive may be refused in time.
+      zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, BackupManifest.BASE_ARCHIVE_FILENAME))
+      zipOut.write(manifest.baseArchiveName!!.toByteArray(StandardCharsets.UTF_8))
+    }
 
     val walker = object : RepoTreeWalker(repoService, absPath) {
       override fun visit(node: Node, isRootNode: Boolean) {
@@ -157,25 +171,186 @@ open class RepoBackupService {
           log.info { "Ignore path=${fileNode.path} as configured." }
           return
         }
-        val content = repoService.getFileContent(fileNode, fileObject, useEncryptedFile = true)
-        if (content != null) {
-          val fileName = PFJcrUtils.createSafeFilename(fileObject)
-          zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, fileNode.path, fileName))
-          zipOut.write(content)
+        val baseEntry = baseEntries?.get(fileNode.path)
+        if (baseEntry != null && baseEntry.isUnchanged(fileObject)) {
+          // Binary is unchanged, it's already part of the backup chain.
+          manifest.entries.add(baseEntry)
+          return
         }
+        repoService.getFileInputStream(fileNode, fileObject, suppressLogInfo = true, useEncryptedFile = true)
+          ?.use { istream ->
+            val fileName = PFJcrUtils.createSafeFilename(fileObject)
+            zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, fileNode.path, fileName))
+            istream.copyTo(zipOut)
+            manifest.entries.add(BackupManifest.Entry(fileNode.path, fileObject, archiveName))
+            ++numberOfWrittenFiles
+          }
       }
     }
     walker.walk()
+    baseManifest?.entries?.let { entries ->
+      val currentPaths = manifest.entries.map { it.path }.toSet()
+      entries.forEach { entry ->
+        entry.path?.let { path ->
+          if (!currentPaths.contains(path)) {
+            manifest.tombstones.add(path)
+          }
+        }
+      }
+    }
+    zipOut.putNextEntry(createZipEntry(archivNameWithoutExtension, BackupManifest.FILENAME))
+    zipOut.write(PFJcrUtils.toJson(manifest).toByteArray(StandardCharsets.UTF_8))
     log.info {
       "Backup of document view and binaries of path '$absPath' as '$archiveName' done: number of nodes=${
         FormatterUtils.format(
           walker.numberOfVisitedNodes
         )
-      }, number of files=${FormatterUtils.format(walker.numberOfVisitedFiles)}."
+      }, number of files=${FormatterUtils.format(walker.numberOfVisitedFiles)}, number of written files=${
+        FormatterUtils.format(numberOfWrittenFiles)
+      }, number of deleted files=${FormatterUtils.format(manifest.tombstones.size)}."
+    }
+    return manifest
+  }
+
+  /**
+   * Restores a chain of backup archives: the first archive must be a full backup, the following archives must be
+   * incremental backups, each based on its predecessor.
+   *
+   * The nodes and properties are restored from the last archive of the chain. The file list is replayed from the
+   * manifests (new and modified files of each increment, tombstones for deleted files) and every binary is restored
+   * from the archive of the chain containing its latest version.
+   */
+  open fun restoreBackupFromZipArchives(
+    archives: List<File>,
+    securityConfirmation: String,
+  ): JCRCheckSanityJob.CheckResult {
+    if (securityConfirmation != RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED) {
+      throw IllegalArgumentException("You must use the correct security confirmation if you know what you're doing. The repo content may be lost after restoring!")
+    }
+    if (archives.isEmpty()) {
+      throw IllegalArgumentException("No backup archive given to restore.")
+    }
+    val manifests = archives.map { archive ->
+      ZipFile(archive).use { zipFile ->
+        readManifest(zipFile)
+          ?: throw IllegalArgumentException("Backup archive '${archive.absolutePath}' contains no ${BackupManifest.FILENAME}.")
+      }
+    }
+    manifests.forEachIndexed { index, manifest ->
+      val expectedBase = if (index == 0) null else manifests[index - 1].archiveName
+      if (manifest.baseArchiveName != expectedBase) {
+        throw IllegalArgumentException("Backup archive '${manifest.archiveName}' is based on '${manifest.baseArchiveName}', but '$expectedBase' expected. Please specify the archives of the backup chain in their order, beginning with the full backup.")
+      }
+    }
+    // Replay the chain:
+    val files = mutableMapOf<String, BackupManifest.Entry>()
+    manifests.forEach { manifest ->
+      manifest.tombstones.forEach { files.remove(it) }
+      manifest.entries.forEach { entry ->
+        val path = entry.path
+        if (path != null && entry.archiveName == manifest.archiveName) {
+          // New or modified binary of this archive (all binaries of a full backup).
+          files[path] = entry
+        }
+      }
+    }
+    repoService.runInSession { session ->
+      ZipFile(archives.last()).use { zipFile ->
+        val prefix = getArchiveNameWithoutExtension(manifests.last().archiveName!!)
+        val zipEntry = zipFile.getEntry(createZipEntry(prefix, "repository.json").name)
+          ?: throw IllegalArgumentException("Backup archive '${archives.last().absolutePath}' contains no repository.json.")
+        log.info { "Restoring nodes from '${zipEntry.name}'..." }
+        val json = zipFile.getInputStream(zipEntry).use { it.readBytes().toString(StandardCharsets.UTF_8) }
+        restoreNode(session.rootNode, PFJcrUtils.fromJson(json, NodeInfo::class.java))
+        session.save()
+      }
+      val filesByArchive = files.values.groupBy { it.archiveName }
+      archives.forEachIndexed { index, archive ->
+        val archiveName = manifests[index].archiveName!!
+        val entries = filesByArchive[archiveName] ?: return@forEachIndexed
+        log.info { "Restoring ${entries.size} binaries from '$archiveName'..." }
+        val prefix = getArchiveNameWithoutExtension(archiveName)
+        ZipFile(archive).use { zipFile ->
+          entries.forEach { entry ->
+            val zipEntry = zipFile.getEntry(createZipEntry(prefix, entry.path, entry.fileName).name)
+            if (zipEntry == null) {
+              log.error { "Binary of '${entry.path}' not found in backup archive '$archiveName'." }
+              return@forEach
+            }
+            val fileNode = if (session.nodeExists(entry.path!!)) session.getNode(entry.path!!) else null
+            if (fileNode == null) {
+              log.error { "Can't determine node '${entry.path}'. Can't restore binary '${zipEntry.name}'." }
+              return@forEach
+            }
+            zipFile.getInputStream(zipEntry).use { istream ->
+              val bin: Binary = session.valueFactory.createBinary(istream)
+              fileNode.setProperty(RepoService.PROPERTY_FILECONTENT, session.valueFactory.createValue(bin))
+            }
+            session.save()
+          }
+        }
+      }
+    }
+    return jcrCheckSanityJob.execute()
+  }
+
+  /**
+   * @return The chain of backup archives needed for restoring the given archive: the full backup followed by all
+   * incremental backups up to the given one (in the directory of the given archive). Only the given archive for full
+   * backups.
+   * @throws IllegalArgumentException if an archive of the chain is missing.
+   */
+  fun getBackupChain(archive: File): List<File> {
+    val chain = mutableListOf(archive)
+    var baseArchiveName = getBaseArchiveName(archive)
+    while (baseArchiveName != null) {
+      val baseArchive = File(archive.parentFile, baseArchiveName)
+      if (!baseArchive.exists() || chain.contains(baseArchive)) {
+        throw IllegalArgumentException("Base archive '${baseArchive.absolutePath}' of backup chain of '${archive.name}' not found.")
+      }
+      chain.add(0, baseArchive)
+      baseArchiveName = getBaseArchiveName(baseArchive)
+    }
+    return chain
+  }
+
+  /**
+   * @return The name of the base archive, if the given archive is an incremental backup, otherwise null.
+   */
+  fun getBaseArchiveName(archive: File): String? {
+    return ZipFile(archive).use { readManifest(it)?.baseArchiveName }
+  }
+
+  /**
+   * @return The manifest of the given backup archive or null, if the archive doesn't contain any manifest (backups
+   * of older versions).
+   */
+  fun readManifest(zipFile: ZipFile): BackupManifest? {
+    val zipEntry = zipFile.entries().asSequence().find {
+      !it.isDirectory && FilenameUtils.getName(it.name) == BackupManifest.FILENAME && it.name.count { ch -> ch == '/' } == 1
+    } ?: return null
+    val json = zipFile.getInputStream(zipEntry).use { it.readBytes().toString(StandardCharsets.UTF_8) }
+    return PFJcrUtils.fromJson(json, BackupManifest::class.java)
+  }
+
+  /**
+   * Restores the given backup archive. For incremental backups the whole chain is restored (see [getBackupChain]),
+   * so the full backup and all preceding incremental backups must be located in the directory of the given archive.
+   */
+  open fun restoreBackupFromZipArchive(
+    archive: File,
+    securityConfirmation: String,
+  ): JCRCheckSanityJob.CheckResult {
+    val chain = getBackupChain(archive)
+    if (chain.size > 1) {
+      return restoreBackupFromZipArchives(chain, securityConfirmation)
     }
+    return ZipInputStream(FileInputStream(archive)).use { restoreBackupFromZipArchive(it, securityConfirmation) }
   }
 
   /**
+   * Restores a full backup. Incremental backups are refused, they must be restored with their backup chain (see
+   * [restoreBackupFromZipArchives]).
    * @param absPath If not given, [RepoService.mainNodeName] is used (only used for creation of repository.xml).
    */
   @JvmOverloads
@@ -197,6 +372,10 @@ open class RepoBackupService {
           continue
         }
         val fileName = FilenameUtils.getName(zipEntry.name)
+        if (fileName == BackupManifest.BASE_ARCHIVE_FILENAME && zipEntry.name.count { it == '/' } == 1) {
+          val baseArchiveName = zipIn.readBytes().toString(StandardCharsets.UTF_8)
+          throw IllegalArgumentException("Backup archive is an incremental backup based on '$baseArchiveName'. Please restore the whole backup chain, beginning with the full backup.")
+        }
         if (!nodesRestored) {
           if (fileName == "repository.json") {
             log.info { "Restoring nodes from '${zipEntry?.name}'..." }
@@ -266,6 +445,14 @@ open class RepoBackupService {
     return "$archiveName/${RepoService.NODENAME_FILES}"
   }
 
+  private fun getArchiveNameWithoutExtension(archiveName: String): String {
+    return if (archiveName.contains('.')) {
+      archiveName.substring(0, archiveName.indexOf('.'))
+    } else {
+      archiveName
+    }
+  }
+
   private fun createZipEntry(archiveName: String, vararg path: String?): ZipEntry {
     return ZipEntry("$archiveName/${path.joinToString(separator = "/") { it ?: "" }}")
   }
@@ -276,7 +463,7 @@ open class RepoBackupService {
 
     internal const val BACKUP_README = "/backupReadme.txt"
 
-    private val IGNORE_FILES = arrayOf("README.txt", "node.json", "files.txt", "files.json")
+    private val IGNORE_FILES = arrayOf("README.txt", "node.json", "files.txt", "files.json", BackupManifest.FILENAME, BackupManifest.BASE_ARCHIVE_FILENAME)
 
     val backupFilename: String
       get() {
@@ -24,6 +24,7 @@
 package org.projectforge.jcr
 
 import mu.KotlinLogging
+import org.apache.commons.codec.binary.Hex
 import org.apache.commons.codec.digest.DigestUtils
 import org.apache.jackrabbit.oak.Oak
 import org.apache.jackrabbit.oak.jcr.Jcr
@@ -33,11 +34,12 @@ import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder
 import org.apache.jackrabbit.oak.spi.state.NodeStore
 import org.projectforge.common.CryptStreamUtils
 import org.projectforge.common.FormatterUtils
-import org.projectforge.common.NumberOfBytes
 import org.springframework.stereotype.Service
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
+import java.security.DigestInputStream
+import java.security.MessageDigest
 import java.security.SecureRandom
 import java.util.*
 import javax.annotation.PreDestroy
@@ -45,7 +47,6 @@ import javax.jcr.Binary
 import javax.jcr.Node
 import javax.jcr.Repository
 import javax.jcr.Session
-import kotlin.concurrent.thread
 
 private val log = KotlinLogging.logger {}
 
@@ -60,6 +61,12 @@ open class RepoService {
 
   private var nodeStore: NodeStore? = null
 
+  /**
+   * Optional blob store for binaries (if configured), otherwise all binaries are stored in the segment store.
+   */
+  var blobStore: ChecksumBlobStore? = null
+    internal set
+
   internal lateinit var mainNodeName: String
 
   @PreDestroy
@@ -159,7 +166,6 @@ open class RepoService {
     if (parentNodePath == null || relPath == null) {
       throw IllegalArgumentException("Parent node path and relPath not given. Can't determine location of file to store: $fileObject")
     }
-    var lazyCheckSumFileObject: FileObject? = null
     runInSession { session ->
       val node = getNode(session, parentNodePath, relPath, true)
       val filesNode = ensureNode(node, NODENAME_FILES)
@@ -180,17 +186,18 @@ open class RepoService {
       fileObject.lastUpdate = fileObject.created
       fileObject.lastUpdateByUser = user
       var bin: Binary? = null
+      // The checksum is calculated on the fly of the stored (encrypted) content, so no second read is needed.
+      val digest = MessageDigest.getInstance("SHA-256")
       try {
         if (password.isNullOrBlank()) {
-          bin = session.valueFactory.createBinary(content)
+          bin = session.valueFactory.createBinary(DigestInputStream(content, digest))
         } else {
           val inputStream = CryptStreamUtils.pipeToEncryptedInputStream(content, password)
-          bin = session.valueFactory.createBinary(inputStream)
+          bin = session.valueFactory.createBinary(DigestInputStream(inputStream, digest))
           fileObject.aesEncrypted = true
         }
         fileNode.setProperty(PROPERTY_FILECONTENT, bin)
         fileObject.size = bin?.size
-        Integer.MAX_VALUE
       } finally {
         bin?.dispose()
       }
@@ -201,24 +208,13 @@ open class RepoService {
         fileNode.remove()
         throw ex
       }
-      if (fileObject.size ?: 0 > NumberOfBytes.MEGA_BYTES * 50) {
-        lazyCheckSumFileObject = fileObject
-        fileObject.checksum = "..."
-      } else {
-        checksum(fileNode, fileObject)
-      }
+      fileObject.checksum = "$CHECKSUM_PREFIX${Hex.encodeHexString(digest.digest())}"
       fileObject.copyTo(fileNode)
       session.save()
     }
-    lazyCheckSumFileObject?.let {
-      thread {
-        checksum(it)
-      }
-    }
   }
 
   private fun checksum(fileNode: Node, fileObject: FileObject) {
-    // Calculate checksum for files smaller than 50MB (it's fast enough).
     val startTime = System.currentTimeMillis()
     // Calculate checksum
     getFileInputStream(fileNode, fileObject, useEncryptedFile = true).use { istream ->
@@ -643,9 +639,12 @@ open class RepoService {
   /**
    * @param mainNodeName All activities (working with nodes) will done under topNode. TopNode should be given for backing up and
    * restoring. By default "ProjectForge" is used.
+   * @param blobStoreDir If given, binaries are stored content addressed and deduplicated in this directory instead of
+   * the segment store (see [ChecksumBlobStore]). Once used, this directory must be given on every start, because the
+   * segment store references the blobs.
    */
   @JvmOverloads
-  fun init(repositoryDir: File, mainNodeName: String = "ProjectForge") {
+  fun init(repositoryDir: File, mainNodeName: String = "ProjectForge", blobStoreDir: File? = null) {
     synchronized(this) {
       if (nodeStore != null) {
         throw IllegalArgumentException("Can't initialize repo twice! repo=$this")
@@ -660,7 +659,14 @@ open class RepoService {
       log.info { "Initializing JCR repository with main node '$mainNodeName' in: ${repositoryDir.absolutePath}" }
       this.mainNodeName = mainNodeName
 
-      FileStoreBuilder.fileStoreBuilder(repositoryDir).build().let { fileStore ->
+      val fileStoreBuilder = FileStoreBuilder.fileStoreBuilder(repositoryDir)
+      blobStoreDir?.let {
+        ChecksumBlobStore(it).let { blobStore ->
+          this.blobStore = blobStore
+          fileStoreBuilder.withBlobStore(blobStore)
+        }
+      }
+      fileStoreBuilder.build().let { fileStore ->
         this.fileStore = fileStore
         this.fileStoreLocation = repositoryDir
         nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build()
@@ -696,11 +702,12 @@ open class RepoService {
     internal const val PROPERTY_AES_ENCRYPTED = "aesEncrypted"
     internal const val PROPERTY_ZIP_MODE = "zipMode"
     private const val PROPERTY_RANDOM_ID_LENGTH = 20
+    internal const val CHECKSUM_PREFIX = "SHA256: "
     private val ALPHA_CHARSET: Array<Char> = ('a'..'z').toList().toTypedArray()
 
     internal fun checksum(istream: InputStream?): String {
       istream ?: return ""
-      return "SHA256: ${DigestUtils.sha256Hex(istream)}"
+      return "$CHECKSUM_PREFIX${DigestUtils.sha256Hex(istream)}"
     }
 
     internal fun getAbsolutePath(parentPath: String?, relPath: String?): String? {
@@ -23,22 +23,25 @@
 
 package org.projectforge.jcr
 
-import java.io.FileInputStream
-import java.util.zip.ZipInputStream
-
 class RestoreMain {
     companion object {
         @JvmStatic
-        fun main(args: Array<String>) {
-            if (args.size != 2) {
+        fun main(allArgs: Array<String>) {
+            val args = BackupMain.getArgs(allArgs)
+            if (args.size < 2) {
                 BackupMain.printHelp()
                 return
             }
             val repositoryLocation = BackupMain.checkRepoDir(args[0]) ?: return
-            val backupFile = BackupMain.checkBackupFileReadable(args[1]) ?: return
-            val repoBackupService = BackupMain.prepare(repositoryLocation)
-            ZipInputStream(FileInputStream(backupFile)).use {
-                repoBackupService.restoreBackupFromZipArchive(it, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED)
+            val blobStoreDir = BackupMain.getBlobStorePath(allArgs)?.let { BackupMain.checkBlobStoreDir(it) ?: return }
+            val backupFiles = args.drop(1).map { BackupMain.checkBackupFileReadable(it) ?: return }
+            val repoBackupService = BackupMain.prepare(repositoryLocation, blobStoreDir)
+            if (backupFiles.size == 1) {
+                // Full backup or incremental backup (the chain is resolved from the directory of the archive).
+                repoBackupService.restoreBackupFromZipArchive(backupFiles[0], RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED)
+            } else {
+                // Chain of full backup and incremental backups.
+                repoBackupService.restoreBackupFromZipArchives(backupFiles, RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED)
             }
             BackupMain.shutdown(repoBackupService)
         }
@@ -0,0 +1,147 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2023 Micromata GmbH, Germany (www.micromata.com)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.jcr
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.*
+
+class ChecksumBlobStoreTest {
+  @TempDir
+  lateinit var tempDir: File
+
+  @Test
+  fun deduplicationTest() {
+    val repoService = RepoService()
+    val blobStoreDir = File(tempDir, "blobStore")
+    repoService.init(File(tempDir, "repo"), blobStoreDir = blobStoreDir)
+    val blobStore = repoService.blobStore!!
+
+    val content = ByteArray(1024 * 1024)
+    Random(42).nextBytes(content)
+    repoService.ensureNode(null, "world/europe")
+    val file1 = createFileObject("germany", "file1.bin", content)
+    repoService.storeFile(file1, FileSizeStandardChecker(10_000_000L))
+    val file2 = createFileObject("france", "file2.bin", content)
+    repoService.storeFile(file2, FileSizeStandardChecker(10_000_000L))
+
+    Assertions.assertEquals(file1.checksum, file2.checksum)
+    Assertions.assertTrue(blobStore.contains(file1.checksum))
+    Assertions.assertEquals(1, countBlobs(blobStore), "Identical uploads should share one blob.")
+    Assertions.assertTrue(
+      repoService.fileStore!!.stats.approximateSize < content.size,
+      "Segment store shouldn't contain the binaries."
+    )
+
+    // Small files are inlined by Oak in the segment store:
+    val smallFile = createFileObject("germany", "small.bin", ByteArray(100) { it.toByte() })
+    repoService.storeFile(smallFile, FileSizeStandardChecker(10_000_000L))
+    Assertions.assertEquals(1, countBlobs(blobStore))
+
+    // Encrypted files get their own blob:
+    val cryptedFile = createFileObject("germany", "crypted.bin", content)
+    repoService.storeFile(cryptedFile, FileSizeStandardChecker(10_000_000L), password = "dummyPassword")
+    Assertions.assertNotEquals(file1.checksum, cryptedFile.checksum)
+    Assertions.assertTrue(blobStore.contains(cryptedFile.checksum))
+    Assertions.assertEquals(2, countBlobs(blobStore))
+
+    checkContent(repoService, file1, content)
+    checkContent(repoService, file2, content)
+    checkContent(repoService, cryptedFile, content, "dummyPassword")
+    Assertions.assertEquals(file1.checksum, repoService.checksum(file1), "Checksum calculated on the fly differs.")
+
+    Assertions.assertTrue(repoService.deleteFile(file1))
+    checkContent(repoService, file2, content)
+    repoService.shutdown()
+
+    // Restart with same blob store:
+    val repo2Service = RepoService()
+    repo2Service.init(File(tempDir, "repo"), blobStoreDir = blobStoreDir)
+    checkContent(repo2Service, file2, content)
+    repo2Service.shutdown()
+  }
+
+  @Test
+  fun garbageCollectionTest() {
+    val repoService = RepoService()
+    repoService.init(File(tempDir, "repo"), blobStoreDir = File(tempDir, "blobStore"))
+    val blobStore = repoService.blobStore!!
+    val jcrCheckSanityJob = JCRCheckSanityJob()
+    jcrCheckSanityJob.repoService = repoService
+
+    val content = ByteArray(1024 * 1024)
+    Random(42).nextBytes(content)
+    repoService.ensureNode(null, "world/europe")
+    val file = createFileObject("germany", "file.bin", content)
+    repoService.storeFile(file, FileSizeStandardChecker(10_000_000L))
+    // Size is unknown before streaming, so the upload is rejected after the blob was written:
+    val tooLarge = ByteArray(2 * 1024 * 1024)
+    Random(43).nextBytes(tooLarge)
+    val tooLargeFile = createFileObject("germany", "tooLarge.bin", tooLarge)
+    tooLargeFile.size = null
+    Assertions.assertThrows(Exception::class.java) {
+      repoService.storeFile(tooLargeFile, FileSizeStandardChecker(1_500_000L))
+    }
+    Assertions.assertEquals(2, countBlobs(blobStore), "Blob of rejected upload expected in store.")
+
+    // Young blobs (maybe of uploads in progress) are kept:
+    Assertions.assertTrue(jcrCheckSanityJob.execute().errors.isEmpty())
+    Assertions.assertEquals(2, countBlobs(blobStore))
+
+    Assertions.assertEquals(1, blobStore.collectGarbage(listOf(file.checksum!!), 0))
+    Assertions.assertEquals(1, countBlobs(blobStore))
+    Assertions.assertTrue(blobStore.contains(file.checksum))
+    checkContent(repoService, file, content)
+    repoService.shutdown()
+  }
+
+  @Test
+  fun mainArgsTest() {
+    val args = arrayOf("--blobStoreDir=/var/jcrBlobStore", "/var/jcr", "backup.zip")
+    Assertions.assertEquals(listOf("/var/jcr", "backup.zip"), BackupMain.getArgs(args))
+    Assertions.assertEquals("/var/jcrBlobStore", BackupMain.getBlobStorePath(args))
+    Assertions.assertNull(BackupMain.getBlobStorePath(arrayOf("/var/jcr")))
+  }
+
+  private fun createFileObject(relPath: String, fileName: String, content: ByteArray): FileObject {
+    val fileObject = FileObject()
+    fileObject.fileName = fileName
+    fileObject.parentNodePath = "/world/europe"
+    fileObject.relPath = relPath
+    fileObject.content = content
+    return fileObject
+  }
+
+  private fun checkContent(repo: RepoService, expected: FileObject, content: ByteArray, password: String? = null) {
+    val file = FileObject("/world/europe", expected.relPath, fileInfo = FileInfo(expected.fileName))
+    Assertions.assertTrue(repo.retrieveFile(file, password))
+    Assertions.assertArrayEquals(content, file.content)
+  }
+
+  private fun countBlobs(blobStore: ChecksumBlobStore): Int {
+    return blobStore.baseDir.walkTopDown().count { it.isFile && ChecksumBlobStore.isValidBlobId(it.name) }
+  }
+}
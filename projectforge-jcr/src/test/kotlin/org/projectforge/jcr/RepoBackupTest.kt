@@ -25,9 +25,14 @@ package org.projectforge.jcr
 
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
+import org.projectforge.common.BackupFilesPurging
 import org.projectforge.test.TestUtils
+import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
+import java.time.LocalDate
+import java.time.Month
+import java.util.zip.ZipFile
 import java.util.zip.ZipInputStream
 import java.util.zip.ZipOutputStream
 import javax.jcr.Node
@@ -125,6 +130,199 @@ class RepoBackupTest {
     repo2Service.shutdown()
   }
 
+  @Test
+  fun incrementalBackupTest() {
+    repoService.ensureNode(null, "world/europe")
+    val pomFile = createFileObject("/world/europe", "germany", "pom.xml")
+    repoService.storeFile(pomFile, FileSizeStandardChecker(100000L))
+    repoService.storeFile(createFileObject("/world/europe", "germany", "test", "files", "logo.png"), FileSizeStandardChecker(100000L))
+    val fullManifest = backup("incBackup0.zip")
+    Assertions.assertFalse(fullManifest.incremental)
+    Assertions.assertEquals(2, fullManifest.entries.size)
+
+    Assertions.assertTrue(repoService.deleteFile(pomFile))
+    repoService.storeFile(createFileObject("/world/europe", "france", "src", "test", "resources", "logback-test.xml"), FileSizeStandardChecker(100000L))
+    val manifest1 = backup("incBackup1.zip", fullManifest)
+    Assertions.assertTrue(manifest1.incremental)
+    Assertions.assertEquals(1, manifest1.increment)
+    Assertions.assertEquals(2, manifest1.entries.size)
+    Assertions.assertEquals(1, manifest1.tombstones.size, "pom.xml was deleted.")
+    Assertions.assertEquals(1, manifest1.entries.count { it.archiveName == "incBackup1.zip" }, "Only new file expected.")
+    Assertions.assertEquals(1, countBinaries(File(testUtils.outputDir, "incBackup1.zip")))
+
+    repoService.storeFile(createFileObject("/world/europe", "france", "pom.xml"), FileSizeStandardChecker(100000L))
+    val manifest2 = backup("incBackup2.zip", manifest1)
+    Assertions.assertEquals(2, manifest2.increment)
+    Assertions.assertEquals(3, manifest2.entries.size)
+    Assertions.assertEquals(0, manifest2.tombstones.size)
+    backup("incBackupFull.zip")
+    val expectedFiles = readFiles(repoService)
+    repoService.shutdown()
+
+    val fullRepoService = createRepo("testBackupRepoFullRestore")
+    ZipInputStream(FileInputStream(File(testUtils.outputDir, "incBackupFull.zip"))).use {
+      val checkResult = createBackupService(fullRepoService).restoreBackupFromZipArchive(
+        it,
+        RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+      )
+      Assertions.assertEquals(0, checkResult.errors.size)
+    }
+    val chainRepoService = createRepo("testBackupRepoChainRestore")
+    val chain = listOf("incBackup0.zip", "incBackup1.zip", "incBackup2.zip").map {
+      File(testUtils.outputDir, it)
+    }
+    val checkResult = createBackupService(chainRepoService).restoreBackupFromZipArchives(
+      chain,
+      RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+    )
+    Assertions.assertEquals(0, checkResult.errors.size)
+    Assertions.assertEquals(3, checkResult.numberOfVisitedFiles)
+    Assertions.assertEquals(3, expectedFiles.size)
+    Assertions.assertEquals(expectedFiles, readFiles(fullRepoService))
+    Assertions.assertEquals(expectedFiles, readFiles(chainRepoService))
+
+    Assertions.assertThrows(IllegalArgumentException::class.java) {
+      createBackupService(chainRepoService).restoreBackupFromZipArchives(
+        listOf(chain[0], chain[2]),
+        RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+      )
+    }
+    // Single incremental archive: refused as stream, restored with its chain as file.
+    val singleRepoService = createRepo("testBackupRepoSingleIncrementRestore")
+    ZipInputStream(FileInputStream(chain[2])).use {
+      Assertions.assertThrows(IllegalArgumentException::class.java) {
+        createBackupService(singleRepoService).restoreBackupFromZipArchive(
+          it,
+          RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+        )
+      }
+    }
+    Assertions.assertTrue(readFiles(singleRepoService).isEmpty(), "Nothing should be restored.")
+    createBackupService(singleRepoService).restoreBackupFromZipArchive(
+      chain[2],
+      RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+    )
+    Assertions.assertEquals(expectedFiles, readFiles(singleRepoService))
+    fullRepoService.shutdown()
+    chainRepoService.shutdown()
+    singleRepoService.shutdown()
+  }
+
+  /**
+   * Daily backups (full backup after every 6 increments) are purged. Every remaining archive must be restorable (with
+   * its chain).
+   */
+  @Test
+  fun purgeIncrementalBackupsTest() {
+    val backupDir = testUtils.deleteAndCreateTestFile("purgedBackups")
+    backupDir.mkdirs()
+    repoService.ensureNode(null, "world/europe")
+    val baseDate = LocalDate.of(2021, Month.FEBRUARY, 10)
+    val expectedFilesByArchive = mutableMapOf<String, Map<String, String>>()
+    var lastManifest: BackupManifest? = null
+    var lastFile: FileObject? = null
+    var date = baseDate.minusDays(40)
+    while (!date.isAfter(baseDate)) {
+      val fileObject = FileObject()
+      fileObject.fileName = "file-$date.txt"
+      fileObject.parentNodePath = "/world/europe"
+      fileObject.relPath = "germany"
+      fileObject.content = "Content of $date".toByteArray()
+      repoService.storeFile(fileObject, FileSizeStandardChecker(100000L))
+      if (date.dayOfMonth % 5 == 0) {
+        Assertions.assertTrue(repoService.deleteFile(lastFile!!))
+      }
+      lastFile = fileObject
+      val archiveName = "${RepoBackupService.backupFilenamePrefix}${date}_00-30.zip"
+      val baseManifest = if (lastManifest != null && lastManifest.increment < 6) lastManifest else null
+      ZipOutputStream(FileOutputStream(File(backupDir, archiveName))).use {
+        lastManifest = repoBackupService.backupAsZipArchive(archiveName, it, baseManifest = baseManifest)
+      }
+      expectedFilesByArchive[archiveName] = readFiles(repoService)
+      date = date.plusDays(1)
+    }
+    repoService.shutdown()
+
+    // Purging without regarding the backup chains, for comparison:
+    val plainPurgedDir = testUtils.deleteAndCreateTestFile("plainPurgedBackups")
+    backupDir.copyRecursively(plainPurgedDir)
+    BackupFilesPurging.purgeDirectory(
+      plainPurgedDir,
+      filePrefix = RepoBackupService.backupFilenamePrefix,
+      keepDailyBackups = 8,
+      keepWeeklyBackups = 4,
+      baseDate = baseDate,
+    )
+    BackupFilesPurging.purgeDirectory(
+      backupDir,
+      filePrefix = RepoBackupService.backupFilenamePrefix,
+      keepDailyBackups = 8,
+      keepWeeklyBackups = 4,
+      baseDate = baseDate,
+      getRequiredFiles = { listOfNotNull(repoBackupService.getBaseArchiveName(it)) },
+    )
+    val remaining = backupDir.listFiles()!!.sortedBy { it.name }
+    Assertions.assertTrue(remaining.size < expectedFilesByArchive.size, "Some backups should be purged.")
+    Assertions.assertTrue(remaining.any { repoBackupService.getBaseArchiveName(it) != null }, "Increments expected.")
+    val plainRemaining = plainPurgedDir.listFiles()!!.map { it.name }
+    Assertions.assertTrue(remaining.map { it.name }.containsAll(plainRemaining))
+    Assertions.assertTrue(remaining.size > plainRemaining.size, "Base archives of kept increments should be kept.")
+    remaining.forEachIndexed { index, archive ->
+      val chain = repoBackupService.getBackupChain(archive)
+      val restoredRepo = createRepo("purgedBackupsRestore$index")
+      val checkResult = createBackupService(restoredRepo).restoreBackupFromZipArchives(
+        chain,
+        RepoBackupService.RESTORE_SECURITY_CONFIRMATION__I_KNOW_WHAT_I_M_DOING__REPO_MAY_BE_DESTROYED
+      )
+      Assertions.assertEquals(0, checkResult.errors.size, "Restoring '${archive.name}' failed.")
+      Assertions.assertEquals(expectedFilesByArchive[archive.name], readFiles(restoredRepo), "Restoring '${archive.name}' failed.")
+      restoredRepo.shutdown()
+    }
+  }
+
+  private fun backup(archiveName: String, baseManifest: BackupManifest? = null): BackupManifest {
+    val zipFile = testUtils.deleteAndCreateTestFile(archiveName)
+    ZipOutputStream(FileOutputStream(zipFile)).use {
+      return repoBackupService.backupAsZipArchive(zipFile.name, it, baseManifest = baseManifest)
+    }
+  }
+
+  private fun countBinaries(zipFile: File): Int {
+    return ZipFile(zipFile).use { zip ->
+      zip.entries().asSequence().count {
+        it.name.contains(RepoService.NODENAME_FILES) && !it.name.endsWith(".json") && !it.name.endsWith(".txt")
+      }
+    }
+  }
+
+  private fun createRepo(dirName: String): RepoService {
+    val repo = RepoService()
+    repo.init(testUtils.deleteAndCreateTestFile(dirName))
+    return repo
+  }
+
+  private fun createBackupService(repo: RepoService): RepoBackupService {
+    val backupService = RepoBackupService()
+    backupService.repoService = repo
+    backupService.jcrCheckSanityJob = JCRCheckSanityJob()
+    backupService.jcrCheckSanityJob.repoService = repo
+    return backupService
+  }
+
+  /**
+   * @return Map of file node path to file name, checksum and content as hex string.
+   */
+  private fun readFiles(repo: RepoService): Map<String, String> {
+    val result = mutableMapOf<String, String>()
+    object : RepoTreeWalker(repo) {
+      override fun visitFile(fileNode: Node, fileObject: FileObject) {
+        val content = repo.getFileContent(fileNode, fileObject)!!
+        result[fileNode.path] = "${fileObject.fileName}:${fileObject.size}:${fileObject.checksum}:${content.contentHashCode()}"
+      }
+    }.walk()
+    return result
+  }
+
   private fun createFileObject(parentNodePath: String, relPath: String, vararg path: String): FileObject {
     val fileObject = FileObject()
     fileObject.fileName = path.last()
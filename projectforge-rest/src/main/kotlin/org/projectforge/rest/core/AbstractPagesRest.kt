@@ -41,6 +41,7 @@ import org.projectforge.framework.jcr.AttachmentsDaoAccessChecker
 import org.projectforge.framework.jcr.AttachmentsService
 import org.projectforge.framework.persistence.api.*
 import org.projectforge.framework.persistence.api.impl.CustomResultFilter
+import org.projectforge.framework.persistence.history.HistoryEntrySummary
 import org.projectforge.framework.persistence.history.HistoryFormatService
 import org.projectforge.framework.utils.NumberHelper
 import org.projectforge.jcr.FileSizeStandardChecker
@@ -121,6 +122,16 @@ constructor(
     const val USER_PREF_PARAM_HIGHLIGHT_ROW = "highlightedRow"
     const val JCR_PATH_PREFIX: String = "org.projectforge"
 
+    /**
+     * Maximum page size of history entries requested by [getHistory].
+     */
+    const val MAX_HISTORY_PAGE_SIZE = 1000
+
+    /**
+     * Default number of changes returned by [getHistorySummary].
+     */
+    const val DEFAULT_HISTORY_SUMMARY_SIZE = 10
+
     fun getJcrPath(identifier: String): String {
       return "$JCR_PATH_PREFIX.$identifier"
     }
@@ -881,17 +892,66 @@ constructor(
   /**
    * Gets the history items of the given entity.
    * @param id Id of the item to get the history entries for.
+   * @param maxResults If given, only one page of history entries is returned (newest first).
+   * @param afterPk Id of the last history entry of the previous page for getting the next page. An unknown id results
+   * in an empty page.
    */
   @GetMapping("history/{id}")
-  fun getHistory(@PathVariable("id") id: Int?): ResponseEntity<List<HistoryFormatService.DisplayHistoryEntryDTO>> {
+  fun getHistory(
+    @PathVariable("id") id: Int?,
+    @RequestParam("maxResults", required = false) maxResults: Int?,
+    @RequestParam("afterPk", required = false) afterPk: Long?,
+  ): ResponseEntity<List<HistoryFormatService.DisplayHistoryEntryDTO>> {
     if (id == null) {
       return ResponseEntity(HttpStatus.BAD_REQUEST)
     }
     val item = baseDao.getById(id) ?: return ResponseEntity(HttpStatus.BAD_REQUEST)
+    if (maxResults != null) {
+      val page = baseDao.getHistoryEntries(item, afterPk, maxResults.coerceIn(1, MAX_HISTORY_PAGE_SIZE))
+      return ResponseEntity(historyFormatService.format(item, page), HttpStatus.OK)
+    }
     val historyEntries = baseDao.getHistoryEntries(item)
     return ResponseEntity(historyFormatService.format(item, historyEntries), HttpStatus.OK)
   }
 
+  /**
+   * Gets the last changes of the given entity without their property changes (see [getHistoryEntry] for expanding
+   * a single change).
+   * @param id Id of the item to get the last changes for.
+   * @param maxResults Maximum number of changes (newest first).
+   */
+  @GetMapping("historySummary/{id}")
+  fun getHistorySummary(
+    @PathVariable("id") id: Int?,
+    @RequestParam("maxResults", required = false) maxResults: Int?,
+  ): ResponseEntity<List<HistoryEntrySummary>> {
+    if (id == null) {
+      return ResponseEntity(HttpStatus.BAD_REQUEST)
+    }
+    val item = baseDao.getById(id) ?: return ResponseEntity(HttpStatus.BAD_REQUEST)
+    val size = (maxResults ?: DEFAULT_HISTORY_SUMMARY_SIZE).coerceIn(1, MAX_HISTORY_PAGE_SIZE)
+    return ResponseEntity(baseDao.getLastHistoryEntrySummaries(item, size), HttpStatus.OK)
+  }
+
+  /**
+   * Gets a single history entry of the given entity including its property changes.
+   * @param id Id of the item.
+   * @param pk Id of the history entry (see [HistoryEntrySummary.pk]).
+   */
+  @GetMapping("historyEntry/{id}/{pk}")
+  fun getHistoryEntry(
+    @PathVariable("id") id: Int?,
+    @PathVariable("pk") pk: Long?,
+  ): ResponseEntity<HistoryFormatService.DisplayHistoryEntryDTO> {
+    if (id == null || pk == null) {
+      return ResponseEntity(HttpStatus.BAD_REQUEST)
+    }
+    val item = baseDao.getById(id) ?: return ResponseEntity(HttpStatus.BAD_REQUEST)
+    val entry = baseDao.getHistoryEntry(item, pk) ?: return ResponseEntity(HttpStatus.NOT_FOUND)
+    val dto = historyFormatService.format(item, listOf(entry)).firstOrNull() ?: return ResponseEntity(HttpStatus.NOT_FOUND)
+    return ResponseEntity(dto, HttpStatus.OK)
+  }
+
   /**
    * Will be called by clone button. Sets the id of the form data object to null and deleted to false.
    * @return ResponseAction with [TargetType.UPDATE] and variable "initial" with all the initial data of [getItemAndLayout] as given for new objects.
@@ -27,7 +27,7 @@ import mu.KotlinLogging
 import org.projectforge.common.BeanHelper
 import org.projectforge.common.CSVParser
 import org.projectforge.framework.utils.ValueParser
-import java.io.ByteArrayInputStream
+import java.io.BufferedInputStream
 import java.io.InputStream
 import java.io.Reader
 import java.math.BigDecimal
@@ -39,6 +39,11 @@ import java.util.*
 private val log = KotlinLogging.logger {}
 
 object CsvImporter {
+  /**
+   * Default size of batches handed to the consumer by [parseInBatches].
+   */
+  const val DEFAULT_BATCH_SIZE = 1000
+
   /**
    * @param charset to use, if UTF-8 encoding or UTF-16-encoding doesn't fit.
    */
@@ -47,14 +52,51 @@ object CsvImporter {
     importStorage: ImportStorage<O>,
     defaultCharset: Charset? = null,
   ) {
-    val bytes = inputStream.readAllBytes()
-    parse(ByteArrayInputStream(bytes).reader(charset = detectCharset(bytes, defaultCharset)), importStorage)
+    parse(createReader(inputStream, defaultCharset), importStorage)
   }
 
+  /**
+   * All records are read first and committed afterwards, the number format of BigDecimal columns without given
+   * parse format is auto-detected by all values of the column.
+   */
   fun <O : ImportPairEntry.Modified<O>> parse(reader: Reader, importStorage: ImportStorage<O>) {
+    parseInBatches(reader, importStorage, Int.MAX_VALUE) { records ->
+      records.forEach { record ->
+        importStorage.commitEntity(record)
+      }
+    }
+  }
+
+  /**
+   * Streaming parse mode: the records are handed to the consumer in batches of the given size, so the memory
+   * usage doesn't depend on the number of lines.
+   * The number format of BigDecimal columns without given parse format is auto-detected by the values of the first batch.
+   * @param charset to use, if UTF-8 encoding or UTF-16-encoding doesn't fit.
+   * @param consumer Called for every batch of parsed records (the list is only valid during the call).
+   */
+  fun <O : ImportPairEntry.Modified<O>> parseInBatches(
+    inputStream: InputStream,
+    importStorage: ImportStorage<O>,
+    defaultCharset: Charset? = null,
+    batchSize: Int = DEFAULT_BATCH_SIZE,
+    consumer: (records: List<O>) -> Unit,
+  ) {
+    parseInBatches(createReader(inputStream, defaultCharset), importStorage, batchSize, consumer)
+  }
+
+  /**
+   * @see parseInBatches
+   */
+  fun <O : ImportPairEntry.Modified<O>> parseInBatches(
+    reader: Reader,
+    importStorage: ImportStorage<O>,
+    batchSize: Int = DEFAULT_BATCH_SIZE,
+    consumer: (records: List<O>) -> Unit,
+  ) {
+    require(batchSize > 0) { "Batch size must be positive: $batchSize" }
     val settings = importStorage.importSettings
     val parser = CSVParser(reader)
-    val headCols = parser.parseLine()
+    val headCols = parser.parseLine() ?: return // Empty file.
     headCols.forEachIndexed { index, head ->
       val fieldSettings = settings.getFieldSettings(head)
       if (fieldSettings != null) {
@@ -68,72 +110,59 @@ object CsvImporter {
     }
     // Key is the property name, value is a map (key is bean and value is the number string to parse)
     val autodetectNumberFormatMap = AutodetectNumberMap<O>()
+    // Binders are compiled once by the class of the first record:
+    var binders: Array<ColumnBinder<O>?>? = null
     val records = mutableListOf<O>()
-    for (i in 0..100000) { // Paranoi loop, read 100000 lines at max.
+    while (true) {
       val line = parser.parseLine() ?: break  // Finished
       val record = importStorage.prepareEntity()
+      val columnBinders = binders ?: compileBinders(record::class.java, importStorage, autodetectNumberFormatMap).also {
+        binders = it
+      }
       line.forEachIndexed { index, value ->
-        importStorage.columnMapping[index]?.let { fieldSettings ->
-          if (!importStorage.setProperty(record, fieldSettings, value)) {
-            val targetValue = when (BeanHelper.determinePropertyType(record::class.java, fieldSettings.property)) {
-              LocalDate::class.java -> {
-                fieldSettings.parseLocalDate(value)
-              }
-
-              Date::class.java -> {
-                fieldSettings.parseDate(value)
-              }
-
-              BigDecimal::class.java -> {
-                if (fieldSettings.parseFormatList.isEmpty()) {
-                  // Don't parse value, store value for later format auto-detection:
-                  autodetectNumberFormatMap.add(record, fieldSettings, value)
-                  null
-                } else {
-                  // Use given format list:
-                  fieldSettings.parseBigDecimal(value)
-                }
-              }
-
-              Int::class.java -> {
-                fieldSettings.parseInt(value)
-              }
-
-              Boolean::class.java -> {
-                fieldSettings.parseBoolean(value)
-              }
-
-              else -> {
-                value
-              }
-            }
-            if (targetValue != null) {
-              // Don't write null values (don't overwrite existing values given e. g. by previous column).
-              if (targetValue is String) {
-                if (targetValue.isNotBlank()) {
-                  try {
-                    val existingValue = BeanHelper.getProperty(record, fieldSettings.property)
-                    if (existingValue != null && existingValue is String && existingValue.isNotBlank()) { // Should be a string....
-                      if (existingValue.trim() != targetValue.trim()) {
-                        // Only concat, if new value differs:
-                        BeanHelper.setProperty(record, fieldSettings.property, "$existingValue$targetValue") // concat
-                      }
-                    } else { // Set value because no existing one as String given:
-                      BeanHelper.setProperty(record, fieldSettings.property, targetValue)
-                    }
-                  } catch (ex: Exception) {
-                    log.error("Can't parse property: '${fieldSettings.property}': ${ex.message}")
-                  }
-                }
-              } else {
-                BeanHelper.setProperty(record, fieldSettings.property, targetValue)
-              }
-            }
-          }
+        if (index < columnBinders.size) {
+          columnBinders[index]?.bind(record, value)
         }
       }
       records.add(record)
+      if (records.size >= batchSize) {
+        flush(records, autodetectNumberFormatMap, consumer)
+      }
     }
+    flush(records, autodetectNumberFormatMap, consumer)
+  }
+
+  private fun <O> flush(
+    records: MutableList<O>,
+    autodetectNumberFormatMap: AutodetectNumberMap<O>,
+    consumer: (records: List<O>) -> Unit,
+  ) {
+    if (records.isEmpty()) {
+      return
+    }
+    autodetectNumberFormats(autodetectNumberFormatMap)
+    consumer(records)
+    records.clear()
+  }
+
+  private fun <O : ImportPairEntry.Modified<O>> compileBinders(
+    recordClass: Class<*>,
+    importStorage: ImportStorage<O>,
+    autodetectNumberFormatMap: AutodetectNumberMap<O>,
+  ): Array<ColumnBinder<O>?> {
+    val size = (importStorage.columnMapping.keys.maxOrNull() ?: -1) + 1
+    val binders = arrayOfNulls<ColumnBinder<O>>(size)
+    importStorage.columnMapping.forEach { (index, fieldSettings) ->
+      binders[index] = ColumnBinder(recordClass, fieldSettings, importStorage, autodetectNumberFormatMap)
+    }
+    return binders
+  }
+
+  /**
+   * Determines the number formats of all properties with stored number strings and sets the parsed values.
+   * The detected formats are added to the field settings, so following records are parsed directly.
+   */
+  private fun <O> autodetectNumberFormats(autodetectNumberFormatMap: AutodetectNumberMap<O>) {
     autodetectNumberFormatMap.storedFieldSettings.forEach { fieldSettings ->
       // Check format:
       var englishStyle = true
@@ -167,9 +196,103 @@ object CsvImporter {
         }
       }
     }
+    autodetectNumberFormatMap.clear()
+  }
+
+  private fun createReader(inputStream: InputStream, defaultCharset: Charset?): Reader {
+    // Only the head of the stream is needed for detecting the charset:
+    val bufferedStream = BufferedInputStream(inputStream, CHARSET_DETECTION_SIZE)
+    bufferedStream.mark(CHARSET_DETECTION_SIZE)
+    val head = bufferedStream.readNBytes(CHARSET_DETECTION_SIZE)
+    bufferedStream.reset()
+    return bufferedStream.reader(charset = detectCharset(head, defaultCharset))
+  }
+
+  /**
+   * Binds the values of one column to the records. The setter, getter and the type of the target property are
+   * resolved only once per column (and not by reflection for every cell).
+   */
+  private class ColumnBinder<O : ImportPairEntry.Modified<O>>(
+    recordClass: Class<*>,
+    val fieldSettings: ImportFieldSettings,
+    val importStorage: ImportStorage<O>,
+    val autodetectNumberFormatMap: AutodetectNumberMap<O>,
+  ) {
+    private val getter = BeanHelper.determineGetter(recordClass, fieldSettings.property)
+    private val setter = BeanHelper.determineSetter(recordClass, fieldSettings.property)
+    private val propertyType = BeanHelper.determinePropertyType(getter)
 
-    records.forEach { record ->
-      importStorage.commitEntity(record)
+    private fun convert(record: O, value: String): Any? {
+      return when (propertyType) {
+        LocalDate::class.java -> {
+          fieldSettings.parseLocalDate(value)
+        }
+
+        Date::class.java -> {
+          fieldSettings.parseDate(value)
+        }
+
+        BigDecimal::class.java -> {
+          if (fieldSettings.parseFormatList.isEmpty()) {
+            // Don't parse value, store value for later format auto-detection:
+            autodetectNumberFormatMap.add(record, fieldSettings, value)
+            null
+          } else {
+            // Use given (or already detected) format list:
+            fieldSettings.parseBigDecimal(value)
+          }
+        }
+
+        Int::class.java -> {
+          fieldSettings.parseInt(value)
+        }
+
+        Boolean::class.java -> {
+          fieldSettings.parseBoolean(value)
+        }
+
+        else -> {
+          value
+        }
+      }
+    }
+
+    fun bind(record: O, value: String) {
+      if (importStorage.setProperty(record, fieldSettings, value)) {
+        return
+      }
+      val targetValue = convert(record, value) ?: return
+      // Don't write null values (don't overwrite existing values given e. g. by previous column).
+      if (targetValue is String) {
+        if (targetValue.isNotBlank()) {
+          try {
+            val existingValue = getter?.invoke(record)
+            if (existingValue != null && existingValue is String && existingValue.isNotBlank()) { // Should be a string....
+              if (existingValue.trim() != targetValue.trim()) {
+                // Only concat, if new value differs:
+                setValue(record, "$existingValue$targetValue") // concat
+              }
+            } else { // Set value because no existing one as String given:
+              setValue(record, targetValue)
+            }
+          } catch (ex: Exception) {
+            log.error("Can't parse property: '${fieldSettings.property}': ${ex.message}")
+          }
+        }
+      } else {
+        setValue(record, targetValue)
+      }
+    }
+
+    private fun setValue(record: O, value: Any) {
+      if (setter == null) {
+        throw RuntimeException("Setter for property '${fieldSettings.property}' not found.")
+      }
+      try {
+        setter.invoke(record, value)
+      } catch (ex: Exception) {
+        throw RuntimeException("For property '${fieldSettings.property}'.", ex)
+      }
     }
   }
 
@@ -181,6 +304,9 @@ object CsvImporter {
     var utf8EscapeChars = 0
     var utf16NullBytes = 0
     val size = bytes.size
+    if (size == 0) {
+      return defaultCharset ?: StandardCharsets.UTF_8
+    }
     for (i in 0..100000) {
       if (i >= size) {
         break
@@ -205,6 +331,7 @@ object CsvImporter {
 
   private const val UTF8_ESCAPE_BYTE = 195.toByte() // C3
   private const val UTF16_NULL_BYTE = 0.toByte() // 00
+  private const val CHARSET_DETECTION_SIZE = 100001
 
   private class AutodetectNumberMap<O> {
     val entries = mutableMapOf<O, AutodetectNumberEntry>()
@@ -222,6 +349,15 @@ object CsvImporter {
       }
       value.add(fieldSettings, str)
     }
+
+    /**
+     * The formats of the stored fields are detected, so they're removed as well. Otherwise, the formats would be
+     * detected again (without any values) by following batches.
+     */
+    fun clear() {
+      entries.clear()
+      storedFieldSettings.clear()
+    }
   }
 
   private class AutodetectNumberEntry() {
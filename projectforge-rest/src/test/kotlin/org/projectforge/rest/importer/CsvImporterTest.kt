@@ -26,7 +26,11 @@ package org.projectforge.rest.importer
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import java.io.File
+import java.io.StringReader
+import java.math.BigDecimal
 import java.nio.charset.Charset
+import java.time.LocalDate
+import kotlin.reflect.KProperty
 
 class CsvImporterTest {
   @Test
@@ -41,6 +45,78 @@ class CsvImporterTest {
     check("UTF-8", i18nDe, "ISO-8859-15")
   }
 
+  @Test
+  fun parseInBatchesTest() {
+    val importStorage = TestImportStorage()
+    val batchSizes = mutableListOf<Int>()
+    val records = mutableListOf<TestRecord>()
+    CsvImporter.parseInBatches(StringReader(createCsv(1050)), importStorage, batchSize = 100) { batch ->
+      batchSizes.add(batch.size)
+      records.addAll(batch)
+    }
+    Assertions.assertEquals(listOf(100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 50), batchSizes)
+    Assertions.assertEquals(1050, records.size)
+    Assertions.assertEquals(listOf("unknown"), importStorage.unknownColumns)
+    records.forEachIndexed { index, record ->
+      Assertions.assertEquals("Name $index", record.name)
+      Assertions.assertEquals(LocalDate.of(2023, 1, 1).plusDays(index % 365L), record.date)
+      Assertions.assertEquals(BigDecimal("$index.5"), record.amount?.stripTrailingZeros())
+    }
+    // Parse mode without batches:
+    val importStorage2 = TestImportStorage()
+    CsvImporter.parse(StringReader(createCsv(1050)), importStorage2)
+    Assertions.assertEquals(1050, importStorage2.records.size)
+    Assertions.assertEquals(BigDecimal("1049.5"), importStorage2.records.last().amount?.stripTrailingZeros())
+  }
+
+  @Test
+  fun parseInBatchesEnglishNumberFormatTest() {
+    val records = mutableListOf<TestRecord>()
+    CsvImporter.parseInBatches(StringReader(createCsv(350, germanStyle = false)), TestImportStorage(), batchSize = 100) {
+      records.addAll(it)
+    }
+    Assertions.assertEquals(350, records.size)
+    records.forEachIndexed { index, record ->
+      Assertions.assertEquals(BigDecimal("$index.5"), record.amount?.stripTrailingZeros(), "Record #$index")
+    }
+  }
+
+  private fun createCsv(rows: Int, germanStyle: Boolean = true): String {
+    val sb = StringBuilder()
+    sb.appendLine("name;date;amount;unknown")
+    val date = LocalDate.of(2023, 1, 1)
+    val decimalChar = if (germanStyle) ',' else '.'
+    for (i in 0 until rows) {
+      sb.appendLine("Name $i;${date.plusDays(i % 365L)};${i}${decimalChar}50;xxx")
+    }
+    return sb.toString()
+  }
+
+  class TestRecord : ImportPairEntry.Modified<TestRecord> {
+    var name: String? = null
+    var date: LocalDate? = null
+    var amount: BigDecimal? = null
+
+    override val properties: Array<KProperty<*>>? = null
+  }
+
+  class TestImportStorage : ImportStorage<TestRecord>(
+    ImportSettings()
+      .addFieldSettings(ImportFieldSettings("name"))
+      .addFieldSettings(ImportFieldSettings("date"))
+      .addFieldSettings(ImportFieldSettings("amount"))
+  ) {
+    val records = mutableListOf<TestRecord>()
+
+    override fun prepareEntity(): TestRecord {
+      return TestRecord()
+    }
+
+    override fun commitEntity(obj: TestRecord) {
+      records.add(obj)
+    }
+  }
+
   private fun check(expected: String, encodeWith: String, defaultCharsetName: String? = null) {
     val str = "Hallo öäüß, éáàc"
     val bytes = str.toByteArray(Charset.forName(encodeWith))
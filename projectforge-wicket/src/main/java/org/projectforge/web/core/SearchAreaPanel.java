@@ -68,9 +68,23 @@ public class SearchAreaPanel extends Panel
    * @param filter
    * @param registryEntry the area to show.
    */
-  @SuppressWarnings("serial")
   public SearchAreaPanel(final WebPage page, final String id, final SearchPageFilter filter,
       final WebRegistryEntry webRegistryEntry)
+  {
+    this(page, id, filter, webRegistryEntry, null);
+  }
+
+  /**
+   * @param page Needed, because in constructor this panel is not yet added to a page.
+   * @param id
+   * @param filter
+   * @param registryEntry the area to show.
+   * @param searchResult The result of {@link SearchDao#search(List, long)} containing this area or null, if the area
+   *          should be searched by this panel.
+   */
+  @SuppressWarnings("serial")
+  public SearchAreaPanel(final WebPage page, final String id, final SearchPageFilter filter,
+      final WebRegistryEntry webRegistryEntry, final SearchDao.SearchResult searchResult)
   {
     super(id);
     final long millis = System.currentTimeMillis();
@@ -86,37 +100,27 @@ public class SearchAreaPanel extends Panel
     if (listPageColumnsCreator instanceof AbstractListPage) {
       ((AbstractListPage<?, ?, ?>) listPageColumnsCreator).setCalledBySearchPage(true);
     }
-    final Integer number = statisticsCache.getNumberOfEntities(webRegistryEntry.getDOClass());
-    final Class<? extends BaseSearchFilter> registeredFilterClass = webRegistryEntry.getSearchFilterClass();
-    final boolean isTaskDependentFilter = registeredFilterClass != null
-        && TaskDependentFilter.class.isAssignableFrom(registeredFilterClass);
-    if (number > MAXIMUM_ENTRIES_WITHOUT_FILTER_SETTINGS
-        && (filter.getSearchString() == null || filter.getSearchString().length() < 3)
-        && (isTaskDependentFilter == false || filter.getTask() == null)
-        && filter.getStartTimeOfModification() == null
-        && filter.getStopTimeOfModification() == null) {
-      // Don't search to large tables if to less filter settings are given.
-      setVisible(false);
-      return;
-    }
-    filter.updateUseModificationFilterFlag();
-    final BaseSearchFilter baseSearchFilter;
-    if (isTaskDependentFilter == true) {
-      baseSearchFilter = (BaseSearchFilter) BeanHelper.newInstance(registeredFilterClass,
-          new Class<?>[] { BaseSearchFilter.class },
-          filter);
-      ((TaskDependentFilter) baseSearchFilter).setTaskId(filter.getTaskId());
-      baseSearchFilter.copyBaseSearchFieldsFrom(filter);
+    final List<SearchResultData> areaResult;
+    if (searchResult != null) {
+      if (searchResult.isSearched(webRegistryEntry.getId()) == false) {
+        // Area wasn't searched (see getSearchFilter).
+        setVisible(false);
+        return;
+      }
+      areaResult = searchResult.getAreaResult(webRegistryEntry.getId()); // null on errors or time out.
     } else {
-      baseSearchFilter = filter;
+      final BaseSearchFilter baseSearchFilter = getSearchFilter(filter, webRegistryEntry, statisticsCache);
+      if (baseSearchFilter == null) {
+        setVisible(false);
+        return;
+      }
+      areaResult = searchDao.getEntries(baseSearchFilter, webRegistryEntry.getDOClass(), webRegistryEntry.getDao());
     }
-    final List<SearchResultData> searchResult = searchDao.getEntries(baseSearchFilter, webRegistryEntry.getDOClass(),
-        webRegistryEntry.getDao());
     boolean hasError = false;
-    if (searchResult == null) {
+    if (areaResult == null) {
       // An error occured!
       hasError = true;
-    } else if (searchResult.size() == 0) {
+    } else if (areaResult.size() == 0) {
       // No hits.
       setVisible(false);
       return;
@@ -126,7 +130,7 @@ public class SearchAreaPanel extends Panel
       add(WicketUtils.getInvisibleComponent("dataTable"));
     } else {
       final List<ExtendedBaseDO<Integer>> list = new ArrayList<ExtendedBaseDO<Integer>>();
-      for (final SearchResultData data : searchResult) {
+      for (final SearchResultData data : areaResult) {
         if (data.getDataObject() != null) {
           list.add(data.getDataObject());
         } else {
@@ -209,8 +213,43 @@ public class SearchAreaPanel extends Panel
     } else {
       add(new Label("listPageLink", "[invisible]").setVisible(false));
     }
-    final long duration = System.currentTimeMillis() - millis;
+    // The search of all areas was done in parallel before, so use the duration of this area's search:
+    final Long areaDuration = searchResult != null ? searchResult.getAreaDuration(webRegistryEntry.getId()) : null;
+    final long duration = areaDuration != null ? areaDuration : System.currentTimeMillis() - millis;
     add(new Label("areaTitle", page.getString(webRegistryEntry.getI18nTitleHeading())));
     add(new Label("timeOfSearch", NumberFormatter.format(duration)));
   }
+
+  /**
+   * @return The filter for searching the given area or null, if the area shouldn't be searched (too large tables with
+   * too less filter settings).
+   */
+  static BaseSearchFilter getSearchFilter(final SearchPageFilter filter, final WebRegistryEntry webRegistryEntry,
+      final StatisticsCache statisticsCache)
+  {
+    final Integer number = statisticsCache.getNumberOfEntities(webRegistryEntry.getDOClass());
+    final Class<? extends BaseSearchFilter> registeredFilterClass = webRegistryEntry.getSearchFilterClass();
+    final boolean isTaskDependentFilter = registeredFilterClass != null
+        && TaskDependentFilter.class.isAssignableFrom(registeredFilterClass);
+    if (number > MAXIMUM_ENTRIES_WITHOUT_FILTER_SETTINGS
+        && (filter.getSearchString() == null || filter.getSearchString().length() < 3)
+        && (isTaskDependentFilter == false || filter.getTask() == null)
+        && filter.getStartTimeOfModification() == null
+        && filter.getStopTimeOfModification() == null) {
+      // Don't search to large tables if to less filter settings are given.
+      return null;
+    }
+    filter.updateUseModificationFilterFlag();
+    final BaseSearchFilter baseSearchFilter;
+    if (isTaskDependentFilter == true) {
+      baseSearchFilter = (BaseSearchFilter) BeanHelper.newInstance(registeredFilterClass,
+          new Class<?>[] { BaseSearchFilter.class },
+          filter);
+      ((TaskDependentFilter) baseSearchFilter).setTaskId(filter.getTaskId());
+      baseSearchFilter.copyBaseSearchFieldsFrom(filter);
+    } else {
+      baseSearchFilter = filter;
+    }
+    return baseSearchFilter;
+  }
 }
@@ -31,19 +31,32 @@ import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.markup.repeater.RepeatingView;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.projectforge.business.user.UserGroupCache;
+import org.projectforge.framework.persistence.api.BaseSearchFilter;
+import org.projectforge.framework.persistence.api.SearchDao;
+import org.projectforge.framework.persistence.database.StatisticsCache;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.web.fibu.ISelectCallerPage;
 import org.projectforge.web.registry.WebRegistry;
 import org.projectforge.web.registry.WebRegistryEntry;
 import org.projectforge.web.wicket.AbstractStandardFormPage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SearchPage extends AbstractStandardFormPage implements ISelectCallerPage
 {
   private static final long serialVersionUID = -8416731462457080883L;
 
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SearchPage.class);
 
+  @SpringBean
+  private SearchDao searchDao;
+
+  @SpringBean
+  private StatisticsCache statisticsCache;
+
   private final SearchForm form;
 
   private final RepeatingView areaRepeater;
@@ -122,11 +135,24 @@ public class SearchPage extends AbstractStandardFormPage implements ISelectCalle
       return;
     }
     if ("ALL".equals(form.filter.getArea()) == true) {
+      // Search all areas in parallel instead of loading each area separately:
+      final List<WebRegistryEntry> registryEntries = new ArrayList<>();
+      final List<SearchDao.SearchArea> areas = new ArrayList<>();
       for (final WebRegistryEntry registryEntry : WebRegistry.getInstance().getOrderedList()) {
         if (SearchForm.isSearchable(registryEntry.getRegistryEntry()) == true) {
-          addArea(registryEntry);
+          registryEntries.add(registryEntry);
+          final BaseSearchFilter searchFilter = SearchAreaPanel.getSearchFilter(form.filter, registryEntry,
+              statisticsCache);
+          if (searchFilter != null) {
+            areas.add(new SearchDao.SearchArea(registryEntry.getId(), registryEntry.getDao(), searchFilter));
+          }
         }
       }
+      final SearchDao.SearchResult searchResult = searchDao.search(areas, SearchDao.DEFAULT_AREA_TIME_BUDGET_MS);
+      for (final WebRegistryEntry registryEntry : registryEntries) {
+        areaRepeater.add(
+            new SearchAreaPanel(this, areaRepeater.newChildId(), form.filter, registryEntry, searchResult));
+      }
     } else {
       final WebRegistryEntry registryEntry = WebRegistry.getInstance().getEntry(form.filter.getArea());
       if (registryEntry == null) {